@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.bench;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import com.collective.celos.BucketID;
+import com.collective.celos.RegisterKey;
+import com.collective.celos.RerunState;
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.SlotID;
+import com.collective.celos.SlotState;
+import com.collective.celos.SlotStates;
+import com.collective.celos.Util;
+import com.collective.celos.WorkflowID;
+import com.collective.celos.database.StateDatabase;
+import com.collective.celos.database.StateDatabaseConnection;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * State database that keeps everything in memory, indexed by workflow, so
+ * that benchmarks measure the scheduler rather than the database.
+ *
+ * All connections share the same state.  Closing them does nothing.
+ */
+public class InMemoryStateDatabase implements StateDatabase {
+
+    private final ConcurrentMap<WorkflowID, WorkflowState> workflows = new ConcurrentHashMap<>();
+    private final ConcurrentMap<BucketID, NavigableMap<RegisterKey, JsonNode>> registers = new ConcurrentHashMap<>();
+    private final Connection connection = new Connection();
+
+    @Override
+    public StateDatabaseConnection openConnection() {
+        return connection;
+    }
+
+    /**
+     * Number of slot states stored for all workflows.
+     */
+    public int getSlotCount() {
+        int count = 0;
+        for (WorkflowState state : workflows.values()) {
+            synchronized (state) {
+                count += state.slots.size();
+            }
+        }
+        return count;
+    }
+
+    private WorkflowState getWorkflowState(WorkflowID id) {
+        return workflows.computeIfAbsent(id, WorkflowState::new);
+    }
+
+    private NavigableMap<RegisterKey, JsonNode> getBucket(BucketID bucket) {
+        return registers.computeIfAbsent(Util.requireNonNull(bucket), k -> new ConcurrentSkipListMap<>());
+    }
+
+    /**
+     * The state of a single workflow, guarded by itself.
+     */
+    private static class WorkflowState {
+
+        private final SlotStates slots;
+        private final Map<ScheduledTime, ScheduledTime> rerunMarks = new HashMap<>();
+        private final Map<ScheduledTime, ScheduledTime> nextTriggerChecks = new HashMap<>();
+        private boolean paused;
+
+        private WorkflowState(WorkflowID id) {
+            this.slots = new SlotStates(id);
+        }
+    }
+
+    private class Connection implements StateDatabaseConnection {
+
+        @Override
+        public SlotStates getSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) {
+            WorkflowState state = getWorkflowState(id);
+            synchronized (state) {
+                return state.slots.range(start, end);
+            }
+        }
+
+        @Override
+        public SlotStates getSlotStatesFrom(WorkflowID id, ScheduledTime start) {
+            WorkflowState state = getWorkflowState(id);
+            synchronized (state) {
+                return state.slots.tail(start);
+            }
+        }
+
+        @Override
+        public SlotState getSlotState(SlotID slot) {
+            WorkflowState state = getWorkflowState(slot.getWorkflowID());
+            synchronized (state) {
+                return state.slots.get(slot.getScheduledTime());
+            }
+        }
+
+        @Override
+        public void putSlotState(SlotState slotState) {
+            WorkflowState state = getWorkflowState(slotState.getSlotID().getWorkflowID());
+            synchronized (state) {
+                state.slots.add(slotState);
+            }
+        }
+
+        @Override
+        public void markSlotForRerun(SlotID slot, ScheduledTime now) {
+            WorkflowState state = getWorkflowState(slot.getWorkflowID());
+            synchronized (state) {
+                state.rerunMarks.put(slot.getScheduledTime(), now);
+            }
+        }
+
+        @Override
+        public SortedSet<ScheduledTime> getTimesMarkedForRerun(WorkflowID workflowID, ScheduledTime now) {
+            WorkflowState state = getWorkflowState(workflowID);
+            synchronized (state) {
+                SortedSet<ScheduledTime> times = new TreeSet<>(state.rerunMarks.keySet());
+                state.rerunMarks.values().removeIf(markTime -> new RerunState(markTime).isExpired(now));
+                return times;
+            }
+        }
+
+        @Override
+        public boolean isPaused(WorkflowID workflowID) {
+            WorkflowState state = getWorkflowState(workflowID);
+            synchronized (state) {
+                return state.paused;
+            }
+        }
+
+        @Override
+        public void setPaused(WorkflowID workflowID, boolean paused) {
+            WorkflowState state = getWorkflowState(workflowID);
+            synchronized (state) {
+                state.paused = paused;
+            }
+        }
+
+        @Override
+        public Map<ScheduledTime, ScheduledTime> getNextTriggerChecks(WorkflowID workflowID) {
+            WorkflowState state = getWorkflowState(workflowID);
+            synchronized (state) {
+                return new HashMap<>(state.nextTriggerChecks);
+            }
+        }
+
+        @Override
+        public void setNextTriggerCheck(SlotID slot, ScheduledTime nextCheck) {
+            WorkflowState state = getWorkflowState(slot.getWorkflowID());
+            synchronized (state) {
+                state.nextTriggerChecks.put(slot.getScheduledTime(), nextCheck);
+            }
+        }
+
+        @Override
+        public void clearNextTriggerCheck(SlotID slot) {
+            WorkflowState state = getWorkflowState(slot.getWorkflowID());
+            synchronized (state) {
+                state.nextTriggerChecks.remove(slot.getScheduledTime());
+            }
+        }
+
+        @Override
+        public JsonNode getRegister(BucketID bucket, RegisterKey key) {
+            return getBucket(bucket).get(Util.requireNonNull(key));
+        }
+
+        @Override
+        public Set<RegisterKey> getRegisterKeys(BucketID bucket, String prefix) {
+            Set<RegisterKey> keys = new HashSet<>();
+            for (RegisterKey key : getBucket(bucket).keySet()) {
+                if (prefix == null || key.toString().startsWith(prefix)) {
+                    keys.add(key);
+                }
+            }
+            return keys;
+        }
+
+        @Override
+        public void putRegister(BucketID bucket, RegisterKey key, JsonNode value) {
+            getBucket(bucket).put(Util.requireNonNull(key), Util.requireNonNull(value));
+        }
+
+        @Override
+        public void deleteRegister(BucketID bucket, RegisterKey key) {
+            getBucket(bucket).remove(Util.requireNonNull(key));
+        }
+
+        @Override
+        public void deleteRegistersWithPrefix(BucketID bucket, String prefix) {
+            getBucket(bucket).keySet().removeIf(key -> key.toString().startsWith(Util.requireNonNull(prefix)));
+        }
+
+        @Override
+        public Iterable<Map.Entry<RegisterKey, JsonNode>> getAllRegisters(BucketID bucket) {
+            return getBucket(bucket).entrySet();
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
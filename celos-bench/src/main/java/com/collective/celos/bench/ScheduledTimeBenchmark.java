@@ -0,0 +1,178 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.bench;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.lang.builder.CompareToBuilder;
+import org.joda.time.DateTime;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.SlotID;
+import com.collective.celos.SlotState;
+import com.collective.celos.ValueObject;
+import com.collective.celos.WorkflowID;
+
+/**
+ * Compares ScheduledTime and SlotID against reflective value objects that
+ * wrap a DateTime, which is how they used to be implemented.
+ *
+ * sort: adds shuffled times to a TreeSet.
+ * lookup: looks up slot states by equal (but not identical) slot IDs.
+ * walk: steps through the sliding window hour by hour.
+ * parse: parses times in the format used by the state database.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScheduledTimeBenchmark {
+
+    @Param({"10000"})
+    public int slots;
+
+    private final WorkflowID workflowID = new WorkflowID("wf-0");
+    private final ScheduledTime start = new ScheduledTime("2015-01-01T00:00:00.000Z");
+
+    private List<ScheduledTime> times;
+    private List<ReflectiveTime> reflectiveTimes;
+    private List<String> strings;
+    private Map<SlotID, SlotState> states;
+    private List<SlotID> lookupIDs;
+    private Map<ReflectiveSlotID, SlotState> reflectiveStates;
+    private List<ReflectiveSlotID> reflectiveLookupIDs;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        times = new ArrayList<>();
+        reflectiveTimes = new ArrayList<>();
+        strings = new ArrayList<>();
+        states = new HashMap<>();
+        lookupIDs = new ArrayList<>();
+        reflectiveStates = new HashMap<>();
+        reflectiveLookupIDs = new ArrayList<>();
+        for (int i = 0; i < slots; i++) {
+            ScheduledTime time = start.plusHours(i);
+            String string = time.toString();
+            SlotState state = new SlotState(new SlotID(workflowID, time), SlotState.Status.SUCCESS);
+            times.add(time);
+            reflectiveTimes.add(new ReflectiveTime(time.getDateTime()));
+            strings.add(string);
+            states.put(state.getSlotID(), state);
+            lookupIDs.add(new SlotID(new WorkflowID(workflowID.toString()), new ScheduledTime(string)));
+            reflectiveStates.put(new ReflectiveSlotID(workflowID, new ReflectiveTime(time.getDateTime())), state);
+            reflectiveLookupIDs.add(new ReflectiveSlotID(new WorkflowID(workflowID.toString()), new ReflectiveTime(DateTime.parse(string))));
+        }
+        Collections.shuffle(times, new Random(0));
+        Collections.shuffle(reflectiveTimes, new Random(0));
+    }
+
+    @Benchmark
+    public TreeSet<ScheduledTime> sort() {
+        return new TreeSet<>(times);
+    }
+
+    @Benchmark
+    public TreeSet<ReflectiveTime> sortReflective() {
+        return new TreeSet<>(reflectiveTimes);
+    }
+
+    @Benchmark
+    public void lookup(Blackhole bh) {
+        for (SlotID id : lookupIDs) {
+            bh.consume(states.get(id));
+        }
+    }
+
+    @Benchmark
+    public void lookupReflective(Blackhole bh) {
+        for (ReflectiveSlotID id : reflectiveLookupIDs) {
+            bh.consume(reflectiveStates.get(id));
+        }
+    }
+
+    @Benchmark
+    public void walk(Blackhole bh) {
+        for (int i = 0; i < slots; i++) {
+            bh.consume(start.plusHours(i));
+        }
+    }
+
+    @Benchmark
+    public void walkReflective(Blackhole bh) {
+        DateTime dt = start.getDateTime();
+        for (int i = 0; i < slots; i++) {
+            bh.consume(new ReflectiveTime(dt.plusHours(i)));
+        }
+    }
+
+    @Benchmark
+    public void parse(Blackhole bh) {
+        for (String string : strings) {
+            bh.consume(new ScheduledTime(string));
+        }
+    }
+
+    @Benchmark
+    public void parseReflective(Blackhole bh) {
+        for (String string : strings) {
+            bh.consume(new ReflectiveTime(DateTime.parse(string)));
+        }
+    }
+
+    /**
+     * A time compared, hashed, and checked for equality by reflection.
+     */
+    public static class ReflectiveTime extends ValueObject implements Comparable<ReflectiveTime> {
+
+        private final DateTime dateTime;
+
+        public ReflectiveTime(DateTime dateTime) {
+            this.dateTime = dateTime;
+        }
+
+        @Override
+        public int compareTo(ReflectiveTime t) {
+            return CompareToBuilder.reflectionCompare(this, t);
+        }
+    }
+
+    /**
+     * A slot ID hashed and checked for equality by reflection.
+     */
+    public static class ReflectiveSlotID extends ValueObject {
+
+        private final WorkflowID workflowID;
+        private final ReflectiveTime scheduledTime;
+
+        public ReflectiveSlotID(WorkflowID workflowID, ReflectiveTime scheduledTime) {
+            this.workflowID = workflowID;
+            this.scheduledTime = scheduledTime;
+        }
+    }
+
+}
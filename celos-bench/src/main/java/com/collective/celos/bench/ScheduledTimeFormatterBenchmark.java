@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.collective.celos.ScheduledTime;
+
+/**
+ * Replaces the time tokens in paths, as HDFS check triggers do for each slot.
+ *
+ * tokens: a typical hourly path.
+ * noTokens: a path without tokens.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class ScheduledTimeFormatterBenchmark {
+
+    private static final String TOKENS = "/input/feed-1/${year}/${month}/${day}/${hour}/_SUCCESS";
+    private static final String NO_TOKENS = "/input/feed-1/latest/_SUCCESS";
+
+    private final ScheduledTime time = new ScheduledTime("2015-09-01T13:00:00.000Z");
+
+    @Benchmark
+    public String tokens() {
+        return ScheduledTime.FORMATTER.replaceTimeTokens(TOKENS, time);
+    }
+
+    @Benchmark
+    public String noTokens() {
+        return ScheduledTime.FORMATTER.replaceTimeTokens(NO_TOKENS, time);
+    }
+
+}
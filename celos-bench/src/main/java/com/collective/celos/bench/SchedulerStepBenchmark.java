@@ -0,0 +1,174 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.bench;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.collective.celos.CronSchedule;
+import com.collective.celos.ExternalService;
+import com.collective.celos.ExternalStatus;
+import com.collective.celos.HourlySchedule;
+import com.collective.celos.MinutelySchedule;
+import com.collective.celos.Schedule;
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.Scheduler;
+import com.collective.celos.SerialSchedulingStrategy;
+import com.collective.celos.SlotID;
+import com.collective.celos.SlotState;
+import com.collective.celos.Workflow;
+import com.collective.celos.WorkflowConfiguration;
+import com.collective.celos.WorkflowID;
+import com.collective.celos.WorkflowInfo;
+import com.collective.celos.database.StateDatabaseConnection;
+import com.collective.celos.trigger.AlwaysTrigger;
+import com.collective.celos.trigger.NotTrigger;
+
+/**
+ * Steps a scheduler over synthetic workflows kept in an in-memory database.
+ *
+ * Each workflow has the given schedule, a trigger that never fires, and an
+ * external service that reports all workflows as running, so that a step
+ * leaves the state unchanged, and each invocation does the same work.
+ *
+ * The slots within the sliding window have the given mix of states:
+ * waiting: no slot is stored, all are synthesized as waiting.
+ * done: all slots succeeded.
+ * running: all slots are running, and are polled.
+ * mixed: eight in ten slots succeeded, one is running, one is waiting.
+ *
+ * The default parameters are a representative subset; more can be given with
+ * -p, e.g. -p workflows=10,100,1000,10000 -p mix=waiting,done,running,mixed.
+ * Minutely schedules with many workflows and a large window need a big heap.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+public class SchedulerStepBenchmark {
+
+    private static final ScheduledTime CURRENT = new ScheduledTime("2015-09-01T00:00:00.000Z");
+    private static final WorkflowInfo WORKFLOW_INFO = new WorkflowInfo(null, Collections.<WorkflowInfo.ContactsInfo>emptyList());
+
+    @Param({"10", "1000"})
+    public int workflows;
+
+    @Param({"hourly", "minutely", "cron"})
+    public String schedule;
+
+    @Param({"24", "168"})
+    public int windowHours;
+
+    @Param({"waiting", "mixed"})
+    public String mix;
+
+    private Scheduler scheduler;
+    private StateDatabaseConnection connection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        ExternalService service = new RunningExternalService();
+        for (int i = 0; i < workflows; i++) {
+            cfg.addWorkflow(new Workflow(new WorkflowID("wf-" + i).intern(), makeSchedule(), new SerialSchedulingStrategy(1),
+                    new NotTrigger(new AlwaysTrigger()), service, 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, WORKFLOW_INFO));
+        }
+        scheduler = new Scheduler(cfg, windowHours);
+        connection = new InMemoryStateDatabase().openConnection();
+        for (Workflow wf : cfg.getWorkflows()) {
+            int i = 0;
+            for (ScheduledTime time : wf.getSchedule().getScheduledTimes(scheduler, scheduler.getWorkflowStartTime(wf, CURRENT), CURRENT)) {
+                SlotState.Status status = getStatus(i++);
+                if (status != null) {
+                    connection.putSlotState(new SlotState(new SlotID(wf.getID(), time), status, status == SlotState.Status.RUNNING ? "ext-" + i : null, 0));
+                }
+            }
+        }
+        // Reaches the steady state, e.g. records when triggers are checked next
+        scheduler.step(CURRENT, connection);
+    }
+
+    @Benchmark
+    public void step() throws Exception {
+        scheduler.step(CURRENT, connection);
+    }
+
+    private Schedule makeSchedule() {
+        switch (schedule) {
+        case "hourly": return new HourlySchedule();
+        case "minutely": return new MinutelySchedule();
+        case "cron": return new CronSchedule("0 0/15 * * * ?");
+        default: throw new IllegalArgumentException("Unknown schedule: " + schedule);
+        }
+    }
+
+    /**
+     * Returns the status of the i-th slot of a workflow, or null if it isn't stored.
+     */
+    private SlotState.Status getStatus(int i) {
+        switch (mix) {
+        case "waiting": return null;
+        case "done": return SlotState.Status.SUCCESS;
+        case "running": return SlotState.Status.RUNNING;
+        case "mixed": return i % 10 < 8 ? SlotState.Status.SUCCESS : i % 10 == 8 ? SlotState.Status.RUNNING : null;
+        default: throw new IllegalArgumentException("Unknown mix: " + mix);
+        }
+    }
+
+    /**
+     * Accepts all submissions, and reports all workflows as running.
+     */
+    public static class RunningExternalService implements ExternalService {
+
+        private static final ExternalStatus RUNNING = new ExternalStatus() {
+            @Override
+            public boolean isRunning() {
+                return true;
+            }
+
+            @Override
+            public boolean isSuccess() {
+                return false;
+            }
+        };
+
+        private final AtomicLong submitted = new AtomicLong();
+
+        @Override
+        public String submit(SlotID id) {
+            return "ext-" + submitted.incrementAndGet();
+        }
+
+        @Override
+        public void start(SlotID id, String externalID) {
+        }
+
+        @Override
+        public ExternalStatus getStatus(SlotID id, String externalID) {
+            return RUNNING;
+        }
+
+        @Override
+        public void kill(SlotID id, String externalID) {
+        }
+    }
+
+}
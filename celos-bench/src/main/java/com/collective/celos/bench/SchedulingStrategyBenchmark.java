@@ -0,0 +1,80 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.SerialSchedulingStrategy;
+import com.collective.celos.SlotID;
+import com.collective.celos.SlotState;
+import com.collective.celos.WorkflowID;
+
+/**
+ * Picks the slots to submit from a workflow's slots with the serial scheduling strategy.
+ *
+ * ready: all slots are ready.
+ * mixed: most slots succeeded, the latest ones are running or ready.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SchedulingStrategyBenchmark {
+
+    @Param({"24", "168", "1440"})
+    public int slots;
+
+    @Param({"1", "10"})
+    public int concurrency;
+
+    @Param({"ready", "mixed"})
+    public String mix;
+
+    private SerialSchedulingStrategy strategy;
+    private List<SlotState> states;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        strategy = new SerialSchedulingStrategy(concurrency);
+        states = new ArrayList<>();
+        WorkflowID id = new WorkflowID("wf-0");
+        ScheduledTime start = new ScheduledTime("2015-09-01T00:00:00.000Z");
+        for (int i = 0; i < slots; i++) {
+            states.add(new SlotState(new SlotID(id, start.plusHours(i)), getStatus(i)));
+        }
+    }
+
+    @Benchmark
+    public List<SlotState> getSchedulingCandidates() {
+        return strategy.getSchedulingCandidates(states);
+    }
+
+    private SlotState.Status getStatus(int i) {
+        switch (mix) {
+        case "ready": return SlotState.Status.READY;
+        case "mixed": return i < slots - 4 ? SlotState.Status.SUCCESS : i < slots - 2 ? SlotState.Status.RUNNING : SlotState.Status.READY;
+        default: throw new IllegalArgumentException("Unknown mix: " + mix);
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.*;
+
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.SlotID;
+import com.collective.celos.SlotState;
+import com.collective.celos.Util;
+import com.collective.celos.WorkflowID;
+
+/**
+ * Converts slot states to and from JSON, as the file system state database
+ * and the HTTP API do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class SlotStateJsonBenchmark {
+
+    private final WorkflowID id = new WorkflowID("wf-0");
+    private final SlotState state = new SlotState(new SlotID(id, new ScheduledTime("2015-09-01T13:00:00.000Z")),
+            SlotState.Status.RUNNING, "0000001-150901130000000-oozie-oozi-W", 1);
+    private String json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        json = write();
+    }
+
+    @Benchmark
+    public String write() throws Exception {
+        return Util.JSON_WRITER.writeValueAsString(state.toJSONNode());
+    }
+
+    @Benchmark
+    public SlotState read() throws Exception {
+        return SlotState.fromJSONNode(id, Util.MAPPER.readTree(json));
+    }
+
+    @Benchmark
+    public SlotState roundTrip() throws Exception {
+        return SlotState.fromJSONNode(id, Util.MAPPER.readTree(Util.JSON_WRITER.writeValueAsString(state.toJSONNode())));
+    }
+
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.bench;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.io.FileUtils;
+
+/**
+ * Writes synthetic workflow files, modeled on typical production files: each
+ * file imports a shared defaults file, and defines one workflow with an HDFS
+ * trigger and an Oozie external service.
+ */
+public class SyntheticWorkflows {
+
+    public static final String DEFAULTS_LABEL = "bench-defaults";
+
+    private static final String DEFAULTS =
+            "var NAME_NODE = 'hdfs://nn';\n"
+            + "var INPUT_FS = 'file:///';\n"
+            + "var JOB_TRACKER = 'jt:8032';\n"
+            + "var OOZIE_URL = 'http://oozie:11000/oozie';\n"
+            + "function benchWorkflow(id, path, hour) {\n"
+            + "    celos.defineWorkflow({\n"
+            + "        id: id,\n"
+            + "        schedule: celos.hourlySchedule(),\n"
+            + "        schedulingStrategy: celos.serialSchedulingStrategy(2),\n"
+            + "        trigger: celos.andTrigger(celos.hdfsCheckTrigger(path + '/${year}/${month}/${day}/${hour}/_SUCCESS', INPUT_FS),\n"
+            + "                                  celos.delayTrigger(hour * 60)),\n"
+            + "        externalService: celos.oozieExternalService({\n"
+            + "            'oozie.wf.application.path': '/apps/' + id + '/workflow.xml',\n"
+            + "            'nameNode': NAME_NODE,\n"
+            + "            'jobTracker': JOB_TRACKER,\n"
+            + "            'inputPath': path\n"
+            + "        }, OOZIE_URL),\n"
+            + "        maxRetryCount: 2\n"
+            + "    });\n"
+            + "}\n";
+
+    private SyntheticWorkflows() {
+    }
+
+    /**
+     * Writes the defaults file and the given number of workflow files, with IDs wf-0, wf-1, ...
+     */
+    public static void write(File workflowsDir, File defaultsDir, int count) throws IOException {
+        FileUtils.write(new File(defaultsDir, DEFAULTS_LABEL + ".js"), DEFAULTS);
+        for (int i = 0; i < count; i++) {
+            FileUtils.write(new File(workflowsDir, "wf-" + i + ".js"), getWorkflowFile(i));
+        }
+    }
+
+    public static String getWorkflowFile(int i) {
+        return "celos.importDefaults('" + DEFAULTS_LABEL + "');\n"
+                + "var INPUT = '/input/feed-" + (i % 50) + "';\n"
+                + "benchWorkflow('wf-" + i + "', INPUT, " + (i % 24) + ");\n";
+    }
+
+}
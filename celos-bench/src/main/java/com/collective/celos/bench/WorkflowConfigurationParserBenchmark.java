@@ -0,0 +1,123 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.bench;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import com.collective.celos.AdaptiveConcurrency;
+import com.collective.celos.CompiledScriptCache;
+import com.collective.celos.WorkflowConfiguration;
+import com.collective.celos.WorkflowConfigurationParser;
+import com.collective.celos.WorkflowFileCache;
+import com.collective.celos.database.FileSystemStateDatabase;
+import com.collective.celos.database.StateDatabaseConnection;
+
+/**
+ * Parses a directory of synthetic workflow files.
+ *
+ * cold: nothing is cached, all files are compiled and evaluated.
+ * warm: the compiled scripts are cached, all files are evaluated.
+ * unchanged: the workflow file cache is used too, so no file is evaluated.
+ *
+ * Files are evaluated by the given number of threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WorkflowConfigurationParserBenchmark {
+
+    @Param({"1000"})
+    public int files;
+
+    @Param({"-1", "0", "9"})
+    public int optimizationLevel;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private File workflowsDir;
+    private File defaultsDir;
+    private File dbDir;
+    private StateDatabaseConnection connection;
+    private final WorkflowFileCache fileCache = new WorkflowFileCache();
+    private final AdaptiveConcurrency adaptiveConcurrency = new AdaptiveConcurrency(System::currentTimeMillis);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        File dir = Files.createTempDirectory("celos-bench").toFile();
+        workflowsDir = new File(dir, "workflows");
+        defaultsDir = new File(dir, "defaults");
+        dbDir = new File(dir, "db");
+        FileUtils.forceMkdir(dbDir);
+        SyntheticWorkflows.write(workflowsDir, defaultsDir, files);
+        connection = new FileSystemStateDatabase(dbDir).openConnection();
+        // Populates the caches for the warm and unchanged benchmarks
+        parse(fileCache);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connection.close();
+        FileUtils.deleteDirectory(workflowsDir.getParentFile());
+    }
+
+    @Benchmark
+    public WorkflowConfiguration cold(NoCompiledScripts noCompiledScripts) throws Exception {
+        return parse(null);
+    }
+
+    @Benchmark
+    public WorkflowConfiguration warm() throws Exception {
+        return parse(null);
+    }
+
+    @Benchmark
+    public WorkflowConfiguration unchanged() throws Exception {
+        return parse(fileCache);
+    }
+
+    private WorkflowConfiguration parse(WorkflowFileCache cache) throws Exception {
+        WorkflowConfigurationParser parser = new WorkflowConfigurationParser(defaultsDir, Collections.<String, String>emptyMap(), cache, optimizationLevel, threads,
+                WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS, adaptiveConcurrency);
+        WorkflowConfiguration cfg = parser.parseConfiguration(workflowsDir, connection).getWorkflowConfiguration();
+        if (cfg.getWorkflows().size() != files) {
+            throw new IllegalStateException("Expected " + files + " workflows, got " + cfg.getWorkflows().size());
+        }
+        return cfg;
+    }
+
+    /**
+     * Clears the compiled script cache before each invocation of the benchmarks that use it.
+     */
+    @State(Scope.Benchmark)
+    public static class NoCompiledScripts {
+
+        @Setup(Level.Invocation)
+        public void clear() {
+            CompiledScriptCache.getInstance().clear();
+        }
+    }
+
+}
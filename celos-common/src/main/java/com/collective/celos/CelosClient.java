@@ -52,6 +52,7 @@ public class CelosClient {
 
     private static final String LIST_REGISTER_KEYS_PATH = "/list-register-keys";
     private static final String SCHEDULER_PATH = "/scheduler";
+    private static final String SCHEDULER_STEPS_PATH = "/scheduler/steps/";
     private static final String RERUN_PATH = "/rerun";
     private static final String KILL_PATH = "/kill";
     private static final String PAUSE_PATH = "/pause";
@@ -69,11 +70,21 @@ public class CelosClient {
     public static final String KEY_PARAM = "key";
     public static final String BUCKET_PARAM = "bucket";
     public static final String PREFIX_PARAM = "prefix";
+    public static final String WAIT_PARAM = "wait";
 
     public static final String KEYS_NODE = "keys";
     public static final String PAUSE_NODE = "paused";
     public static final String INFO_NODE = "info";
     public static final String SLOTS_NODE = "slots";
+    public static final String CONCURRENCY_LIMIT_NODE = "concurrencyLimit";
+    public static final String STEP_ID_NODE = "id";
+    public static final String STEP_STATUS_NODE = "status";
+    public static final String STEP_ERROR_NODE = "error";
+
+    public static final String STEP_SUCCEEDED = "SUCCEEDED";
+    public static final String STEP_FAILED = "FAILED";
+
+    private static final long STEP_POLL_MILLIS = 100;
 
     private final HttpClient client;
     private final ScheduledTimeFormatter timeFormatter;
@@ -138,19 +149,73 @@ public class CelosClient {
         iterateScheduler(scheduledTime, Collections.<WorkflowID>emptySet());
     }
 
+    /**
+     * Requests a scheduler step, and waits for it to finish.
+     */
     public void iterateScheduler(ScheduledTime scheduledTime, Set<WorkflowID> workflowIDs) throws Exception {
+        long stepID = startSchedulerStep(scheduledTime, workflowIDs);
+        while (true) {
+            ObjectNode step = getSchedulerStep(stepID);
+            String status = step.get(STEP_STATUS_NODE).asText();
+            if (STEP_SUCCEEDED.equals(status)) {
+                return;
+            } else if (STEP_FAILED.equals(status)) {
+                throw new IOException("Scheduler step " + stepID + " failed: " + step.path(STEP_ERROR_NODE).asText());
+            }
+            Thread.sleep(STEP_POLL_MILLIS);
+        }
+    }
+
+    /**
+     * Requests a scheduler step, and returns its ID without waiting for it.
+     * The server may serve the request with a step that is already running or queued.
+     */
+    public long startSchedulerStep(ScheduledTime scheduledTime, Set<WorkflowID> workflowIDs) throws Exception {
         URIBuilder uriBuilder = new URIBuilder(address);
         uriBuilder.setPath(uriBuilder.getPath() + SCHEDULER_PATH);
         if (!workflowIDs.isEmpty()) {
             uriBuilder.addParameter(IDS_PARAM, StringUtils.join(workflowIDs, ","));
         }
         uriBuilder.addParameter(TIME_PARAM, timeFormatter.formatPretty(scheduledTime));
-        executePost(uriBuilder.build());
+        HttpResponse res = execute(new HttpPost(uriBuilder.build()));
+        try {
+            return Util.JSON_READER.readTree(res.getEntity().getContent()).get(STEP_ID_NODE).asLong();
+        } finally {
+            EntityUtils.consume(res.getEntity());
+        }
     }
 
+    /**
+     * Returns the status, progress, and per-workflow outcome of a scheduler step.
+     */
+    public ObjectNode getSchedulerStep(long stepID) throws Exception {
+        URIBuilder uriBuilder = new URIBuilder(address);
+        uriBuilder.setPath(uriBuilder.getPath() + SCHEDULER_STEPS_PATH + stepID);
+        HttpResponse res = execute(new HttpGet(uriBuilder.build()));
+        try {
+            return Util.JSON_READER.withType(ObjectNode.class).readValue(res.getEntity().getContent());
+        } finally {
+            EntityUtils.consume(res.getEntity());
+        }
+    }
+
+    /**
+     * Clears the server's cache, and waits until the reloaded configuration is in use.
+     */
     public void clearCache() throws Exception {
+        clearCache(true);
+    }
+
+    /**
+     * Clears the server's cache.  Unless waiting, returns as soon as the
+     * reload of the configuration is queued.
+     */
+    public void clearCache(boolean wait) throws Exception {
         URIBuilder uriBuilder = new URIBuilder(address);
         uriBuilder.setPath(uriBuilder.getPath() + CLEAR_CACHE_PATH);
+        if (wait) {
+            uriBuilder.addParameter(WAIT_PARAM, "true");
+        }
         executePost(uriBuilder.build());
     }
 
@@ -294,7 +359,7 @@ public class CelosClient {
     }
 
     private boolean errorResponse(HttpResponse getResponse) {
-        return getResponse.getStatusLine() != null && getResponse.getStatusLine().getStatusCode() != 200;
+        return getResponse.getStatusLine() != null && getResponse.getStatusLine().getStatusCode() / 100 != 2;
     }
 
     private static class WorkflowList {
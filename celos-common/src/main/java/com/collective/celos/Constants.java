@@ -30,6 +30,7 @@ public class Constants {
     public static final String DEFAULTS_CONFIGURATION_PATH_ATTR = "defaults.configuration.path";
     public static final String ADDITIONAL_JS_VARIABLES = "additional.js.variables";
     public static final String DATABASE = "database";
+    public static final String SCHEDULER_OPTIONS = "scheduler.options";
 
     public static final Integer SECOND_MS = 1000;
 }
@@ -24,16 +24,45 @@ import java.util.Map;
 
 /**
  * Massively misnamed, this is in fact a JavaScript evaluator.
+ *
+ * The evaluator uses the Rhino context of the thread that created it, so each
+ * thread needs its own evaluator.
+ *
+ * Evaluation can be given a time limit: the context periodically checks the
+ * time while it executes JavaScript, and aborts with a TimeLimitExceededError
+ * once the limit has passed.  The error can't be caught by JavaScript.
  */
 public class JSConfigParser {
 
     public static final int JS_PARSE_START_LINE = 1;
 
+    /**
+     * Rhino's optimization levels: -1 interprets scripts, 0 to 9 compile them
+     * to Java bytecode with increasing optimizations.
+     */
+    public static final int INTERPRETED_OPTIMIZATION_LEVEL = -1;
+    public static final int MAX_OPTIMIZATION_LEVEL = 9;
+    public static final int DEFAULT_OPTIMIZATION_LEVEL = 0;
+
+    /**
+     * Number of executed instructions after which the time limit is checked.
+     */
+    public static final int INSTRUCTION_OBSERVER_THRESHOLD = 10000;
+
+    private static final ContextFactory CONTEXT_FACTORY = new TimeLimitedContextFactory();
+    private static final String DEADLINE_KEY = "celosDeadline";
+
     private final Context context;
 
     public JSConfigParser() {
-        context = Context.enter();
+        this(DEFAULT_OPTIMIZATION_LEVEL);
+    }
+
+    public JSConfigParser(int optimizationLevel) {
+        checkOptimizationLevel(optimizationLevel);
+        context = CONTEXT_FACTORY.enterContext();
         context.setLanguageVersion(170);
+        context.setOptimizationLevel(optimizationLevel);
 
         /**
          * Treat primitives like strings returned from Java methods
@@ -67,9 +96,68 @@ public class JSConfigParser {
         return context.evaluateReader(scope, fileReader, fileName, JS_PARSE_START_LINE, null);
     }
 
+    /**
+     * Compiles a script, so that it can be executed repeatedly, also in other scopes and on other threads.
+     */
+    public Script compileString(String source, String fileName) {
+        return context.compileString(source, fileName, JS_PARSE_START_LINE, null);
+    }
+
+    public Object executeScript(Scriptable scope, Script script) {
+        return script.exec(context, scope);
+    }
+
+    /**
+     * Aborts evaluations that are still running after the given time from now.
+     */
+    public void setTimeLimit(long millis) {
+        context.putThreadLocal(DEADLINE_KEY, System.currentTimeMillis() + millis);
+    }
+
+    public void clearTimeLimit() {
+        context.removeThreadLocal(DEADLINE_KEY);
+    }
+
+    public int getOptimizationLevel() {
+        return context.getOptimizationLevel();
+    }
+
+    public static void checkOptimizationLevel(int optimizationLevel) {
+        if (optimizationLevel < INTERPRETED_OPTIMIZATION_LEVEL || optimizationLevel > MAX_OPTIMIZATION_LEVEL) {
+            throw new IllegalArgumentException("Optimization level must be between " + INTERPRETED_OPTIMIZATION_LEVEL + " and " + MAX_OPTIMIZATION_LEVEL + ".");
+        }
+    }
 
     public void validateJsSyntax(Reader fileReader, String fileName) throws IOException {
         context.compileReader(fileReader, fileName, JS_PARSE_START_LINE, null);
     }
 
+    @SuppressWarnings("serial")
+    public static class TimeLimitExceededError extends Error {
+
+        public TimeLimitExceededError(String message) {
+            super(message);
+        }
+    }
+
+    private static class TimeLimitedContextFactory extends ContextFactory {
+
+        @Override
+        protected Context makeContext() {
+            Context cx = super.makeContext();
+            cx.setInstructionObserverThreshold(INSTRUCTION_OBSERVER_THRESHOLD);
+            // Makes compiled scripts count instructions, too
+            cx.setGenerateObserverCount(true);
+            return cx;
+        }
+
+        @Override
+        protected void observeInstructionCount(Context cx, int instructionCount) {
+            Long deadline = (Long) cx.getThreadLocal(DEADLINE_KEY);
+            if (deadline != null && System.currentTimeMillis() > deadline) {
+                throw new TimeLimitExceededError("JavaScript evaluation exceeded its time limit.");
+            }
+        }
+    }
+
 }
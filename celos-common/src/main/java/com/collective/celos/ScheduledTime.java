@@ -15,118 +15,248 @@
  */
 package com.collective.celos;
 
-import org.apache.commons.lang.builder.CompareToBuilder;
+import org.joda.time.Chronology;
 import org.joda.time.DateTime;
+import org.joda.time.DateTimeConstants;
+import org.joda.time.DateTimeUtils;
 import org.joda.time.DateTimeZone;
+import org.joda.time.chrono.ISOChronology;
 
 /**
  * Time of a workflow run in UTC.
+ *
+ * A scheduled time is stored as milliseconds since the epoch, and compared,
+ * hashed, and shifted by days and smaller units without creating Joda objects.
+ * Shifting by months and years goes through the UTC ISO chronology's fields,
+ * which also work on milliseconds.  The DateTime is created lazily, only when
+ * asked for.
  */
 public class ScheduledTime extends ValueObject implements Comparable<ScheduledTime> {
 
     public static final ScheduledTimeFormatter FORMATTER = new ScheduledTimeFormatter();
-    protected final DateTime dateTime;
+
+    private static final Chronology CHRONOLOGY = ISOChronology.getInstanceUTC();
+    // Length of the canonical format, e.g. 2013-11-18T20:00:00.000Z
+    private static final int CANONICAL_LENGTH = 24;
+
+    private final long millis;
+    // Created on demand; racy initialization is fine since DateTime is immutable
+    private DateTime dateTime;
 
     public ScheduledTime(String formattedDate) {
-        this(DateTime.parse(formattedDate));
+        this(parseMillis(formattedDate));
     }
 
     public ScheduledTime(DateTime dateTime) {
-        this.dateTime = Util.requireNonNull(dateTime);
+        Util.requireNonNull(dateTime);
         if (!dateTime.getZone().equals(DateTimeZone.UTC)) {
             throw new IllegalArgumentException(
                     "Scheduled time must be in UTC, but isn't: " + dateTime);
         }
+        this.millis = dateTime.getMillis();
+        this.dateTime = dateTime;
+    }
+
+    public ScheduledTime(long millis) {
+        this.millis = millis;
+    }
+
+    /**
+     * Parses the canonical format without Joda, and everything else with DateTime.parse.
+     */
+    private static long parseMillis(String formattedDate) {
+        Util.requireNonNull(formattedDate);
+        if (isCanonical(formattedDate)) {
+            return CHRONOLOGY.getDateTimeMillis(
+                    digits(formattedDate, 0, 4), digits(formattedDate, 5, 2), digits(formattedDate, 8, 2),
+                    digits(formattedDate, 11, 2), digits(formattedDate, 14, 2), digits(formattedDate, 17, 2),
+                    digits(formattedDate, 20, 3));
+        }
+        DateTime dateTime = DateTime.parse(formattedDate);
+        if (!dateTime.getZone().equals(DateTimeZone.UTC)) {
+            throw new IllegalArgumentException(
+                    "Scheduled time must be in UTC, but isn't: " + dateTime);
+        }
+        return dateTime.getMillis();
+    }
+
+    private static boolean isCanonical(String s) {
+        if (s.length() != CANONICAL_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < CANONICAL_LENGTH; i++) {
+            char c = s.charAt(i);
+            switch (i) {
+            case 4: case 7: if (c != '-') return false; break;
+            case 10: if (c != 'T') return false; break;
+            case 13: case 16: if (c != ':') return false; break;
+            case 19: if (c != '.') return false; break;
+            case 23: if (c != 'Z') return false; break;
+            default: if (c < '0' || c > '9') return false;
+            }
+        }
+        return true;
+    }
+
+    private static int digits(String s, int start, int count) {
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            value = value * 10 + (s.charAt(i) - '0');
+        }
+        return value;
     }
 
     public DateTime getDateTime() {
-        return dateTime;
+        DateTime dt = dateTime;
+        if (dt == null) {
+            dt = new DateTime(millis, DateTimeZone.UTC);
+            dateTime = dt;
+        }
+        return dt;
+    }
+
+    /**
+     * Milliseconds since the epoch.
+     */
+    public long getMillis() {
+        return millis;
+    }
+
+    public boolean isBefore(ScheduledTime t) {
+        return millis < t.millis;
+    }
+
+    public boolean isAfter(ScheduledTime t) {
+        return millis > t.millis;
     }
 
     @Override
     public int compareTo(ScheduledTime t) {
-        return CompareToBuilder.reflectionCompare(this, t);
+        return Long.compare(millis, t.millis);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other == this || (other instanceof ScheduledTime && ((ScheduledTime) other).millis == millis);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(millis);
     }
 
     public int getYear() {
-        return dateTime.getYear();
+        return CHRONOLOGY.year().get(millis);
     }
 
     public int getMonth() {
-        return dateTime.getMonthOfYear();
+        return CHRONOLOGY.monthOfYear().get(millis);
     }
 
     public int getDay() {
-        return dateTime.getDayOfMonth();
+        return CHRONOLOGY.dayOfMonth().get(millis);
     }
 
     public int getHour() {
-        return dateTime.getHourOfDay();
+        return CHRONOLOGY.hourOfDay().get(millis);
     }
 
     public int getMinute() {
-        return dateTime.getMinuteOfHour();
+        return CHRONOLOGY.minuteOfHour().get(millis);
     }
 
     public int getSecond() {
-        return dateTime.getSecondOfMinute();
+        return CHRONOLOGY.secondOfMinute().get(millis);
     }
 
     public int getMillisecond() {
-        return dateTime.getMillisOfSecond();
+        return CHRONOLOGY.millisOfSecond().get(millis);
     }
 
+    /**
+     * Same as DateTime.toString() in UTC, e.g. 2013-11-18T20:00:00.000Z.
+     */
     public String toString() {
-        return dateTime.toString();
+        int year = getYear();
+        if (year < 0 || year > 9999) {
+            return getDateTime().toString();
+        }
+        char[] chars = new char[CANONICAL_LENGTH];
+        putDigits(chars, 0, 4, year);
+        chars[4] = '-';
+        putDigits(chars, 5, 2, getMonth());
+        chars[7] = '-';
+        putDigits(chars, 8, 2, getDay());
+        chars[10] = 'T';
+        putDigits(chars, 11, 2, getHour());
+        chars[13] = ':';
+        putDigits(chars, 14, 2, getMinute());
+        chars[16] = ':';
+        putDigits(chars, 17, 2, getSecond());
+        chars[19] = '.';
+        putDigits(chars, 20, 3, getMillisecond());
+        chars[23] = 'Z';
+        return new String(chars);
+    }
+
+    private static void putDigits(char[] chars, int start, int count, int value) {
+        for (int i = start + count - 1; i >= start; i--) {
+            chars[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
     }
 
     public ScheduledTime minusYears(int i) {
-        return new ScheduledTime(getDateTime().minusYears(i));
+        return plusYears(-i);
     }
 
     public ScheduledTime plusYears(int i) {
-        return new ScheduledTime(getDateTime().plusYears(i));
+        return i == 0 ? this : new ScheduledTime(CHRONOLOGY.years().add(millis, i));
     }
 
     public ScheduledTime minusMonths(int i) {
-        return new ScheduledTime(getDateTime().minusMonths(i));
+        return plusMonths(-i);
     }
 
     public ScheduledTime plusMonths(int i) {
-        return new ScheduledTime(getDateTime().plusMonths(i));
+        return i == 0 ? this : new ScheduledTime(CHRONOLOGY.months().add(millis, i));
     }
 
     public ScheduledTime minusDays(int i) {
-        return new ScheduledTime(getDateTime().minusDays(i));
+        return plusMillis(-(long) i * DateTimeConstants.MILLIS_PER_DAY);
     }
 
     public ScheduledTime plusDays(int i) {
-        return new ScheduledTime(getDateTime().plusDays(i));
+        return plusMillis((long) i * DateTimeConstants.MILLIS_PER_DAY);
     }
 
     public ScheduledTime minusHours(int i) {
-        return new ScheduledTime(getDateTime().minusHours(i));
+        return plusMillis(-(long) i * DateTimeConstants.MILLIS_PER_HOUR);
     }
 
     public ScheduledTime plusHours(int i) {
-        return new ScheduledTime(getDateTime().plusHours(i));
+        return plusMillis((long) i * DateTimeConstants.MILLIS_PER_HOUR);
     }
 
     public ScheduledTime minusMinutes(int i) {
-        return new ScheduledTime(getDateTime().minusMinutes(i));
+        return plusMillis(-(long) i * DateTimeConstants.MILLIS_PER_MINUTE);
     }
 
     public ScheduledTime plusMinutes(int i) {
-        return new ScheduledTime(getDateTime().plusMinutes(i));
+        return plusMillis((long) i * DateTimeConstants.MILLIS_PER_MINUTE);
     }
 
 
     public ScheduledTime minusSeconds(int i) {
-        return new ScheduledTime(getDateTime().minusSeconds(i));
+        return plusMillis(-(long) i * DateTimeConstants.MILLIS_PER_SECOND);
     }
 
     public ScheduledTime plusSeconds(int i) {
-        return new ScheduledTime(getDateTime().plusSeconds(i));
+        return plusMillis((long) i * DateTimeConstants.MILLIS_PER_SECOND);
+    }
+
+    private ScheduledTime plusMillis(long delta) {
+        return delta == 0 ? this : new ScheduledTime(millis + delta);
     }
 
     public String year() {
@@ -154,7 +284,7 @@ public class ScheduledTime extends ValueObject implements Comparable<ScheduledTi
     }
 
     public static ScheduledTime now() {
-        return new ScheduledTime(DateTime.now(DateTimeZone.UTC));
+        return new ScheduledTime(DateTimeUtils.currentTimeMillis());
     }
 
 }
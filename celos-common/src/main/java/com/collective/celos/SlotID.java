@@ -36,6 +36,23 @@ public class SlotID extends ValueObject {
         return scheduledTime;
     }
     
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (!(other instanceof SlotID)) {
+            return false;
+        }
+        SlotID slot = (SlotID) other;
+        return scheduledTime.equals(slot.scheduledTime) && workflowID.equals(slot.workflowID);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * workflowID.hashCode() + scheduledTime.hashCode();
+    }
+
     public String toString() {
         return workflowID + "@" + scheduledTime;
     }
@@ -15,6 +15,8 @@
  */
 package com.collective.celos;
 
+import java.util.Objects;
+
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
@@ -145,6 +147,29 @@ public class SlotState extends ValueObject {
         return new SlotState(slotID, Status.WAITING, null, 0); // reset retryCount to 0
     }
 
+    @Override
+    public boolean equals(Object other) {
+        if (other == this) {
+            return true;
+        }
+        if (!(other instanceof SlotState)) {
+            return false;
+        }
+        SlotState state = (SlotState) other;
+        return status == state.status
+                && retryCount == state.retryCount
+                && slotID.equals(state.slotID)
+                && Objects.equals(externalID, state.externalID);
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = slotID.hashCode();
+        hash = 31 * hash + status.hashCode();
+        hash = 31 * hash + Objects.hashCode(externalID);
+        return 31 * hash + retryCount;
+    }
+
     private void assertStatus(Status st) {
         if (!status.equals(st)) {
             throw new IllegalStateException("Expected status " + st + " but was " + status + " (slot: " + this + ")");
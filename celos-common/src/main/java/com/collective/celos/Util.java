@@ -252,7 +252,7 @@ public class Util {
     }
 
     public static Timestamp toTimestamp(ScheduledTime time) {
-        return new Timestamp(time.getDateTime().getMillis());
+        return new Timestamp(time.getMillis());
     }
 
     public static ScheduledTime fromTimestamp(Timestamp timestamp) {
@@ -15,11 +15,16 @@
  */
 package com.collective.celos;
 
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
 /**
  * Uniquely identifies a workflow.
  */
 public class WorkflowID extends ValueObject implements Comparable<WorkflowID> {
 
+    private static final Interner<WorkflowID> INTERNER = Interners.newWeakInterner();
+
     protected final String id;
     
     public WorkflowID(String id) {
@@ -32,6 +37,27 @@ public class WorkflowID extends ValueObject implements Comparable<WorkflowID> {
         }
     }
 
+    /**
+     * Returns the canonical instance of this ID, like String.intern().
+     *
+     * The IDs of loaded workflows, and the IDs they refer to, are interned,
+     * so that slot IDs and map keys of a workflow share one instance, and
+     * compare by identity.
+     */
+    public WorkflowID intern() {
+        return INTERNER.intern(this);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        return other == this || (other instanceof WorkflowID && id.equals(((WorkflowID) other).id));
+    }
+
+    @Override
+    public int hashCode() {
+        return id.hashCode();
+    }
+
     public String toString() {
         return id;
     }
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+import org.apache.log4j.Logger;
+
+import com.collective.celos.metrics.Gauge;
+import com.collective.celos.metrics.MetricsRegistry;
+
+/**
+ * Concurrency limits of workflows with an adaptive scheduling
+ * strategy, adjusted by additive increase and multiplicative decrease (AIMD).
+ *
+ * A workflow's limit starts at its minimum concurrency.
+ *
+ * Each slot that succeeds in normal time raises the limit by one divided by
+ * the current limit, i.e. roughly by one for each limit's worth of slots.
+ *
+ * The limit is multiplied by DECREASE_FACTOR when a submission fails, when a
+ * submission takes longer than SLOW_SUBMIT_MILLIS, or when a slot stays
+ * RUNNING longer than SLOW_RUN_FACTOR times the average of its workflow's
+ * previous successful slots.  Running slots are checked each time the limit
+ * is read, i.e. on every step, so a hung slot lowers the limit while it's
+ * still running, and a slot that fails after a long run lowers it too.  Each
+ * slow slot lowers the limit only once.  To not overreact to a burst of such
+ * signals, the limit is decreased at most once per DECREASE_HOLD_MILLIS.
+ *
+ * Run times are measured from the slot transitions it's notified of, so slots
+ * that were already running when it started listening are ignored.  The
+ * scheduler configuration creates one instance, which its holder registers on
+ * the slot transition bus, so the limits survive configuration reloads.
+ */
+public class AdaptiveConcurrency implements SlotTransitionListener {
+
+    public static final double DECREASE_FACTOR = 0.5;
+    public static final long SLOW_SUBMIT_MILLIS = 10 * Constants.SECOND_MS;
+    public static final double SLOW_RUN_FACTOR = 2.0;
+    public static final long DECREASE_HOLD_MILLIS = 60 * Constants.SECOND_MS;
+
+    /**
+     * Number of run times needed before runs can be considered slow.
+     */
+    public static final int MIN_RUN_HISTORY = 3;
+
+    // Weight of the latest run time in the moving average
+    private static final double RUN_HISTORY_WEIGHT = 0.2;
+
+    // Tolerance for rounding errors when adding up fractional increases
+    private static final double EPSILON = 1e-9;
+
+    private static final Logger LOGGER = Logger.getLogger(AdaptiveConcurrency.class);
+
+    private static final Gauge LIMIT = MetricsRegistry.getInstance().gauge(
+            "celos_concurrency_limit", "Current concurrency limit of workflows with an adaptive scheduling strategy.", "workflow");
+
+    private final LongSupplier clock;
+    private final Map<WorkflowID, Limit> limits = new ConcurrentHashMap<>();
+
+    /**
+     * @param clock The current time in milliseconds.
+     */
+    public AdaptiveConcurrency(LongSupplier clock) {
+        this.clock = Util.requireNonNull(clock);
+    }
+
+    /**
+     * Returns the current limit of the workflow, starting to track it if it isn't yet.
+     * The limit is kept within the given bounds, which may change with the configuration.
+     */
+    public int getLimit(WorkflowID id, int minConcurrency, int maxConcurrency) {
+        Limit limit = limits.computeIfAbsent(id, k -> new Limit(id, minConcurrency));
+        synchronized (limit) {
+            limit.setBounds(minConcurrency, maxConcurrency);
+            limit.checkRunning();
+            return limit.get();
+        }
+    }
+
+    /**
+     * Stops tracking the workflows that are not in the configuration, or no
+     * longer have an adaptive scheduling strategy.
+     */
+    public void retainAll(WorkflowConfiguration configuration) {
+        Set<WorkflowID> used = new HashSet<>();
+        for (Workflow wf : configuration.getWorkflows()) {
+            if (wf.getSchedulingStrategy() instanceof AdaptiveSchedulingStrategy) {
+                used.add(wf.getID());
+            }
+        }
+        for (WorkflowID id : limits.keySet()) {
+            if (!used.contains(id)) {
+                limits.remove(id);
+                LIMIT.remove(id.toString());
+            }
+        }
+    }
+
+    /**
+     * Returns the current limit of the workflow, or null if it isn't tracked.
+     */
+    public Integer getCurrentLimit(WorkflowID id) {
+        Limit limit = limits.get(id);
+        if (limit == null) {
+            return null;
+        }
+        synchronized (limit) {
+            return limit.get();
+        }
+    }
+
+    /**
+     * Records the outcome of submitting a slot of the workflow.
+     */
+    public void recordSubmit(WorkflowID id, long millis, boolean success) {
+        Limit limit = limits.get(id);
+        if (limit == null) {
+            return;
+        }
+        synchronized (limit) {
+            if (!success) {
+                limit.decrease("submission failed");
+            } else if (millis > SLOW_SUBMIT_MILLIS) {
+                limit.decrease("submission took " + millis + "ms");
+            }
+        }
+    }
+
+    @Override
+    public void slotTransitioned(SlotState previous, SlotState next) {
+        Limit limit = limits.get(next.getSlotID().getWorkflowID());
+        if (limit == null) {
+            return;
+        }
+        synchronized (limit) {
+            boolean wasRunning = previous != null && previous.getStatus().equals(SlotState.Status.RUNNING);
+            boolean isRunning = next.getStatus().equals(SlotState.Status.RUNNING);
+            if (isRunning && !wasRunning) {
+                limit.runningSince.put(next.getSlotID(), clock.getAsLong());
+            } else if (!isRunning) {
+                Long since = limit.runningSince.remove(next.getSlotID());
+                boolean decreased = limit.slow.remove(next.getSlotID());
+                if (since != null) {
+                    limit.recordRun(clock.getAsLong() - since, next.getStatus().equals(SlotState.Status.SUCCESS), decreased);
+                }
+            }
+        }
+    }
+
+    private class Limit {
+
+        private final WorkflowID id;
+        private final Map<SlotID, Long> runningSince = new HashMap<>();
+        // Running slots that already decreased the limit for being slow
+        private final Set<SlotID> slow = new HashSet<>();
+        private double limit;
+        private int minConcurrency;
+        private int maxConcurrency;
+        private double averageRunMillis;
+        private int runs;
+        private long lastDecreaseMillis = Long.MIN_VALUE;
+
+        private Limit(WorkflowID id, int initial) {
+            this.id = id;
+            this.limit = initial;
+        }
+
+        private int get() {
+            return (int) Math.floor(limit + EPSILON);
+        }
+
+        private void setBounds(int minConcurrency, int maxConcurrency) {
+            this.minConcurrency = minConcurrency;
+            this.maxConcurrency = maxConcurrency;
+            set(Math.max(minConcurrency, Math.min(maxConcurrency, limit)));
+        }
+
+        private boolean isSlow(long millis) {
+            return runs >= MIN_RUN_HISTORY && millis > SLOW_RUN_FACTOR * averageRunMillis;
+        }
+
+        private void checkRunning() {
+            long now = clock.getAsLong();
+            for (Map.Entry<SlotID, Long> entry : runningSince.entrySet()) {
+                long millis = now - entry.getValue();
+                if (isSlow(millis) && slow.add(entry.getKey())) {
+                    decrease("slot " + entry.getKey() + " running for " + millis + "ms, average " + (long) averageRunMillis + "ms");
+                }
+            }
+        }
+
+        /**
+         * Only successful runs raise the limit and count towards the average,
+         * but slow runs lower it whatever their outcome, unless they already
+         * did while running.
+         */
+        private void recordRun(long millis, boolean success, boolean decreased) {
+            if (isSlow(millis)) {
+                if (!decreased) {
+                    decrease("slot ran " + millis + "ms, average " + (long) averageRunMillis + "ms");
+                }
+            } else if (success) {
+                set(Math.min(maxConcurrency, limit + 1.0 / get()));
+            }
+            if (success) {
+                averageRunMillis = runs == 0 ? millis : averageRunMillis + RUN_HISTORY_WEIGHT * (millis - averageRunMillis);
+                runs++;
+            }
+        }
+
+        private void decrease(String reason) {
+            long now = clock.getAsLong();
+            if (lastDecreaseMillis != Long.MIN_VALUE && now - lastDecreaseMillis < DECREASE_HOLD_MILLIS) {
+                return;
+            }
+            lastDecreaseMillis = now;
+            set(Math.max(minConcurrency, limit * DECREASE_FACTOR));
+            LOGGER.info("Decreased concurrency limit of workflow " + id + " to " + get() + ": " + reason);
+        }
+
+        private void set(double value) {
+            limit = value;
+            LIMIT.set(get(), id.toString());
+        }
+    }
+
+}
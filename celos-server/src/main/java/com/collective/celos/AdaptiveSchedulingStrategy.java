@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Submits workflow slots oldest first, with a concurrency level that adapts
+ * to the feedback of the external service, between a minimum and a maximum.
+ *
+ * The limits are kept by the {@link AdaptiveConcurrency} of the scheduler
+ * configuration, so they survive configuration reloads.
+ */
+public class AdaptiveSchedulingStrategy implements SchedulingStrategy {
+
+    private final int minConcurrency;
+    private final int maxConcurrency;
+    private final AdaptiveConcurrency concurrency;
+
+    public AdaptiveSchedulingStrategy(int minConcurrency, int maxConcurrency, AdaptiveConcurrency concurrency) {
+        if (minConcurrency <= 0) {
+            throw new IllegalArgumentException("Min concurrency must greater then zero.");
+        }
+        if (maxConcurrency < minConcurrency) {
+            throw new IllegalArgumentException("Max concurrency must not be less than min concurrency.");
+        }
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.concurrency = Util.requireNonNull(concurrency);
+    }
+
+    @Override
+    public List<SlotState> getSchedulingCandidates(List<SlotState> states) {
+        if (states.isEmpty()) {
+            return Collections.emptyList();
+        }
+        WorkflowID id = states.get(0).getSlotID().getWorkflowID();
+        int limit = concurrency.getLimit(id, minConcurrency, maxConcurrency);
+        return new SerialSchedulingStrategy(limit).getSchedulingCandidates(states);
+    }
+
+    @Override
+    public Integer getConcurrencyLimit(WorkflowID id) {
+        Integer limit = concurrency.getCurrentLimit(id);
+        return limit != null ? limit : minConcurrency;
+    }
+
+    @Override
+    public void recordSubmit(WorkflowID id, long millis, boolean success) {
+        concurrency.recordSubmit(id, millis, success);
+    }
+
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+}
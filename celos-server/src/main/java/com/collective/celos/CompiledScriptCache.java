@@ -0,0 +1,111 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.mozilla.javascript.Script;
+
+import com.collective.celos.metrics.MetricsRegistry;
+import com.google.common.base.Charsets;
+import com.google.common.hash.Hashing;
+
+/**
+ * Process-wide memo of compiled JavaScript: celos-scripts.js, defaults files
+ * and workflow files.
+ *
+ * Compiled scripts don't depend on the scope they're executed in, so a
+ * script is only compiled again if its content (identified by its hash) or
+ * the optimization level changed.
+ *
+ * There's one entry per file name, since the file name is compiled into the
+ * script for error messages.  An entry is replaced when its file changes.
+ */
+public class CompiledScriptCache {
+
+    private static final CompiledScriptCache INSTANCE = new CompiledScriptCache();
+
+    static {
+        MetricsRegistry.getInstance().counter("celos_compiled_script_cache_hits_total", "JavaScript files executed without compiling them.", INSTANCE::getHits);
+        MetricsRegistry.getInstance().counter("celos_compiled_script_cache_misses_total", "JavaScript files that were compiled.", INSTANCE::getMisses);
+    }
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    CompiledScriptCache() {
+    }
+
+    public static CompiledScriptCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the compiled script for the given source, compiling it with the parser if needed.
+     */
+    public Script getScript(JSConfigParser parser, String source, String fileName) {
+        String hash = Hashing.sha1().hashString(source, Charsets.UTF_8).toString();
+        int optimizationLevel = parser.getOptimizationLevel();
+        Entry entry = entries.get(fileName);
+        if (entry != null && entry.hash.equals(hash) && entry.optimizationLevel == optimizationLevel) {
+            hits.incrementAndGet();
+            return entry.script;
+        }
+        misses.incrementAndGet();
+        Script script = parser.compileString(source, fileName);
+        entries.put(fileName, new Entry(hash, optimizationLevel, script));
+        return script;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Number of scripts that were reused.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of scripts that were compiled.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class Entry {
+
+        private final String hash;
+        private final int optimizationLevel;
+        private final Script script;
+
+        private Entry(String hash, int optimizationLevel, Script script) {
+            this.hash = hash;
+            this.optimizationLevel = optimizationLevel;
+            this.script = script;
+        }
+    }
+
+}
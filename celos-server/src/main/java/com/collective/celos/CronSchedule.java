@@ -45,8 +45,19 @@ public class CronSchedule implements Schedule {
         return cronExpression.getCronExpression();
     }
 
+    /**
+     * Uses the process-wide schedule cache, so that consecutive steps don't
+     * have to evaluate the cron expression over the whole window again.
+     */
     @Override
     public SortedSet<ScheduledTime> getScheduledTimes(Scheduler scheduler, ScheduledTime start, ScheduledTime end) {
+        return ScheduleCache.getInstance().getScheduledTimes(this, start, end);
+    }
+
+    /**
+     * Evaluates the cron expression within the window defined by start (inclusive) and end (exclusive).
+     */
+    SortedSet<ScheduledTime> evaluate(ScheduledTime start, ScheduledTime end) {
         SortedSet<ScheduledTime> scheduledTimes = new TreeSet<ScheduledTime>();
         DateTime startDT = start.getDateTime();
         DateTime endDT = end.getDateTime();
@@ -54,8 +65,9 @@ public class CronSchedule implements Schedule {
         if (!startDT.isBefore(endDT)) {
             return scheduledTimes;
         }
-        
-        if (cronExpression.isSatisfiedBy(startDT.toDate())) {
+
+        // Quartz ignores milliseconds, so only a start time on a full second can be a scheduled time
+        if (startDT.getMillisOfSecond() == 0 && cronExpression.isSatisfiedBy(startDT.toDate())) {
             scheduledTimes.add(start);
         }
 
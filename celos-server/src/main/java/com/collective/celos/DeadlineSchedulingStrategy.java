@@ -0,0 +1,128 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Submits workflow slots earliest deadline first, with a configurable
+ * concurrency level.
+ *
+ * The deadline of a slot is its scheduled time plus the SLA.  Slots whose
+ * deadline has passed are backlog slots, the others are fresh.
+ *
+ * While a fresh slot is READY, backlog slots are only submitted as long as
+ * fewer than the maximum number of backlog slots are running, so that a
+ * long backlog doesn't delay fresh data.
+ *
+ * Whether a slot is backlog depends on the current time of the scheduler
+ * step.  Called without it, the strategy uses the system clock.
+ */
+public class DeadlineSchedulingStrategy implements SchedulingStrategy {
+
+    private final int slaSeconds;
+    private final int concurrencyLevel;
+    private final int maxBacklog;
+
+    public DeadlineSchedulingStrategy(int slaSeconds, int concurrencyLevel, int maxBacklog) {
+        if (slaSeconds < 0) {
+            throw new IllegalArgumentException("SLA seconds must not be negative.");
+        }
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must greater then zero.");
+        }
+        if (maxBacklog < 0) {
+            throw new IllegalArgumentException("Max backlog must not be negative.");
+        }
+        this.slaSeconds = slaSeconds;
+        this.concurrencyLevel = concurrencyLevel;
+        this.maxBacklog = maxBacklog;
+    }
+
+    @Override
+    public List<SlotState> getSchedulingCandidates(List<SlotState> states) {
+        return getSchedulingCandidates(states, ScheduledTime.now());
+    }
+
+    @Override
+    public List<SlotState> getSchedulingCandidates(List<SlotState> states, ScheduledTime now) {
+        int running = 0;
+        int backlogRunning = 0;
+        boolean freshReady = false;
+        List<SlotState> ready = Lists.newArrayList();
+        for (SlotState state : states) {
+            if (state.getStatus().equals(SlotState.Status.RUNNING)) {
+                running++;
+                if (isBacklog(state, now)) {
+                    backlogRunning++;
+                }
+            } else if (state.getStatus().equals(SlotState.Status.READY)) {
+                ready.add(state);
+                if (!isBacklog(state, now)) {
+                    freshReady = true;
+                }
+            }
+        }
+        if (running >= concurrencyLevel) {
+            return Collections.emptyList();
+        }
+        Collections.sort(ready, Comparator.comparing(this::getDeadline));
+        int backlogAllowed = freshReady ? Math.max(0, maxBacklog - backlogRunning) : Integer.MAX_VALUE;
+        List<SlotState> candidates = Lists.newArrayList();
+        for (SlotState state : ready) {
+            if (candidates.size() >= concurrencyLevel - running) {
+                break;
+            }
+            if (isBacklog(state, now)) {
+                if (backlogAllowed == 0) {
+                    continue;
+                }
+                backlogAllowed--;
+            }
+            candidates.add(state);
+        }
+        return candidates;
+    }
+
+    private ScheduledTime getDeadline(SlotState state) {
+        return state.getScheduledTime().plusSeconds(slaSeconds);
+    }
+
+    private boolean isBacklog(SlotState state, ScheduledTime now) {
+        return getDeadline(state).isBefore(now);
+    }
+
+    @Override
+    public Integer getConcurrencyLimit(WorkflowID id) {
+        return concurrencyLevel;
+    }
+
+    public int getSlaSeconds() {
+        return slaSeconds;
+    }
+
+    public int getConcurrencyLevel() {
+        return concurrencyLevel;
+    }
+
+    public int getMaxBacklog() {
+        return maxBacklog;
+    }
+}
@@ -34,6 +34,7 @@ public class DependentSchedule implements Schedule {
         if (otherWorkflow == null) {
             throw new RuntimeException("Workflow " + getOtherWorkflowID() + " doesn't exist.");
         }
+        // Cron schedules are memoized, so this shares the other workflow's cached times
         Schedule otherSchedule = otherWorkflow.getSchedule();
         return otherSchedule.getScheduledTimes(scheduler, start, end);
     }
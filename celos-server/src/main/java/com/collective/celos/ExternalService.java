@@ -15,6 +15,9 @@
  */
 package com.collective.celos;
 
+import java.util.HashMap;
+import java.util.Map;
+
 /**
  * Execution engine for workflows.
  */
@@ -39,6 +42,32 @@ public interface ExternalService {
      */
     public ExternalStatus getStatus(SlotID id, String externalID) throws ExternalServiceException;
 
+    /**
+     * Gets the statuses of several externally running workflows at once.
+     *
+     * Takes a map from slot ID to external ID, and returns a map from slot ID to status.
+     *
+     * By default, calls getStatus for each slot.  Services that can query
+     * many workflows in a single request should override this.
+     */
+    public default Map<SlotID, ExternalStatus> getStatuses(Map<SlotID, String> externalIDs) throws ExternalServiceException {
+        Map<SlotID, ExternalStatus> statuses = new HashMap<>();
+        for (Map.Entry<SlotID, String> entry : externalIDs.entrySet()) {
+            statuses.put(entry.getKey(), getStatus(entry.getKey(), entry.getValue()));
+        }
+        return statuses;
+    }
+
+    /**
+     * Services with equal batch keys can get the statuses of each other's
+     * workflows, so the scheduler polls them together with a single getStatuses call.
+     *
+     * By default, each service is polled on its own.
+     */
+    public default Object getStatusBatchKey() {
+        return this;
+    }
+
     /**
      * Kills workflow with the given external ID.
      *
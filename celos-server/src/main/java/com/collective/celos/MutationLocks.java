@@ -0,0 +1,127 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.collective.celos.metrics.Histogram;
+import com.collective.celos.metrics.MetricsRegistry;
+
+/**
+ * Process-wide locks for changes made through the HTTP API.
+ *
+ * Servlets that change a slot, a workflow, or a register bucket hold the lock
+ * of that key while reading and writing it.  Changes to the same key are
+ * serialized, while changes to different keys, reads, and scheduler steps run
+ * concurrently.  Locks are striped: keys are hashed onto a fixed number of
+ * reentrant locks, so unrelated keys occasionally share a lock.
+ *
+ * A scheduler step works on the slot states it read when it started.  So that
+ * it doesn't overwrite a slot that was e.g. killed or rerun in the meantime,
+ * servlets record the slots they change, and the step, holding a slot's lock,
+ * skips transitions of slots changed since it started.  The next step picks
+ * such slots up again.  This relies on steps not overlapping each other.
+ */
+public class MutationLocks {
+
+    public static final int DEFAULT_STRIPES = 64;
+
+    private static final Histogram WAIT_SECONDS = MetricsRegistry.getInstance().histogram(
+            "celos_mutation_lock_wait_seconds", "Time spent waiting for slot, workflow, and register bucket locks.", "holder");
+
+    private static final MutationLocks INSTANCE = new MutationLocks(DEFAULT_STRIPES);
+
+    private final ReentrantLock[] stripes;
+    private final AtomicLong changeCount = new AtomicLong();
+    // Slot -> change count right after the slot was last changed through the API
+    private final ConcurrentMap<SlotID, Long> changedSlots = new ConcurrentHashMap<>();
+
+    MutationLocks(int stripes) {
+        if (stripes <= 0) {
+            throw new IllegalArgumentException("Stripes must greater then zero.");
+        }
+        this.stripes = new ReentrantLock[stripes];
+        for (int i = 0; i < stripes; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+
+    public static MutationLocks getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Acquires the lock of the key, recording the time waited under the holder's name.
+     * Release it with unlock() in a finally block.
+     */
+    public void lock(Object key, String holder) {
+        ReentrantLock lock = stripes[getStripe(key)];
+        long waitStart = System.nanoTime();
+        lock.lock();
+        WAIT_SECONDS.observe((System.nanoTime() - waitStart) / 1e9, holder);
+    }
+
+    /**
+     * Releases the lock of the key acquired with lock().
+     */
+    public void unlock(Object key) {
+        stripes[getStripe(key)].unlock();
+    }
+
+    private int getStripe(Object key) {
+        int hash = Util.requireNonNull(key).hashCode();
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % stripes.length;
+    }
+
+    /**
+     * Records that the slot was changed through the API.  Call while holding the slot's lock.
+     */
+    public void slotChanged(SlotID slot) {
+        changedSlots.put(slot, changeCount.incrementAndGet());
+    }
+
+    /**
+     * Returns the current change count.  Slots changed later are reported by isChangedSince().
+     */
+    public long getChangeCount() {
+        return changeCount.get();
+    }
+
+    public boolean isChangedSince(SlotID slot, long count) {
+        Long changed = changedSlots.get(slot);
+        return changed != null && changed > count;
+    }
+
+    /**
+     * Forgets the slots changed up to the given change count.  Called at the end
+     * of a step with the count at its start.
+     */
+    public void forgetChangesUpTo(long count) {
+        changedSlots.values().removeIf(changed -> changed <= count);
+    }
+
+    /**
+     * Number of slots whose changes are remembered.
+     */
+    public int getChangedSlotCount() {
+        return changedSlots.size();
+    }
+
+}
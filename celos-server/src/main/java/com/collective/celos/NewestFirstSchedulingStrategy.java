@@ -0,0 +1,69 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import static com.collective.celos.SlotState.Status.READY;
+import static com.collective.celos.SlotState.Status.RUNNING;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.commons.collections.Predicate;
+
+import com.google.common.collect.Lists;
+
+/**
+ * Submits workflow slots newest first with a configurable concurrency level.
+ *
+ * Useful for catching up after an outage, when fresh data matters more
+ * than old data.
+ */
+public class NewestFirstSchedulingStrategy implements SchedulingStrategy {
+
+    private final int concurrencyLevel;
+
+    private final Predicate RUNNING_PREDICATE = new SlotStateStatusPredicate(RUNNING);
+    private final Predicate CANDIDATE_PREDICATE = new SlotStateStatusPredicate(READY);
+
+    public NewestFirstSchedulingStrategy(int concurrencyLevel) {
+        if (concurrencyLevel <= 0) {
+            throw new IllegalArgumentException("Concurrency level must greater then zero.");
+        }
+        this.concurrencyLevel = concurrencyLevel;
+    }
+
+    @Override
+    public List<SlotState> getSchedulingCandidates(List<SlotState> states) {
+        int slotsRunning = CollectionUtils.countMatches(states, RUNNING_PREDICATE);
+        if (slotsRunning >= concurrencyLevel) {
+            return Collections.emptyList();
+        }
+        @SuppressWarnings("unchecked")
+        List<SlotState> candidates = Lists.reverse(Lists.newArrayList(CollectionUtils.select(states, CANDIDATE_PREDICATE)));
+        int elemsToGet = Math.min(candidates.size(), concurrencyLevel - slotsRunning);
+        return Lists.newArrayList(candidates.subList(0, elemsToGet));
+    }
+
+    @Override
+    public Integer getConcurrencyLimit(WorkflowID id) {
+        return concurrencyLevel;
+    }
+
+    public int getConcurrencyLevel() {
+        return concurrencyLevel;
+    }
+}
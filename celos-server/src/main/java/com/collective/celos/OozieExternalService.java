@@ -15,7 +15,11 @@
  */
 package com.collective.celos;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import org.apache.oozie.client.AuthOozieClient;
@@ -24,6 +28,7 @@ import org.apache.oozie.client.OozieClientException;
 import org.apache.oozie.client.WorkflowJob;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Iterables;
 
 /**
  * Oozie external service.
@@ -37,15 +42,24 @@ public class OozieExternalService implements ExternalService {
     public static final String MINUTE_PROP = "minute";
     public static final String SECOND_PROP = "second";
     public static final String WORKFLOW_NAME_PROP = "celosWorkflowName";
+
+    /**
+     * Maximum number of job IDs in a single jobs query, to keep the request URL short.
+     */
+    static final int STATUS_BATCH_SIZE = 50;
     
     private final OozieClient client;
     private final String oozieURL;
     private PropertiesGenerator gen;
 
     public OozieExternalService(String oozieURL, PropertiesGenerator gen) {
+        this(oozieURL, gen, new AuthOozieClient(Util.requireNonNull(oozieURL)));
+    }
+
+    OozieExternalService(String oozieURL, PropertiesGenerator gen, OozieClient client) {
         this.oozieURL = Util.requireNonNull(oozieURL);
         this.gen = Util.requireNonNull(gen);
-        this.client = new AuthOozieClient(oozieURL);
+        this.client = Util.requireNonNull(client);
     }
     
     @Override
@@ -120,6 +134,54 @@ public class OozieExternalService implements ExternalService {
         }
     }
 
+    /**
+     * Gets the statuses with one jobs query per batch of job IDs.
+     *
+     * Jobs missing from the query result are looked up individually.
+     */
+    @Override
+    public Map<SlotID, ExternalStatus> getStatuses(Map<SlotID, String> externalIDs) throws ExternalServiceException {
+        Map<String, String> statusByJobId = new HashMap<>();
+        try {
+            for (List<String> batch : Iterables.partition(new ArrayList<>(externalIDs.values()), STATUS_BATCH_SIZE)) {
+                for (WorkflowJob job : client.getJobsInfo(makeIdFilter(batch), 1, batch.size())) {
+                    statusByJobId.put(job.getId(), job.getStatus().toString());
+                }
+            }
+        } catch (OozieClientException e) {
+            throw new ExternalServiceException(e);
+        }
+        Map<SlotID, ExternalStatus> statuses = new HashMap<>();
+        for (Map.Entry<SlotID, String> entry : externalIDs.entrySet()) {
+            String status = statusByJobId.get(entry.getValue());
+            if (status != null) {
+                statuses.put(entry.getKey(), new OozieExternalStatus(status));
+            } else {
+                statuses.put(entry.getKey(), getStatus(entry.getKey(), entry.getValue()));
+            }
+        }
+        return statuses;
+    }
+
+    static String makeIdFilter(List<String> jobIds) {
+        StringBuilder filter = new StringBuilder();
+        for (String jobId : jobIds) {
+            if (filter.length() > 0) {
+                filter.append(";");
+            }
+            filter.append(OozieClient.FILTER_ID).append("=").append(jobId);
+        }
+        return filter.toString();
+    }
+
+    /**
+     * All services talking to the same Oozie server can share status queries.
+     */
+    @Override
+    public Object getStatusBatchKey() {
+        return oozieURL;
+    }
+
     public String getOozieURL() {
         return oozieURL;
     }
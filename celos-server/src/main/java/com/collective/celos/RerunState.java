@@ -36,7 +36,7 @@ public class RerunState extends ValueObject {
     }
 
     public boolean isExpired(ScheduledTime now) {
-        return rerunTime.plusDays(EXPIRATION_DAYS).getDateTime().isBefore(now.getDateTime());
+        return rerunTime.plusDays(EXPIRATION_DAYS).isBefore(now);
     }
     
     public ObjectNode toJSONNode() {
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.collective.celos.metrics.MetricsRegistry;
+
+/**
+ * Process-wide memo of cron schedule evaluations.
+ *
+ * The scheduled times of a cron schedule only depend on its cron expression,
+ * so all schedules with the same expression (and all dependent schedules
+ * pointing to workflows with such a schedule) share one entry.
+ *
+ * Each entry holds all scheduled times within a covered range.  As the
+ * sliding window moves, the range is extended at the tail, and trimmed at the
+ * head so that it never spans more than RETENTION_HOURS.  Requests reaching
+ * further back are evaluated without the cache.
+ *
+ * When the configuration is reloaded, entries of cron expressions that are no
+ * longer used are dropped.
+ */
+public class ScheduleCache {
+
+    /**
+     * How far back from the latest requested time scheduled times are kept.
+     */
+    public static final int RETENTION_HOURS = 24 * (SchedulerConfiguration.SLIDING_WINDOW_DAYS + 1);
+
+    private static final ScheduleCache INSTANCE = new ScheduleCache(RETENTION_HOURS);
+
+    static {
+        MetricsRegistry.getInstance().counter("celos_schedule_cache_hits_total", "Schedule evaluations answered from the cache.", INSTANCE::getHits);
+        MetricsRegistry.getInstance().counter("celos_schedule_cache_misses_total", "Schedule evaluations that evaluated the cron expression.", INSTANCE::getMisses);
+    }
+
+    private final int retentionHours;
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    ScheduleCache(int retentionHours) {
+        this.retentionHours = retentionHours;
+    }
+
+    public static ScheduleCache getInstance() {
+        return INSTANCE;
+    }
+
+    public SortedSet<ScheduledTime> getScheduledTimes(CronSchedule schedule, ScheduledTime start, ScheduledTime end) {
+        if (!start.isBefore(end)) {
+            return new TreeSet<>();
+        }
+        Entry entry = entries.computeIfAbsent(schedule.getCronExpression(), k -> new Entry());
+        return entry.getScheduledTimes(schedule, start, end);
+    }
+
+    /**
+     * Drops the entries of all cron expressions not used by the configuration.
+     */
+    public void retainAll(WorkflowConfiguration configuration) {
+        Set<String> used = new HashSet<>();
+        for (Workflow wf : configuration.getWorkflows()) {
+            if (wf.getSchedule() instanceof CronSchedule) {
+                used.add(((CronSchedule) wf.getSchedule()).getCronExpression());
+            }
+        }
+        entries.keySet().retainAll(used);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Number of requests answered without evaluating the cron expression.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of requests that needed (full or partial) evaluation.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * The scheduled times of one cron expression within [coveredStart, coveredEnd).
+     */
+    private class Entry {
+
+        private final TreeSet<ScheduledTime> times = new TreeSet<>();
+        private ScheduledTime coveredStart;
+        private ScheduledTime coveredEnd;
+
+        synchronized SortedSet<ScheduledTime> getScheduledTimes(CronSchedule schedule, ScheduledTime start, ScheduledTime end) {
+            ScheduledTime latestEnd = coveredEnd == null || end.isAfter(coveredEnd) ? end : coveredEnd;
+            if (start.isBefore(latestEnd.minusHours(retentionHours))) {
+                misses.incrementAndGet();
+                return schedule.evaluate(start, end);
+            }
+            if (coveredStart == null || start.isAfter(coveredEnd) || end.isBefore(coveredStart)) {
+                misses.incrementAndGet();
+                times.clear();
+                times.addAll(schedule.evaluate(start, end));
+                coveredStart = start;
+                coveredEnd = end;
+            } else if (start.isBefore(coveredStart) || end.isAfter(coveredEnd)) {
+                misses.incrementAndGet();
+                if (start.isBefore(coveredStart)) {
+                    times.addAll(schedule.evaluate(start, coveredStart));
+                    coveredStart = start;
+                }
+                if (end.isAfter(coveredEnd)) {
+                    times.addAll(schedule.evaluate(coveredEnd, end));
+                    coveredEnd = end;
+                }
+            } else {
+                hits.incrementAndGet();
+            }
+            SortedSet<ScheduledTime> result = new TreeSet<>(times.subSet(start, end));
+            trim();
+            return result;
+        }
+
+        private void trim() {
+            ScheduledTime retentionStart = coveredEnd.minusHours(retentionHours);
+            if (retentionStart.isAfter(coveredStart)) {
+                times.headSet(retentionStart).clear();
+                coveredStart = retentionStart;
+            }
+        }
+    }
+
+}
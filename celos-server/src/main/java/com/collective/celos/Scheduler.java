@@ -16,11 +16,24 @@
 package com.collective.celos;
 
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import com.collective.celos.database.StateDatabase;
 import com.collective.celos.database.StateDatabaseConnection;
+import com.collective.celos.metrics.Counter;
+import com.collective.celos.metrics.Gauge;
+import com.collective.celos.metrics.Histogram;
+import com.collective.celos.metrics.MetricsRegistry;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.apache.log4j.Logger;
 
+import com.collective.celos.trigger.HDFSCheckCache;
+import com.collective.celos.trigger.HDFSCheckHistory;
 import com.collective.celos.trigger.Trigger;
 
 /**
@@ -28,24 +41,82 @@ import com.collective.celos.trigger.Trigger;
  */
 public class Scheduler {
 
+    /**
+     * By default, workflows are stepped one after the other.
+     */
+    public static final int DEFAULT_STEP_THREADS = 1;
+
     private final int slidingWindowHours;
+    private final int stepThreads;
     private final WorkflowConfiguration configuration;
+    private final WorkflowGraph graph;
+    private final SubmissionThrottle throttle;
+    private final TriggerBackoff backoff;
+    private final HDFSCheckHistory hdfsCheckHistory;
+    private final MutationLocks locks;
+    // Change count of the mutation locks when the current step started
+    private volatile long stepChangeCount = Long.MAX_VALUE;
 
     private static Logger LOGGER = Logger.getLogger(Scheduler.class);
 
+    private static final String LOCK_HOLDER = Scheduler.class.getSimpleName();
+
+    private static final Histogram STEP_SECONDS = MetricsRegistry.getInstance().histogram(
+            "celos_step_duration_seconds", "Wall time of scheduler steps.");
+    private static final Histogram WORKFLOW_STEP_SECONDS = MetricsRegistry.getInstance().histogram(
+            "celos_workflow_step_duration_seconds", "Time spent on a workflow during a scheduler step.", "workflow");
+    private static final Gauge SLOTS = MetricsRegistry.getInstance().gauge(
+            "celos_slots", "Active slots of a workflow by status, as of the last step.", "workflow", "status");
+    private static final Histogram EXTERNAL_SERVICE_SECONDS = MetricsRegistry.getInstance().histogram(
+            "celos_external_service_seconds", "Time taken by external service calls.", "operation");
+    private static final Counter EXTERNAL_SERVICE_ERRORS = MetricsRegistry.getInstance().counter(
+            "celos_external_service_errors_total", "Failed external service calls.", "operation");
+
     public Scheduler(WorkflowConfiguration configuration, int slidingWindowHours) {
+        this(configuration, slidingWindowHours, DEFAULT_STEP_THREADS);
+    }
+
+    public Scheduler(WorkflowConfiguration configuration, int slidingWindowHours, int stepThreads) {
+        this(configuration, slidingWindowHours, stepThreads, new SubmissionThrottle(System::nanoTime), new TriggerBackoff(0));
+    }
+
+    Scheduler(WorkflowConfiguration configuration, int slidingWindowHours, int stepThreads, SubmissionThrottle throttle, TriggerBackoff backoff) {
+        this(configuration, slidingWindowHours, stepThreads, throttle, backoff, new HDFSCheckHistory(0), MutationLocks.getInstance());
+    }
+
+    Scheduler(WorkflowConfiguration configuration, int slidingWindowHours, int stepThreads, SubmissionThrottle throttle, TriggerBackoff backoff, MutationLocks locks) {
+        this(configuration, slidingWindowHours, stepThreads, throttle, backoff, new HDFSCheckHistory(0), locks);
+    }
+
+    /**
+     * @param hdfsCheckHistory What HDFS checks found out in earlier steps, kept across configuration reloads.
+     */
+    Scheduler(WorkflowConfiguration configuration, int slidingWindowHours, int stepThreads, SubmissionThrottle throttle, TriggerBackoff backoff,
+              HDFSCheckHistory hdfsCheckHistory, MutationLocks locks) {
         if (slidingWindowHours <= 0) {
             throw new IllegalArgumentException("Sliding window hours must greater then zero.");
         }
+        if (stepThreads <= 0) {
+            throw new IllegalArgumentException("Step threads must greater then zero.");
+        }
         this.slidingWindowHours = slidingWindowHours;
+        this.stepThreads = stepThreads;
         this.configuration = Util.requireNonNull(configuration);
+        this.throttle = Util.requireNonNull(throttle);
+        this.backoff = Util.requireNonNull(backoff);
+        this.hdfsCheckHistory = Util.requireNonNull(hdfsCheckHistory);
+        this.locks = Util.requireNonNull(locks);
+        this.graph = new WorkflowGraph(configuration);
+        for (List<WorkflowID> cycle : graph.getCycles()) {
+            LOGGER.warn("Workflows depend on each other in a cycle, stepping them in no particular order: " + cycle);
+        }
     }
 
     /**
      * Returns the start of the sliding window, given the current time.
      */
     ScheduledTime getSlidingWindowStartTime(ScheduledTime current) {
-        return new ScheduledTime(current.getDateTime().minusHours(slidingWindowHours));
+        return current.minusHours(slidingWindowHours);
     }
 
     /**
@@ -62,42 +133,487 @@ public class Scheduler {
      * If workflowIDs is empty, schedule all workflows.
      * <p>
      * Otherwise, schedule only workflows in the set.
+     * <p>
+     * Workflows are stepped sequentially, using the given connection.
      */
     public void step(ScheduledTime current, Set<WorkflowID> workflowIDs, StateDatabaseConnection connection) throws Exception {
+        step(current, workflowIDs, connection, new StepReport());
+    }
+
+    private void step(ScheduledTime current, Set<WorkflowID> workflowIDs, StateDatabaseConnection connection, StepReport report) throws Exception {
         LOGGER.info("Starting scheduler step: " + current + " -- " + getSlidingWindowStartTime(current));
-        for (Workflow wf : configuration.getWorkflows()) {
-            WorkflowID id = wf.getID();
-            boolean shouldProcess = workflowIDs.isEmpty() || workflowIDs.contains(id);
-            if (!shouldProcess) {
-                LOGGER.info("Ignoring workflow: " + id);
-            } else if (connection.isPaused(id)) {
-                LOGGER.info("Workflow is paused: " + id);
+        step(current, workflowIDs, (workflows, task) -> {
+            for (Workflow wf : workflows) {
+                task.run(wf, connection);
+            }
+        }, 1, report);
+    }
+
+    /**
+     * Like {@link #step(ScheduledTime, Set, StateDatabaseConnection)}, but opens
+     * database connections itself.
+     * <p>
+     * If the scheduler has more than one step thread, workflows are stepped
+     * concurrently by a bounded pool of workers.  Each worker opens its own
+     * connection, and takes workflows off a shared queue until it is empty.
+     */
+    public void step(ScheduledTime current, Set<WorkflowID> workflowIDs, StateDatabase database) throws Exception {
+        step(current, workflowIDs, database, new StepReport());
+    }
+
+    /**
+     * Like {@link #step(ScheduledTime, Set, StateDatabase)}, but reports the
+     * progress and the outcome of each workflow to the given report.
+     */
+    public void step(ScheduledTime current, Set<WorkflowID> workflowIDs, StateDatabase database, StepReport report) throws Exception {
+        int workers = Math.min(stepThreads, configuration.getWorkflows().size());
+        if (workers <= 1) {
+            try (StateDatabaseConnection connection = database.openConnection()) {
+                step(current, workflowIDs, connection, report);
+            }
+            return;
+        }
+        LOGGER.info("Starting parallel scheduler step: " + current + " -- " + getSlidingWindowStartTime(current) + " with " + workers + " threads");
+        ExecutorService executor = Executors.newFixedThreadPool(workers, new ThreadFactoryBuilder().setNameFormat("celos-step-%d").setDaemon(true).build());
+        try {
+            step(current, workflowIDs, (workflows, task) -> runInParallel(workflows, task, database, executor, workers), workers, report);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A step has five phases:
+     * <p>
+     * - Fetch the slot states of each workflow, and find the WAITING slots
+     *   whose trigger checks are backed off.
+     * <p>
+     * - Poll the external statuses of all RUNNING slots, batched by external service.
+     * <p>
+     * - Prefetch the HDFS paths the triggers of all WAITING slots that aren't
+     *   backed off check, batched by directory.
+     * <p>
+     * - Step each workflow, using the fetched slot states and external statuses.
+     *   HDFS checks of triggers are cached for the duration of the step.
+     * <p>
+     * - Submit the scheduling candidates of all workflows selected by the
+     *   submission throttle.
+     * <p>
+     * Workflows are stepped in dependency order, level by level, so that a
+     * workflow triggered by the success of another one sees the other
+     * workflow's slots turn SUCCESS in the same step.
+     * <p>
+     * Slots that turn SUCCESS during the step are picked up from the slot
+     * transition bus.  Afterwards, the slots of dependent workflows with the
+     * same scheduled times are checked again, and become scheduling
+     * candidates right away if they're ready, instead of in the next step.
+     * <p>
+     * Slots changed through the HTTP API during the step (see MutationLocks)
+     * are neither transitioned nor submitted; the next step picks them up.
+     */
+    private void step(ScheduledTime current, Set<WorkflowID> workflowIDs, WorkflowRunner runner, int threads, StepReport report) throws Exception {
+        long changeCount = locks.getChangeCount();
+        stepChangeCount = changeCount;
+        try {
+            step(current, workflowIDs, runner, threads, report, System.currentTimeMillis());
+        } finally {
+            stepChangeCount = Long.MAX_VALUE;
+            locks.forgetChangesUpTo(changeCount);
+        }
+    }
+
+    private void step(ScheduledTime current, Set<WorkflowID> workflowIDs, WorkflowRunner runner, int threads, StepReport report, long startMillis) throws Exception {
+        Map<WorkflowID, AtomicLong> workflowMillis = new ConcurrentHashMap<>();
+        List<List<Workflow>> levels = getWorkflowsToProcess(workflowIDs);
+        List<Workflow> workflows = Lists.newArrayList(Iterables.concat(levels));
+        report.setWorkflowCount(workflows.size());
+        report.setPhase(StepReport.Phase.FETCHING);
+
+        Map<WorkflowID, List<SlotState>> slotStates = new ConcurrentHashMap<>();
+        Set<SlotID> backedOff = ConcurrentHashMap.newKeySet();
+        AtomicInteger pausedRunning = new AtomicInteger();
+        runner.run(workflows, isolated(workflowMillis, report, (wf, connection) -> {
+            if (connection.isPaused(wf.getID())) {
+                LOGGER.info("Workflow is paused: " + wf.getID());
+                report.recordOutcome(wf.getID(), new StepReport.WorkflowOutcome(StepReport.Outcome.PAUSED, null, 0));
+                // The slots of paused workflows that are already running keep running
+                if (throttle.getMaxRunning() > 0) {
+                    pausedRunning.addAndGet(countRunning(wf, current, connection));
+                }
             } else {
+                List<SlotState> states = getActiveSlotStatesIncludingMarkedForRerun(wf, current, getWorkflowStartTime(wf, current), current, connection);
+                backedOff.addAll(backoff.getBackedOffSlots(wf.getID(), states, current, connection));
+                slotStates.put(wf.getID(), states);
+            }
+        }));
+        updateSlotsGauge(workflows, slotStates);
+        int othersRunning = countOtherRunning(workflows, current, runner);
+
+        report.setPhase(StepReport.Phase.POLLING);
+        long pollStartMillis = System.currentTimeMillis();
+        Map<SlotID, ExternalStatus> externalStatuses = pollExternalStatuses(workflows, slotStates);
+        long pollMillis = System.currentTimeMillis() - pollStartMillis;
+
+        report.setPhase(StepReport.Phase.PREFETCHING);
+        long prefetchStartMillis = System.currentTimeMillis();
+        HDFSCheckCache hdfsCheckCache = new HDFSCheckCache(hdfsCheckHistory);
+        prefetchHDFSChecks(workflows, slotStates, backedOff, current, hdfsCheckCache);
+        long prefetchMillis = System.currentTimeMillis() - prefetchStartMillis;
+
+        Map<WorkflowID, List<SlotState>> candidates = new ConcurrentHashMap<>();
+        WorkflowTask stepTask = isolated(workflowMillis, report, (wf, connection) -> {
+            List<SlotState> states = slotStates.get(wf.getID());
+            if (states != null) {
+                HDFSCheckCache previous = HDFSCheckCache.setCurrent(hdfsCheckCache);
                 try {
-                    stepWorkflow(wf, current, connection);
-                } catch (Exception e) {
-                    LOGGER.error("Exception in workflow: " + id + ": " + e.getMessage(), e);
+                    stepWorkflow(wf, states, current, externalStatuses, backedOff, candidates, connection);
+                } finally {
+                    HDFSCheckCache.setCurrent(previous);
+                    report.workflowStepped();
+                }
+            } else {
+                report.workflowStepped();
+            }
+        });
+        Queue<SlotID> succeeded = new ConcurrentLinkedQueue<>();
+        AtomicInteger running = new AtomicInteger(countRunning(slotStates) + pausedRunning.get() + othersRunning);
+        SlotTransitionListener listener = (previous, next) -> {
+            if (next.getStatus().equals(SlotState.Status.SUCCESS)) {
+                succeeded.add(next.getSlotID());
+            }
+            if (previous != null && previous.getStatus().equals(SlotState.Status.RUNNING) && !next.getStatus().equals(SlotState.Status.RUNNING)) {
+                running.decrementAndGet();
+            }
+        };
+        SlotTransitionBus.getInstance().addListener(listener);
+        Map<Workflow, Set<ScheduledTime>> dependents;
+        report.setPhase(StepReport.Phase.STEPPING);
+        try {
+            for (List<Workflow> level : levels) {
+                runner.run(level, stepTask);
+            }
+            // Dependent slots only go from WAITING to READY or WAIT_TIMEOUT, never to SUCCESS, so one pass is enough
+            dependents = getDependentSlotTimes(succeeded, slotStates.keySet());
+            runner.run(Lists.newArrayList(dependents.keySet()), isolated(workflowMillis, report, (wf, connection) -> {
+                HDFSCheckCache previous = HDFSCheckCache.setCurrent(hdfsCheckCache);
+                try {
+                    stepDependentWorkflow(wf, dependents.get(wf), current, candidates, connection);
+                } finally {
+                    HDFSCheckCache.setCurrent(previous);
+                }
+            }));
+        } finally {
+            SlotTransitionBus.getInstance().removeListener(listener);
+        }
+
+        report.setPhase(StepReport.Phase.SUBMITTING);
+        Map<WorkflowID, List<SlotState>> submissions = throttle.select(workflows, candidates, running.get());
+        List<Workflow> submitting = Lists.newArrayList();
+        int submitted = 0;
+        for (Workflow wf : workflows) {
+            if (submissions.containsKey(wf.getID())) {
+                submitting.add(wf);
+                submitted += submissions.get(wf.getID()).size();
+            }
+        }
+        runner.run(submitting, isolated(workflowMillis, report, (wf, connection) -> submitSlots(wf, submissions.get(wf.getID()), connection)));
+
+        long wallMillis = System.currentTimeMillis() - startMillis;
+        long summedWorkflowMillis = 0;
+        for (Map.Entry<WorkflowID, AtomicLong> entry : workflowMillis.entrySet()) {
+            WORKFLOW_STEP_SECONDS.observeMillis(entry.getValue().get(), entry.getKey().toString());
+            summedWorkflowMillis += entry.getValue().get();
+        }
+        STEP_SECONDS.observeMillis(wallMillis);
+        report.setPhase(StepReport.Phase.DONE);
+        LOGGER.info("Ending scheduler step: " + current + " -- " + getSlidingWindowStartTime(current)
+                + " wall time: " + wallMillis + "ms, summed workflow time: " + summedWorkflowMillis + "ms"
+                + ", external status polling time: " + pollMillis + "ms, HDFS prefetch time: " + prefetchMillis + "ms, threads: " + threads
+                + ", dependent workflows: " + dependents.size() + ", submitted slots: " + submitted + ", backed off slots: " + backedOff.size()
+                + ", HDFS checks: " + hdfsCheckCache.getChecks() + ", HDFS calls saved: " + hdfsCheckCache.getSavedCalls()
+                + String.format(" (dedup ratio %.2f)", hdfsCheckCache.getDedupRatio()));
+    }
+
+    private List<List<Workflow>> getWorkflowsToProcess(Set<WorkflowID> workflowIDs) {
+        List<List<Workflow>> levels = Lists.newArrayList();
+        for (List<Workflow> level : graph.getLevels()) {
+            List<Workflow> workflows = Lists.newArrayList();
+            for (Workflow wf : level) {
+                WorkflowID id = wf.getID();
+                boolean shouldProcess = workflowIDs.isEmpty() || workflowIDs.contains(id);
+                if (!shouldProcess) {
+                    LOGGER.info("Ignoring workflow: " + id);
+                } else {
+                    workflows.add(wf);
+                }
+            }
+            if (!workflows.isEmpty()) {
+                levels.add(workflows);
+            }
+        }
+        return levels;
+    }
+
+    /**
+     * Something done to a single workflow during a step.
+     */
+    private interface WorkflowTask {
+        void run(Workflow wf, StateDatabaseConnection connection) throws Exception;
+    }
+
+    /**
+     * Runs a task for each of the workflows.
+     */
+    private interface WorkflowRunner {
+        void run(List<Workflow> workflows, WorkflowTask task) throws Exception;
+    }
+
+    /**
+     * If the throttle limits running slots and only some workflows are
+     * stepped, returns the number of RUNNING slots of the other workflows,
+     * so that the limit applies across all workflows.  Otherwise, returns zero.
+     */
+    private int countOtherRunning(List<Workflow> workflows, ScheduledTime current, WorkflowRunner runner) throws Exception {
+        if (throttle.getMaxRunning() == 0) {
+            return 0;
+        }
+        Set<WorkflowID> stepped = new HashSet<>();
+        for (Workflow wf : workflows) {
+            stepped.add(wf.getID());
+        }
+        List<Workflow> others = Lists.newArrayList();
+        for (Workflow wf : configuration.getWorkflows()) {
+            if (!stepped.contains(wf.getID())) {
+                others.add(wf);
+            }
+        }
+        AtomicInteger running = new AtomicInteger();
+        runner.run(others, (wf, connection) -> running.addAndGet(countRunning(wf, current, connection)));
+        return running.get();
+    }
+
+    /**
+     * Returns the number of RUNNING slots of the workflow within the sliding
+     * window, or zero if they can't be read.
+     */
+    private int countRunning(Workflow wf, ScheduledTime current, StateDatabaseConnection connection) {
+        int running = 0;
+        try {
+            for (SlotState state : connection.getActiveSlotStates(wf.getID(), getWorkflowStartTime(wf, current), current).values()) {
+                if (state.getStatus().equals(SlotState.Status.RUNNING)) {
+                    running++;
+                }
+            }
+        } catch (Exception e) {
+            LOGGER.error("Failed to count running slots of workflow: " + wf.getID() + ": " + e.getMessage(), e);
+        }
+        return running;
+    }
+
+    private static int countRunning(Map<WorkflowID, List<SlotState>> slotStates) {
+        int running = 0;
+        for (List<SlotState> states : slotStates.values()) {
+            for (SlotState state : states) {
+                if (state.getStatus().equals(SlotState.Status.RUNNING)) {
+                    running++;
+                }
+            }
+        }
+        return running;
+    }
+
+    /**
+     * Sets the slots gauge to the number of active slots per status of each workflow.
+     * Paused workflows have no active slots in the gauge.
+     */
+    private void updateSlotsGauge(List<Workflow> workflows, Map<WorkflowID, List<SlotState>> slotStates) {
+        for (Workflow wf : workflows) {
+            Map<SlotState.Status, Integer> counts = new EnumMap<>(SlotState.Status.class);
+            for (SlotState.Status status : SlotState.Status.values()) {
+                if (status.getType() == SlotState.StatusType.INDETERMINATE) {
+                    counts.put(status, 0);
+                }
+            }
+            List<SlotState> states = slotStates.get(wf.getID());
+            if (states != null) {
+                for (SlotState state : states) {
+                    counts.merge(state.getStatus(), 1, Integer::sum);
+                }
+            }
+            for (Map.Entry<SlotState.Status, Integer> entry : counts.entrySet()) {
+                SLOTS.set(entry.getValue(), wf.getID().toString(), entry.getKey().name());
+            }
+        }
+    }
+
+    /**
+     * Wraps the task so that its exceptions are logged and don't affect other
+     * workflows, adds the time it took to the workflow's counter, and records
+     * the outcome in the report.
+     */
+    private WorkflowTask isolated(Map<WorkflowID, AtomicLong> workflowMillis, StepReport report, WorkflowTask task) {
+        return (wf, connection) -> {
+            long startMillis = System.currentTimeMillis();
+            StepReport.Outcome outcome = StepReport.Outcome.OK;
+            String error = null;
+            try {
+                task.run(wf, connection);
+            } catch (Exception e) {
+                LOGGER.error("Exception in workflow: " + wf.getID() + ": " + e.getMessage(), e);
+                outcome = StepReport.Outcome.FAILED;
+                error = String.valueOf(e.getMessage());
+            }
+            long millis = System.currentTimeMillis() - startMillis;
+            workflowMillis.computeIfAbsent(wf.getID(), k -> new AtomicLong()).addAndGet(millis);
+            report.recordOutcome(wf.getID(), new StepReport.WorkflowOutcome(outcome, error, millis));
+        };
+    }
+
+    private void runInParallel(List<Workflow> workflows, WorkflowTask task, StateDatabase database, ExecutorService executor, int workers) throws Exception {
+        Queue<Workflow> queue = new ConcurrentLinkedQueue<>(workflows);
+        List<Future<Void>> futures = Lists.newArrayList();
+        for (int i = 0; i < Math.min(workers, workflows.size()); i++) {
+            futures.add(executor.submit(() -> {
+                try (StateDatabaseConnection connection = database.openConnection()) {
+                    Workflow wf;
+                    while ((wf = queue.poll()) != null) {
+                        task.run(wf, connection);
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Scheduler step worker failed", e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Gets the external statuses of the RUNNING slots of all workflows.
+     * <p>
+     * Services with the same status batch key are polled together with a single
+     * getStatuses call.  If a call fails, the statuses of its slots are left out,
+     * and later get polled one by one in updateSlotState.
+     */
+    Map<SlotID, ExternalStatus> pollExternalStatuses(List<Workflow> workflows, Map<WorkflowID, List<SlotState>> slotStates) {
+        Map<Object, ExternalService> services = Maps.newHashMap();
+        Map<Object, Map<SlotID, String>> batches = Maps.newHashMap();
+        for (Workflow wf : workflows) {
+            List<SlotState> states = slotStates.get(wf.getID());
+            if (states == null) {
+                continue;
+            }
+            for (SlotState slotState : states) {
+                if (slotState.getStatus().equals(SlotState.Status.RUNNING)) {
+                    Object key = wf.getExternalService().getStatusBatchKey();
+                    services.putIfAbsent(key, wf.getExternalService());
+                    batches.computeIfAbsent(key, k -> Maps.newHashMap()).put(slotState.getSlotID(), slotState.getExternalID());
+                }
+            }
+        }
+        Map<SlotID, ExternalStatus> statuses = Maps.newHashMap();
+        for (Map.Entry<Object, Map<SlotID, String>> batch : batches.entrySet()) {
+            try {
+                LOGGER.info("Polling external statuses of " + batch.getValue().size() + " running slots");
+                ExternalService service = services.get(batch.getKey());
+                statuses.putAll(callExternalService("getStatuses", () -> service.getStatuses(batch.getValue())));
+            } catch (Exception e) {
+                LOGGER.error("Failed to poll external statuses of " + batch.getValue().size() + " running slots: " + e.getMessage(), e);
+            }
+        }
+        return statuses;
+    }
+
+    /**
+     * Collects the HDFS paths checked by the triggers of the WAITING slots of
+     * all workflows, except the backed off ones, and prefetches them into the
+     * cache.  Paths that can't be prefetched are checked one by one when the
+     * triggers are called.
+     */
+    void prefetchHDFSChecks(List<Workflow> workflows, Map<WorkflowID, List<SlotState>> slotStates, Set<SlotID> backedOff, ScheduledTime current, HDFSCheckCache cache) {
+        for (Workflow wf : workflows) {
+            List<SlotState> states = slotStates.get(wf.getID());
+            if (states == null) {
+                continue;
+            }
+            try {
+                for (SlotState slotState : states) {
+                    if (slotState.getStatus().equals(SlotState.Status.WAITING) && !backedOff.contains(slotState.getSlotID())) {
+                        wf.getTrigger().addHDFSChecks(cache, current, slotState.getScheduledTime());
+                    }
                 }
+            } catch (Exception e) {
+                LOGGER.error("Failed to collect HDFS checks of workflow: " + wf.getID() + ": " + e.getMessage(), e);
             }
         }
-        LOGGER.info("Ending scheduler step: " + current + " -- " + getSlidingWindowStartTime(current));
+        cache.prefetch();
+    }
+
+    /**
+     * Returns, for each workflow depending on a succeeded slot's workflow, the
+     * scheduled times of the succeeded slots.  Only workflows that are being
+     * processed in this step are included.
+     */
+    private Map<Workflow, Set<ScheduledTime>> getDependentSlotTimes(Collection<SlotID> succeeded, Set<WorkflowID> processed) {
+        Map<Workflow, Set<ScheduledTime>> dependents = Maps.newHashMap();
+        for (SlotID slotID : succeeded) {
+            SortedSet<WorkflowID> downstream = graph.getDownstream(slotID.getWorkflowID());
+            if (downstream == null) {
+                continue;
+            }
+            for (WorkflowID id : downstream) {
+                if (processed.contains(id)) {
+                    Workflow wf = configuration.findWorkflow(id);
+                    dependents.computeIfAbsent(wf, k -> new TreeSet<>()).add(slotID.getScheduledTime());
+                }
+            }
+        }
+        return dependents;
+    }
+
+    /**
+     * Checks the WAITING slots of the workflow at the given scheduled times
+     * again, even if they're backed off, and submits the workflow's READY slots.
+     * <p>
+     * Only the checked slots are read again afterwards, the others are as fetched.
+     */
+    private void stepDependentWorkflow(Workflow wf, Set<ScheduledTime> times, ScheduledTime current, Map<WorkflowID, List<SlotState>> candidates, StateDatabaseConnection connection) throws Exception {
+        LOGGER.info("Processing dependent workflow: " + wf.getID() + " at: " + times);
+        ScheduledTime start = getWorkflowStartTime(wf, current);
+        List<SlotState> slotStates = new ArrayList<>();
+        for (SlotState slotState : getActiveSlotStatesIncludingMarkedForRerun(wf, current, start, current, connection)) {
+            if (times.contains(slotState.getScheduledTime()) && slotState.getStatus().equals(SlotState.Status.WAITING)) {
+                updateSlotState(wf, slotState, current, connection);
+                SlotState updated = connection.getSlotState(slotState.getSlotID());
+                if (updated != null) {
+                    slotState = updated;
+                }
+            }
+            if (slotState.getStatus().getType() == SlotState.StatusType.INDETERMINATE) {
+                slotStates.add(slotState);
+            }
+        }
+        candidates.put(wf.getID(), getSchedulingCandidates(wf, slotStates, current));
     }
 
     /**
      * Steps a single workflow:
      * <p>
-     * - Submit any READY slots to the external service.
+     * - Get the scheduling candidates among the READY slots, to be submitted at the end of the step.
      * <p>
-     * - Check any WAITING slots for data availability.
+     * - Check any WAITING slots that aren't backed off for data availability.
      * <p>
      * - Check any RUNNING slots for their current external status.
      */
-    private void stepWorkflow(Workflow wf, ScheduledTime current, StateDatabaseConnection connection) throws Exception {
+    private void stepWorkflow(Workflow wf, List<SlotState> slotStates, ScheduledTime current, Map<SlotID, ExternalStatus> externalStatuses, Set<SlotID> backedOff, Map<WorkflowID, List<SlotState>> candidates, StateDatabaseConnection connection) throws Exception {
         LOGGER.info("Processing workflow: " + wf.getID() + " at: " + current);
-        List<SlotState> slotStates = getSlotStatesIncludingMarkedForRerun(wf, current, getWorkflowStartTime(wf, current), current, connection);
-        runExternalWorkflows(wf, slotStates, connection);
+        candidates.put(wf.getID(), getSchedulingCandidates(wf, slotStates, current));
         for (SlotState slotState : slotStates) {
-            updateSlotState(wf, slotState, current, connection);
+            updateSlotState(wf, slotState, current, externalStatuses, backedOff, connection);
         }
     }
 
@@ -112,13 +628,40 @@ public class Scheduler {
         times.addAll(wf.getSchedule().getScheduledTimes(this, start, end));
         times.addAll(timesMarkedForRerun);
 
-        Map<SlotID, SlotState> fetchedSlots = Maps.newHashMap();
-        fetchedSlots.putAll(connection.getSlotStates(wf.getID(), start, end));
-        fetchedSlots.putAll(connection.getSlotStates(wf.getID(), timesMarkedForRerun));
+        SlotStates fetchedSlots = connection.getSlotStates(wf.getID(), start, end);
+        fetchedSlots.addAll(connection.getSlotStates(wf.getID(), timesMarkedForRerun).values());
         return matchScheduledToFetched(wf, times, fetchedSlots);
     }
 
 
+    /**
+     * Like {@link #getSlotStatesIncludingMarkedForRerun}, but only returns the active (WAITING, READY, or RUNNING) slots.
+     * <p>
+     * The states of terminal slots are not read from the database; only their times
+     * are, so that they're not mistaken for fresh waiting slots.
+     */
+    public List<SlotState> getActiveSlotStatesIncludingMarkedForRerun(Workflow wf, ScheduledTime current, ScheduledTime start, ScheduledTime end, StateDatabaseConnection connection) throws Exception {
+        SortedSet<ScheduledTime> timesMarkedForRerun = connection.getTimesMarkedForRerun(wf.getID(), current);
+
+        SortedSet<ScheduledTime> times = new TreeSet<>();
+        times.addAll(wf.getSchedule().getScheduledTimes(this, start, end));
+        times.addAll(timesMarkedForRerun);
+
+        SlotStates fetchedSlots = connection.getSlotStates(wf.getID(), timesMarkedForRerun);
+        fetchedSlots.addAll(connection.getActiveSlotStates(wf.getID(), start, end).values());
+        Set<ScheduledTime> storedTimes = connection.getSlotTimes(wf.getID(), start, end);
+
+        List<SlotState> slotStates = new ArrayList<>();
+        for (SlotState slotState : matchScheduledToFetched(wf, times, fetchedSlots)) {
+            boolean active = slotState.getStatus().getType() == SlotState.StatusType.INDETERMINATE;
+            boolean synthesized = !fetchedSlots.contains(slotState.getScheduledTime());
+            if (active && !(synthesized && storedTimes.contains(slotState.getScheduledTime()))) {
+                slotStates.add(slotState);
+            }
+        }
+        return Collections.unmodifiableList(slotStates);
+    }
+
     /**
      * Get the slot states of all slots of the workflow from within the window defined by start (inclusive) and end (exclusive).
      * This is used for servlets that return the slot states within the window, and don't care about rerun slots.
@@ -126,22 +669,21 @@ public class Scheduler {
     public List<SlotState> getSlotStates(Workflow wf, ScheduledTime start, ScheduledTime end, StateDatabaseConnection connection) throws Exception {
         SortedSet<ScheduledTime> times = new TreeSet<>();
         times.addAll(wf.getSchedule().getScheduledTimes(this, start, end));
-        Map<SlotID, SlotState> fetchedSlots = connection.getSlotStates(wf.getID(), start, end);
+        SlotStates fetchedSlots = connection.getSlotStates(wf.getID(), start, end);
         return matchScheduledToFetched(wf, times, fetchedSlots);
     }
 
-    private List<SlotState> matchScheduledToFetched(Workflow wf, SortedSet<ScheduledTime> scheduledTimes, Map<SlotID, SlotState> timeToSlots) throws Exception {
+    private List<SlotState> matchScheduledToFetched(Workflow wf, SortedSet<ScheduledTime> scheduledTimes, SlotStates timeToSlots) throws Exception {
         List<SlotState> slotStates = new ArrayList<SlotState>(scheduledTimes.size());
         for (ScheduledTime t : scheduledTimes) {
-            SlotID slotID = new SlotID(wf.getID(), t);
-            SlotState slotState = timeToSlots.get(slotID);
+            SlotState slotState = timeToSlots.get(t);
             if (slotState != null) {
                 slotStates.add(slotState);
             } else {
                 // Database doesn't have any info on the slot yet -
                 // synthesize a fresh waiting slot and put it in the list
                 // (not in the database).
-                slotStates.add(new SlotState(slotID, SlotState.Status.WAITING));
+                slotStates.add(new SlotState(new SlotID(wf.getID(), t), SlotState.Status.WAITING));
             }
         }
         return Collections.unmodifiableList(slotStates);
@@ -157,17 +699,66 @@ public class Scheduler {
      * Get scheduled slots from scheduling strategy and submit them to external system.
      */
     void runExternalWorkflows(Workflow wf, List<SlotState> slotStates, StateDatabaseConnection connection) throws Exception {
-        List<SlotState> scheduledSlots = wf.getSchedulingStrategy().getSchedulingCandidates(slotStates);
+        submitSlots(wf, getSchedulingCandidates(wf, slotStates), connection);
+    }
+
+    /**
+     * Get scheduled slots from scheduling strategy, and check that they're all READY.
+     */
+    private List<SlotState> getSchedulingCandidates(Workflow wf, List<SlotState> slotStates) {
+        return checkReady(wf.getSchedulingStrategy().getSchedulingCandidates(slotStates));
+    }
+
+    /**
+     * Like {@link #getSchedulingCandidates(Workflow, List)}, for the step at the given current time.
+     */
+    private List<SlotState> getSchedulingCandidates(Workflow wf, List<SlotState> slotStates, ScheduledTime current) {
+        return checkReady(wf.getSchedulingStrategy().getSchedulingCandidates(slotStates, current));
+    }
+
+    private static List<SlotState> checkReady(List<SlotState> scheduledSlots) {
         for (SlotState slotState : scheduledSlots) {
             if (!slotState.getStatus().equals(SlotState.Status.READY)) {
                 throw new IllegalStateException("Scheduling strategy returned non-ready slot: " + slotState);
             }
+        }
+        return scheduledSlots;
+    }
+
+    /**
+     * Submit the given READY slots to the external service.
+     * <p>
+     * Slots changed through the HTTP API during the step are skipped.  The
+     * slot's lock is held while submitting, so it can't be changed in between.
+     */
+    private void submitSlots(Workflow wf, List<SlotState> scheduledSlots, StateDatabaseConnection connection) throws Exception {
+        for (SlotState slotState : scheduledSlots) {
             SlotID slotID = slotState.getSlotID();
-            LOGGER.info("Submitting slot to external service: " + slotID);
-            String externalID = wf.getExternalService().submit(slotID);
-            connection.putSlotState(slotState.transitionToRunning(externalID));
+            String externalID;
+            locks.lock(slotID, LOCK_HOLDER);
+            try {
+                if (isChangedDuringStep(slotID)) {
+                    LOGGER.info("Not submitting slot changed during the step: " + slotID);
+                    continue;
+                }
+                LOGGER.info("Submitting slot to external service: " + slotID);
+                long submitStartMillis = System.currentTimeMillis();
+                try {
+                    externalID = callExternalService("submit", () -> wf.getExternalService().submit(slotID));
+                } catch (Exception e) {
+                    wf.getSchedulingStrategy().recordSubmit(wf.getID(), System.currentTimeMillis() - submitStartMillis, false);
+                    throw e;
+                }
+                wf.getSchedulingStrategy().recordSubmit(wf.getID(), System.currentTimeMillis() - submitStartMillis, true);
+                transition(slotState, slotState.transitionToRunning(externalID), connection);
+            } finally {
+                locks.unlock(slotID);
+            }
             LOGGER.info("Starting slot: " + slotID + " with external ID: " + externalID);
-            wf.getExternalService().start(slotID, externalID);
+            callExternalService("start", () -> {
+                wf.getExternalService().start(slotID, externalID);
+                return null;
+            });
         }
     }
 
@@ -177,32 +768,50 @@ public class Scheduler {
      * Check the external status of all RUNNING slots, and update them to SUCCESS or FAILURE if they're finished.
      */
     void updateSlotState(Workflow wf, SlotState slotState, ScheduledTime current, StateDatabaseConnection connection) throws Exception {
+        updateSlotState(wf, slotState, current, Collections.<SlotID, ExternalStatus>emptyMap(), Collections.<SlotID>emptySet(), connection);
+    }
+
+    /**
+     * Like {@link #updateSlotState(Workflow, SlotState, ScheduledTime, StateDatabaseConnection)},
+     * but uses already polled external statuses where available, and doesn't
+     * check the triggers of backed off slots.
+     */
+    void updateSlotState(Workflow wf, SlotState slotState, ScheduledTime current, Map<SlotID, ExternalStatus> externalStatuses, Set<SlotID> backedOff, StateDatabaseConnection connection) throws Exception {
         SlotID slotID = slotState.getSlotID();
         SlotState.Status status = slotState.getStatus();
         if (status.equals(SlotState.Status.WAITING)) {
-            if (callTrigger(wf, slotState, current, connection)) {
+            boolean checked = !backedOff.contains(slotID);
+            if (checked && callTrigger(wf, slotState, current, connection)) {
                 LOGGER.info("Slot is ready: " + slotID);
-                connection.putSlotState(slotState.transitionToReady());
+                transition(slotState, slotState.transitionToReady(), connection);
+                resetBackoff(slotState, current, connection);
             } else if (isSlotTimedOut(slotState.getScheduledTime(), current, wf.getWaitTimeoutSeconds())) {
                 LOGGER.info("Slot timed out waiting: " + slotID);
-                connection.putSlotState(slotState.transitionToWaitTimeout());
-            } else {
+                transition(slotState, slotState.transitionToWaitTimeout(), connection);
+                resetBackoff(slotState, current, connection);
+            } else if (checked) {
                 LOGGER.info("Waiting for slot: " + slotID);
+                backoff.checked(slotID, current, connection);
+            } else {
+                LOGGER.info("Waiting for slot, trigger check backed off: " + slotID);
             }
         } else if (status.equals(SlotState.Status.RUNNING)) {
             String externalID = slotState.getExternalID();
-            ExternalStatus xStatus = wf.getExternalService().getStatus(slotID, externalID);
+            ExternalStatus xStatus = externalStatuses.get(slotID);
+            if (xStatus == null) {
+                xStatus = callExternalService("getStatus", () -> wf.getExternalService().getStatus(slotID, externalID));
+            }
             if (!xStatus.isRunning()) {
                 if (xStatus.isSuccess()) {
                     LOGGER.info("Slot successful: " + slotID + " external ID: " + externalID);
-                    connection.putSlotState(slotState.transitionToSuccess());
+                    transition(slotState, slotState.transitionToSuccess(), connection);
                 } else {
                     if (slotState.getRetryCount() < wf.getMaxRetryCount()) {
                         LOGGER.info("Slot failed, preparing for retry: " + slotID + " external ID: " + externalID);
-                        connection.putSlotState(slotState.transitionToRetry());
+                        transition(slotState, slotState.transitionToRetry(), connection);
                     } else {
                         LOGGER.info("Slot failed permanently: " + slotID + " external ID: " + externalID);
-                        connection.putSlotState(slotState.transitionToFailure());
+                        transition(slotState, slotState.transitionToFailure(), connection);
                     }
                 }
             } else {
@@ -211,6 +820,51 @@ public class Scheduler {
         }
     }
 
+    /**
+     * Writes the new state of a slot, and publishes the transition, unless
+     * the slot was changed through the HTTP API during the step.
+     */
+    private void transition(SlotState previous, SlotState next, StateDatabaseConnection connection) throws Exception {
+        SlotID slotID = next.getSlotID();
+        locks.lock(slotID, LOCK_HOLDER);
+        try {
+            if (isChangedDuringStep(slotID)) {
+                LOGGER.info("Not updating slot changed during the step: " + slotID);
+                return;
+            }
+            connection.putSlotState(next);
+        } finally {
+            locks.unlock(slotID);
+        }
+        SlotTransitionBus.getInstance().publish(previous, next);
+    }
+
+    private boolean isChangedDuringStep(SlotID slotID) {
+        return locks.isChangedSince(slotID, stepChangeCount);
+    }
+
+    /**
+     * Removes the next trigger check time of a slot that stopped waiting.
+     * Only slots that waited long enough to be backed off can have one.
+     */
+    private void resetBackoff(SlotState slotState, ScheduledTime current, StateDatabaseConnection connection) throws Exception {
+        if (backoff.isBackingOff(slotState.getScheduledTime(), current)) {
+            backoff.reset(slotState.getSlotID(), connection);
+        }
+    }
+
+    /**
+     * Calls the external service, recording the time taken and failures of the operation.
+     */
+    private static <T> T callExternalService(String operation, Callable<T> call) throws Exception {
+        try {
+            return EXTERNAL_SERVICE_SECONDS.time(call, operation);
+        } catch (Exception e) {
+            EXTERNAL_SERVICE_ERRORS.inc(operation);
+            throw e;
+        }
+    }
+
     private boolean callTrigger(Workflow wf, SlotState slotState, ScheduledTime current, StateDatabaseConnection connection) throws Exception {
         Trigger trigger = wf.getTrigger();
         ScheduledTime scheduledTime = slotState.getScheduledTime();
@@ -219,15 +873,23 @@ public class Scheduler {
 
     static boolean isSlotTimedOut(ScheduledTime nominalTime, ScheduledTime current, int timeoutSeconds) {
         ScheduledTime timeoutTime = nominalTime.plusSeconds(timeoutSeconds);
-        return current.getDateTime().isAfter(timeoutTime.getDateTime());
+        return current.isAfter(timeoutTime);
     }
 
     public int getSlidingWindowHours() {
         return slidingWindowHours;
     }
 
+    public int getStepThreads() {
+        return stepThreads;
+    }
+
     public WorkflowConfiguration getWorkflowConfiguration() {
         return configuration;
     }
 
+    public TriggerBackoff getTriggerBackoff() {
+        return backoff;
+    }
+
 }
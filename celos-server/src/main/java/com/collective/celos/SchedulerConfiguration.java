@@ -16,13 +16,19 @@
 package com.collective.celos;
 
 import com.collective.celos.database.*;
+import com.collective.celos.trigger.HDFSCheckHistory;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
+import java.util.function.LongSupplier;
 
 /**
  * Reads configuration and database from filesystem at well-known paths.
+ *
+ * Creates each scheduler with the scheduler options, and with the state that
+ * schedulers keep across steps, which survives configuration reloads.
  */
 public class SchedulerConfiguration {
 
@@ -32,12 +38,41 @@ public class SchedulerConfiguration {
     private final File defaultsConfigurationPath;
     private final StateDatabase db;
     private final Map<String, String> additionalVars;
+    private final SchedulerOptions options;
+    private final Map<String, Object> additionalJsObjects;
+    private final HDFSCheckHistory hdfsCheckHistory;
+    private final SubmissionThrottle throttle;
+    private final TriggerBackoff backoff;
+    private final AdaptiveConcurrency adaptiveConcurrency;
+    private final WorkflowFileCache workflowFileCache;
 
     public SchedulerConfiguration(File workflowConfigurationPath, File defaultsConfigurationPath, StateDatabase db, Map<String, String> additionalVars) throws IOException {
+        this(workflowConfigurationPath, defaultsConfigurationPath, db, additionalVars, new SchedulerOptions());
+    }
+
+    public SchedulerConfiguration(File workflowConfigurationPath, File defaultsConfigurationPath, StateDatabase db, Map<String, String> additionalVars, SchedulerOptions options) throws IOException {
+        this(workflowConfigurationPath, defaultsConfigurationPath, db, additionalVars, options, Collections.<String, Object>emptyMap(),
+                System::currentTimeMillis, System::nanoTime);
+    }
+
+    /**
+     * @param additionalJsObjects Java objects put in the scope of the workflow files.
+     * @param millisClock The current time in milliseconds, used by the state kept across steps.
+     * @param nanoClock The monotonic time in nanoseconds, used by the submission throttle.
+     */
+    public SchedulerConfiguration(File workflowConfigurationPath, File defaultsConfigurationPath, StateDatabase db, Map<String, String> additionalVars, SchedulerOptions options,
+                                  Map<String, Object> additionalJsObjects, LongSupplier millisClock, LongSupplier nanoClock) throws IOException {
         this.workflowConfigurationPath = workflowConfigurationPath;
         this.defaultsConfigurationPath = defaultsConfigurationPath;
         this.additionalVars = additionalVars;
         this.db = db;
+        this.options = Util.requireNonNull(options);
+        this.additionalJsObjects = Util.requireNonNull(additionalJsObjects);
+        this.hdfsCheckHistory = new HDFSCheckHistory(options.getHdfsNegativeCacheTtlSeconds(), millisClock);
+        this.throttle = new SubmissionThrottle(options.getSubmissionsPerSecond(), options.getSubmissionBurst(), options.getMaxRunning(), nanoClock);
+        this.backoff = new TriggerBackoff(options.getTriggerBackoffMaxSeconds());
+        this.adaptiveConcurrency = new AdaptiveConcurrency(millisClock);
+        this.workflowFileCache = new WorkflowFileCache();
     }
 
     public Scheduler makeDefaultScheduler() throws Exception {
@@ -45,16 +80,53 @@ public class SchedulerConfiguration {
         try(StateDatabaseConnection conn = db.openConnection()) {
             config = getWorkflowConfigurationParser(conn).getWorkflowConfiguration();
         }
+        ScheduleCache.getInstance().retainAll(config);
+        adaptiveConcurrency.retainAll(config);
         int slidingWindowHours = 24 * SLIDING_WINDOW_DAYS;
-        return new Scheduler(config, slidingWindowHours);
+        return new Scheduler(config, slidingWindowHours, options.getStepThreads(), throttle, backoff,
+                hdfsCheckHistory, MutationLocks.getInstance());
     }
 
     private WorkflowConfigurationParser getWorkflowConfigurationParser(StateDatabaseConnection conn) throws Exception {
-        return new WorkflowConfigurationParser(defaultsConfigurationPath, additionalVars).parseConfiguration(workflowConfigurationPath, conn);
+        return new WorkflowConfigurationParser(defaultsConfigurationPath, additionalVars, workflowFileCache,
+                options.getJsOptimizationLevel(), options.getParseThreads(), options.getParseTimeoutSeconds(), adaptiveConcurrency, additionalJsObjects)
+                .parseConfiguration(workflowConfigurationPath, conn);
     }
 
     public StateDatabase getStateDatabase() {
         return db;
     }
+
+    public SchedulerOptions getOptions() {
+        return options;
+    }
+
+    public HDFSCheckHistory getHDFSCheckHistory() {
+        return hdfsCheckHistory;
+    }
+
+    public SubmissionThrottle getSubmissionThrottle() {
+        return throttle;
+    }
+
+    public TriggerBackoff getTriggerBackoff() {
+        return backoff;
+    }
+
+    /**
+     * The concurrency limits of adaptive scheduling strategies, which need to
+     * be notified of slot transitions (see SchedulerHolder).
+     */
+    public AdaptiveConcurrency getAdaptiveConcurrency() {
+        return adaptiveConcurrency;
+    }
+
+    /**
+     * The workflows of the evaluated workflow files, which refer to this
+     * configuration's adaptive concurrency limits.
+     */
+    public WorkflowFileCache getWorkflowFileCache() {
+        return workflowFileCache;
+    }
     
 }
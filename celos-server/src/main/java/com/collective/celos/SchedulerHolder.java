@@ -0,0 +1,143 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.log4j.Logger;
+
+import com.collective.celos.metrics.Counter;
+import com.collective.celos.metrics.Histogram;
+import com.collective.celos.metrics.MetricsRegistry;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Holds the current scheduler, and replaces it when the configuration is reloaded.
+ *
+ * A reload builds a new configuration and scheduler from the configuration
+ * files (see SchedulerConfiguration), and publishes it with a single atomic
+ * swap.  The published configuration is never changed afterwards.  Requests
+ * and steps keep using the scheduler that was current when they started, and
+ * never wait for a reload, except when no scheduler has been loaded yet.
+ * If a reload fails, the current scheduler stays in use.
+ *
+ * Reloads are serialized.  Reloads can be run on a background thread; a
+ * background reload requested while another one is waiting to start is
+ * coalesced into it.
+ *
+ * While the holder is open, the configuration's adaptive concurrency limits
+ * are notified of slot transitions.
+ */
+public class SchedulerHolder {
+
+    private static final Logger LOGGER = Logger.getLogger(SchedulerHolder.class);
+
+    private static final Histogram RELOAD_SECONDS = MetricsRegistry.getInstance().histogram(
+            "celos_configuration_reload_seconds", "Time taken to reload the configuration.");
+    private static final Counter RELOAD_FAILURES = MetricsRegistry.getInstance().counter(
+            "celos_configuration_reload_failures_total", "Configuration reloads that failed.");
+
+    private final SchedulerConfiguration configuration;
+    private final AtomicReference<Scheduler> current = new AtomicReference<>();
+    private final Object reloadLock = new Object();
+    private final ExecutorService reloader = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("celos-reload-%d").setDaemon(true).build());
+    // Background reload that hasn't started yet, guarded by this
+    private FutureTask<Scheduler> pending;
+
+    public SchedulerHolder(SchedulerConfiguration configuration) {
+        this.configuration = Util.requireNonNull(configuration);
+        SlotTransitionBus.getInstance().addListener(configuration.getAdaptiveConcurrency());
+    }
+
+    /**
+     * Returns the current scheduler.  If none has been loaded yet, loads it first.
+     */
+    public Scheduler getScheduler() throws Exception {
+        Scheduler scheduler = current.get();
+        if (scheduler != null) {
+            return scheduler;
+        }
+        synchronized (reloadLock) {
+            scheduler = current.get();
+            return scheduler != null ? scheduler : load();
+        }
+    }
+
+    /**
+     * Returns the current scheduler, or null if none has been loaded yet.
+     */
+    public Scheduler getCurrentScheduler() {
+        return current.get();
+    }
+
+    /**
+     * Reloads the configuration on the calling thread, and returns the new scheduler.
+     */
+    public Scheduler reload() throws Exception {
+        synchronized (reloadLock) {
+            return load();
+        }
+    }
+
+    /**
+     * Reloads the configuration on a background thread.
+     */
+    public synchronized Future<Scheduler> reloadInBackground() {
+        if (pending == null) {
+            pending = new FutureTask<>(() -> {
+                synchronized (SchedulerHolder.this) {
+                    pending = null;
+                }
+                return reload();
+            });
+            reloader.execute(pending);
+        }
+        return pending;
+    }
+
+    private Scheduler load() throws Exception {
+        long startMillis = System.currentTimeMillis();
+        try {
+            Scheduler scheduler = configuration.makeDefaultScheduler();
+            current.set(scheduler);
+            return scheduler;
+        } catch (Exception e) {
+            RELOAD_FAILURES.inc();
+            LOGGER.error("Failed to reload configuration, keeping the current one: " + e.getMessage(), e);
+            throw e;
+        } finally {
+            RELOAD_SECONDS.observeMillis(System.currentTimeMillis() - startMillis);
+        }
+    }
+
+    public SchedulerConfiguration getSchedulerConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * Stops the background reload thread, and stops notifying the adaptive concurrency limits.
+     */
+    public void close() {
+        reloader.shutdownNow();
+        SlotTransitionBus.getInstance().removeListener(configuration.getAdaptiveConcurrency());
+    }
+
+}
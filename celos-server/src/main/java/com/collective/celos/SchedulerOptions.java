@@ -0,0 +1,142 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+/**
+ * Settings of the scheduler, usually given on the command line.
+ *
+ * The server passes them to the scheduler configuration, which creates each
+ * scheduler with them.  Defaults as documented by the server's command line.
+ */
+public class SchedulerOptions {
+
+    private final int stepThreads;
+    private final int hdfsNegativeCacheTtlSeconds;
+    private final double submissionsPerSecond;
+    private final int submissionBurst;
+    private final int maxRunning;
+    private final int triggerBackoffMaxSeconds;
+    private final int jsOptimizationLevel;
+    private final int parseThreads;
+    private final int parseTimeoutSeconds;
+
+    public SchedulerOptions() {
+        this(Scheduler.DEFAULT_STEP_THREADS, 0, 0, 0, 0, 0, JSConfigParser.DEFAULT_OPTIMIZATION_LEVEL,
+                WorkflowConfigurationParser.DEFAULT_PARSE_THREADS, WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS);
+    }
+
+    public SchedulerOptions(int stepThreads, int hdfsNegativeCacheTtlSeconds, double submissionsPerSecond, int submissionBurst, int maxRunning,
+                            int triggerBackoffMaxSeconds, int jsOptimizationLevel, int parseThreads, int parseTimeoutSeconds) {
+        if (stepThreads <= 0) {
+            throw new IllegalArgumentException("Step threads must greater then zero.");
+        }
+        if (hdfsNegativeCacheTtlSeconds < 0) {
+            throw new IllegalArgumentException("Negative cache TTL must not be negative.");
+        }
+        if (submissionsPerSecond < 0) {
+            throw new IllegalArgumentException("Submissions per second must not be negative.");
+        }
+        if (submissionBurst < 0) {
+            throw new IllegalArgumentException("Submission burst must not be negative.");
+        }
+        if (maxRunning < 0) {
+            throw new IllegalArgumentException("Max running slots must not be negative.");
+        }
+        if (triggerBackoffMaxSeconds < 0) {
+            throw new IllegalArgumentException("Max trigger check interval must not be negative.");
+        }
+        JSConfigParser.checkOptimizationLevel(jsOptimizationLevel);
+        if (parseThreads <= 0) {
+            throw new IllegalArgumentException("Parse threads must greater then zero.");
+        }
+        if (parseTimeoutSeconds < 0) {
+            throw new IllegalArgumentException("Parse timeout must not be negative.");
+        }
+        this.stepThreads = stepThreads;
+        this.hdfsNegativeCacheTtlSeconds = hdfsNegativeCacheTtlSeconds;
+        this.submissionsPerSecond = submissionsPerSecond;
+        this.submissionBurst = submissionBurst;
+        this.maxRunning = maxRunning;
+        this.triggerBackoffMaxSeconds = triggerBackoffMaxSeconds;
+        this.jsOptimizationLevel = jsOptimizationLevel;
+        this.parseThreads = parseThreads;
+        this.parseTimeoutSeconds = parseTimeoutSeconds;
+    }
+
+    /**
+     * Number of threads used to step workflows.
+     */
+    public int getStepThreads() {
+        return stepThreads;
+    }
+
+    /**
+     * For how long HDFS paths found missing are not checked again.  Zero disables the negative cache.
+     */
+    public int getHdfsNegativeCacheTtlSeconds() {
+        return hdfsNegativeCacheTtlSeconds;
+    }
+
+    /**
+     * Maximum rate of slot submissions.  Zero means unlimited.
+     */
+    public double getSubmissionsPerSecond() {
+        return submissionsPerSecond;
+    }
+
+    /**
+     * Maximum burst of slot submissions.  Zero means a minute's worth.
+     */
+    public int getSubmissionBurst() {
+        return submissionBurst;
+    }
+
+    /**
+     * Maximum number of RUNNING slots across all workflows.  Zero means unlimited.
+     */
+    public int getMaxRunning() {
+        return maxRunning;
+    }
+
+    /**
+     * Maximum interval between trigger checks of long-waiting slots.  Zero disables the backoff.
+     */
+    public int getTriggerBackoffMaxSeconds() {
+        return triggerBackoffMaxSeconds;
+    }
+
+    /**
+     * Rhino optimization level used to compile workflow files.
+     */
+    public int getJsOptimizationLevel() {
+        return jsOptimizationLevel;
+    }
+
+    /**
+     * Number of threads used to evaluate workflow files.
+     */
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    /**
+     * Time after which the evaluation of a workflow file is aborted.  Zero disables the timeout.
+     */
+    public int getParseTimeoutSeconds() {
+        return parseTimeoutSeconds;
+    }
+
+}
@@ -42,4 +42,28 @@ public interface SchedulingStrategy {
      */
     public List<SlotState> getSchedulingCandidates(List<SlotState> states);
 
+    /**
+     * Like {@link #getSchedulingCandidates(List)}, for the scheduler step at the
+     * given current time.  Strategies that depend on the time use the step's
+     * time instead of the system clock.
+     */
+    public default List<SlotState> getSchedulingCandidates(List<SlotState> states, ScheduledTime current) {
+        return getSchedulingCandidates(states);
+    }
+
+    /**
+     * Returns the maximum number of slots of the given workflow this strategy
+     * currently lets run at once, or null if it has no such limit.
+     */
+    public default Integer getConcurrencyLimit(WorkflowID id) {
+        return null;
+    }
+
+    /**
+     * Called with the outcome of each submission of a slot of the given
+     * workflow to the external service, and the time it took.
+     */
+    public default void recordSubmit(WorkflowID id, long millis, boolean success) {
+    }
+
 }
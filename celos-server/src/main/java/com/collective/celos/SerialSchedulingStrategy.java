@@ -70,6 +70,11 @@ public class SerialSchedulingStrategy implements SchedulingStrategy {
         return Collections.emptyList();
     }
 
+    @Override
+    public Integer getConcurrencyLimit(WorkflowID id) {
+        return concurrencyLevel;
+    }
+
     public int getConcurrencyLevel() {
         return concurrencyLevel;
     }
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The states of slots of a single workflow, in order of scheduled time.
+ *
+ * Scheduled times are kept as epoch millis in a sorted array, with the states
+ * in a parallel array.  Looking up a slot by time is a binary search that
+ * needs no SlotID, and a range of slots is copied with two searches.  Slots
+ * are mostly added in time order, which appends.
+ *
+ * For callers that don't care, this is also a map from slot ID to state.
+ *
+ * Not thread-safe.
+ */
+public class SlotStates extends AbstractMap<SlotID, SlotState> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final WorkflowID workflowID;
+    private long[] times;
+    private SlotState[] states;
+    private int size;
+    private int modCount;
+
+    public SlotStates(WorkflowID workflowID) {
+        this(workflowID, DEFAULT_CAPACITY);
+    }
+
+    public SlotStates(WorkflowID workflowID, int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity must not be negative.");
+        }
+        this.workflowID = Util.requireNonNull(workflowID);
+        this.times = new long[capacity];
+        this.states = new SlotState[capacity];
+    }
+
+    public WorkflowID getWorkflowID() {
+        return workflowID;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the scheduled time in millis of the slot at the given position.
+     */
+    public long getMillis(int index) {
+        checkIndex(index);
+        return times[index];
+    }
+
+    /**
+     * Returns the state of the slot at the given position.
+     */
+    public SlotState getState(int index) {
+        checkIndex(index);
+        return states[index];
+    }
+
+    public SlotState get(ScheduledTime time) {
+        return get(time.getMillis());
+    }
+
+    public SlotState get(long millis) {
+        int index = indexOf(millis);
+        return index >= 0 ? states[index] : null;
+    }
+
+    public boolean contains(ScheduledTime time) {
+        return indexOf(time.getMillis()) >= 0;
+    }
+
+    @Override
+    public SlotState get(Object key) {
+        if (!(key instanceof SlotID)) {
+            return null;
+        }
+        SlotID slot = (SlotID) key;
+        return workflowID.equals(slot.getWorkflowID()) ? get(slot.getScheduledTime()) : null;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Adds or replaces the state of a slot, and returns the previous state, or null.
+     */
+    public SlotState add(SlotState state) {
+        if (!workflowID.equals(state.getSlotID().getWorkflowID())) {
+            throw new IllegalArgumentException("Slot doesn't belong to workflow " + workflowID + ": " + state.getSlotID());
+        }
+        long millis = state.getScheduledTime().getMillis();
+        int index = size > 0 && times[size - 1] < millis ? -(size + 1) : indexOf(millis);
+        if (index >= 0) {
+            SlotState previous = states[index];
+            states[index] = state;
+            return previous;
+        }
+        index = -(index + 1);
+        ensureCapacity(size + 1);
+        System.arraycopy(times, index, times, index + 1, size - index);
+        System.arraycopy(states, index, states, index + 1, size - index);
+        times[index] = millis;
+        states[index] = state;
+        size++;
+        modCount++;
+        return null;
+    }
+
+    public void addAll(Collection<SlotState> states) {
+        for (SlotState state : states) {
+            add(state);
+        }
+    }
+
+    @Override
+    public SlotState put(SlotID key, SlotState value) {
+        if (!key.equals(value.getSlotID())) {
+            throw new IllegalArgumentException("Slot ID doesn't match slot state: " + key);
+        }
+        return add(value);
+    }
+
+    @Override
+    public SlotState remove(Object key) {
+        if (!(key instanceof SlotID) || !workflowID.equals(((SlotID) key).getWorkflowID())) {
+            return null;
+        }
+        int index = indexOf(((SlotID) key).getScheduledTime().getMillis());
+        if (index < 0) {
+            return null;
+        }
+        SlotState previous = states[index];
+        removeRange(index, index + 1);
+        return previous;
+    }
+
+    /**
+     * Removes the slots scheduled before the given time.
+     */
+    public void removeBefore(ScheduledTime time) {
+        removeRange(0, lowerBound(time.getMillis()));
+    }
+
+    /**
+     * Returns a copy of the slots from start (inclusive) to end (exclusive).
+     */
+    public SlotStates range(ScheduledTime start, ScheduledTime end) {
+        int from = lowerBound(start.getMillis());
+        int to = Math.max(from, lowerBound(end.getMillis()));
+        SlotStates range = new SlotStates(workflowID, to - from);
+        System.arraycopy(times, from, range.times, 0, to - from);
+        System.arraycopy(states, from, range.states, 0, to - from);
+        range.size = to - from;
+        return range;
+    }
+
+    /**
+     * Returns the slot states from start (inclusive) onwards.
+     */
+    public SlotStates tail(ScheduledTime start) {
+        int from = lowerBound(start.getMillis());
+        SlotStates tail = new SlotStates(workflowID, size - from);
+        System.arraycopy(times, from, tail.times, 0, size - from);
+        System.arraycopy(states, from, tail.states, 0, size - from);
+        tail.size = size - from;
+        return tail;
+    }
+
+    @Override
+    public void clear() {
+        removeRange(0, size);
+    }
+
+    @Override
+    public Collection<SlotState> values() {
+        return new AbstractCollection<SlotState>() {
+            @Override
+            public Iterator<SlotState> iterator() {
+                return new Itr<SlotState>() {
+                    @Override
+                    SlotState get(int index) {
+                        return states[index];
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    @Override
+    public Set<Map.Entry<SlotID, SlotState>> entrySet() {
+        return new AbstractSet<Map.Entry<SlotID, SlotState>>() {
+            @Override
+            public Iterator<Map.Entry<SlotID, SlotState>> iterator() {
+                return new Itr<Map.Entry<SlotID, SlotState>>() {
+                    @Override
+                    Map.Entry<SlotID, SlotState> get(int index) {
+                        return new SimpleImmutableEntry<>(states[index].getSlotID(), states[index]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    private int indexOf(long millis) {
+        return Arrays.binarySearch(times, 0, size, millis);
+    }
+
+    /**
+     * Returns the position of the first slot scheduled at or after the given time.
+     */
+    private int lowerBound(long millis) {
+        int index = indexOf(millis);
+        return index >= 0 ? index : -(index + 1);
+    }
+
+    private void removeRange(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        System.arraycopy(times, to, times, from, size - to);
+        System.arraycopy(states, to, states, from, size - to);
+        Arrays.fill(states, size - (to - from), size, null);
+        size -= to - from;
+        modCount++;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > times.length) {
+            int newCapacity = Math.max(capacity, Math.max(DEFAULT_CAPACITY, times.length * 2));
+            times = Arrays.copyOf(times, newCapacity);
+            states = Arrays.copyOf(states, newCapacity);
+        }
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size);
+        }
+    }
+
+    /**
+     * Iterates over the positions in time order.
+     */
+    private abstract class Itr<T> implements Iterator<T> {
+
+        private int next = 0;
+        private int last = -1;
+        private int expectedModCount = modCount;
+
+        abstract T get(int index);
+
+        @Override
+        public boolean hasNext() {
+            return next < size;
+        }
+
+        @Override
+        public T next() {
+            checkForComodification();
+            if (next >= size) {
+                throw new NoSuchElementException();
+            }
+            last = next++;
+            return get(last);
+        }
+
+        @Override
+        public void remove() {
+            if (last < 0) {
+                throw new IllegalStateException();
+            }
+            checkForComodification();
+            removeRange(last, last + 1);
+            next = last;
+            last = -1;
+            expectedModCount = modCount;
+        }
+
+        private void checkForComodification() {
+            if (modCount != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.log4j.Logger;
+
+import com.collective.celos.metrics.Counter;
+import com.collective.celos.metrics.MetricsRegistry;
+
+/**
+ * Process-wide bus of slot state transitions.
+ *
+ * The scheduler publishes every transition it makes, as do the servlets that
+ * change slot states.  Listeners are called synchronously, on the thread that
+ * made the transition; a failing listener doesn't affect the publisher or
+ * other listeners.
+ */
+public class SlotTransitionBus {
+
+    private static final Logger LOGGER = Logger.getLogger(SlotTransitionBus.class);
+
+    private static final Counter TRANSITIONS = MetricsRegistry.getInstance().counter(
+            "celos_slot_transitions_total", "Slot state transitions by workflow and new status.", "workflow", "status");
+
+    private static final SlotTransitionBus INSTANCE = new SlotTransitionBus();
+
+    private final List<SlotTransitionListener> listeners = new CopyOnWriteArrayList<>();
+
+    SlotTransitionBus() {
+    }
+
+    public static SlotTransitionBus getInstance() {
+        return INSTANCE;
+    }
+
+    public void addListener(SlotTransitionListener listener) {
+        listeners.add(Util.requireNonNull(listener));
+    }
+
+    public void removeListener(SlotTransitionListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void publish(SlotState previous, SlotState next) {
+        Util.requireNonNull(next);
+        TRANSITIONS.inc(next.getSlotID().getWorkflowID().toString(), next.getStatus().name());
+        for (SlotTransitionListener listener : listeners) {
+            try {
+                listener.slotTransitioned(previous, next);
+            } catch (Exception e) {
+                LOGGER.error("Slot transition listener failed on " + next.getSlotID() + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+}
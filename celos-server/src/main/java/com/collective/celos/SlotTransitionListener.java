@@ -0,0 +1,30 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+/**
+ * Gets notified of slot state transitions published to the {@link SlotTransitionBus}.
+ */
+public interface SlotTransitionListener {
+
+    /**
+     * Called after the new state has been written to the database.
+     * The previous state is null if it isn't known, e.g. because the slot
+     * wasn't in the database before.
+     */
+    void slotTransitioned(SlotState previous, SlotState next);
+
+}
@@ -0,0 +1,335 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+import com.collective.celos.metrics.Counter;
+import com.collective.celos.metrics.Histogram;
+import com.collective.celos.metrics.MetricsRegistry;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+/**
+ * Runs scheduler steps one at a time on a background thread, for the
+ * scheduler servlet and the scheduler loop.
+ *
+ * Each step first reloads the configuration (see SchedulerHolder).  A step is
+ * requested for a given time, or for the current time (a null time), and for
+ * a set of workflows, an empty set meaning all workflows.  Requests are
+ * coalesced:
+ * <p>
+ * - into the running step, if it is for the same time (both for the current
+ *   time, or for the same given time), and covers the requested workflows;
+ * <p>
+ * - otherwise, into a queued step for the same time whose workflows overlap
+ *   the requested ones.  The requested workflows are added to the step.
+ * <p>
+ * Otherwise, a new step is queued.  Queued and running steps, as well as the
+ * most recently finished ones, can be looked up by their ID.
+ */
+public class StepQueue {
+
+    public static final int FINISHED_STEPS_KEPT = 100;
+
+    public enum Status { QUEUED, RUNNING, SUCCEEDED, FAILED }
+
+    private static final Logger LOGGER = Logger.getLogger(StepQueue.class);
+
+    private static final Histogram QUEUE_WAIT_SECONDS = MetricsRegistry.getInstance().histogram(
+            "celos_step_queue_wait_seconds", "Time scheduler steps waited in the queue before they started.");
+    private static final Counter COALESCED_REQUESTS = MetricsRegistry.getInstance().counter(
+            "celos_step_requests_coalesced_total", "Scheduler step requests coalesced into a running or queued step.");
+
+    private final SchedulerHolder holder;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(
+            new ThreadFactoryBuilder().setNameFormat("celos-step-runner-%d").setDaemon(true).build());
+    private final AtomicLong nextID = new AtomicLong(1);
+    // The following are guarded by this
+    private final Deque<Step> queued = new ArrayDeque<>();
+    private Step running;
+    // Queued, running, and recently finished steps, in order of their IDs
+    private final Map<Long, Step> steps = new LinkedHashMap<>();
+
+    public StepQueue(SchedulerHolder holder) {
+        this.holder = Util.requireNonNull(holder);
+    }
+
+    /**
+     * Requests a step, and returns the running or queued step that will do it.
+     */
+    public synchronized Step request(ScheduledTime time, Set<WorkflowID> workflowIDs) {
+        Util.requireNonNull(workflowIDs);
+        if (running != null && running.isFor(time) && running.covers(workflowIDs)) {
+            return coalesce(running);
+        }
+        for (Step step : queued) {
+            if (step.isFor(time) && step.overlaps(workflowIDs)) {
+                step.add(workflowIDs);
+                return coalesce(step);
+            }
+        }
+        Step step = new Step(nextID.getAndIncrement(), time, workflowIDs);
+        queued.add(step);
+        steps.put(step.getID(), step);
+        runner.execute(this::runNext);
+        return step;
+    }
+
+    private Step coalesce(Step step) {
+        step.requests.incrementAndGet();
+        COALESCED_REQUESTS.inc();
+        return step;
+    }
+
+    /**
+     * Returns the step with the given ID, or null if there is none, or it finished too long ago.
+     */
+    public synchronized Step getStep(long id) {
+        return steps.get(id);
+    }
+
+    /**
+     * Stops the step runner thread, interrupting the running step.
+     */
+    public void close() {
+        runner.shutdownNow();
+    }
+
+    private void runNext() {
+        Step step;
+        Set<WorkflowID> workflowIDs;
+        synchronized (this) {
+            step = queued.poll();
+            if (step == null) {
+                return;
+            }
+            running = step;
+            workflowIDs = step.getWorkflowIDs();
+            step.start();
+        }
+        QUEUE_WAIT_SECONDS.observeMillis(step.startMillis - step.queuedMillis);
+        String error = null;
+        try {
+            Scheduler scheduler = holder.reload();
+            scheduler.step(step.getTime(), workflowIDs, holder.getSchedulerConfiguration().getStateDatabase(), step.getReport());
+        } catch (Exception e) {
+            LOGGER.error("Scheduler step " + step.getID() + " failed: " + e.getMessage(), e);
+            error = String.valueOf(e.getMessage());
+        }
+        synchronized (this) {
+            running = null;
+            step.finish(error);
+            forgetOldSteps();
+        }
+    }
+
+    private void forgetOldSteps() {
+        int finished = 0;
+        for (Step step : steps.values()) {
+            if (step.isFinished()) {
+                finished++;
+            }
+        }
+        Iterator<Step> it = steps.values().iterator();
+        while (finished > FINISHED_STEPS_KEPT && it.hasNext()) {
+            if (it.next().isFinished()) {
+                it.remove();
+                finished--;
+            }
+        }
+    }
+
+    /**
+     * A requested scheduler step.
+     */
+    public static class Step {
+
+        public static final String TIME_NODE = "time";
+        public static final String REQUESTS_NODE = "requests";
+        public static final String WAIT_MILLIS_NODE = "waitMillis";
+        public static final String DURATION_MILLIS_NODE = "durationMillis";
+
+        private final long id;
+        // Null for the current time
+        private final ScheduledTime requestedTime;
+        private final long queuedMillis = System.currentTimeMillis();
+        private final AtomicInteger requests = new AtomicInteger(1);
+        private final StepReport report = new StepReport();
+        private final CountDownLatch done = new CountDownLatch(1);
+        // Only changed while queued, guarded by this
+        private final Set<WorkflowID> workflowIDs;
+        private volatile Status status = Status.QUEUED;
+        private volatile ScheduledTime time;
+        private volatile long startMillis;
+        private volatile long endMillis;
+        private volatile String error;
+
+        private Step(long id, ScheduledTime requestedTime, Set<WorkflowID> workflowIDs) {
+            this.id = id;
+            this.requestedTime = requestedTime;
+            this.time = requestedTime;
+            this.workflowIDs = new TreeSet<>(workflowIDs);
+        }
+
+        private boolean isFor(ScheduledTime time) {
+            return requestedTime == null ? time == null : requestedTime.equals(time);
+        }
+
+        private synchronized boolean covers(Set<WorkflowID> ids) {
+            return workflowIDs.isEmpty() || (!ids.isEmpty() && workflowIDs.containsAll(ids));
+        }
+
+        private synchronized boolean overlaps(Set<WorkflowID> ids) {
+            return workflowIDs.isEmpty() || ids.isEmpty() || !Collections.disjoint(workflowIDs, ids);
+        }
+
+        private synchronized void add(Set<WorkflowID> ids) {
+            if (ids.isEmpty()) {
+                workflowIDs.clear();
+            } else if (!workflowIDs.isEmpty()) {
+                workflowIDs.addAll(ids);
+            }
+        }
+
+        private void start() {
+            if (time == null) {
+                time = ScheduledTime.now();
+            }
+            startMillis = System.currentTimeMillis();
+            status = Status.RUNNING;
+        }
+
+        private void finish(String error) {
+            endMillis = System.currentTimeMillis();
+            this.error = error;
+            status = error == null ? Status.SUCCEEDED : Status.FAILED;
+            done.countDown();
+        }
+
+        public long getID() {
+            return id;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public boolean isFinished() {
+            return status == Status.SUCCEEDED || status == Status.FAILED;
+        }
+
+        /**
+         * The time the step is for, or null if it's for the current time and hasn't started yet.
+         */
+        public ScheduledTime getTime() {
+            return time;
+        }
+
+        /**
+         * The workflows to step, or an empty set for all workflows.
+         */
+        public synchronized Set<WorkflowID> getWorkflowIDs() {
+            return new TreeSet<>(workflowIDs);
+        }
+
+        /**
+         * Number of requests served by this step.
+         */
+        public int getRequests() {
+            return requests.get();
+        }
+
+        /**
+         * Time spent in the queue so far.
+         */
+        public long getWaitMillis() {
+            return (status == Status.QUEUED ? System.currentTimeMillis() : startMillis) - queuedMillis;
+        }
+
+        /**
+         * Time spent running so far.
+         */
+        public long getDurationMillis() {
+            switch (status) {
+            case QUEUED:
+                return 0;
+            case RUNNING:
+                return System.currentTimeMillis() - startMillis;
+            default:
+                return endMillis - startMillis;
+            }
+        }
+
+        /**
+         * The error message of a FAILED step, or null.
+         */
+        public String getError() {
+            return error;
+        }
+
+        public StepReport getReport() {
+            return report;
+        }
+
+        /**
+         * Waits for the step to finish.
+         */
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            return done.await(timeout, unit);
+        }
+
+        public void await() throws InterruptedException {
+            done.await();
+        }
+
+        public ObjectNode toJSONNode() {
+            ObjectNode node = Util.MAPPER.createObjectNode();
+            node.put(CelosClient.STEP_ID_NODE, id);
+            node.put(CelosClient.STEP_STATUS_NODE, status.name());
+            node.put(TIME_NODE, time == null ? null : time.toString());
+            ArrayNode ids = node.putArray(CelosClient.IDS_PARAM);
+            for (WorkflowID workflowID : getWorkflowIDs()) {
+                ids.add(workflowID.toString());
+            }
+            node.put(REQUESTS_NODE, requests.get());
+            node.put(WAIT_MILLIS_NODE, getWaitMillis());
+            node.put(DURATION_MILLIS_NODE, getDurationMillis());
+            if (error != null) {
+                node.put(CelosClient.STEP_ERROR_NODE, error);
+            }
+            node.setAll(report.toJSONNode());
+            return node;
+        }
+    }
+
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+/**
+ * Progress and per-workflow outcome of a scheduler step.
+ *
+ * The scheduler fills it in as the step goes on; it can be read concurrently.
+ * A workflow's outcome is the worst of its outcomes in the phases of the step.
+ */
+public class StepReport {
+
+    public enum Phase { FETCHING, POLLING, PREFETCHING, STEPPING, SUBMITTING, DONE }
+
+    // In order of increasing severity
+    public enum Outcome { OK, PAUSED, FAILED }
+
+    public static final String PHASE_NODE = "phase";
+    public static final String WORKFLOW_COUNT_NODE = "workflowCount";
+    public static final String STEPPED_COUNT_NODE = "steppedCount";
+    public static final String WORKFLOWS_NODE = "workflows";
+    public static final String OUTCOME_NODE = "outcome";
+    public static final String ERROR_NODE = "error";
+    public static final String MILLIS_NODE = "millis";
+
+    private volatile Phase phase;
+    private volatile int workflowCount;
+    private final AtomicInteger steppedCount = new AtomicInteger();
+    private final ConcurrentMap<WorkflowID, WorkflowOutcome> outcomes = new ConcurrentSkipListMap<>();
+
+    /**
+     * The outcome of a single workflow, and the time spent on it.
+     */
+    public static class WorkflowOutcome {
+
+        private final Outcome outcome;
+        private final String error;
+        private final long millis;
+
+        public WorkflowOutcome(Outcome outcome, String error, long millis) {
+            this.outcome = Util.requireNonNull(outcome);
+            this.error = error;
+            this.millis = millis;
+        }
+
+        private WorkflowOutcome merge(WorkflowOutcome other) {
+            WorkflowOutcome worse = other.outcome.compareTo(outcome) > 0 ? other : this;
+            return new WorkflowOutcome(worse.outcome, worse.error, millis + other.millis);
+        }
+
+        public Outcome getOutcome() {
+            return outcome;
+        }
+
+        /**
+         * The error message of a FAILED workflow, or null.
+         */
+        public String getError() {
+            return error;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+    }
+
+    /**
+     * The phase the step is in, or null if it hasn't started yet.
+     */
+    public Phase getPhase() {
+        return phase;
+    }
+
+    void setPhase(Phase phase) {
+        this.phase = Util.requireNonNull(phase);
+    }
+
+    /**
+     * Number of workflows processed by the step.
+     */
+    public int getWorkflowCount() {
+        return workflowCount;
+    }
+
+    void setWorkflowCount(int workflowCount) {
+        this.workflowCount = workflowCount;
+    }
+
+    /**
+     * Number of workflows stepped so far, in the STEPPING phase.
+     */
+    public int getSteppedCount() {
+        return steppedCount.get();
+    }
+
+    void workflowStepped() {
+        steppedCount.incrementAndGet();
+    }
+
+    void recordOutcome(WorkflowID id, WorkflowOutcome outcome) {
+        outcomes.merge(id, outcome, WorkflowOutcome::merge);
+    }
+
+    /**
+     * Returns the outcomes of the workflows processed so far, sorted by workflow ID.
+     */
+    public Map<WorkflowID, WorkflowOutcome> getOutcomes() {
+        return outcomes;
+    }
+
+    public ObjectNode toJSONNode() {
+        ObjectNode node = Util.MAPPER.createObjectNode();
+        node.put(PHASE_NODE, phase == null ? null : phase.name());
+        node.put(WORKFLOW_COUNT_NODE, workflowCount);
+        node.put(STEPPED_COUNT_NODE, steppedCount.get());
+        ObjectNode workflows = node.putObject(WORKFLOWS_NODE);
+        for (Map.Entry<WorkflowID, WorkflowOutcome> entry : outcomes.entrySet()) {
+            ObjectNode wfNode = workflows.putObject(entry.getKey().toString());
+            wfNode.put(OUTCOME_NODE, entry.getValue().getOutcome().name());
+            if (entry.getValue().getError() != null) {
+                wfNode.put(ERROR_NODE, entry.getValue().getError());
+            }
+            wfNode.put(MILLIS_NODE, entry.getValue().getMillis());
+        }
+        return node;
+    }
+
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Throttle of slot submissions to external services.
+ *
+ * During a step, the scheduler collects the scheduling candidates of all
+ * workflows, and only submits the ones selected by the throttle.  The others
+ * stay READY, and become candidates again in the next step.
+ *
+ * Three limits apply, all disabled by default:
+ *
+ * - A token bucket: submissions per second, with a maximum burst.
+ *   Tokens accumulate between steps, up to the burst.
+ *
+ * - A maximum number of RUNNING slots across all workflows.
+ *
+ * - Weighted fair queuing: when not all candidates can be submitted, the
+ *   workflows take turns, each getting a share proportional to its dispatch
+ *   weight.  Within a workflow, candidates keep the order of its scheduling
+ *   strategy.
+ *
+ * Fair queuing keeps a virtual finish time per workflow across steps.  Each
+ * submission handed out while throttled moves the workflow's finish time on
+ * by the inverse of its weight, and the workflow whose next submission can
+ * start first goes next.  So under steady throttling, workflows keep taking
+ * turns from one step to the next, instead of the first ones winning every
+ * step.  A workflow that had no candidates for a while starts again at the
+ * current virtual time, and doesn't get to catch up on the submissions it
+ * didn't ask for.
+ *
+ * The scheduler configuration keeps one throttle, which all its schedulers
+ * share, so that the limits and the fair queuing state survive reloads.
+ */
+public class SubmissionThrottle {
+
+    /**
+     * By default, the bucket holds the submissions of this many seconds.
+     */
+    public static final int DEFAULT_BURST_SECONDS = 60;
+
+    private static final Logger LOGGER = Logger.getLogger(SubmissionThrottle.class);
+
+    private final LongSupplier nanoClock;
+    private double submissionsPerSecond = 0;
+    private int burst = 0;
+    private int maxRunning = 0;
+    private double tokens = 0;
+    private long lastRefillNanos;
+    // Virtual time of fair queuing: the start of the last submission handed out
+    private double virtualTime = 0;
+    // Virtual finish time of each workflow's last submission, if after the virtual time
+    private final Map<WorkflowID, Double> finishTimes = new HashMap<>();
+    private final AtomicLong throttled = new AtomicLong();
+
+    /**
+     * Creates a throttle without limits.
+     */
+    public SubmissionThrottle(LongSupplier nanoClock) {
+        this(0, 0, 0, nanoClock);
+    }
+
+    /**
+     * Creates a throttle with the given limits, see configure().
+     *
+     * @param nanoClock The time source of the token bucket, in nanoseconds.
+     */
+    public SubmissionThrottle(double submissionsPerSecond, int burst, int maxRunning, LongSupplier nanoClock) {
+        this.nanoClock = Util.requireNonNull(nanoClock);
+        configure(submissionsPerSecond, burst, maxRunning);
+    }
+
+    /**
+     * Sets the limits.  Zero disables a limit.  A zero burst means a
+     * minute's worth of submissions (the usual step interval), at least one.
+     */
+    public synchronized void configure(double submissionsPerSecond, int burst, int maxRunning) {
+        if (submissionsPerSecond < 0) {
+            throw new IllegalArgumentException("Submissions per second must not be negative.");
+        }
+        if (burst < 0) {
+            throw new IllegalArgumentException("Submission burst must not be negative.");
+        }
+        if (maxRunning < 0) {
+            throw new IllegalArgumentException("Max running slots must not be negative.");
+        }
+        this.submissionsPerSecond = submissionsPerSecond;
+        this.burst = burst > 0 ? burst : Math.max(1, (int) Math.ceil(submissionsPerSecond * DEFAULT_BURST_SECONDS));
+        this.maxRunning = maxRunning;
+        this.tokens = this.burst;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    public synchronized double getSubmissionsPerSecond() {
+        return submissionsPerSecond;
+    }
+
+    public synchronized int getBurst() {
+        return burst;
+    }
+
+    public synchronized int getMaxRunning() {
+        return maxRunning;
+    }
+
+    /**
+     * Number of candidates not selected so far.
+     */
+    public long getThrottled() {
+        return throttled.get();
+    }
+
+    /**
+     * Selects the candidates to submit now.
+     *
+     * @param workflows The workflows, for their dispatch weights.
+     * @param candidates The scheduling candidates of each workflow, in the order of its strategy.
+     * @param running The number of slots currently RUNNING.
+     * @return The selected candidates of each workflow that has any, in candidate order.
+     */
+    public synchronized Map<WorkflowID, List<SlotState>> select(List<Workflow> workflows, Map<WorkflowID, List<SlotState>> candidates, int running) {
+        refill();
+        int total = 0;
+        for (List<SlotState> list : candidates.values()) {
+            total += list.size();
+        }
+        int allowed = total;
+        if (submissionsPerSecond > 0) {
+            allowed = Math.min(allowed, (int) tokens);
+        }
+        if (maxRunning > 0) {
+            allowed = Math.min(allowed, Math.max(0, maxRunning - running));
+        }
+        Map<WorkflowID, List<SlotState>> selected = allowed == total ? copy(workflows, candidates) : share(workflows, candidates, allowed);
+        if (submissionsPerSecond > 0) {
+            tokens -= allowed;
+        }
+        if (allowed < total) {
+            LOGGER.info("Throttling submissions: submitting " + allowed + " of " + total + " candidates, " + running + " slots running");
+            throttled.addAndGet(total - allowed);
+        }
+        return selected;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        if (submissionsPerSecond > 0) {
+            tokens = Math.min(burst, tokens + (now - lastRefillNanos) / 1e9 * submissionsPerSecond);
+        }
+        lastRefillNanos = now;
+    }
+
+    private static Map<WorkflowID, List<SlotState>> copy(List<Workflow> workflows, Map<WorkflowID, List<SlotState>> candidates) {
+        Map<WorkflowID, List<SlotState>> selected = new LinkedHashMap<>();
+        for (Workflow wf : workflows) {
+            List<SlotState> list = candidates.get(wf.getID());
+            if (list != null && !list.isEmpty()) {
+                selected.put(wf.getID(), new ArrayList<>(list));
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Hands out the allowed number of submissions one at a time, each to the
+     * workflow whose next submission has the earliest virtual start time, that
+     * is, the later of the virtual time and the workflow's finish time.  Ties
+     * go to the workflow with the higher weight, then to the one that comes first.
+     */
+    private Map<WorkflowID, List<SlotState>> share(List<Workflow> workflows, Map<WorkflowID, List<SlotState>> candidates, int allowed) {
+        Map<WorkflowID, List<SlotState>> selected = new LinkedHashMap<>();
+        Map<WorkflowID, Integer> taken = new HashMap<>();
+        for (int i = 0; i < allowed; i++) {
+            Workflow next = null;
+            double nextStart = 0;
+            double nextFinish = 0;
+            for (Workflow wf : workflows) {
+                List<SlotState> list = candidates.get(wf.getID());
+                if (list == null || taken.getOrDefault(wf.getID(), 0) >= list.size()) {
+                    continue;
+                }
+                double start = Math.max(virtualTime, finishTimes.getOrDefault(wf.getID(), 0.0));
+                double finish = start + 1.0 / wf.getDispatchWeight();
+                if (next == null || start < nextStart || (start == nextStart && finish < nextFinish)) {
+                    next = wf;
+                    nextStart = start;
+                    nextFinish = finish;
+                }
+            }
+            if (next == null) {
+                break;
+            }
+            int count = taken.getOrDefault(next.getID(), 0);
+            selected.computeIfAbsent(next.getID(), k -> new ArrayList<>()).add(candidates.get(next.getID()).get(count));
+            taken.put(next.getID(), count + 1);
+            virtualTime = nextStart;
+            finishTimes.put(next.getID(), nextFinish);
+        }
+        // Finish times that are not after the virtual time make no difference any more
+        finishTimes.values().removeIf(finish -> finish <= virtualTime);
+        return selected;
+    }
+
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.collective.celos.database.StateDatabaseConnection;
+import com.google.common.collect.Sets;
+
+/**
+ * Policy for checking the triggers of long-waiting slots less often.
+ *
+ * During the first BACKOFF_START_SECONDS after its scheduled time, the trigger
+ * of a WAITING slot is checked in every step.  Afterwards, each unsuccessful
+ * check sets a next check time for the slot, and steps before that time skip
+ * the slot's trigger.  The interval between checks starts at
+ * INITIAL_INTERVAL_SECONDS, and doubles with every further DOUBLING_SECONDS of
+ * waiting, up to the configured maximum.
+ *
+ * Next check times are stored in the state database, so they survive
+ * restarts.  They are removed when the slot stops waiting, and when the slot
+ * is rerun or its trigger status is requested, so that the next step checks
+ * the trigger again.  Slots are still timed out on time while backed off.
+ *
+ * Disabled (maximum interval zero) by default.  The scheduler configuration
+ * creates the policy from the scheduler options, and shares it with its
+ * schedulers and the servlets that reset next check times.
+ */
+public class TriggerBackoff {
+
+    /**
+     * How long after its scheduled time the trigger of a slot is checked in every step.
+     */
+    public static final int BACKOFF_START_SECONDS = 60 * 60;
+
+    /**
+     * The interval between checks right after BACKOFF_START_SECONDS.
+     */
+    public static final int INITIAL_INTERVAL_SECONDS = 60;
+
+    /**
+     * The interval doubles every this many seconds of further waiting.
+     */
+    public static final int DOUBLING_SECONDS = 60 * 60;
+
+    private final int maxIntervalSeconds;
+    private final AtomicLong skipped = new AtomicLong();
+
+    /**
+     * @param maxIntervalSeconds The maximum interval between checks.  Zero disables the backoff.
+     */
+    public TriggerBackoff(int maxIntervalSeconds) {
+        if (maxIntervalSeconds < 0) {
+            throw new IllegalArgumentException("Max trigger check interval must not be negative.");
+        }
+        this.maxIntervalSeconds = maxIntervalSeconds;
+    }
+
+    public int getMaxIntervalSeconds() {
+        return maxIntervalSeconds;
+    }
+
+    public boolean isEnabled() {
+        return maxIntervalSeconds > 0;
+    }
+
+    /**
+     * Number of trigger checks skipped so far.
+     */
+    public long getSkipped() {
+        return skipped.get();
+    }
+
+    /**
+     * Returns whether a slot with the given scheduled time has waited long enough to be backed off.
+     */
+    public boolean isBackingOff(ScheduledTime scheduledTime, ScheduledTime current) {
+        return isEnabled() && getWaitSeconds(scheduledTime, current) >= BACKOFF_START_SECONDS;
+    }
+
+    /**
+     * Returns the seconds until the next check of a slot with the given
+     * scheduled time that was unsuccessfully checked at the current time,
+     * or zero if it should be checked in the next step.
+     */
+    public int getIntervalSeconds(ScheduledTime scheduledTime, ScheduledTime current) {
+        if (!isBackingOff(scheduledTime, current)) {
+            return 0;
+        }
+        long doublings = (getWaitSeconds(scheduledTime, current) - BACKOFF_START_SECONDS) / DOUBLING_SECONDS;
+        if (doublings >= 31) {
+            return maxIntervalSeconds;
+        }
+        return (int) Math.min(maxIntervalSeconds, (long) INITIAL_INTERVAL_SECONDS << doublings);
+    }
+
+    /**
+     * Returns the WAITING slots among the given ones whose triggers shouldn't be
+     * checked at the current time.  Next check times of slots that aren't
+     * WAITING anymore are removed.
+     */
+    public Set<SlotID> getBackedOffSlots(WorkflowID id, Iterable<SlotState> slotStates, ScheduledTime current, StateDatabaseConnection connection) throws Exception {
+        Set<SlotID> backedOff = Sets.newHashSet();
+        if (!isEnabled()) {
+            return backedOff;
+        }
+        Set<ScheduledTime> waiting = Sets.newHashSet();
+        for (SlotState slotState : slotStates) {
+            if (slotState.getStatus().equals(SlotState.Status.WAITING)) {
+                waiting.add(slotState.getScheduledTime());
+            }
+        }
+        for (Map.Entry<ScheduledTime, ScheduledTime> entry : connection.getNextTriggerChecks(id).entrySet()) {
+            SlotID slotID = new SlotID(id, entry.getKey());
+            if (!waiting.contains(entry.getKey())) {
+                connection.clearNextTriggerCheck(slotID);
+            } else if (entry.getValue().isAfter(current)) {
+                backedOff.add(slotID);
+            }
+        }
+        skipped.addAndGet(backedOff.size());
+        return backedOff;
+    }
+
+    /**
+     * Sets the next check time of a slot whose trigger was unsuccessfully checked at the current time.
+     */
+    public void checked(SlotID slotID, ScheduledTime current, StateDatabaseConnection connection) throws Exception {
+        int interval = getIntervalSeconds(slotID.getScheduledTime(), current);
+        if (interval > 0) {
+            connection.setNextTriggerCheck(slotID, current.plusSeconds(interval));
+        }
+    }
+
+    /**
+     * Removes the next check time of the slot, so that its trigger is checked in the next step.
+     */
+    public void reset(SlotID slotID, StateDatabaseConnection connection) throws Exception {
+        if (isEnabled()) {
+            connection.clearNextTriggerCheck(slotID);
+        }
+    }
+
+    private static long getWaitSeconds(ScheduledTime scheduledTime, ScheduledTime current) {
+        return (current.getMillis() - scheduledTime.getMillis()) / 1000;
+    }
+
+}
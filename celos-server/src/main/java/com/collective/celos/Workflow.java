@@ -24,6 +24,7 @@ public class Workflow {
 
     public static final ScheduledTime DEFAULT_START_TIME = new ScheduledTime("1970-01-01T00:00:00.000Z");
     public static final int DEFAULT_WAIT_TIMEOUT_SECONDS = Integer.MAX_VALUE;
+    public static final int DEFAULT_DISPATCH_WEIGHT = 1;
     
     private final WorkflowID id;
     private final Schedule schedule;
@@ -34,6 +35,7 @@ public class Workflow {
     private final ScheduledTime startTime;
     private final int waitTimeoutSeconds;
     private final WorkflowInfo workflowInfo;
+    private final int dispatchWeight;
     
     public Workflow(WorkflowID id,
                     Schedule schedule,
@@ -44,6 +46,22 @@ public class Workflow {
                     ScheduledTime startTime,
                     int waitTimeoutSeconds,
                     WorkflowInfo workflowInfo) {
+        this(id, schedule, strategy, trigger, service, maxRetryCount, startTime, waitTimeoutSeconds, workflowInfo, DEFAULT_DISPATCH_WEIGHT);
+    }
+
+    public Workflow(WorkflowID id,
+                    Schedule schedule,
+                    SchedulingStrategy strategy,
+                    Trigger trigger,
+                    ExternalService service,
+                    int maxRetryCount,
+                    ScheduledTime startTime,
+                    int waitTimeoutSeconds,
+                    WorkflowInfo workflowInfo,
+                    int dispatchWeight) {
+        if (dispatchWeight <= 0) {
+            throw new IllegalArgumentException("Dispatch weight must greater then zero.");
+        }
         this.id = Util.requireNonNull(id);
         this.schedule = Util.requireNonNull(schedule);
         this.schedulingStrategy = Util.requireNonNull(strategy);
@@ -53,6 +71,7 @@ public class Workflow {
         this.startTime = Util.requireNonNull(startTime);
         this.workflowInfo = Util.requireNonNull(workflowInfo);
         this.waitTimeoutSeconds = waitTimeoutSeconds;
+        this.dispatchWeight = dispatchWeight;
     }
 
     public WorkflowID getID() {
@@ -90,4 +109,12 @@ public class Workflow {
     public int getWaitTimeoutSeconds() {
         return waitTimeoutSeconds;
     }
+
+    /**
+     * Share of submissions this workflow gets, relative to other workflows,
+     * when submissions are throttled.
+     */
+    public int getDispatchWeight() {
+        return dispatchWeight;
+    }
 }
@@ -16,6 +16,7 @@
 package com.collective.celos;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -27,7 +28,7 @@ public class WorkflowConfiguration {
     private final Map<WorkflowID, Workflow> workflows = new HashMap<>();
 
     public Collection<Workflow> getWorkflows() {
-        return workflows.values();
+        return Collections.unmodifiableCollection(workflows.values());
     }
     
     public Workflow findWorkflow(WorkflowID id) {
@@ -18,14 +18,24 @@ package com.collective.celos;
 import com.collective.celos.database.StateDatabaseConnection;
 import com.google.common.collect.Maps;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.log4j.Logger;
 import org.mozilla.javascript.Context;
 import org.mozilla.javascript.JavaScriptException;
+import org.mozilla.javascript.Script;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import org.mozilla.javascript.tools.shell.Global;
 
+import com.collective.celos.WorkflowFileCache.FileVersion;
+
 import java.io.*;
-import java.util.Collection;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
 
 /**
  * Reads a set of JS files from a directory and creates a WorkflowConfiguration.
@@ -35,60 +45,299 @@ import java.util.Map;
  * 
  * The helper script celos-scripts.js defines the utility function celos.defineWorkflow(object)
  * Reads a set of JS files from a directory and creates a WorkflowConfiguration.
+ *
+ * If the parser has a workflow file cache, files that didn't change since they
+ * were last evaluated (along with the defaults they import) aren't evaluated
+ * again; the workflows they defined last time are used instead.
+ *
+ * The files that are evaluated, as well as celos-scripts.js, are compiled
+ * through the compiled script cache, so that unchanged scripts are only
+ * compiled once.
+ *
+ * Files can be evaluated in parallel by several threads.  Each thread has
+ * its own JS context and scope per file.  The workflows of each file are
+ * collected while it is evaluated, and added to the configuration in the
+ * order of the files afterwards, so that duplicate IDs are detected as with
+ * sequential evaluation.  A file that fails to load, or takes longer than the
+ * parse timeout to evaluate, doesn't affect the other files.
  */
 public class WorkflowConfigurationParser {
 
     public static final String WORKFLOW_FILE_EXTENSION = "js";
+    public static final int DEFAULT_PARSE_THREADS = 1;
+    public static final int DEFAULT_PARSE_TIMEOUT_SECONDS = 60;
 
     private static final Logger LOGGER = Logger.getLogger(WorkflowConfigurationParser.class);
     private static final String CELOS_SCRIPTS_FILENAME = "celos-scripts.js";
 
+    private static String celosScriptsSource;
+
     private final WorkflowConfiguration cfg = new WorkflowConfiguration();
-    private final JSConfigParser jsConfigParser = new JSConfigParser();
+    private final int jsOptimizationLevel;
+    private final int threads;
+    private final int timeoutSeconds;
+    private final ThreadLocal<JSConfigParser> jsConfigParsers;
+    private final CompiledScriptCache scriptCache = CompiledScriptCache.getInstance();
     private final File defaultsDir;
     private final Map<String, String> additionalJsVariables;
+    private final WorkflowFileCache cache;
+    private final AdaptiveConcurrency adaptiveConcurrency;
+    private final Map<String, Object> additionalJsObjects;
+    // Versions of the workflow and defaults files checked during this load
+    private final Map<File, FileVersion> currentVersions = new HashMap<>();
+    // What the file that is being evaluated by this thread did
+    private final ThreadLocal<FileResult> currentFile = new ThreadLocal<>();
 
     public WorkflowConfigurationParser(File defaultsDir, Map<String, String> additionalJsVariables) throws Exception {
+        this(defaultsDir, additionalJsVariables, null);
+    }
+
+    /**
+     * @param cache The workflow file cache to use, or null to always evaluate all files.
+     */
+    public WorkflowConfigurationParser(File defaultsDir, Map<String, String> additionalJsVariables, WorkflowFileCache cache) throws Exception {
+        this(defaultsDir, additionalJsVariables, cache, JSConfigParser.DEFAULT_OPTIMIZATION_LEVEL, DEFAULT_PARSE_THREADS, DEFAULT_PARSE_TIMEOUT_SECONDS,
+                new AdaptiveConcurrency(System::currentTimeMillis));
+    }
+
+    /**
+     * @param cache The workflow file cache to use, or null to always evaluate all files.
+     * @param optimizationLevel The Rhino optimization level used to compile the files.
+     * @param threads The number of threads that evaluate files.
+     * @param timeoutSeconds The time after which the evaluation of a file is aborted.  Zero disables the timeout.
+     * @param adaptiveConcurrency The concurrency limits used by adaptive scheduling strategies.
+     */
+    public WorkflowConfigurationParser(File defaultsDir, Map<String, String> additionalJsVariables, WorkflowFileCache cache,
+                                       int optimizationLevel, int threads, int timeoutSeconds,
+                                       AdaptiveConcurrency adaptiveConcurrency) throws Exception {
+        this(defaultsDir, additionalJsVariables, cache, optimizationLevel, threads, timeoutSeconds, adaptiveConcurrency,
+                Collections.<String, Object>emptyMap());
+    }
+
+    /**
+     * @param additionalJsObjects Java objects put in the scope of each file, in addition to the
+     *        JS variables.  The workflow file cache doesn't tell them apart, so a cache must
+     *        only be used with the same objects.
+     */
+    public WorkflowConfigurationParser(File defaultsDir, Map<String, String> additionalJsVariables, WorkflowFileCache cache,
+                                       int optimizationLevel, int threads, int timeoutSeconds,
+                                       AdaptiveConcurrency adaptiveConcurrency, Map<String, Object> additionalJsObjects) throws Exception {
+        JSConfigParser.checkOptimizationLevel(optimizationLevel);
+        if (threads <= 0) {
+            throw new IllegalArgumentException("Parse threads must greater then zero.");
+        }
+        if (timeoutSeconds < 0) {
+            throw new IllegalArgumentException("Parse timeout must not be negative.");
+        }
         this.defaultsDir = Util.requireNonNull(defaultsDir);
         this.additionalJsVariables = additionalJsVariables;
+        this.cache = cache;
+        this.jsOptimizationLevel = optimizationLevel;
+        this.threads = threads;
+        this.timeoutSeconds = timeoutSeconds;
+        this.adaptiveConcurrency = Util.requireNonNull(adaptiveConcurrency);
+        this.additionalJsObjects = Util.requireNonNull(additionalJsObjects);
+        this.jsConfigParsers = ThreadLocal.withInitial(() -> new JSConfigParser(optimizationLevel));
+    }
+
+    public int getOptimizationLevel() {
+        return jsOptimizationLevel;
+    }
+
+    public int getParseThreads() {
+        return threads;
+    }
+
+    public int getParseTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    public AdaptiveConcurrency getAdaptiveConcurrency() {
+        return adaptiveConcurrency;
     }
 
+    /**
+     * Register reads of files evaluated in parallel share the given connection.
+     */
     public WorkflowConfigurationParser parseConfiguration(File workflowsDir, StateDatabaseConnection connection) {
         LOGGER.info("Using workflows directory: " + workflowsDir);
         LOGGER.info("Using defaults directory: " + defaultsDir);
+        long startMillis = System.currentTimeMillis();
         Collection<File> files = FileUtils.listFiles(workflowsDir, new String[] { WORKFLOW_FILE_EXTENSION }, false);
-        for (File f : files) {
-            try {
-                parseFile(f, connection);
-            } catch(Exception e) {
-                LOGGER.error("Failed to load file: " + f + ": " + e.getMessage(), e);
+        Map<File, List<Workflow>> unchanged = new HashMap<>();
+        Map<File, Future<FileResult>> evaluated = new HashMap<>();
+        ExecutorService executor = threads > 1
+                ? Executors.newFixedThreadPool(threads, new ThreadFactoryBuilder().setNameFormat("celos-parse-%d").setDaemon(true).build())
+                : MoreExecutors.sameThreadExecutor();
+        try {
+            for (File f : files) {
+                try {
+                    List<Workflow> workflows = cache == null ? null : cache.getWorkflows(f, additionalJsVariables, currentVersions);
+                    if (workflows == null) {
+                        evaluated.put(f, executor.submit(() -> evaluateFile(f, connection)));
+                    } else {
+                        unchanged.put(f, workflows);
+                    }
+                } catch(Exception e) {
+                    LOGGER.error("Failed to load file: " + f + ": " + e.getMessage(), e);
+                }
+            }
+            for (File f : files) {
+                try {
+                    if (unchanged.containsKey(f)) {
+                        for (Workflow wf : unchanged.get(f)) {
+                            cfg.addWorkflow(wf);
+                        }
+                    } else if (evaluated.containsKey(f)) {
+                        addFileResult(f, evaluated.get(f));
+                    }
+                } catch(Exception e) {
+                    LOGGER.error("Failed to load file: " + f + ": " + e.getMessage(), e);
+                }
             }
+        } finally {
+            executor.shutdownNow();
         }
+        if (cache != null) {
+            cache.retainAll(files);
+        }
+        LOGGER.info("Loaded " + files.size() + " files in " + (System.currentTimeMillis() - startMillis) + "ms, evaluated: " + evaluated.size()
+                + ", unchanged: " + unchanged.size() + ", threads: " + threads);
         return this;
     }
 
     void parseFile(File f, StateDatabaseConnection connection) throws Exception {
+        FileResult result;
+        try {
+            result = evaluateFile(f, connection);
+        } catch (Exception e) {
+            removeFromCache(f);
+            throw e;
+        }
+        addFileResult(f, result);
+    }
+
+    private void addFileResult(File f, Future<FileResult> future) throws Exception {
+        FileResult result;
+        try {
+            result = future.get();
+        } catch (ExecutionException e) {
+            removeFromCache(f);
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+        addFileResult(f, result);
+    }
+
+    /**
+     * Adds the workflows of an evaluated file to the configuration, and caches them.
+     */
+    private void addFileResult(File f, FileResult result) throws Exception {
+        try {
+            for (Workflow wf : result.workflows) {
+                cfg.addWorkflow(wf);
+            }
+        } catch (Exception e) {
+            removeFromCache(f);
+            throw e;
+        }
+        if (cache != null) {
+            Map<File, FileVersion> defaultsVersions = getDefaultsVersions(result.defaults);
+            if (result.version == null || defaultsVersions == null || result.readsRegisters) {
+                cache.remove(f);
+            } else {
+                cache.put(f, result.version, defaultsVersions, additionalJsVariables, result.workflows);
+            }
+        }
+    }
+
+    private void removeFromCache(File f) {
+        if (cache != null) {
+            cache.remove(f);
+        }
+    }
+
+    /**
+     * Evaluates a file, collecting the workflows it defines.  Called by the parse threads.
+     */
+    private FileResult evaluateFile(File f, StateDatabaseConnection connection) throws Exception {
         LOGGER.info("Loading file: " + f);
-        FileReader fileReader = new FileReader(f);
-        String fileName = f.toString();
-        evaluateReader(fileReader, fileName, connection);
+        long startMillis = System.currentTimeMillis();
+        FileResult result = new FileResult(cache == null ? null : getCurrentVersion(f));
+        JSConfigParser jsConfigParser = jsConfigParsers.get();
+        currentFile.set(result);
+        if (timeoutSeconds > 0) {
+            jsConfigParser.setTimeLimit(timeoutSeconds * 1000L);
+        }
+        try (FileReader fileReader = new FileReader(f)) {
+            String fileName = f.toString();
+            evaluateReader(fileReader, fileName, connection);
+        } catch (JSConfigParser.TimeLimitExceededError e) {
+            throw new TimeoutException("Evaluation took longer than " + timeoutSeconds + " seconds.");
+        } finally {
+            currentFile.remove();
+            jsConfigParser.clearTimeLimit();
+        }
+        LOGGER.info("Loaded file: " + f + " in " + (System.currentTimeMillis() - startMillis) + "ms");
+        return result;
+    }
+
+    private synchronized FileVersion getCurrentVersion(File f) throws IOException {
+        if (!currentVersions.containsKey(f)) {
+            currentVersions.put(f, cache.getVersion(f));
+        }
+        return currentVersions.get(f);
+    }
+
+    /**
+     * Returns the versions of the given defaults files, or null if one of them has disappeared.
+     */
+    private Map<File, FileVersion> getDefaultsVersions(Set<File> defaultsFiles) throws IOException {
+        Map<File, FileVersion> versions = new HashMap<>();
+        for (File defaultsFile : defaultsFiles) {
+            FileVersion version = getCurrentVersion(defaultsFile);
+            if (version == null) {
+                return null;
+            }
+            versions.put(defaultsFile, version);
+        }
+        return versions;
     }
 
     Object evaluateReader(Reader r, String fileName, StateDatabaseConnection connection) throws Exception {
+        JSConfigParser jsConfigParser = jsConfigParsers.get();
 
         Global scope = jsConfigParser.createGlobalScope();
 
         Object wrappedThis = Context.javaToJS(this, scope);
         Map jsProperties = Maps.newHashMap(additionalJsVariables);
+        jsProperties.putAll(additionalJsObjects);
         jsProperties.put("celosWorkflowConfigurationParser", wrappedThis);
         jsProperties.put("celosConnection", connection);
+        jsProperties.put("celosAdaptiveConcurrency", adaptiveConcurrency);
 
         jsConfigParser.putPropertiesInScope(jsProperties, scope);
 
-        InputStream scripts = WorkflowConfigurationParser.class.getResourceAsStream(CELOS_SCRIPTS_FILENAME);
-        jsConfigParser.evaluateReader(scope, new InputStreamReader(scripts), CELOS_SCRIPTS_FILENAME);
+        evaluateSource(scope, getCelosScriptsSource(), CELOS_SCRIPTS_FILENAME);
 
-        return jsConfigParser.evaluateReader(scope, r, fileName);
+        return evaluateSource(scope, IOUtils.toString(r), fileName);
+    }
+
+    private Object evaluateSource(Global scope, String source, String fileName) {
+        JSConfigParser jsConfigParser = jsConfigParsers.get();
+        Script script = scriptCache.getScript(jsConfigParser, source, fileName);
+        return jsConfigParser.executeScript(scope, script);
+    }
+
+    private static synchronized String getCelosScriptsSource() throws IOException {
+        if (celosScriptsSource == null) {
+            try (InputStream scripts = WorkflowConfigurationParser.class.getResourceAsStream(CELOS_SCRIPTS_FILENAME)) {
+                celosScriptsSource = IOUtils.toString(scripts);
+            }
+        }
+        return celosScriptsSource;
     }
 
     public WorkflowConfiguration getWorkflowConfiguration() {
@@ -98,13 +347,51 @@ public class WorkflowConfigurationParser {
     public void importDefaultsIntoScope(String label, Global scope) throws IOException {
         File defaultsFile = new File(defaultsDir, label + "." + WORKFLOW_FILE_EXTENSION);
         LOGGER.info("Loading defaults: " + defaultsFile);
-        FileReader fileReader = new FileReader(defaultsFile);
+        FileResult file = currentFile.get();
+        if (file != null) {
+            file.defaults.add(defaultsFile);
+        }
         String fileName = defaultsFile.toString();
-        jsConfigParser.evaluateReader(scope, fileReader, fileName);
+        evaluateSource(scope, FileUtils.readFileToString(defaultsFile), fileName);
     }
 
+    /**
+     * Called by celos.defineWorkflow.  Workflows defined while evaluating a
+     * file are added to the configuration once the file has been evaluated.
+     */
     public void addWorkflow(Workflow wf) {
-        cfg.addWorkflow(wf);
+        FileResult file = currentFile.get();
+        if (file == null) {
+            cfg.addWorkflow(wf);
+        } else {
+            file.workflows.add(wf);
+        }
+    }
+
+    /**
+     * Called when a file reads registers, which makes its workflows depend on
+     * the state database, so that it is always evaluated again.
+     */
+    public void noteRegisterAccess() {
+        FileResult file = currentFile.get();
+        if (file != null) {
+            file.readsRegisters = true;
+        }
+    }
+
+    /**
+     * What evaluating a file did.
+     */
+    private static class FileResult {
+
+        private final FileVersion version;
+        private final List<Workflow> workflows = new ArrayList<>();
+        private final Set<File> defaults = new HashSet<>();
+        private boolean readsRegisters;
+
+        private FileResult(FileVersion version) {
+            this.version = version;
+        }
     }
 
 }
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.io.FileUtils;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.hash.Hashing;
+
+/**
+ * Memo of the workflows defined by each workflow file, kept by the scheduler
+ * configuration across reloads.
+ *
+ * A workflow file only needs to be evaluated again if its content, the
+ * content of one of the defaults files it imported, or the additional JS
+ * variables changed.  Otherwise, the workflows it defined last time are
+ * reused.
+ *
+ * A file's content is identified by its hash.  The hash is only computed
+ * again if the file's modification time or length changed, so that an
+ * unchanged configuration is checked without reading any files.
+ *
+ * Files that read registers, and files that failed to load, are not memoized,
+ * and are always evaluated again.
+ */
+public class WorkflowFileCache {
+
+    private final Map<File, Entry> entries = new HashMap<>();
+    // Last seen versions of workflow and defaults files
+    private final Map<File, FileVersion> versions = new HashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public WorkflowFileCache() {
+    }
+
+    /**
+     * Returns the current version of the file, or null if it doesn't exist.
+     */
+    public synchronized FileVersion getVersion(File file) throws IOException {
+        FileVersion previous = versions.get(file);
+        FileVersion current = FileVersion.of(file, previous);
+        if (current == null) {
+            versions.remove(file);
+        } else {
+            versions.put(file, current);
+        }
+        return current;
+    }
+
+    /**
+     * Returns the workflows defined by the file, or null if it needs to be evaluated.
+     *
+     * @param currentVersions The versions of the workflow and defaults files in
+     *        the configuration that is being loaded, filled in as needed, so
+     *        that each file is checked at most once per load.
+     */
+    public synchronized List<Workflow> getWorkflows(File file, Map<String, String> additionalJsVariables, Map<File, FileVersion> currentVersions) throws IOException {
+        Entry entry = entries.get(file);
+        if (entry == null || !entry.additionalJsVariables.equals(additionalJsVariables) || !isCurrent(file, entry.version, currentVersions)) {
+            misses.incrementAndGet();
+            return null;
+        }
+        for (Map.Entry<File, FileVersion> defaults : entry.defaultsVersions.entrySet()) {
+            if (!isCurrent(defaults.getKey(), defaults.getValue(), currentVersions)) {
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+        hits.incrementAndGet();
+        return entry.workflows;
+    }
+
+    private boolean isCurrent(File file, FileVersion version, Map<File, FileVersion> currentVersions) throws IOException {
+        if (!currentVersions.containsKey(file)) {
+            currentVersions.put(file, getVersion(file));
+        }
+        return version.equals(currentVersions.get(file));
+    }
+
+    /**
+     * Remembers the workflows defined by the file, when it was evaluated at the given versions.
+     */
+    public synchronized void put(File file, FileVersion version, Map<File, FileVersion> defaultsVersions, Map<String, String> additionalJsVariables, List<Workflow> workflows) {
+        entries.put(file, new Entry(version, defaultsVersions, additionalJsVariables, workflows));
+    }
+
+    public synchronized void remove(File file) {
+        entries.remove(file);
+    }
+
+    /**
+     * Drops the entries of all workflow files not in the given ones.
+     */
+    public synchronized void retainAll(Collection<File> files) {
+        entries.keySet().retainAll(files);
+        Set<File> used = new HashSet<>(files);
+        for (Entry entry : entries.values()) {
+            used.addAll(entry.defaultsVersions.keySet());
+        }
+        versions.keySet().retainAll(used);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        versions.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * Number of workflow files whose workflows were reused.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of workflow files that needed to be evaluated.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private static class Entry {
+
+        private final FileVersion version;
+        private final Map<File, FileVersion> defaultsVersions;
+        private final Map<String, String> additionalJsVariables;
+        private final List<Workflow> workflows;
+
+        private Entry(FileVersion version, Map<File, FileVersion> defaultsVersions, Map<String, String> additionalJsVariables, List<Workflow> workflows) {
+            this.version = Util.requireNonNull(version);
+            this.defaultsVersions = ImmutableMap.copyOf(defaultsVersions);
+            this.additionalJsVariables = ImmutableMap.copyOf(additionalJsVariables);
+            this.workflows = ImmutableList.copyOf(workflows);
+        }
+    }
+
+    /**
+     * The content hash of a file, along with the modification time and length it had when hashed.
+     */
+    public static class FileVersion {
+
+        private final long lastModified;
+        private final long length;
+        private final String hash;
+
+        FileVersion(long lastModified, long length, String hash) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.hash = Util.requireNonNull(hash);
+        }
+
+        /**
+         * Returns the version of the file, or null if it doesn't exist.  The
+         * file is only hashed if its modification time or length differ from
+         * the previous version, which may be null.
+         */
+        public static FileVersion of(File file, FileVersion previous) throws IOException {
+            if (!file.isFile()) {
+                return null;
+            }
+            long lastModified = file.lastModified();
+            long length = file.length();
+            if (previous != null && previous.lastModified == lastModified && previous.length == length) {
+                return previous;
+            }
+            String hash = Hashing.sha1().hashBytes(FileUtils.readFileToByteArray(file)).toString();
+            return new FileVersion(lastModified, length, hash);
+        }
+
+        public String getHash() {
+            return hash;
+        }
+
+        /**
+         * Versions are equal if the content is, even if the file was touched.
+         */
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof FileVersion && hash.equals(((FileVersion) o).hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return hash;
+        }
+    }
+
+}
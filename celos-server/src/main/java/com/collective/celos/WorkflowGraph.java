@@ -0,0 +1,211 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.*;
+
+import com.collective.celos.trigger.AndTrigger;
+import com.collective.celos.trigger.NotTrigger;
+import com.collective.celos.trigger.OffsetTrigger;
+import com.collective.celos.trigger.OrTrigger;
+import com.collective.celos.trigger.SuccessTrigger;
+import com.collective.celos.trigger.Trigger;
+
+/**
+ * The dependencies between the workflows of a configuration.
+ *
+ * A workflow depends on the workflows whose success its trigger checks (also
+ * within and, or, not, and offset triggers), and on the workflow whose
+ * schedule it uses.  Dependencies of a workflow on itself and on workflows
+ * that don't exist are ignored.
+ *
+ * Workflows are arranged into levels, so that each workflow comes after all
+ * workflows it depends on.  Workflows within a level don't depend on each
+ * other.  Workflows that depend on each other in a cycle can't be ordered;
+ * they're reported as a cycle and placed in the same level.
+ */
+public class WorkflowGraph {
+
+    private final Map<WorkflowID, Workflow> workflows = new TreeMap<>();
+    private final Map<WorkflowID, SortedSet<WorkflowID>> upstream = new HashMap<>();
+    private final Map<WorkflowID, SortedSet<WorkflowID>> downstream = new HashMap<>();
+    private final List<List<Workflow>> levels = new ArrayList<>();
+    private final List<List<WorkflowID>> cycles = new ArrayList<>();
+
+    public WorkflowGraph(WorkflowConfiguration configuration) {
+        for (Workflow wf : configuration.getWorkflows()) {
+            workflows.put(wf.getID(), wf);
+        }
+        for (WorkflowID id : workflows.keySet()) {
+            downstream.put(id, new TreeSet<>());
+        }
+        for (Workflow wf : workflows.values()) {
+            SortedSet<WorkflowID> ids = getUpstreamWorkflowIDs(wf);
+            ids.remove(wf.getID());
+            ids.retainAll(workflows.keySet());
+            upstream.put(wf.getID(), ids);
+            for (WorkflowID up : ids) {
+                downstream.get(up).add(wf.getID());
+            }
+        }
+        arrange(findComponents());
+    }
+
+    /**
+     * Returns the IDs of the workflows the given workflow depends on.
+     */
+    public static SortedSet<WorkflowID> getUpstreamWorkflowIDs(Workflow wf) {
+        SortedSet<WorkflowID> ids = new TreeSet<>();
+        addTriggerWorkflowIDs(wf.getTrigger(), ids);
+        if (wf.getSchedule() instanceof DependentSchedule) {
+            ids.add(((DependentSchedule) wf.getSchedule()).getOtherWorkflowID());
+        }
+        return ids;
+    }
+
+    private static void addTriggerWorkflowIDs(Trigger trigger, Set<WorkflowID> ids) {
+        if (trigger instanceof SuccessTrigger) {
+            ids.add(((SuccessTrigger) trigger).getTriggerWorkflowId());
+        } else if (trigger instanceof AndTrigger) {
+            for (Trigger t : ((AndTrigger) trigger).getTriggers()) {
+                addTriggerWorkflowIDs(t, ids);
+            }
+        } else if (trigger instanceof OrTrigger) {
+            for (Trigger t : ((OrTrigger) trigger).getTriggers()) {
+                addTriggerWorkflowIDs(t, ids);
+            }
+        } else if (trigger instanceof NotTrigger) {
+            addTriggerWorkflowIDs(((NotTrigger) trigger).getTrigger(), ids);
+        } else if (trigger instanceof OffsetTrigger) {
+            addTriggerWorkflowIDs(((OffsetTrigger) trigger).getTrigger(), ids);
+        }
+    }
+
+    /**
+     * Returns the workflows in levels, each workflow coming after the workflows it depends on.
+     */
+    public List<List<Workflow>> getLevels() {
+        return levels;
+    }
+
+    /**
+     * Returns all workflows, each workflow coming after the workflows it depends on.
+     */
+    public List<Workflow> getOrderedWorkflows() {
+        List<Workflow> ordered = new ArrayList<>();
+        for (List<Workflow> level : levels) {
+            ordered.addAll(level);
+        }
+        return ordered;
+    }
+
+    /**
+     * Returns the groups of workflows that depend on each other in a cycle.
+     */
+    public List<List<WorkflowID>> getCycles() {
+        return cycles;
+    }
+
+    public SortedSet<WorkflowID> getUpstream(WorkflowID id) {
+        return upstream.get(id);
+    }
+
+    /**
+     * Returns the IDs of the workflows that depend on the given one.
+     */
+    public SortedSet<WorkflowID> getDownstream(WorkflowID id) {
+        return downstream.get(id);
+    }
+
+    /**
+     * Finds the strongly connected components with Tarjan's algorithm.
+     * Since edges point from a workflow to its upstream workflows, components
+     * are found upstream first.
+     */
+    private List<List<WorkflowID>> findComponents() {
+        Tarjan tarjan = new Tarjan();
+        for (WorkflowID id : workflows.keySet()) {
+            if (!tarjan.index.containsKey(id)) {
+                tarjan.visit(id);
+            }
+        }
+        return tarjan.components;
+    }
+
+    private void arrange(List<List<WorkflowID>> components) {
+        Map<WorkflowID, Integer> levelOf = new HashMap<>();
+        for (List<WorkflowID> component : components) {
+            int level = 0;
+            for (WorkflowID id : component) {
+                for (WorkflowID up : upstream.get(id)) {
+                    Integer upLevel = levelOf.get(up);
+                    if (upLevel != null) {
+                        level = Math.max(level, upLevel + 1);
+                    }
+                }
+            }
+            for (WorkflowID id : component) {
+                levelOf.put(id, level);
+            }
+            if (component.size() > 1) {
+                Collections.sort(component);
+                cycles.add(component);
+            }
+        }
+        for (Map.Entry<WorkflowID, Workflow> entry : workflows.entrySet()) {
+            int level = levelOf.get(entry.getKey());
+            while (levels.size() <= level) {
+                levels.add(new ArrayList<>());
+            }
+            levels.get(level).add(entry.getValue());
+        }
+    }
+
+    private class Tarjan {
+
+        private final Map<WorkflowID, Integer> index = new HashMap<>();
+        private final Map<WorkflowID, Integer> lowLink = new HashMap<>();
+        private final Deque<WorkflowID> stack = new ArrayDeque<>();
+        private final Set<WorkflowID> onStack = new HashSet<>();
+        private final List<List<WorkflowID>> components = new ArrayList<>();
+
+        private void visit(WorkflowID id) {
+            index.put(id, index.size());
+            lowLink.put(id, index.get(id));
+            stack.push(id);
+            onStack.add(id);
+            for (WorkflowID up : upstream.get(id)) {
+                if (!index.containsKey(up)) {
+                    visit(up);
+                    lowLink.put(id, Math.min(lowLink.get(id), lowLink.get(up)));
+                } else if (onStack.contains(up)) {
+                    lowLink.put(id, Math.min(lowLink.get(id), index.get(up)));
+                }
+            }
+            if (lowLink.get(id).equals(index.get(id))) {
+                List<WorkflowID> component = new ArrayList<>();
+                WorkflowID member;
+                do {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    component.add(member);
+                } while (!member.equals(id));
+                components.add(component);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,280 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.database;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.collective.celos.*;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Decorator that keeps the slot states of the sliding window in memory.
+ *
+ * The slot states of a workflow are loaded from the backing database the first
+ * time they're requested: all slot states from the requested start time onwards,
+ * regardless of the requested end time, since the first request may come from
+ * a servlet that looks at the past.  From then on, the cache knows all slot
+ * states of the workflow from the start of the loaded range onwards: slot state
+ * writes go through the cache to the backing database, and update the cache, too.
+ *
+ * This requires that the cache is the only writer to the backing database.
+ *
+ * Slots older than the sliding window (counted back from the latest requested
+ * end time) are evicted.  Requests for slots before the cached range go to the
+ * backing database.
+ *
+ * Active slot states and slot times are filtered from the cached slot states.
+ *
+ * All other data (rerun marks, paused flags, next trigger checks, registers)
+ * is not cached.
+ */
+public class CachingStateDatabase implements StateDatabase {
+
+    private final StateDatabase backing;
+    private final int slidingWindowHours;
+    private final ConcurrentMap<WorkflowID, WorkflowSlots> workflows = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    public CachingStateDatabase(StateDatabase backing, int slidingWindowHours) {
+        if (slidingWindowHours <= 0) {
+            throw new IllegalArgumentException("Sliding window hours must greater then zero.");
+        }
+        this.backing = Util.requireNonNull(backing);
+        this.slidingWindowHours = slidingWindowHours;
+    }
+
+    @Override
+    public StateDatabaseConnection openConnection() throws Exception {
+        return new CachingStateDatabaseConnection(backing.openConnection());
+    }
+
+    public StateDatabase getBackingDatabase() {
+        return backing;
+    }
+
+    /**
+     * Number of slot state reads answered from memory.
+     */
+    public long getHits() {
+        return hits.get();
+    }
+
+    /**
+     * Number of slot state reads that went to the backing database.
+     */
+    public long getMisses() {
+        return misses.get();
+    }
+
+    private WorkflowSlots getWorkflowSlots(WorkflowID id) {
+        return workflows.computeIfAbsent(id, WorkflowSlots::new);
+    }
+
+    /**
+     * The cached slot states of a single workflow, from coveredStart onwards.
+     * A null coveredStart means nothing has been loaded yet.
+     */
+    private class WorkflowSlots {
+
+        private final SlotStates slots;
+        private ScheduledTime coveredStart;
+        private ScheduledTime latestEnd;
+
+        private WorkflowSlots(WorkflowID id) {
+            this.slots = new SlotStates(id);
+        }
+
+        private boolean covers(ScheduledTime time) {
+            return coveredStart != null && !time.isBefore(coveredStart);
+        }
+
+        /**
+         * Loads all slot states from start onwards, unless something has been loaded already.
+         * Returns false if the slots from start onwards are not in the cache.
+         */
+        private boolean load(WorkflowID id, ScheduledTime start, StateDatabaseConnection connection) throws Exception {
+            if (coveredStart == null) {
+                misses.incrementAndGet();
+                slots.addAll(connection.getSlotStatesFrom(id, start).values());
+                coveredStart = start;
+                return true;
+            } else if (!covers(start)) {
+                misses.incrementAndGet();
+                return false;
+            } else {
+                hits.incrementAndGet();
+                return true;
+            }
+        }
+
+        synchronized SlotStates getSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end, StateDatabaseConnection connection) throws Exception {
+            if (!start.isBefore(end)) {
+                return new SlotStates(id, 0);
+            }
+            if (!load(id, start, connection)) {
+                return connection.getSlotStates(id, start, end);
+            }
+            SlotStates result = slots.range(start, end);
+            evict(end);
+            return result;
+        }
+
+        synchronized SlotStates getSlotStatesFrom(WorkflowID id, ScheduledTime start, StateDatabaseConnection connection) throws Exception {
+            if (!load(id, start, connection)) {
+                return connection.getSlotStatesFrom(id, start);
+            }
+            return slots.tail(start);
+        }
+
+        synchronized SlotState getSlotState(SlotID slot, StateDatabaseConnection connection) throws Exception {
+            if (covers(slot.getScheduledTime())) {
+                hits.incrementAndGet();
+                return slots.get(slot.getScheduledTime());
+            } else {
+                misses.incrementAndGet();
+                return connection.getSlotState(slot);
+            }
+        }
+
+        synchronized void putSlotState(SlotState state) {
+            // Slots written before loading are loaded from the backing database
+            if (covers(state.getScheduledTime())) {
+                slots.add(state);
+            }
+        }
+
+        /**
+         * Drops slots older than the sliding window, counted back from the latest end time.
+         */
+        private void evict(ScheduledTime end) {
+            if (latestEnd == null || end.isAfter(latestEnd)) {
+                latestEnd = end;
+            }
+            ScheduledTime windowStart = latestEnd.minusHours(slidingWindowHours);
+            if (windowStart.isAfter(coveredStart)) {
+                slots.removeBefore(windowStart);
+                coveredStart = windowStart;
+            }
+        }
+    }
+
+    private class CachingStateDatabaseConnection implements StateDatabaseConnection {
+
+        private final StateDatabaseConnection connection;
+
+        private CachingStateDatabaseConnection(StateDatabaseConnection connection) {
+            this.connection = Util.requireNonNull(connection);
+        }
+
+        @Override
+        public SlotStates getSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
+            return getWorkflowSlots(id).getSlotStates(id, start, end, connection);
+        }
+
+        @Override
+        public SlotStates getSlotStatesFrom(WorkflowID id, ScheduledTime start) throws Exception {
+            return getWorkflowSlots(id).getSlotStatesFrom(id, start, connection);
+        }
+
+        @Override
+        public SlotState getSlotState(SlotID slot) throws Exception {
+            return getWorkflowSlots(slot.getWorkflowID()).getSlotState(slot, connection);
+        }
+
+        @Override
+        public void putSlotState(SlotState state) throws Exception {
+            connection.putSlotState(state);
+            getWorkflowSlots(state.getSlotID().getWorkflowID()).putSlotState(state);
+        }
+
+        @Override
+        public void markSlotForRerun(SlotID slot, ScheduledTime now) throws Exception {
+            connection.markSlotForRerun(slot, now);
+        }
+
+        @Override
+        public SortedSet<ScheduledTime> getTimesMarkedForRerun(WorkflowID workflowID, ScheduledTime now) throws Exception {
+            return connection.getTimesMarkedForRerun(workflowID, now);
+        }
+
+        @Override
+        public boolean isPaused(WorkflowID workflowID) throws Exception {
+            return connection.isPaused(workflowID);
+        }
+
+        @Override
+        public void setPaused(WorkflowID workflowID, boolean paused) throws Exception {
+            connection.setPaused(workflowID, paused);
+        }
+
+        @Override
+        public Map<ScheduledTime, ScheduledTime> getNextTriggerChecks(WorkflowID workflowID) throws Exception {
+            return connection.getNextTriggerChecks(workflowID);
+        }
+
+        @Override
+        public void setNextTriggerCheck(SlotID slot, ScheduledTime nextCheck) throws Exception {
+            connection.setNextTriggerCheck(slot, nextCheck);
+        }
+
+        @Override
+        public void clearNextTriggerCheck(SlotID slot) throws Exception {
+            connection.clearNextTriggerCheck(slot);
+        }
+
+        @Override
+        public JsonNode getRegister(BucketID bucket, RegisterKey key) throws Exception {
+            return connection.getRegister(bucket, key);
+        }
+
+        @Override
+        public Set<RegisterKey> getRegisterKeys(BucketID bucket, String prefix) throws Exception {
+            return connection.getRegisterKeys(bucket, prefix);
+        }
+
+        @Override
+        public void putRegister(BucketID bucket, RegisterKey key, JsonNode value) throws Exception {
+            connection.putRegister(bucket, key, value);
+        }
+
+        @Override
+        public void deleteRegister(BucketID bucket, RegisterKey key) throws Exception {
+            connection.deleteRegister(bucket, key);
+        }
+
+        @Override
+        public void deleteRegistersWithPrefix(BucketID bucket, String prefix) throws Exception {
+            connection.deleteRegistersWithPrefix(bucket, prefix);
+        }
+
+        @Override
+        public Iterable<Map.Entry<RegisterKey, JsonNode>> getAllRegisters(BucketID bucket) throws Exception {
+            return connection.getAllRegisters(bucket);
+        }
+
+        @Override
+        public void close() throws Exception {
+            connection.close();
+        }
+    }
+
+}
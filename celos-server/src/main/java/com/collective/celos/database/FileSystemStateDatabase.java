@@ -17,8 +17,12 @@ package com.collective.celos.database;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.collective.celos.*;
 import com.google.common.collect.Lists;
@@ -29,7 +33,6 @@ import org.apache.log4j.Logger;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
-import com.google.common.collect.Maps;
 import org.joda.time.DateTime;
 import org.joda.time.DateTimeZone;
 import org.quartz.CronExpression;
@@ -68,6 +71,12 @@ import org.quartz.CronExpression;
  *   workflow-1
  *   workflow-2
  *   ...
+ * triggercheck/
+ *   workflow-1/
+ *     2013-12-02/
+ *       16:00:00.000Z
+ *     ...
+ *   ...
  *
  * A JSON state file looks like this:
  *
@@ -76,6 +85,15 @@ import org.quartz.CronExpression;
  * A JSON rerun file looks like this:
  *
  * {"rerunTime":"2015-09-06T20:21Z"}
+ *
+ * A JSON trigger check file looks like this:
+ *
+ * {"nextCheck":"2015-09-06T20:21Z"}
+ *
+ * To find the active (WAITING, READY, or RUNNING) slots of a workflow without
+ * reading all of its state files, an in-memory index of the active slots is
+ * built the first time they're requested, and maintained on slot state writes.
+ * This requires that this database is the only writer to the directory.
  */
 public class FileSystemStateDatabase implements StateDatabase {
 
@@ -84,6 +102,9 @@ public class FileSystemStateDatabase implements StateDatabase {
     private static final String RERUN_DIR_NAME = "rerun";
     private static final String PAUSED_DIR_NAME = "paused";
     private static final String REGISTER_DIR_NAME = "register";
+    private static final String TRIGGER_CHECK_DIR_NAME = "triggercheck";
+    private static final String NEXT_CHECK_PROP = "nextCheck";
+    private static final String TMP_FILE_PREFIX = ".write-";
     private static final Logger LOGGER = Logger.getLogger(FileSystemStateDatabase.class);
 
     private final ScheduledTimeFormatter formatter = new ScheduledTimeFormatter();
@@ -91,6 +112,7 @@ public class FileSystemStateDatabase implements StateDatabase {
     private final File rerunDir;
     private final File pausedDir;
     private final File registerDir;
+    private final File triggerCheckDir;
     private final FileSystemStateDatabaseConnection instance;
     private final File dir;
 
@@ -104,6 +126,7 @@ public class FileSystemStateDatabase implements StateDatabase {
         this.rerunDir = new File(dir, RERUN_DIR_NAME);
         this.pausedDir = new File(dir, PAUSED_DIR_NAME);
         this.registerDir = new File(dir, REGISTER_DIR_NAME);
+        this.triggerCheckDir = new File(dir, TRIGGER_CHECK_DIR_NAME);
         this.dir = dir;
         this.instance = new FileSystemStateDatabaseConnection();
     }
@@ -119,32 +142,83 @@ public class FileSystemStateDatabase implements StateDatabase {
 
     private class FileSystemStateDatabaseConnection implements StateDatabaseConnection {
 
+        private final ConcurrentMap<WorkflowID, ActiveSlotIndex> activeSlotIndexes = new ConcurrentHashMap<>();
+
         @Override
         public void close() throws Exception {
 
         }
 
         @Override
-        public Map<SlotID, SlotState> getSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
+        public SlotStates getSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
 
-            Map<SlotID, SlotState> slotStates = Maps.newHashMap();
+            SlotStates slotStates = new SlotStates(id);
 
             ScheduledTime startBeginOfDay = new ScheduledTime(start.getDateTime().withMillisOfDay(0));
             ScheduledTime endBeginOfDay = new ScheduledTime(end.getDateTime().withMillisOfDay(0));
 
             ScheduledTime currTime = startBeginOfDay;
 
-            while (!currTime.getDateTime().isAfter(endBeginOfDay.getDateTime())) {
+            while (!currTime.isAfter(endBeginOfDay)) {
                 File dayDir = getDayDir(getWorkflowStateDir(id), currTime);
                 if (dayDir.exists() && dayDir.isDirectory()) {
-                    slotStates.putAll(getSlotStatesFromDir(id, start, end, dayDir));
+                    addSlotStatesFromDir(slotStates, start, end, dayDir);
                 }
-                currTime = new ScheduledTime(currTime.getDateTime().plusDays(1));
+                currTime = currTime.plusDays(1);
             }
 
             return slotStates;
         }
 
+        @Override
+        public SlotStates getSlotStatesFrom(WorkflowID id, ScheduledTime start) throws Exception {
+            SlotStates slotStates = new SlotStates(id);
+            File[] dayDirs = getWorkflowStateDir(id).listFiles();
+            if (dayDirs == null) {
+                return slotStates;
+            }
+            String startDay = formatter.formatDatestamp(start);
+            for (File dayDir : dayDirs) {
+                if (dayDir.isDirectory() && dayDir.getName().compareTo(startDay) >= 0) {
+                    addSlotStatesFromDir(slotStates, start, null, dayDir);
+                }
+            }
+            return slotStates;
+        }
+
+        @Override
+        public SlotStates getActiveSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
+            SlotStates slotStates = new SlotStates(id);
+            ActiveSlotIndex index = activeSlotIndexes.computeIfAbsent(id, k -> new ActiveSlotIndex());
+            for (ScheduledTime time : index.getTimes(id, start, end)) {
+                SlotState slotState = getSlotState(new SlotID(id, time));
+                if (slotState != null && isActive(slotState)) {
+                    slotStates.add(slotState);
+                }
+            }
+            return slotStates;
+        }
+
+        @Override
+        public SortedSet<ScheduledTime> getSlotTimes(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
+            SortedSet<ScheduledTime> times = new TreeSet<>();
+            ScheduledTime currTime = new ScheduledTime(start.getDateTime().withMillisOfDay(0));
+            ScheduledTime endBeginOfDay = new ScheduledTime(end.getDateTime().withMillisOfDay(0));
+            while (!currTime.isAfter(endBeginOfDay)) {
+                File dayDir = getDayDir(getWorkflowStateDir(id), currTime);
+                if (dayDir.exists() && dayDir.isDirectory()) {
+                    for (File file : dayDir.listFiles()) {
+                        ScheduledTime time = new ScheduledTime(dayDir.getName() + "T" + file.getName());
+                        if (!time.isBefore(start) && time.isBefore(end)) {
+                            times.add(time);
+                        }
+                    }
+                }
+                currTime = currTime.plusDays(1);
+            }
+            return times;
+        }
+
         @Override
         public SlotState getSlotState(SlotID id) throws Exception {
             File file = getSlotStateFile(id);
@@ -159,18 +233,88 @@ public class FileSystemStateDatabase implements StateDatabase {
         public void putSlotState(SlotState state) throws Exception {
             File file = getSlotStateFile(state.getSlotID());
             writeJson(state.toJSONNode(), file);
+            ActiveSlotIndex index = activeSlotIndexes.get(state.getSlotID().getWorkflowID());
+            if (index != null) {
+                index.update(state);
+            }
+        }
+
+        private boolean isActive(SlotState state) {
+            return state.getStatus().getType() == SlotState.StatusType.INDETERMINATE;
+        }
+
+        /**
+         * The scheduled times of the active slots of a single workflow, from
+         * coveredStart onwards.  A null coveredStart means nothing has been
+         * read yet.  Requests reaching before coveredStart read the missing
+         * range from the state files.
+         */
+        private class ActiveSlotIndex {
+
+            private final NavigableSet<ScheduledTime> times = new TreeSet<>();
+            private ScheduledTime coveredStart;
+
+            synchronized SortedSet<ScheduledTime> getTimes(WorkflowID id, ScheduledTime start, ScheduledTime end) throws IOException {
+                if (coveredStart == null || start.isBefore(coveredStart)) {
+                    readActiveTimes(id, start, coveredStart);
+                    coveredStart = start;
+                }
+                if (!start.isBefore(end)) {
+                    return new TreeSet<>();
+                }
+                return new TreeSet<>(times.subSet(start, true, end, false));
+            }
+
+            synchronized void update(SlotState state) {
+                ScheduledTime time = state.getScheduledTime();
+                if (coveredStart == null || time.isBefore(coveredStart)) {
+                    return;
+                }
+                if (isActive(state)) {
+                    times.add(time);
+                } else {
+                    times.remove(time);
+                }
+            }
+
+            /**
+             * Adds the times of the active slots from start (inclusive) to end (exclusive, or unbounded if null).
+             */
+            private void readActiveTimes(WorkflowID id, ScheduledTime start, ScheduledTime end) throws IOException {
+                File[] dayDirs = getWorkflowStateDir(id).listFiles();
+                if (dayDirs == null) {
+                    return;
+                }
+                String startDay = formatter.formatDatestamp(start);
+                String endDay = end == null ? null : formatter.formatDatestamp(end);
+                for (File dayDir : dayDirs) {
+                    String day = dayDir.getName();
+                    if (day.compareTo(startDay) < 0 || (endDay != null && day.compareTo(endDay) > 0)) {
+                        continue;
+                    }
+                    for (File file : dayDir.listFiles()) {
+                        ScheduledTime time = new ScheduledTime(day + "T" + file.getName());
+                        if (time.isBefore(start) || (end != null && !time.isBefore(end))) {
+                            continue;
+                        }
+                        if (isActive(readSlotStateFromFile(new SlotID(id, time), file))) {
+                            times.add(time);
+                        }
+                    }
+                }
+            }
         }
 
-        private Map<SlotID, SlotState> getSlotStatesFromDir(WorkflowID id, ScheduledTime start, ScheduledTime end, File dayDir) throws IOException {
-            Map<SlotID, SlotState> slotStates = Maps.newHashMap();
+        /**
+         * Adds the slot states in the day dir from start (inclusive) to end (exclusive, or unbounded if null).
+         */
+        private void addSlotStatesFromDir(SlotStates slotStates, ScheduledTime start, ScheduledTime end, File dayDir) throws IOException {
             for (File file : dayDir.listFiles()) {
                 ScheduledTime time = new ScheduledTime(dayDir.getName() + "T" + file.getName());
-                if (!time.getDateTime().isBefore(start.getDateTime()) && time.getDateTime().isBefore(end.getDateTime())) {
-                    SlotID slotID = new SlotID(id, time);
-                    slotStates.put(slotID, readSlotStateFromFile(slotID, file));
+                if (!time.isBefore(start) && (end == null || time.isBefore(end))) {
+                    slotStates.add(readSlotStateFromFile(new SlotID(slotStates.getWorkflowID(), time), file));
                 }
             }
-            return slotStates;
         }
 
         private SlotState readSlotStateFromFile(SlotID id, File file) throws IOException {
@@ -256,6 +400,44 @@ public class FileSystemStateDatabase implements StateDatabase {
             }
         }
 
+        private File getWorkflowTriggerCheckDir(WorkflowID id) {
+            return new File(triggerCheckDir, id.toString());
+        }
+
+        private File getSlotTriggerCheckFile(SlotID slotID) {
+            return new File(getDayDir(getWorkflowTriggerCheckDir(slotID.getWorkflowID()), slotID.getScheduledTime()), getFileName(slotID));
+        }
+
+        @Override
+        public Map<ScheduledTime, ScheduledTime> getNextTriggerChecks(WorkflowID workflowID) throws Exception {
+            Map<ScheduledTime, ScheduledTime> res = new HashMap<>();
+            File wfDir = getWorkflowTriggerCheckDir(workflowID);
+            if (wfDir.exists()) {
+                for (File dayDir : wfDir.listFiles()) {
+                    for (File checkFile : dayDir.listFiles()) {
+                        ScheduledTime t = new ScheduledTime(dayDir.getName() + "T" + checkFile.getName());
+                        res.put(t, new ScheduledTime(readJson(checkFile).get(NEXT_CHECK_PROP).textValue()));
+                    }
+                }
+            }
+            return res;
+        }
+
+        @Override
+        public void setNextTriggerCheck(SlotID slotID, ScheduledTime nextCheck) throws Exception {
+            ObjectNode node = Util.MAPPER.createObjectNode();
+            node.put(NEXT_CHECK_PROP, nextCheck.toString());
+            writeJson(node, getSlotTriggerCheckFile(slotID));
+        }
+
+        @Override
+        public void clearNextTriggerCheck(SlotID slotID) throws Exception {
+            File file = getSlotTriggerCheckFile(slotID);
+            if (file.exists()) {
+                file.delete();
+            }
+        }
+
         //// Registers
 
         private File getBucketDir(BucketID bucket) {
@@ -338,10 +520,21 @@ public class FileSystemStateDatabase implements StateDatabase {
             return (ObjectNode) Util.JSON_READER.readTree(json);
         }
 
+        /**
+         * Writes to a temporary file in the database directory first, and then
+         * moves it into place, so that concurrent readers never see a partially
+         * written file.
+         */
         private void writeJson(JsonNode obj, File file) throws IOException {
             String json = Util.JSON_WRITER.writeValueAsString(Util.requireNonNull(obj));
             FileUtils.forceMkdir(file.getParentFile());
-            FileUtils.write(file, json, CHARSET);
+            File tmp = File.createTempFile(TMP_FILE_PREFIX, null, dir);
+            try {
+                FileUtils.write(tmp, json, CHARSET);
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                FileUtils.deleteQuietly(tmp);
+            }
         }
     };
 }
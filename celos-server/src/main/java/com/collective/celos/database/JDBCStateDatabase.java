@@ -26,18 +26,35 @@ import org.apache.log4j.Logger;
 import java.sql.*;
 import java.util.*;
 
+/**
+ * State database backed by a relational database.
+ *
+ * Active slots are looked up by status, which should be indexed:
+ *
+ * CREATE INDEX SLOTSTATE_ACTIVE ON SLOTSTATE(WORKFLOWID, STATUS, DATE)
+ *
+ * Trigger backoff needs a table for the next trigger check times of slots:
+ *
+ * CREATE TABLE TRIGGERCHECK (WORKFLOWID VARCHAR(512) NOT NULL, DATE TIMESTAMP NOT NULL, NEXTCHECK TIMESTAMP NOT NULL)
+ */
 public class JDBCStateDatabase implements StateDatabase {
 
     private static final String SELECT_SINGLE_SLOT = "SELECT STATUS, EXTERNALID, RETRYCOUNT FROM SLOTSTATE WHERE WORKFLOWID = ? AND DATE = ?";
     private static final String INSERT_SLOT_STATE = "INSERT INTO SLOTSTATE(WORKFLOWID, DATE, STATUS, EXTERNALID, RETRYCOUNT) VALUES (?, ?, ?, ?, ?)";
     private static final String UPDATE_SLOT_STATE = "UPDATE SLOTSTATE SET STATUS=?, EXTERNALID=?, RETRYCOUNT=? WHERE WORKFLOWID=? AND DATE=?";
     private static final String SELECT_SLOTS_BY_PERIOD = "SELECT STATUS, EXTERNALID, RETRYCOUNT, DATE FROM SLOTSTATE WHERE WORKFLOWID = ? AND DATE >= ? AND DATE < ?";
+    private static final String SELECT_SLOTS_FROM = "SELECT STATUS, EXTERNALID, RETRYCOUNT, DATE FROM SLOTSTATE WHERE WORKFLOWID = ? AND DATE >= ?";
+    private static final String SELECT_ACTIVE_SLOTS_BY_PERIOD = "SELECT STATUS, EXTERNALID, RETRYCOUNT, DATE FROM SLOTSTATE WHERE WORKFLOWID = ? AND STATUS IN (?, ?, ?) AND DATE >= ? AND DATE < ?";
+    private static final String SELECT_SLOT_TIMES_BY_PERIOD = "SELECT DATE FROM SLOTSTATE WHERE WORKFLOWID = ? AND DATE >= ? AND DATE < ?";
     private static final String INSERT_RERUN_SLOT = "INSERT INTO RERUNSLOT(WORKFLOWID, DATE, WALLCLOCK) VALUES (?, ?, ?)";
     private static final String SELECT_RERUN_SLOTS = "SELECT DATE FROM RERUNSLOT WHERE WORKFLOWID = ?";
     private static final String DELETE_RERUN_SLOTS = "DELETE FROM RERUNSLOT WHERE WORKFLOWID = ? AND WALLCLOCK < ?";
     private static final String INSERT_PAUSE_WORKFLOW = "INSERT INTO WORKFLOWINFO(WORKFLOWID, PAUSED) VALUES (?, ?)";
     private static final String UPDATE_PAUSE_WORKFLOW = "UPDATE WORKFLOWINFO SET PAUSED = ? WHERE WORKFLOWID = ?";
     private static final String SELECT_PAUSE_WORKFLOW = "SELECT PAUSED FROM WORKFLOWINFO WHERE WORKFLOWID = ?";
+    private static final String SELECT_TRIGGER_CHECKS = "SELECT DATE, NEXTCHECK FROM TRIGGERCHECK WHERE WORKFLOWID = ?";
+    private static final String INSERT_TRIGGER_CHECK = "INSERT INTO TRIGGERCHECK(WORKFLOWID, DATE, NEXTCHECK) VALUES (?, ?, ?)";
+    private static final String DELETE_TRIGGER_CHECK = "DELETE FROM TRIGGERCHECK WHERE WORKFLOWID = ? AND DATE = ?";
     private static final String SELECT_REGISTER = "SELECT JSON FROM REGISTER WHERE BUCKETID = ? AND KEY = ?";
     private static final String SELECT_REGISTER_KEYS = "SELECT KEY FROM REGISTER WHERE BUCKETID = ?";
     private static final String SELECT_REGISTER_KEYS_WITH_PREFIX = "SELECT KEY FROM REGISTER WHERE BUCKETID = ? AND KEY LIKE ?";
@@ -52,6 +69,7 @@ public class JDBCStateDatabase implements StateDatabase {
     private static final String RETRY_COUNT_PARAM = "RETRYCOUNT";
     private static final String DATE_PARAM = "DATE";
     private static final String PAUSED_PARAM = "PAUSED";
+    private static final String NEXT_CHECK_PARAM = "NEXTCHECK";
     private static final String JSON_PARAM = "JSON";
     private static final String KEY_PARAM = "KEY";
 
@@ -108,23 +126,64 @@ public class JDBCStateDatabase implements StateDatabase {
         }
 
         @Override
-        public Map<SlotID, SlotState> getSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
+        public SlotStates getSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
             try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_SLOTS_BY_PERIOD)) {
                 preparedStatement.setString(1, id.toString());
                 preparedStatement.setTimestamp(2, Util.toTimestamp(start));
                 preparedStatement.setTimestamp(3, Util.toTimestamp(end));
-                Map<SlotID, SlotState> slotStates = Maps.newHashMap();
+                return readSlotStates(id, preparedStatement);
+            }
+        }
+
+        @Override
+        public SlotStates getSlotStatesFrom(WorkflowID id, ScheduledTime start) throws Exception {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_SLOTS_FROM)) {
+                preparedStatement.setString(1, id.toString());
+                preparedStatement.setTimestamp(2, Util.toTimestamp(start));
+                return readSlotStates(id, preparedStatement);
+            }
+        }
+
+        @Override
+        public SlotStates getActiveSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_ACTIVE_SLOTS_BY_PERIOD)) {
+                preparedStatement.setString(1, id.toString());
+                preparedStatement.setString(2, SlotState.Status.WAITING.toString());
+                preparedStatement.setString(3, SlotState.Status.READY.toString());
+                preparedStatement.setString(4, SlotState.Status.RUNNING.toString());
+                preparedStatement.setTimestamp(5, Util.toTimestamp(start));
+                preparedStatement.setTimestamp(6, Util.toTimestamp(end));
+                return readSlotStates(id, preparedStatement);
+            }
+        }
+
+        private SlotStates readSlotStates(WorkflowID id, PreparedStatement preparedStatement) throws SQLException {
+            SlotStates slotStates = new SlotStates(id);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    SlotState.Status status = SlotState.Status.valueOf(resultSet.getString(STATUS_PARAM));
+                    String externalId = resultSet.getString(EXTERNAL_ID_PARAM);
+                    int retryCount = resultSet.getInt(RETRY_COUNT_PARAM);
+                    ScheduledTime date = Util.fromTimestamp(resultSet.getTimestamp(DATE_PARAM));
+                    slotStates.add(new SlotState(new SlotID(id, date), status, externalId, retryCount));
+                }
+            }
+            return slotStates;
+        }
+
+        @Override
+        public SortedSet<ScheduledTime> getSlotTimes(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
+            try (PreparedStatement preparedStatement = connection.prepareStatement(SELECT_SLOT_TIMES_BY_PERIOD)) {
+                preparedStatement.setString(1, id.toString());
+                preparedStatement.setTimestamp(2, Util.toTimestamp(start));
+                preparedStatement.setTimestamp(3, Util.toTimestamp(end));
+                SortedSet<ScheduledTime> times = new TreeSet<>();
                 try (ResultSet resultSet = preparedStatement.executeQuery()) {
                     while (resultSet.next()) {
-                        SlotState.Status status = SlotState.Status.valueOf(resultSet.getString(STATUS_PARAM));
-                        String externalId = resultSet.getString(EXTERNAL_ID_PARAM);
-                        int retryCount = resultSet.getInt(RETRY_COUNT_PARAM);
-                        ScheduledTime date = Util.fromTimestamp(resultSet.getTimestamp(DATE_PARAM));
-                        SlotID slotID = new SlotID(id, date);
-                        slotStates.put(slotID, new SlotState(slotID, status, externalId, retryCount));
+                        times.add(Util.fromTimestamp(resultSet.getTimestamp(DATE_PARAM)));
                     }
                 }
-                return slotStates;
+                return times;
             }
         }
 
@@ -237,6 +296,40 @@ public class JDBCStateDatabase implements StateDatabase {
             }
         }
 
+        @Override
+        public Map<ScheduledTime, ScheduledTime> getNextTriggerChecks(WorkflowID workflowID) throws Exception {
+            Map<ScheduledTime, ScheduledTime> nextChecks = Maps.newHashMap();
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_TRIGGER_CHECKS)) {
+                statement.setString(1, workflowID.toString());
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        nextChecks.put(Util.fromTimestamp(resultSet.getTimestamp(DATE_PARAM)), Util.fromTimestamp(resultSet.getTimestamp(NEXT_CHECK_PARAM)));
+                    }
+                }
+            }
+            return nextChecks;
+        }
+
+        @Override
+        public void setNextTriggerCheck(SlotID slot, ScheduledTime nextCheck) throws Exception {
+            clearNextTriggerCheck(slot);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_TRIGGER_CHECK)) {
+                statement.setString(1, slot.getWorkflowID().toString());
+                statement.setTimestamp(2, Util.toTimestamp(slot.getScheduledTime()));
+                statement.setTimestamp(3, Util.toTimestamp(nextCheck));
+                statement.execute();
+            }
+        }
+
+        @Override
+        public void clearNextTriggerCheck(SlotID slot) throws Exception {
+            try (PreparedStatement statement = connection.prepareStatement(DELETE_TRIGGER_CHECK)) {
+                statement.setString(1, slot.getWorkflowID().toString());
+                statement.setTimestamp(2, Util.toTimestamp(slot.getScheduledTime()));
+                statement.execute();
+            }
+        }
+
         @Override
         public JsonNode getRegister(BucketID bucket, RegisterKey key) throws Exception {
             try (PreparedStatement statement = connection.prepareStatement(SELECT_REGISTER)) {
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.database;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+
+import com.collective.celos.*;
+import com.collective.celos.metrics.Histogram;
+import com.collective.celos.metrics.MetricsRegistry;
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * Decorator that records the time taken by each connection operation of the
+ * decorated database, by operation name.
+ */
+public class MeteredStateDatabase implements StateDatabase {
+
+    private static final Histogram OPERATION_SECONDS = MetricsRegistry.getInstance().histogram(
+            "celos_state_database_seconds", "Time taken by state database operations.", "operation");
+
+    private final StateDatabase database;
+
+    public MeteredStateDatabase(StateDatabase database) {
+        this.database = Util.requireNonNull(database);
+    }
+
+    @Override
+    public StateDatabaseConnection openConnection() throws Exception {
+        return new MeteredStateDatabaseConnection(time("openConnection", database::openConnection));
+    }
+
+    public StateDatabase getDatabase() {
+        return database;
+    }
+
+    private static <T> T time(String operation, Callable<T> callable) throws Exception {
+        return OPERATION_SECONDS.time(callable, operation);
+    }
+
+    private static class MeteredStateDatabaseConnection implements StateDatabaseConnection {
+
+        private final StateDatabaseConnection connection;
+
+        private MeteredStateDatabaseConnection(StateDatabaseConnection connection) {
+            this.connection = Util.requireNonNull(connection);
+        }
+
+        @Override
+        public SlotStates getSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
+            return time("getSlotStates", () -> connection.getSlotStates(id, start, end));
+        }
+
+        @Override
+        public SlotStates getSlotStates(WorkflowID id, Collection<ScheduledTime> times) throws Exception {
+            return time("getSlotStatesByTimes", () -> connection.getSlotStates(id, times));
+        }
+
+        @Override
+        public SlotStates getSlotStatesFrom(WorkflowID id, ScheduledTime start) throws Exception {
+            return time("getSlotStatesFrom", () -> connection.getSlotStatesFrom(id, start));
+        }
+
+        @Override
+        public SlotStates getActiveSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
+            return time("getActiveSlotStates", () -> connection.getActiveSlotStates(id, start, end));
+        }
+
+        @Override
+        public SortedSet<ScheduledTime> getSlotTimes(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
+            return time("getSlotTimes", () -> connection.getSlotTimes(id, start, end));
+        }
+
+        @Override
+        public SlotState getSlotState(SlotID slot) throws Exception {
+            return time("getSlotState", () -> connection.getSlotState(slot));
+        }
+
+        @Override
+        public void putSlotState(SlotState state) throws Exception {
+            time("putSlotState", () -> {
+                connection.putSlotState(state);
+                return null;
+            });
+        }
+
+        @Override
+        public void markSlotForRerun(SlotID slot, ScheduledTime now) throws Exception {
+            time("markSlotForRerun", () -> {
+                connection.markSlotForRerun(slot, now);
+                return null;
+            });
+        }
+
+        @Override
+        public SortedSet<ScheduledTime> getTimesMarkedForRerun(WorkflowID workflowID, ScheduledTime now) throws Exception {
+            return time("getTimesMarkedForRerun", () -> connection.getTimesMarkedForRerun(workflowID, now));
+        }
+
+        @Override
+        public boolean isPaused(WorkflowID workflowID) throws Exception {
+            return time("isPaused", () -> connection.isPaused(workflowID));
+        }
+
+        @Override
+        public void setPaused(WorkflowID workflowID, boolean paused) throws Exception {
+            time("setPaused", () -> {
+                connection.setPaused(workflowID, paused);
+                return null;
+            });
+        }
+
+        @Override
+        public Map<ScheduledTime, ScheduledTime> getNextTriggerChecks(WorkflowID workflowID) throws Exception {
+            return time("getNextTriggerChecks", () -> connection.getNextTriggerChecks(workflowID));
+        }
+
+        @Override
+        public void setNextTriggerCheck(SlotID slot, ScheduledTime nextCheck) throws Exception {
+            time("setNextTriggerCheck", () -> {
+                connection.setNextTriggerCheck(slot, nextCheck);
+                return null;
+            });
+        }
+
+        @Override
+        public void clearNextTriggerCheck(SlotID slot) throws Exception {
+            time("clearNextTriggerCheck", () -> {
+                connection.clearNextTriggerCheck(slot);
+                return null;
+            });
+        }
+
+        @Override
+        public JsonNode getRegister(BucketID bucket, RegisterKey key) throws Exception {
+            return time("getRegister", () -> connection.getRegister(bucket, key));
+        }
+
+        @Override
+        public Set<RegisterKey> getRegisterKeys(BucketID bucket, String prefix) throws Exception {
+            return time("getRegisterKeys", () -> connection.getRegisterKeys(bucket, prefix));
+        }
+
+        @Override
+        public void putRegister(BucketID bucket, RegisterKey key, JsonNode value) throws Exception {
+            time("putRegister", () -> {
+                connection.putRegister(bucket, key, value);
+                return null;
+            });
+        }
+
+        @Override
+        public void deleteRegister(BucketID bucket, RegisterKey key) throws Exception {
+            time("deleteRegister", () -> {
+                connection.deleteRegister(bucket, key);
+                return null;
+            });
+        }
+
+        @Override
+        public void deleteRegistersWithPrefix(BucketID bucket, String prefix) throws Exception {
+            time("deleteRegistersWithPrefix", () -> {
+                connection.deleteRegistersWithPrefix(bucket, prefix);
+                return null;
+            });
+        }
+
+        @Override
+        public Iterable<Map.Entry<RegisterKey, JsonNode>> getAllRegisters(BucketID bucket) throws Exception {
+            return time("getAllRegisters", () -> connection.getAllRegisters(bucket));
+        }
+
+        @Override
+        public void close() throws Exception {
+            connection.close();
+        }
+    }
+
+}
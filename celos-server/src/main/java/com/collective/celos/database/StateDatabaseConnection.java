@@ -19,33 +19,64 @@ import java.util.*;
 
 import com.collective.celos.*;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.google.common.collect.Maps;
 
 /**
  * Stores all state needed by the scheduler.
+ *
+ * The SlotStates returned by the getSlotStates methods belong to the caller,
+ * which may modify them.
  */
 public interface StateDatabaseConnection extends AutoCloseable {
 
     /**
      * Returns the state of the slots, specified by start time (inclusive) and end time (exclusive).
      */
-    public Map<SlotID, SlotState> getSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception;
+    public SlotStates getSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception;
+
+    /**
+     * Returns the state of all slots from the given start time (inclusive) onwards.
+     */
+    public SlotStates getSlotStatesFrom(WorkflowID id, ScheduledTime start) throws Exception;
 
     /**
-     * Returns the state of the given slots. If a slot is not found, it will not be contained in the returned Map.
+     * Returns the state of the given slots. If a slot is not found, it will not be contained in the returned SlotStates.
      */
-    public default Map<SlotID, SlotState> getSlotStates(WorkflowID id, Collection<ScheduledTime> times) throws Exception {
-        Map<SlotID, SlotState> slotStates = Maps.newHashMap();
+    public default SlotStates getSlotStates(WorkflowID id, Collection<ScheduledTime> times) throws Exception {
+        SlotStates slotStates = new SlotStates(id, times.size());
         for (ScheduledTime time : times) {
-            SlotID slotID = new SlotID(id, time);
-            SlotState slotState = getSlotState(slotID);
+            SlotState slotState = getSlotState(new SlotID(id, time));
             if (slotState != null) {
-                slotStates.put(slotID, slotState);
+                slotStates.add(slotState);
             }
         }
         return slotStates;
     }
 
+    /**
+     * Returns the state of the active (WAITING, READY, or RUNNING) slots,
+     * specified by start time (inclusive) and end time (exclusive).
+     */
+    public default SlotStates getActiveSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
+        SlotStates slotStates = new SlotStates(id);
+        for (SlotState slotState : getSlotStates(id, start, end).values()) {
+            if (slotState.getStatus().getType() == SlotState.StatusType.INDETERMINATE) {
+                slotStates.add(slotState);
+            }
+        }
+        return slotStates;
+    }
+
+    /**
+     * Returns the scheduled times of all slots in the database, specified by start time (inclusive) and end time (exclusive).
+     */
+    public default SortedSet<ScheduledTime> getSlotTimes(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
+        SortedSet<ScheduledTime> times = new TreeSet<>();
+        for (SlotState slotState : getSlotStates(id, start, end).values()) {
+            times.add(slotState.getScheduledTime());
+        }
+        return times;
+    }
+
     /**
      * Returns the state of the given slot, or null if not found.
      */
@@ -78,6 +109,22 @@ public interface StateDatabaseConnection extends AutoCloseable {
      */
     public void setPaused(WorkflowID workflowID, boolean paused) throws Exception;
 
+    /**
+     * Returns the times before which the triggers of the given workflow's slots
+     * are not checked again, by scheduled time of the slot.
+     */
+    public Map<ScheduledTime, ScheduledTime> getNextTriggerChecks(WorkflowID workflowID) throws Exception;
+
+    /**
+     * Sets the time before which the trigger of the slot is not checked again.
+     */
+    public void setNextTriggerCheck(SlotID slot, ScheduledTime nextCheck) throws Exception;
+
+    /**
+     * Removes the next trigger check time of the slot, if any.
+     */
+    public void clearNextTriggerCheck(SlotID slot) throws Exception;
+
     /**
      * Get the value of the specified register, or null if not found.
      */
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.metrics;
+
+import java.util.Collections;
+import java.util.function.Supplier;
+
+import com.collective.celos.Util;
+
+/**
+ * A gauge or counter without labels whose value is read when the metrics are exported,
+ * e.g. from an existing counter of some component.
+ */
+public class CallbackMetric extends Metric {
+
+    private final String type;
+    private final Supplier<? extends Number> supplier;
+
+    CallbackMetric(String name, String help, String type, Supplier<? extends Number> supplier) {
+        super(name, help);
+        this.type = Util.requireNonNull(type);
+        this.supplier = Util.requireNonNull(supplier);
+    }
+
+    public double get() {
+        return supplier.get().doubleValue();
+    }
+
+    @Override
+    public String getType() {
+        return type;
+    }
+
+    @Override
+    void writeSamples(StringBuilder out) {
+        writeSample(out, getName(), Collections.<String>emptyList(), Collections.<String>emptyList(), get());
+    }
+
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A count that only goes up.
+ */
+public class Counter extends Metric {
+
+    private final ConcurrentMap<List<String>, AtomicLong> values = new ConcurrentHashMap<>();
+
+    Counter(String name, String help, String... labelNames) {
+        super(name, help, labelNames);
+    }
+
+    public void inc(String... labelValues) {
+        add(1, labelValues);
+    }
+
+    public void add(long amount, String... labelValues) {
+        values.computeIfAbsent(labels(labelValues), k -> new AtomicLong()).addAndGet(amount);
+    }
+
+    public long get(String... labelValues) {
+        AtomicLong value = values.get(labels(labelValues));
+        return value == null ? 0 : value.get();
+    }
+
+    @Override
+    public String getType() {
+        return "counter";
+    }
+
+    @Override
+    void writeSamples(StringBuilder out) {
+        for (Map.Entry<List<String>, AtomicLong> entry : sorted(values).entrySet()) {
+            writeSample(out, getName(), getLabelNames(), entry.getKey(), entry.getValue().get());
+        }
+    }
+
+}
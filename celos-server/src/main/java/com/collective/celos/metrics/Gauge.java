@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A value that can go up and down.
+ */
+public class Gauge extends Metric {
+
+    private final ConcurrentMap<List<String>, Double> values = new ConcurrentHashMap<>();
+
+    Gauge(String name, String help, String... labelNames) {
+        super(name, help, labelNames);
+    }
+
+    public void set(double value, String... labelValues) {
+        values.put(labels(labelValues), value);
+    }
+
+    public double get(String... labelValues) {
+        Double value = values.get(labels(labelValues));
+        return value == null ? 0 : value;
+    }
+
+    /**
+     * Drops the values of all label value combinations whose first label value is the given one.
+     */
+    public void remove(String firstLabelValue) {
+        values.keySet().removeIf(labels -> !labels.isEmpty() && labels.get(0).equals(firstLabelValue));
+    }
+
+    @Override
+    public String getType() {
+        return "gauge";
+    }
+
+    @Override
+    void writeSamples(StringBuilder out) {
+        for (Map.Entry<List<String>, Double> entry : sorted(values).entrySet()) {
+            writeSample(out, getName(), getLabelNames(), entry.getKey(), entry.getValue());
+        }
+    }
+
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.metrics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Counts observations (usually durations in seconds) in cumulative buckets.
+ */
+public class Histogram extends Metric {
+
+    /**
+     * Default bucket upper bounds, in seconds.
+     */
+    public static final double[] DEFAULT_BUCKETS = { 0.001, 0.005, 0.01, 0.05, 0.1, 0.5, 1, 5, 10, 30, 60, 120 };
+
+    private final double[] buckets;
+    private final ConcurrentMap<List<String>, Values> values = new ConcurrentHashMap<>();
+
+    Histogram(String name, String help, double[] buckets, String... labelNames) {
+        super(name, help, labelNames);
+        for (int i = 1; i < buckets.length; i++) {
+            if (buckets[i] <= buckets[i - 1]) {
+                throw new IllegalArgumentException("Histogram buckets must be increasing: " + Arrays.toString(buckets));
+            }
+        }
+        this.buckets = buckets.clone();
+    }
+
+    public void observe(double value, String... labelValues) {
+        values.computeIfAbsent(labels(labelValues), k -> new Values()).observe(value);
+    }
+
+    /**
+     * Observes the given duration in milliseconds, as seconds.
+     */
+    public void observeMillis(long millis, String... labelValues) {
+        observe(millis / 1000.0, labelValues);
+    }
+
+    /**
+     * Calls the given callable and observes its duration in seconds, also if it throws.
+     */
+    public <T> T time(Callable<T> callable, String... labelValues) throws Exception {
+        long start = System.nanoTime();
+        try {
+            return callable.call();
+        } finally {
+            observe((System.nanoTime() - start) / 1e9, labelValues);
+        }
+    }
+
+    public long getCount(String... labelValues) {
+        Values v = values.get(labels(labelValues));
+        return v == null ? 0 : v.getCount();
+    }
+
+    public double getSum(String... labelValues) {
+        Values v = values.get(labels(labelValues));
+        return v == null ? 0 : v.getSum();
+    }
+
+    @Override
+    public String getType() {
+        return "histogram";
+    }
+
+    @Override
+    void writeSamples(StringBuilder out) {
+        List<String> bucketLabelNames = new ArrayList<>(getLabelNames());
+        bucketLabelNames.add("le");
+        for (Map.Entry<List<String>, Values> entry : sorted(values).entrySet()) {
+            long[] counts;
+            long count;
+            double sum;
+            Values v = entry.getValue();
+            synchronized (v) {
+                counts = v.counts.clone();
+                count = v.count;
+                sum = v.sum;
+            }
+            long cumulative = 0;
+            for (int i = 0; i <= buckets.length; i++) {
+                cumulative += counts[i];
+                List<String> bucketLabels = new ArrayList<>(entry.getKey());
+                bucketLabels.add(formatValue(i < buckets.length ? buckets[i] : Double.POSITIVE_INFINITY));
+                writeSample(out, getName() + "_bucket", bucketLabelNames, bucketLabels, cumulative);
+            }
+            writeSample(out, getName() + "_sum", getLabelNames(), entry.getKey(), sum);
+            writeSample(out, getName() + "_count", getLabelNames(), entry.getKey(), count);
+        }
+    }
+
+    /**
+     * Non-cumulative bucket counts of one label value combination; the last bucket is +Inf.
+     */
+    private class Values {
+
+        private final long[] counts = new long[buckets.length + 1];
+        private long count;
+        private double sum;
+
+        synchronized void observe(double value) {
+            int i = 0;
+            while (i < buckets.length && value > buckets[i]) {
+                i++;
+            }
+            counts[i]++;
+            count++;
+            sum += value;
+        }
+
+        synchronized long getCount() {
+            return count;
+        }
+
+        synchronized double getSum() {
+            return sum;
+        }
+    }
+
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.metrics;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import com.collective.celos.Util;
+
+/**
+ * A named metric with a fixed set of label names.  Each combination of
+ * label values has its own value.
+ */
+public abstract class Metric {
+
+    private final String name;
+    private final String help;
+    private final List<String> labelNames;
+
+    protected Metric(String name, String help, String... labelNames) {
+        this.name = Util.requireNonNull(name);
+        this.help = Util.requireNonNull(help);
+        this.labelNames = Arrays.asList(labelNames);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getHelp() {
+        return help;
+    }
+
+    public List<String> getLabelNames() {
+        return labelNames;
+    }
+
+    /**
+     * Returns the type in the text exposition format, e.g. "counter".
+     */
+    public abstract String getType();
+
+    /**
+     * Appends the samples of this metric in the text exposition format.
+     */
+    abstract void writeSamples(StringBuilder out);
+
+    protected List<String> labels(String... labelValues) {
+        if (labelValues.length != labelNames.size()) {
+            throw new IllegalArgumentException("Metric " + name + " needs " + labelNames.size() + " label values, got " + labelValues.length);
+        }
+        return Arrays.asList(labelValues);
+    }
+
+    protected void writeSample(StringBuilder out, String sampleName, List<String> names, List<String> values, double value) {
+        out.append(sampleName);
+        if (!names.isEmpty()) {
+            out.append('{');
+            for (int i = 0; i < names.size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                out.append(names.get(i)).append("=\"").append(escape(values.get(i))).append('"');
+            }
+            out.append('}');
+        }
+        out.append(' ').append(formatValue(value)).append('\n');
+    }
+
+    /**
+     * Returns the given values ordered by label values, for stable output.
+     */
+    protected static <V> SortedMap<List<String>, V> sorted(Map<List<String>, V> values) {
+        SortedMap<List<String>, V> sorted = new TreeMap<>(LABEL_VALUES_ORDER);
+        sorted.putAll(values);
+        return sorted;
+    }
+
+    private static final Comparator<List<String>> LABEL_VALUES_ORDER = (a, b) -> {
+        for (int i = 0; i < Math.min(a.size(), b.size()); i++) {
+            int result = a.get(i).compareTo(b.get(i));
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(a.size(), b.size());
+    };
+
+    static String formatValue(double value) {
+        if (value == Double.POSITIVE_INFINITY) {
+            return "+Inf";
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        } else {
+            return Double.toString(value);
+        }
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide registry of the metrics of the server.
+ *
+ * Metrics are created on first use and shared by name afterwards, so
+ * components that are recreated (like the scheduler on each step) keep adding
+ * to the same metrics.
+ *
+ * The metrics are exported in the Prometheus text exposition format by the
+ * metrics servlet.
+ */
+public class MetricsRegistry {
+
+    private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+
+    private final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    MetricsRegistry() {
+    }
+
+    public static MetricsRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    public Counter counter(String name, String help, String... labelNames) {
+        return register(name, Counter.class, k -> new Counter(name, help, labelNames));
+    }
+
+    public Gauge gauge(String name, String help, String... labelNames) {
+        return register(name, Gauge.class, k -> new Gauge(name, help, labelNames));
+    }
+
+    public Histogram histogram(String name, String help, String... labelNames) {
+        return histogram(name, help, Histogram.DEFAULT_BUCKETS, labelNames);
+    }
+
+    public Histogram histogram(String name, String help, double[] buckets, String... labelNames) {
+        return register(name, Histogram.class, k -> new Histogram(name, help, buckets, labelNames));
+    }
+
+    /**
+     * Registers a gauge that reads its value from the given supplier, replacing any previous one of the same name.
+     */
+    public void gauge(String name, String help, Supplier<? extends Number> supplier) {
+        metrics.put(name, new CallbackMetric(name, help, "gauge", supplier));
+    }
+
+    /**
+     * Registers a counter that reads its value from the given supplier, replacing any previous one of the same name.
+     */
+    public void counter(String name, String help, Supplier<? extends Number> supplier) {
+        metrics.put(name, new CallbackMetric(name, help, "counter", supplier));
+    }
+
+    public Metric get(String name) {
+        return metrics.get(name);
+    }
+
+    /**
+     * Returns all metrics in the text exposition format, ordered by name.
+     */
+    public String format() {
+        StringBuilder out = new StringBuilder();
+        for (Metric metric : metrics.values()) {
+            out.append("# HELP ").append(metric.getName()).append(' ').append(metric.getHelp().replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+            out.append("# TYPE ").append(metric.getName()).append(' ').append(metric.getType()).append('\n');
+            metric.writeSamples(out);
+        }
+        return out.toString();
+    }
+
+    private <T extends Metric> T register(String name, Class<T> type, Function<String, Metric> factory) {
+        Metric metric = metrics.computeIfAbsent(name, factory);
+        if (!type.isInstance(metric)) {
+            throw new IllegalArgumentException("Metric " + name + " is already registered as " + metric.getType());
+        }
+        return type.cast(metric);
+    }
+
+}
@@ -15,15 +15,14 @@
  */
 package com.collective.celos.server;
 
-import com.collective.celos.Constants;
-import com.collective.celos.JettyServer;
-import com.collective.celos.Scheduler;
-import com.collective.celos.Util;
+import com.collective.celos.*;
 import com.collective.celos.database.StateDatabase;
+import com.collective.celos.metrics.MetricsRegistry;
 import com.collective.celos.servlet.AbstractServlet;
 import com.google.common.collect.ImmutableMap;
 
 import java.io.File;
+import java.util.Collections;
 import java.util.Map;
 
 /**
@@ -32,6 +31,30 @@ import java.util.Map;
 public class CelosServer {
 
     private JettyServer server = new JettyServer();
+    private final SchedulerOptions options;
+    private SchedulerConfiguration schedulerConfiguration;
+    private SchedulerHolder schedulerHolder;
+    private StepQueue stepQueue;
+    private SchedulerLoop schedulerLoop;
+
+    public CelosServer() {
+        this(new SchedulerOptions());
+    }
+
+    /**
+     * Creates a server whose scheduler steps workflows using the given number of threads.
+     */
+    public CelosServer(int stepThreads) {
+        this(new SchedulerOptions(stepThreads, 0, 0, 0, 0, 0, JSConfigParser.DEFAULT_OPTIMIZATION_LEVEL,
+                WorkflowConfigurationParser.DEFAULT_PARSE_THREADS, WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS));
+    }
+
+    /**
+     * Creates a server whose scheduler uses the given options.
+     */
+    public CelosServer(SchedulerOptions options) {
+        this.options = Util.requireNonNull(options);
+    }
 
     public int startServer(Map<String, String> jsVariables, File workflowsDir, File defaultsDir, StateDatabase db) throws Exception {
         Util.validateDirExists(workflowsDir);
@@ -54,10 +77,24 @@ public class CelosServer {
         setupContext(jsVariables, workflowsDir, defaultsDir, db);
     }
 
-    private void setupContext(Map<String, String> jsVariables, File workflowsDir, File defaultsDir, StateDatabase db) {
+    private void setupContext(Map<String, String> jsVariables, File workflowsDir, File defaultsDir, StateDatabase db) throws Exception {
+        schedulerConfiguration = new SchedulerConfiguration(workflowsDir, defaultsDir, db, jsVariables, options);
+        schedulerHolder = new SchedulerHolder(schedulerConfiguration);
+        MetricsRegistry.getInstance().counter("celos_submissions_throttled_total", "Scheduling candidates not submitted because of throttling.",
+                schedulerConfiguration.getSubmissionThrottle()::getThrottled);
+        MetricsRegistry.getInstance().counter("celos_trigger_checks_skipped_total", "Trigger checks of waiting slots skipped because of backoff.",
+                schedulerConfiguration.getTriggerBackoff()::getSkipped);
+        MetricsRegistry.getInstance().counter("celos_workflow_file_cache_hits_total", "Workflow files whose workflows were reused.",
+                schedulerConfiguration.getWorkflowFileCache()::getHits);
+        MetricsRegistry.getInstance().counter("celos_workflow_file_cache_misses_total", "Workflow files that were evaluated.",
+                schedulerConfiguration.getWorkflowFileCache()::getMisses);
+        stepQueue = new StepQueue(schedulerHolder);
         Map<String, Object> attributes = ImmutableMap.of(
                 Constants.ADDITIONAL_JS_VARIABLES, jsVariables,
-                Constants.DATABASE, db
+                Constants.DATABASE, db,
+                Constants.SCHEDULER_OPTIONS, options,
+                AbstractServlet.SCHEDULER_HOLDER_ATTR, schedulerHolder,
+                AbstractServlet.STEP_QUEUE_ATTR, stepQueue
         );
         Map<String, String> initParams = ImmutableMap.of(
                 Constants.WORKFLOW_CONFIGURATION_PATH_ATTR, workflowsDir.getAbsolutePath(),
@@ -67,12 +104,62 @@ public class CelosServer {
         server.setupContext(attributes, initParams);
     }
 
+    /**
+     * Steps the scheduler every periodSeconds on a dedicated thread, without going
+     * through the HTTP API.  The /scheduler servlet can still be used in addition.
+     */
+    public void startSchedulerLoop(int periodSeconds) {
+        if (schedulerConfiguration == null) {
+            throw new IllegalStateException("Server was not started");
+        }
+        if (schedulerLoop != null) {
+            throw new IllegalStateException("Scheduler loop already started");
+        }
+        SchedulerLoop loop = new SchedulerLoop(periodSeconds * Constants.SECOND_MS, this::step);
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.counter("celos_scheduler_loop_ticks_total", "Ticks of the scheduler loop.", loop::getTicks);
+        metrics.counter("celos_scheduler_loop_coalesced_ticks_total", "Ticks skipped because the previous step took too long.", loop::getCoalescedTicks);
+        metrics.gauge("celos_scheduler_loop_lag_seconds", "Delay of the last tick of the scheduler loop.", () -> loop.getLastTickLagMillis() / 1000.0);
+        schedulerLoop = loop;
+        schedulerLoop.start();
+    }
+
+    /**
+     * Does the same as a POST to the /scheduler servlet: requests a step of all
+     * workflows for the current time, which reloads the configuration first.
+     * Waits for the step to finish, so that slow steps make the loop coalesce ticks.
+     */
+    private void step() throws Exception {
+        StepQueue.Step step = stepQueue.request(null, Collections.<WorkflowID>emptySet());
+        step.await();
+        if (step.getStatus() == StepQueue.Status.FAILED) {
+            throw new IllegalStateException("Scheduler step " + step.getID() + " failed: " + step.getError());
+        }
+    }
+
     public void stopServer() throws Exception {
+        if (schedulerLoop != null) {
+            schedulerLoop.stop();
+            schedulerLoop = null;
+        }
+        if (stepQueue != null) {
+            stepQueue.close();
+        }
+        if (schedulerHolder != null) {
+            schedulerHolder.close();
+        }
         server.stop();
     }
 
+    public SchedulerLoop getSchedulerLoop() {
+        return schedulerLoop;
+    }
+
+    /**
+     * Returns the current scheduler, or null if the configuration hasn't been loaded yet.
+     */
     public Scheduler getScheduler() {
-        return (Scheduler) server.getContext().getAttribute(AbstractServlet.SCHEDULER_ATTR);
+        return schedulerHolder.getCurrentScheduler();
     }
 
 }
\ No newline at end of file
@@ -15,23 +15,21 @@
  */
 package com.collective.celos.server;
 
-import com.collective.celos.CelosClient;
-import com.collective.celos.Constants;
+import com.collective.celos.SchedulerConfiguration;
+import com.collective.celos.SchedulerOptions;
 import com.collective.celos.Util;
-import org.apache.log4j.Logger;
+import com.collective.celos.database.CachingStateDatabase;
+import com.collective.celos.database.MeteredStateDatabase;
+import com.collective.celos.database.StateDatabase;
+import com.collective.celos.metrics.MetricsRegistry;
 
-import java.net.URI;
 import java.util.Collections;
-import java.util.Timer;
-import java.util.TimerTask;
 
 /**
  * Main entry point to the scheduler server.
  */
 public class Main {
 
-    private static Logger LOGGER = Logger.getLogger(Main.class);
-
     public static void main(String... args) throws Exception {
 
         ServerCommandLineParser serverCommandLineParser = new ServerCommandLineParser();
@@ -43,36 +41,29 @@ public class Main {
             Util.setupLogging(commandLine.getLogDir());
         }
 
-        CelosServer celosServer = new CelosServer();
+
+        StateDatabase db = commandLine.getDatabase();
+        if (commandLine.getSlotStateCache()) {
+            CachingStateDatabase cache = new CachingStateDatabase(db, 24 * SchedulerConfiguration.SLIDING_WINDOW_DAYS);
+            MetricsRegistry.getInstance().counter("celos_slot_state_cache_hits_total", "Slot state reads answered from memory.", cache::getHits);
+            MetricsRegistry.getInstance().counter("celos_slot_state_cache_misses_total", "Slot state reads that went to the backing database.", cache::getMisses);
+            db = cache;
+        }
+        db = new MeteredStateDatabase(db);
+
+        SchedulerOptions options = new SchedulerOptions(commandLine.getStepThreads(), commandLine.getHdfsNegativeCacheTtl(),
+                commandLine.getSubmissionRate(), commandLine.getSubmissionBurst(), commandLine.getMaxRunning(),
+                commandLine.getTriggerBackoffMax(), commandLine.getJsOptimizationLevel(), commandLine.getParseThreads(), commandLine.getParseTimeout());
+        CelosServer celosServer = new CelosServer(options);
         celosServer.startServer(commandLine.getPort(),
                 Collections.<String, String>emptyMap(),
                 commandLine.getWorkflowsDir(),
                 commandLine.getDefaultsDir(),
-                commandLine.getDatabase());
-
-        setupAutoschedule(commandLine.getPort(), commandLine.getAutoSchedule());
+                db);
 
-    }
-
-    static void setupAutoschedule(int port, int autoSchedule) {
-        if (autoSchedule > 0) {
-            Timer timer = new Timer(true);
-            timer.schedule(createTimerTask(port), 0, autoSchedule * Constants.SECOND_MS);
+        if (commandLine.getAutoSchedule() > 0) {
+            celosServer.startSchedulerLoop(commandLine.getAutoSchedule());
         }
-    }
-
-    private static TimerTask createTimerTask(final int port) {
-        final CelosClient celosClient = new CelosClient(URI.create("http://localhost:" + port));
 
-        return new TimerTask() {
-            @Override
-            public void run() {
-                try {
-                    celosClient.iterateScheduler();
-                } catch (Exception e) {
-                    LOGGER.error(e.getMessage(), e);
-                }
-            }
-        };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.server;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Steps the scheduler periodically on a dedicated thread.
+ *
+ * Ticks are scheduled at fixed offsets from the start of the loop, so the
+ * time a step takes doesn't make the loop drift.
+ *
+ * Steps never overlap.  If a step overruns one or more ticks, the missed
+ * ticks are coalesced into a single step that runs right away.
+ *
+ * The tick lag is the time between when a step should have started and when
+ * it actually started.
+ */
+public class SchedulerLoop {
+
+    private static Logger LOGGER = Logger.getLogger(SchedulerLoop.class);
+
+    /**
+     * A single scheduler step.
+     */
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    private final long periodMillis;
+    private final Step step;
+    private final Thread thread;
+
+    private volatile boolean running;
+    private volatile long ticks;
+    private volatile long coalescedTicks;
+    private volatile long lastTickLagMillis;
+    private volatile long maxTickLagMillis;
+
+    public SchedulerLoop(long periodMillis, Step step) {
+        if (periodMillis <= 0) {
+            throw new IllegalArgumentException("Period must be greater then zero.");
+        }
+        this.periodMillis = periodMillis;
+        this.step = step;
+        this.thread = new Thread(this::loop, "celos-scheduler-loop");
+        this.thread.setDaemon(true);
+    }
+
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    public void stop() throws InterruptedException {
+        running = false;
+        thread.interrupt();
+        thread.join();
+    }
+
+    private void loop() {
+        long nextTick = System.currentTimeMillis();
+        while (running) {
+            try {
+                sleepUntil(nextTick);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long startMillis = System.currentTimeMillis();
+            recordTick(startMillis - nextTick);
+            try {
+                step.run();
+            } catch (Exception e) {
+                LOGGER.error("Scheduler step failed: " + e.getMessage(), e);
+            }
+            nextTick = getNextTick(nextTick, System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * Returns the tick following the given one.  If the step ran past it,
+     * returns the latest tick that has already passed, so that the missed
+     * ticks are coalesced into a single step that runs right away.
+     */
+    long getNextTick(long tick, long now) {
+        long nextTick = tick + periodMillis;
+        if (now > nextTick) {
+            long missed = (now - nextTick) / periodMillis;
+            if (missed > 0) {
+                LOGGER.warn("Scheduler step overran by " + missed + " ticks, coalescing them into one step");
+                coalescedTicks += missed;
+            }
+            nextTick += missed * periodMillis;
+        }
+        return nextTick;
+    }
+
+    private void recordTick(long lagMillis) {
+        ticks++;
+        lastTickLagMillis = lagMillis;
+        maxTickLagMillis = Math.max(maxTickLagMillis, lagMillis);
+        LOGGER.info("Scheduler tick " + ticks + " lag: " + lagMillis + "ms");
+    }
+
+    private void sleepUntil(long time) throws InterruptedException {
+        long millis = time - System.currentTimeMillis();
+        if (millis > 0) {
+            Thread.sleep(millis);
+        }
+    }
+
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+
+    public long getTicks() {
+        return ticks;
+    }
+
+    public long getCoalescedTicks() {
+        return coalescedTicks;
+    }
+
+    public long getLastTickLagMillis() {
+        return lastTickLagMillis;
+    }
+
+    public long getMaxTickLagMillis() {
+        return maxTickLagMillis;
+    }
+
+}
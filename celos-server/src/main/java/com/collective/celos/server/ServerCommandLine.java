@@ -32,8 +32,20 @@ public class ServerCommandLine {
     private final int port;
     private final int autoSchedule;
     private final boolean logStdout;
+    private final int stepThreads;
+    private final boolean slotStateCache;
+    private final int hdfsNegativeCacheTtl;
+    private final double submissionRate;
+    private final int submissionBurst;
+    private final int maxRunning;
+    private final int triggerBackoffMax;
+    private final int jsOptimizationLevel;
+    private final int parseThreads;
+    private final int parseTimeout;
 
-    public ServerCommandLine(String workflowsDir, String defaultsDir, StateDatabase db, String logDir, int port, int autoSchedule, boolean logStdout) {
+    public ServerCommandLine(String workflowsDir, String defaultsDir, StateDatabase db, String logDir, int port, int autoSchedule, boolean logStdout, int stepThreads, boolean slotStateCache, int hdfsNegativeCacheTtl,
+                             double submissionRate, int submissionBurst, int maxRunning, int triggerBackoffMax,
+                             int jsOptimizationLevel, int parseThreads, int parseTimeout) {
         this.autoSchedule = autoSchedule;
         this.workflowsDir = new File(Util.requireNonNull(workflowsDir));
         this.defaultsDir = new File(Util.requireNonNull(defaultsDir));
@@ -41,6 +53,16 @@ public class ServerCommandLine {
         this.port = port;
         this.logDir = new File(Util.requireNonNull(logDir));
         this.logStdout = logStdout;
+        this.stepThreads = stepThreads;
+        this.slotStateCache = slotStateCache;
+        this.hdfsNegativeCacheTtl = hdfsNegativeCacheTtl;
+        this.submissionRate = submissionRate;
+        this.submissionBurst = submissionBurst;
+        this.maxRunning = maxRunning;
+        this.triggerBackoffMax = triggerBackoffMax;
+        this.jsOptimizationLevel = jsOptimizationLevel;
+        this.parseThreads = parseThreads;
+        this.parseTimeout = parseTimeout;
     }
 
     public int getAutoSchedule() {
@@ -70,4 +92,44 @@ public class ServerCommandLine {
     public StateDatabase getDatabase() {
         return database;
     }
+
+    public int getStepThreads() {
+        return stepThreads;
+    }
+
+    public boolean getSlotStateCache() {
+        return slotStateCache;
+    }
+
+    public int getHdfsNegativeCacheTtl() {
+        return hdfsNegativeCacheTtl;
+    }
+
+    public double getSubmissionRate() {
+        return submissionRate;
+    }
+
+    public int getSubmissionBurst() {
+        return submissionBurst;
+    }
+
+    public int getMaxRunning() {
+        return maxRunning;
+    }
+
+    public int getTriggerBackoffMax() {
+        return triggerBackoffMax;
+    }
+
+    public int getJsOptimizationLevel() {
+        return jsOptimizationLevel;
+    }
+
+    public int getParseThreads() {
+        return parseThreads;
+    }
+
+    public int getParseTimeout() {
+        return parseTimeout;
+    }
 }
@@ -16,6 +16,9 @@
 package com.collective.celos.server;
 
 import com.collective.celos.Constants;
+import com.collective.celos.JSConfigParser;
+import com.collective.celos.Scheduler;
+import com.collective.celos.WorkflowConfigurationParser;
 import com.collective.celos.database.FileSystemStateDatabase;
 import com.collective.celos.database.JDBCStateDatabase;
 import com.collective.celos.database.StateDatabase;
@@ -42,6 +45,16 @@ public class ServerCommandLineParser {
     private static final String CLI_STATE_DB_JDBC_NAME = "jdbcName";
     private static final String CLI_STATE_DB_JDBC_PASSWORD = "jdbcPassword";
     private static final String CLI_LOG_STDOUT = "stdout";
+    private static final String CLI_STEP_THREADS = "stepThreads";
+    private static final String CLI_SLOT_STATE_CACHE = "slotStateCache";
+    private static final String CLI_HDFS_NEGATIVE_CACHE_TTL = "hdfsNegativeCacheTtl";
+    private static final String CLI_SUBMISSION_RATE = "submissionRate";
+    private static final String CLI_SUBMISSION_BURST = "submissionBurst";
+    private static final String CLI_MAX_RUNNING = "maxRunning";
+    private static final String CLI_TRIGGER_BACKOFF_MAX = "triggerBackoffMax";
+    private static final String CLI_JS_OPTIMIZATION_LEVEL = "jsOptimizationLevel";
+    private static final String CLI_PARSE_THREADS = "parseThreads";
+    private static final String CLI_PARSE_TIMEOUT = "parseTimeout";
     public static final String DB_TYPE_FILESYSTEM = "FILESYSTEM";
     public static final String DB_TYPE_JDBC = "JDBC";
 
@@ -58,8 +71,19 @@ public class ServerCommandLineParser {
         Integer autoSchedule = Integer.valueOf(getDefault(commandLine, CLI_AUTOSCHEDULE, "-1"));
         StateDatabase db = getStateDatabaseConfig(commandLine);
         boolean logStdout = Boolean.valueOf(commandLine.hasOption(CLI_LOG_STDOUT));
-
-        return new ServerCommandLine(workflowsDir, defaultsDir, db, logDir, port, autoSchedule, logStdout);
+        Integer stepThreads = Integer.valueOf(getDefault(commandLine, CLI_STEP_THREADS, String.valueOf(Scheduler.DEFAULT_STEP_THREADS)));
+        boolean slotStateCache = commandLine.hasOption(CLI_SLOT_STATE_CACHE);
+        Integer hdfsNegativeCacheTtl = Integer.valueOf(getDefault(commandLine, CLI_HDFS_NEGATIVE_CACHE_TTL, "0"));
+        Double submissionRate = Double.valueOf(getDefault(commandLine, CLI_SUBMISSION_RATE, "0"));
+        Integer submissionBurst = Integer.valueOf(getDefault(commandLine, CLI_SUBMISSION_BURST, "0"));
+        Integer maxRunning = Integer.valueOf(getDefault(commandLine, CLI_MAX_RUNNING, "0"));
+        Integer triggerBackoffMax = Integer.valueOf(getDefault(commandLine, CLI_TRIGGER_BACKOFF_MAX, "0"));
+        Integer jsOptimizationLevel = Integer.valueOf(getDefault(commandLine, CLI_JS_OPTIMIZATION_LEVEL, String.valueOf(JSConfigParser.DEFAULT_OPTIMIZATION_LEVEL)));
+        Integer parseThreads = Integer.valueOf(getDefault(commandLine, CLI_PARSE_THREADS, String.valueOf(WorkflowConfigurationParser.DEFAULT_PARSE_THREADS)));
+        Integer parseTimeout = Integer.valueOf(getDefault(commandLine, CLI_PARSE_TIMEOUT, String.valueOf(WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS)));
+
+        return new ServerCommandLine(workflowsDir, defaultsDir, db, logDir, port, autoSchedule, logStdout, stepThreads, slotStateCache, hdfsNegativeCacheTtl,
+                submissionRate, submissionBurst, maxRunning, triggerBackoffMax, jsOptimizationLevel, parseThreads, parseTimeout);
     }
 
     private String getRequiredArgument(CommandLine commandLine, String argument) {
@@ -110,7 +134,17 @@ public class ServerCommandLineParser {
                 .addOption(CLI_STATE_DB_JDBC_PASSWORD, CLI_STATE_DB_JDBC_PASSWORD, true, "Celos JDBC db password")
                 .addOption(CLI_LOG_DIR, CLI_LOG_DIR, true, "Celos logs dir")
                 .addOption(CLI_AUTOSCHEDULE, CLI_AUTOSCHEDULE, true, "Time period in seconds to automatically run Scheduler. If not specified, Scheduler will not be automatically run")
-                .addOption(CLI_LOG_STDOUT, CLI_LOG_STDOUT, false, "If specified, will send all logs to stdout (helpful if running inside a container).  Takes precedence over " + CLI_LOG_DIR);
+                .addOption(CLI_LOG_STDOUT, CLI_LOG_STDOUT, false, "If specified, will send all logs to stdout (helpful if running inside a container).  Takes precedence over " + CLI_LOG_DIR)
+                .addOption(CLI_STEP_THREADS, CLI_STEP_THREADS, true, "Number of threads used to step workflows in parallel. Defaults to " + Scheduler.DEFAULT_STEP_THREADS + " (sequential)")
+                .addOption(CLI_SLOT_STATE_CACHE, CLI_SLOT_STATE_CACHE, false, "If specified, keeps the slot states of the sliding window in memory.  Requires that this server is the only one writing to the state db")
+                .addOption(CLI_HDFS_NEGATIVE_CACHE_TTL, CLI_HDFS_NEGATIVE_CACHE_TTL, true, "Time in seconds during which HDFS paths found missing by triggers are not checked again.  Defaults to 0 (always check)")
+                .addOption(CLI_SUBMISSION_RATE, CLI_SUBMISSION_RATE, true, "Maximum number of slot submissions per second, across all workflows.  Defaults to 0 (unlimited)")
+                .addOption(CLI_SUBMISSION_BURST, CLI_SUBMISSION_BURST, true, "Maximum number of slot submissions at once when " + CLI_SUBMISSION_RATE + " is set.  Defaults to a minute's worth")
+                .addOption(CLI_MAX_RUNNING, CLI_MAX_RUNNING, true, "Maximum number of running slots, across all workflows.  Defaults to 0 (unlimited)")
+                .addOption(CLI_TRIGGER_BACKOFF_MAX, CLI_TRIGGER_BACKOFF_MAX, true, "Maximum time in seconds between trigger checks of long-waiting slots.  Defaults to 0 (check in every step)")
+                .addOption(CLI_JS_OPTIMIZATION_LEVEL, CLI_JS_OPTIMIZATION_LEVEL, true, "Rhino optimization level for workflow files, from -1 (interpreted) to 9.  Defaults to " + JSConfigParser.DEFAULT_OPTIMIZATION_LEVEL)
+                .addOption(CLI_PARSE_THREADS, CLI_PARSE_THREADS, true, "Number of threads used to evaluate workflow files in parallel. Defaults to " + WorkflowConfigurationParser.DEFAULT_PARSE_THREADS + " (sequential)")
+                .addOption(CLI_PARSE_TIMEOUT, CLI_PARSE_TIMEOUT, true, "Time in seconds after which the evaluation of a workflow file is aborted.  Defaults to " + WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS + ", 0 means no timeout");
         return options;
     }
 
@@ -18,6 +18,7 @@ package com.collective.celos.servlet;
 import java.io.File;
 import java.io.IOException;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -35,32 +36,46 @@ import com.google.common.collect.ImmutableMap;
 /**
  * Superclass for all servlets that access the database.
  *
- * Serializes all database accesses with a lock.
+ * Servlets don't lock each other out: reads run concurrently with each
+ * other, with changes, and with scheduler steps.  Servlets that change a
+ * slot, workflow, or register bucket hold its lock (see MutationLocks) while
+ * doing so.  Scheduler steps run in the background (see StepQueue).
  */
 @SuppressWarnings("serial")
 public abstract class AbstractServlet extends HttpServlet {
 
     private static Logger LOGGER = Logger.getLogger(AbstractServlet.class);
-    public static final String SCHEDULER_ATTR = "celos.scheduler";
-    
-    /**
-     * This lock serves to synchronize all operations.
-     */
-    protected static final Object LOCK = new Object();
+    public static final String SCHEDULER_HOLDER_ATTR = "celos.schedulerHolder";
+    public static final String STEP_QUEUE_ATTR = "celos.stepQueue";
+
+    // Serializes the creation of the scheduler holder and step queue by servlets that find none
+    private static final Object SCHEDULER_HOLDER_LOCK = new Object();
 
     @Override
     public void service(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
-        synchronized(LOCK) {
-            try {
-                super.service(req, res);
-            } catch(ServletException|IOException|RuntimeException e) {
-                LOGGER.error(e.getMessage(), e);
-                res.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getLocalizedMessage());
-                throw e;
-            }
+        try {
+            super.service(req, res);
+        } catch(ServletException|IOException|RuntimeException e) {
+            LOGGER.error(e.getMessage(), e);
+            res.sendError(HttpServletResponse.SC_BAD_REQUEST, e.getLocalizedMessage());
+            throw e;
         }
     }
 
+    /**
+     * Acquires the mutation lock of a slot, workflow, or register bucket.
+     */
+    protected void lock(Object key) {
+        MutationLocks.getInstance().lock(key, getClass().getSimpleName());
+    }
+
+    /**
+     * Releases the mutation lock acquired with lock().
+     */
+    protected void unlock(Object key) {
+        MutationLocks.getInstance().unlock(key);
+    }
+
     protected ScheduledTime getRequestTime(HttpServletRequest req) {
         String t = req.getParameter(CelosClient.TIME_PARAM);
         if (t == null) {
@@ -73,14 +88,20 @@ public abstract class AbstractServlet extends HttpServlet {
     /*
      * Scheduler cache
      *
-     * Reading and evaluating the .js files takes a bit of time, so it is cached
-     * between servlet calls.
+     * Reading and evaluating the .js files takes a bit of time, so the
+     * scheduler is cached between servlet calls, in a SchedulerHolder.
+     *
+     * Scheduler steps, requested through the scheduler servlet, reload the
+     * configuration on the step queue's thread, whereas all servlets use
+     * getOrCreateCachedScheduler() which retrieves the current scheduler.
+     * A reload publishes the new scheduler atomically, so other servlets
+     * neither wait for it nor see a partially loaded configuration.  Only if
+     * no scheduler has been loaded yet, the first servlet to need one loads it.
+     * The clear-cache servlet can be used during e.g. integration testing
+     * to force a reload of the configuration.
      *
-     * The scheduler servlet uses createAndCacheScheduler(), which refreshes
-     * the cache once a minute, whereas all other servlets use, for performance,
-     * getOrCreateCachedScheduler() which usually retrieves the cached
-     * scheduler. The clear-cache servlet can be used during e.g. integration testing
-     * to reset the cache and force a reload of the configuration.
+     * When the scheduler is reloaded, only workflow files that changed since the
+     * last reload are evaluated again (see WorkflowFileCache).
      */
 
     private SchedulerConfiguration getSchedulerConfiguration() throws IOException {
@@ -92,30 +113,67 @@ public abstract class AbstractServlet extends HttpServlet {
         if (additionalVars == null) {
             additionalVars = ImmutableMap.of();
         }
+        SchedulerOptions options = (SchedulerOptions) getServletContext().getAttribute(Constants.SCHEDULER_OPTIONS);
+        if (options == null) {
+            options = new SchedulerOptions();
+        }
         SchedulerConfiguration schedulerConfiguration = new SchedulerConfiguration(
-                new File(workflowConfigPath), new File(defaultsConfigPath), database, additionalVars
+                new File(workflowConfigPath), new File(defaultsConfigPath), database, additionalVars, options
         );
         return schedulerConfiguration;
     }
 
-    protected Scheduler createAndCacheScheduler() throws Exception {
-        SchedulerConfiguration schedulerConfiguration = getSchedulerConfiguration();
-        Scheduler sch = schedulerConfiguration.makeDefaultScheduler();
-        getServletContext().setAttribute(SCHEDULER_ATTR, sch);
-        return sch;
+    /**
+     * Returns the scheduler holder, which the server normally puts into the
+     * servlet context.  If it's missing, it is created on first use.
+     */
+    protected SchedulerHolder getSchedulerHolder() throws IOException {
+        SchedulerHolder holder = (SchedulerHolder) getServletContext().getAttribute(SCHEDULER_HOLDER_ATTR);
+        if (holder != null) {
+            return holder;
+        }
+        synchronized (SCHEDULER_HOLDER_LOCK) {
+            holder = (SchedulerHolder) getServletContext().getAttribute(SCHEDULER_HOLDER_ATTR);
+            if (holder == null) {
+                holder = new SchedulerHolder(getSchedulerConfiguration());
+                getServletContext().setAttribute(SCHEDULER_HOLDER_ATTR, holder);
+            }
+            return holder;
+        }
+    }
+
+    /**
+     * Returns the step queue, which the server normally puts into the servlet
+     * context.  If it's missing, it is created on first use.
+     */
+    protected StepQueue getStepQueue() throws IOException {
+        StepQueue queue = (StepQueue) getServletContext().getAttribute(STEP_QUEUE_ATTR);
+        if (queue != null) {
+            return queue;
+        }
+        SchedulerHolder holder = getSchedulerHolder();
+        synchronized (SCHEDULER_HOLDER_LOCK) {
+            queue = (StepQueue) getServletContext().getAttribute(STEP_QUEUE_ATTR);
+            if (queue == null) {
+                queue = new StepQueue(holder);
+                getServletContext().setAttribute(STEP_QUEUE_ATTR, queue);
+            }
+            return queue;
+        }
     }
 
     protected Scheduler getOrCreateCachedScheduler() throws Exception {
-        Scheduler sch = (Scheduler) getServletContext().getAttribute(SCHEDULER_ATTR);
-        if (sch == null) {
-            return createAndCacheScheduler();
-        } else {
-            return sch;
-        }
+        return getSchedulerHolder().getScheduler();
     }
 
-    protected void clearSchedulerCache() {
-        getServletContext().removeAttribute(SCHEDULER_ATTR);
+    /**
+     * Forgets the evaluated workflow files, and queues a background reload of the configuration.
+     *
+     * @return The scheduler with the reloaded configuration, once it's in use.
+     */
+    protected Future<Scheduler> clearSchedulerCache() throws Exception {
+        getSchedulerConfiguration().getWorkflowFileCache().clear();
+        return getSchedulerHolder().reloadInBackground();
     }
 
     protected StateDatabase getStateDatabase() throws IOException {
@@ -15,20 +15,37 @@
  */
 package com.collective.celos.servlet;
 
+import java.util.concurrent.Future;
+
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import com.collective.celos.CelosClient;
+import com.collective.celos.Scheduler;
+
 /**
- * Posting to this servlet clears the scheduler cache.
+ * Posting to this servlet clears the scheduler cache, and reloads the configuration.
  * 
+ * The request returns once the reload is queued, and other requests keep
+ * using the previous configuration until the reloaded one is in use.  With
+ * wait=true, the request only returns once the reloaded configuration is in
+ * use, which is what tests that change workflow files need.
+ *
  * This is mostly for internal use during testing.
  */
 @SuppressWarnings("serial")
 public class ClearCacheServlet extends AbstractServlet {
 
     protected void doPost(HttpServletRequest req, HttpServletResponse res) throws ServletException {
-        clearSchedulerCache();
+        try {
+            Future<Scheduler> reload = clearSchedulerCache();
+            if (Boolean.parseBoolean(req.getParameter(CelosClient.WAIT_PARAM))) {
+                reload.get();
+            }
+        } catch(Exception e) {
+            throw new ServletException(e);
+        }
     }
 
 }
@@ -42,6 +42,7 @@ import java.util.List;
  *       ]
  *   },
  *   "paused": false,
+ *   "concurrencyLimit": 2,
  *   "slots": [
  *      { "time": "2013-12-07T13:00:00.000Z", "status": "RUNNING", "externalID": "237982137-371832798321-W", retryCount: 5 },
  *      { "time": "2013-12-07T14:00:00.000Z", "status": "READY", "externalID": null, retryCount: 0 },
@@ -55,6 +56,10 @@ import java.util.List;
  * If the "start" parameter is supplied, information is returned about 
  * slot states starting at that time.
  * Defaults to the beginning of the sliding window ending at "end".
+ *
+ * The "concurrencyLimit" is the number of slots the workflow's scheduling
+ * strategy currently lets run at once.  It's left out if the strategy has
+ * no such limit.
  */
 @SuppressWarnings("serial")
 public class JSONWorkflowSlotsServlet extends AbstractJSONServlet {
@@ -76,7 +81,7 @@ public class JSONWorkflowSlotsServlet extends AbstractJSONServlet {
             ScheduledTime endTime = getTimeParam(req, CelosClient.END_TIME_PARAM, new ScheduledTime(DateTime.now(DateTimeZone.UTC)));
             ScheduledTime startTime = getTimeParam(req, CelosClient.START_TIME_PARAM, scheduler.getWorkflowStartTime(wf, endTime));
 
-            if (startTime.plusHours(scheduler.getSlidingWindowHours()).getDateTime().isBefore(endTime.getDateTime())) {
+            if (startTime.plusHours(scheduler.getSlidingWindowHours()).isBefore(endTime)) {
                 res.sendError(HttpServletResponse.SC_BAD_REQUEST, "Time interval between start and end is limited to: " + scheduler.getSlidingWindowHours() + " hours");
                 return;
             }
@@ -90,6 +95,10 @@ public class JSONWorkflowSlotsServlet extends AbstractJSONServlet {
                 ObjectNode node = Util.MAPPER.createObjectNode();
                 node.put(CelosClient.INFO_NODE, (JsonNode) Util.MAPPER.valueToTree(wf.getWorkflowInfo()));
                 node.put(CelosClient.PAUSE_NODE, connection.isPaused(wf.getID()));
+                Integer concurrencyLimit = wf.getSchedulingStrategy().getConcurrencyLimit(wf.getID());
+                if (concurrencyLimit != null) {
+                    node.put(CelosClient.CONCURRENCY_LIMIT_NODE, concurrencyLimit);
+                }
                 node.putArray(CelosClient.SLOTS_NODE).addAll(objectNodes);
                 writer.writeValue(res.getOutputStream(), node);
             }
@@ -59,18 +59,24 @@ public class KillServlet extends AbstractServlet {
                 res.sendError(HttpServletResponse.SC_NOT_FOUND, "Slot is not found: " + slotID);
                 return;
             }
+            lock(slotID);
             try (StateDatabaseConnection db = getStateDatabase().openConnection()) {
                 SlotState state = db.getSlotState(slotID);
                 LOGGER.info("Killing slot: " + slotID);
+                SlotState newState;
                 if (state == null) {
-                    db.putSlotState(new SlotState(slotID, SlotState.Status.KILLED));
+                    newState = new SlotState(slotID, SlotState.Status.KILLED);
                 } else {
                     if (state.getExternalID() != null) {
                         workflow.getExternalService().kill(slotID, state.getExternalID());
                     }
-                    SlotState newState = state.transitionToKill();
-                    db.putSlotState(newState);
+                    newState = state.transitionToKill();
                 }
+                db.putSlotState(newState);
+                MutationLocks.getInstance().slotChanged(slotID);
+                SlotTransitionBus.getInstance().publish(state, newState);
+            } finally {
+                unlock(slotID);
             }
         } catch(Exception e) {
             throw new ServletException(e);
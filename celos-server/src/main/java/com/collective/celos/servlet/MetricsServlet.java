@@ -0,0 +1,46 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.servlet;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.collective.celos.metrics.MetricsRegistry;
+
+/**
+ * Returns the metrics of the server in the Prometheus text exposition format.
+ *
+ * Doesn't take the global lock, so that metrics can be scraped while the
+ * scheduler is stepping.
+ *
+ * GET /metrics
+ */
+@SuppressWarnings("serial")
+public class MetricsServlet extends HttpServlet {
+
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException, IOException {
+        res.setContentType(CONTENT_TYPE);
+        res.getOutputStream().write(MetricsRegistry.getInstance().format().getBytes(StandardCharsets.UTF_8));
+    }
+
+}
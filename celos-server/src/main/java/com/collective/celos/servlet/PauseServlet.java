@@ -51,8 +51,11 @@ public class PauseServlet extends AbstractServlet {
             }
 
             Boolean pause = Boolean.parseBoolean(req.getParameter(CelosClient.PAUSE_NODE));
-            try(StateDatabaseConnection connection = getStateDatabase().openConnection()) {
+            lock(workflowID);
+            try (StateDatabaseConnection connection = getStateDatabase().openConnection()) {
                 connection.setPaused(workflowID, pause);
+            } finally {
+                unlock(workflowID);
             }
         } catch(Exception e) {
             throw new ServletException(e);
@@ -50,8 +50,11 @@ public class RegisterServlet extends AbstractJSONServlet {
             BucketID bucket = getRequestBucketID(req);
             RegisterKey key = getRequestKey(req);
             JsonNode value = Util.JSON_READER.readTree(new InputStreamReader(req.getInputStream(), StandardCharsets.UTF_8));
-            try(StateDatabaseConnection connection = getStateDatabase().openConnection()) {
+            lock(bucket);
+            try (StateDatabaseConnection connection = getStateDatabase().openConnection()) {
                 connection.putRegister(bucket, key, value);
+            } finally {
+                unlock(bucket);
             }
         } catch (Exception e) {
             throw new ServletException(e);
@@ -61,7 +64,8 @@ public class RegisterServlet extends AbstractJSONServlet {
     protected void doDelete(HttpServletRequest req, HttpServletResponse res) throws ServletException {
         BucketID bucket = getRequestBucketID(req);
         try {
-            try(StateDatabaseConnection connection = getStateDatabase().openConnection()) {
+            lock(bucket);
+            try (StateDatabaseConnection connection = getStateDatabase().openConnection()) {
                 if (req.getParameter(CelosClient.KEY_PARAM) != null) {
                     connection.deleteRegister(bucket, getRequestKey(req));
                 } else if (req.getParameter(CelosClient.PREFIX_PARAM) != null) {
@@ -69,6 +73,8 @@ public class RegisterServlet extends AbstractJSONServlet {
                 } else {
                     throw new IllegalArgumentException("Either " + CelosClient.KEY_PARAM + " or " + CelosClient.PREFIX_PARAM + " should be specified");
                 }
+            } finally {
+                unlock(bucket);
             }
         } catch (Exception e) {
             throw new ServletException(e);
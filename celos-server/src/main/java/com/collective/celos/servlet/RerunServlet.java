@@ -60,12 +60,17 @@ public class RerunServlet extends AbstractServlet {
                 return;
             }
 
-            try(StateDatabaseConnection db = getStateDatabase().openConnection()) {
+            lock(slot);
+            try (StateDatabaseConnection db = getStateDatabase().openConnection()) {
                 SlotState state = db.getSlotState(slot);
                 if (state != null) {
                     updateSlotToRerun(state, db);
                 }
                 db.markSlotForRerun(slot, ScheduledTime.now());
+                scheduler.getTriggerBackoff().reset(slot, db);
+                MutationLocks.getInstance().slotChanged(slot);
+            } finally {
+                unlock(slot);
             }
         } catch(Exception e) {
             throw new ServletException(e);
@@ -76,6 +81,7 @@ public class RerunServlet extends AbstractServlet {
         LOGGER.info("Scheduling Slot for rerun: " + state.getSlotID());
         SlotState newState = state.transitionToRerun();
         db.putSlotState(newState);
+        SlotTransitionBus.getInstance().publish(state, newState);
     }
 
 }
@@ -24,26 +24,34 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import com.collective.celos.*;
-import com.collective.celos.database.StateDatabaseConnection;
 
 /**
- * Posting to this servlet triggers a scheduler step.
+ * Posting to this servlet requests a scheduler step, and returns 202 Accepted
+ * with the step's JSON status (see SchedulerStepServlet), without waiting for
+ * the step to finish.
  * 
  * If the "time" parameter is supplied, the step is performed for that time. 
+ * Otherwise, it is performed for the time it starts.
+ *
+ * If the "ids" parameter is supplied, only the given workflows are stepped.
+ *
+ * Steps run one at a time, and a request may be served by a step that is
+ * already running or queued (see StepQueue).
+ *
+ * Workflows are stepped in parallel if the server was started with more than one step thread.
  */
 @SuppressWarnings("serial")
-public class SchedulerServlet extends AbstractServlet {
+public class SchedulerServlet extends AbstractJSONServlet {
 
     protected void doPost(HttpServletRequest req, HttpServletResponse res) throws ServletException {
         try {
-            Scheduler scheduler = createAndCacheScheduler();
-            ScheduledTime current = getRequestTime(req);
-            Set<WorkflowID> workflowIDs = getWorkflowIDs(req);
-            try(StateDatabaseConnection connection = getStateDatabase().openConnection()) {
-                scheduler.step(current, workflowIDs, connection);
-            }
+            ScheduledTime time = req.getParameter(CelosClient.TIME_PARAM) == null ? null : getRequestTime(req);
+            StepQueue.Step step = getStepQueue().request(time, getWorkflowIDs(req));
+            res.setStatus(HttpServletResponse.SC_ACCEPTED);
+            res.setHeader("Location", req.getContextPath() + SchedulerStepServlet.PATH + step.getID());
+            writer.writeValue(res.getOutputStream(), step.toJSONNode());
         } catch(Exception e) {
-            throw new RuntimeException(e);
+            throw new ServletException(e);
         }
     }
 
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.servlet;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import com.collective.celos.StepQueue;
+
+/**
+ * Returns the JSON status of a scheduler step requested through the
+ * scheduler servlet: its status, progress, duration, and the outcome of each
+ * workflow stepped so far.
+ *
+ * The step ID is the last path element, e.g. /scheduler/steps/42.
+ */
+@SuppressWarnings("serial")
+public class SchedulerStepServlet extends AbstractJSONServlet {
+
+    public static final String PATH = "/scheduler/steps/";
+
+    protected void doGet(HttpServletRequest req, HttpServletResponse res) throws ServletException {
+        try {
+            String pathInfo = req.getPathInfo();
+            StepQueue.Step step = null;
+            if (pathInfo != null && pathInfo.matches("/[0-9]{1,18}")) {
+                step = getStepQueue().getStep(Long.parseLong(pathInfo.substring(1)));
+            }
+            if (step == null) {
+                res.sendError(HttpServletResponse.SC_NOT_FOUND, "Step not found: " + pathInfo);
+                return;
+            }
+            writer.writeValue(res.getOutputStream(), step.toJSONNode());
+        } catch (Exception e) {
+            throw new ServletException(e);
+        }
+    }
+
+}
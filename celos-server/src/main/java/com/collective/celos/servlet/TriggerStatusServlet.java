@@ -26,6 +26,9 @@ import com.collective.celos.trigger.TriggerStatus;
 
 /**
  * Returns information about a trigger.
+ *
+ * Also makes the scheduler check the trigger of the slot in its next step,
+ * even if the slot is backed off.
  * 
  * Parameters:
  * 
@@ -50,7 +53,9 @@ public class TriggerStatusServlet extends AbstractJSONServlet {
                 return;
             }
             try(StateDatabaseConnection connection = getStateDatabase().openConnection()) {
-                TriggerStatus status = wf.getTrigger().getTriggerStatus(connection, ScheduledTime.now(), getRequestTime(req));
+                ScheduledTime time = getRequestTime(req);
+                TriggerStatus status = wf.getTrigger().evaluate(connection, ScheduledTime.now(), time);
+                scheduler.getTriggerBackoff().reset(new SlotID(wf.getID(), time), connection);
                 writer.writeValue(res.getOutputStream(), status);
             }
         } catch (Exception e) {
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import java.util.Random;
+
+/**
+ * A distribution of non-negative values, e.g. job runtimes or call latencies.
+ *
+ * Distributions are written as name:parameters, e.g. on the command line:
+ *
+ * - constant:C -- always C
+ *
+ * - uniform:A,B -- uniformly between A and B
+ *
+ * - exponential:M -- exponentially with mean M
+ *
+ * - lognormal:M,S -- log-normally with median M and shape S (the standard
+ *   deviation of the logarithm), which gives the long tail of job runtimes
+ */
+public abstract class Distribution {
+
+    private final String spec;
+
+    private Distribution(String spec) {
+        this.spec = spec;
+    }
+
+    /**
+     * Draws a value.
+     */
+    public abstract double sample(Random random);
+
+    public static Distribution parse(String spec) {
+        String[] nameAndParams = spec.trim().split(":", 2);
+        String name = nameAndParams[0].toLowerCase();
+        double[] params = parseParams(spec, nameAndParams.length > 1 ? nameAndParams[1] : "");
+        switch (name) {
+            case "constant":
+                requireParams(spec, params, 1);
+                return constant(params[0]);
+            case "uniform":
+                requireParams(spec, params, 2);
+                return uniform(params[0], params[1]);
+            case "exponential":
+                requireParams(spec, params, 1);
+                return exponential(params[0]);
+            case "lognormal":
+                requireParams(spec, params, 2);
+                return logNormal(params[0], params[1]);
+            default:
+                throw new IllegalArgumentException("Unknown distribution: " + spec);
+        }
+    }
+
+    public static Distribution constant(double value) {
+        requireNotNegative(value, "Constant");
+        return new Distribution("constant:" + value) {
+            @Override
+            public double sample(Random random) {
+                return value;
+            }
+        };
+    }
+
+    public static Distribution uniform(double min, double max) {
+        requireNotNegative(min, "Minimum");
+        if (max < min) {
+            throw new IllegalArgumentException("Maximum must not be less than minimum.");
+        }
+        return new Distribution("uniform:" + min + "," + max) {
+            @Override
+            public double sample(Random random) {
+                return min + random.nextDouble() * (max - min);
+            }
+        };
+    }
+
+    public static Distribution exponential(double mean) {
+        requireNotNegative(mean, "Mean");
+        return new Distribution("exponential:" + mean) {
+            @Override
+            public double sample(Random random) {
+                return -mean * Math.log(1 - random.nextDouble());
+            }
+        };
+    }
+
+    public static Distribution logNormal(double median, double shape) {
+        requireNotNegative(median, "Median");
+        requireNotNegative(shape, "Shape");
+        return new Distribution("lognormal:" + median + "," + shape) {
+            @Override
+            public double sample(Random random) {
+                return median * Math.exp(shape * random.nextGaussian());
+            }
+        };
+    }
+
+    private static double[] parseParams(String spec, String params) {
+        if (params.trim().isEmpty()) {
+            return new double[0];
+        }
+        String[] parts = params.split(",");
+        double[] values = new double[parts.length];
+        for (int i = 0; i < parts.length; i++) {
+            try {
+                values[i] = Double.parseDouble(parts[i].trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Bad distribution parameter in " + spec + ": " + parts[i]);
+            }
+        }
+        return values;
+    }
+
+    private static void requireParams(String spec, double[] params, int count) {
+        if (params.length != count) {
+            throw new IllegalArgumentException("Distribution " + spec + " needs " + count + " parameter(s).");
+        }
+    }
+
+    private static void requireNotNegative(double value, String name) {
+        if (value < 0) {
+            throw new IllegalArgumentException(name + " must not be negative.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+
+}
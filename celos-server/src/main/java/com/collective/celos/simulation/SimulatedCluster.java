@@ -0,0 +1,214 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.collective.celos.ExternalStatus;
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.Util;
+
+/**
+ * The simulated Oozie and HDFS that simulated external services and triggers talk to.
+ *
+ * Job runtimes and data arrival delays are drawn from their distributions
+ * and pass in virtual time: a job started at virtual time t with runtime r
+ * is running until t + r, and the data of a path checked for scheduled time
+ * t exists from t + delay on.  The delay of a path is drawn the first time
+ * it is checked, so all workflows waiting for the same path see it arrive
+ * at the same time.
+ *
+ * Submit and exists latencies, on the other hand, are spent in real time,
+ * multiplied by the latency scale, so that they show up in the wall time of
+ * scheduler steps like the latencies of real services do.  A latency scale
+ * of zero disables them.
+ *
+ * Workflow files create their simulated services and triggers while they're
+ * evaluated, with the cluster the simulator puts in their scope as JS_VARIABLE.
+ */
+public class SimulatedCluster {
+
+    public static final String JS_VARIABLE = "celosSimulatedCluster";
+
+    private final VirtualClock clock;
+    private final Random random;
+    private final Distribution runtimeSeconds;
+    private final double failureRate;
+    private final Distribution submitLatencyMillis;
+    private final Distribution arrivalDelaySeconds;
+    private final Distribution existsLatencyMillis;
+    private final double latencyScale;
+
+    private final ConcurrentMap<String, Job> jobs = new ConcurrentHashMap<>();
+    // Resolved path -> virtual time of data arrival
+    private final ConcurrentMap<String, ScheduledTime> arrivals = new ConcurrentHashMap<>();
+    private final AtomicLong submits = new AtomicLong();
+    private final AtomicLong existsChecks = new AtomicLong();
+
+    public SimulatedCluster(VirtualClock clock, long seed, Distribution runtimeSeconds, double failureRate, Distribution submitLatencyMillis,
+                            Distribution arrivalDelaySeconds, Distribution existsLatencyMillis, double latencyScale) {
+        if (failureRate < 0 || failureRate > 1) {
+            throw new IllegalArgumentException("Failure rate must be between 0 and 1.");
+        }
+        if (latencyScale < 0) {
+            throw new IllegalArgumentException("Latency scale must not be negative.");
+        }
+        this.clock = Util.requireNonNull(clock);
+        this.random = new Random(seed);
+        this.runtimeSeconds = Util.requireNonNull(runtimeSeconds);
+        this.failureRate = failureRate;
+        this.submitLatencyMillis = Util.requireNonNull(submitLatencyMillis);
+        this.arrivalDelaySeconds = Util.requireNonNull(arrivalDelaySeconds);
+        this.existsLatencyMillis = Util.requireNonNull(existsLatencyMillis);
+        this.latencyScale = latencyScale;
+    }
+
+    public VirtualClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Creates a job, and returns its ID.
+     */
+    public String submit() {
+        pause(submitLatencyMillis);
+        long runtimeMillis = (long) (runtimeSeconds.sample(random) * 1000);
+        boolean fails = random.nextDouble() < failureRate;
+        String id = "sim-" + submits.incrementAndGet();
+        jobs.put(id, new Job(runtimeMillis, fails));
+        return id;
+    }
+
+    public void start(String jobID) {
+        getJob(jobID).start(clock.now().getMillis());
+    }
+
+    public void kill(String jobID) {
+        getJob(jobID).kill();
+    }
+
+    public JobStatus getStatus(String jobID) {
+        return getJob(jobID).getStatus(clock.now().getMillis());
+    }
+
+    private Job getJob(String jobID) {
+        Job job = jobs.get(jobID);
+        if (job == null) {
+            throw new IllegalArgumentException("Unknown job: " + jobID);
+        }
+        return job;
+    }
+
+    /**
+     * Returns true if the data of the given path for the given scheduled time has arrived by now.
+     */
+    public boolean exists(String path, ScheduledTime scheduledTime, ScheduledTime now) {
+        existsChecks.incrementAndGet();
+        pause(existsLatencyMillis);
+        ScheduledTime arrival = arrivals.computeIfAbsent(path, p ->
+                new ScheduledTime(scheduledTime.getMillis() + (long) (arrivalDelaySeconds.sample(random) * 1000)));
+        return !now.isBefore(arrival);
+    }
+
+    /**
+     * Number of jobs submitted so far.
+     */
+    public long getSubmits() {
+        return submits.get();
+    }
+
+    /**
+     * Number of exists checks made so far.
+     */
+    public long getExistsChecks() {
+        return existsChecks.get();
+    }
+
+    private void pause(Distribution latencyMillis) {
+        if (latencyScale == 0) {
+            return;
+        }
+        long millis = Math.round(latencyMillis.sample(random) * latencyScale);
+        if (millis > 0) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public enum JobStatus implements ExternalStatus {
+
+        PREP(true, false), RUNNING(true, false), SUCCEEDED(false, true), FAILED(false, false), KILLED(false, false);
+
+        private final boolean running;
+        private final boolean success;
+
+        JobStatus(boolean running, boolean success) {
+            this.running = running;
+            this.success = success;
+        }
+
+        @Override
+        public boolean isRunning() {
+            return running;
+        }
+
+        @Override
+        public boolean isSuccess() {
+            return success;
+        }
+    }
+
+    private static class Job {
+
+        private final long runtimeMillis;
+        private final boolean fails;
+        // Virtual start time, or -1 if not started yet
+        private long startMillis = -1;
+        private boolean killed;
+
+        private Job(long runtimeMillis, boolean fails) {
+            this.runtimeMillis = runtimeMillis;
+            this.fails = fails;
+        }
+
+        synchronized void start(long nowMillis) {
+            startMillis = nowMillis;
+        }
+
+        synchronized void kill() {
+            killed = true;
+        }
+
+        synchronized JobStatus getStatus(long nowMillis) {
+            if (killed) {
+                return JobStatus.KILLED;
+            } else if (startMillis < 0) {
+                return JobStatus.PREP;
+            } else if (nowMillis < startMillis + runtimeMillis) {
+                return JobStatus.RUNNING;
+            } else {
+                return fails ? JobStatus.FAILED : JobStatus.SUCCEEDED;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import com.collective.celos.ExternalService;
+import com.collective.celos.ExternalServiceException;
+import com.collective.celos.ExternalStatus;
+import com.collective.celos.SlotID;
+import com.collective.celos.Util;
+
+/**
+ * Runs slots as jobs of a simulated cluster instead of Oozie.
+ */
+public class SimulatedExternalService implements ExternalService {
+
+    private final SimulatedCluster cluster;
+
+    public SimulatedExternalService(SimulatedCluster cluster) {
+        this.cluster = Util.requireNonNull(cluster);
+    }
+
+    @Override
+    public String submit(SlotID id) throws ExternalServiceException {
+        return cluster.submit();
+    }
+
+    @Override
+    public void start(SlotID id, String externalID) throws ExternalServiceException {
+        try {
+            cluster.start(externalID);
+        } catch (IllegalArgumentException e) {
+            throw new ExternalServiceException(e);
+        }
+    }
+
+    @Override
+    public ExternalStatus getStatus(SlotID id, String externalID) throws ExternalServiceException {
+        try {
+            return cluster.getStatus(externalID);
+        } catch (IllegalArgumentException e) {
+            throw new ExternalServiceException(e);
+        }
+    }
+
+    /**
+     * All services of a cluster are polled together, like Oozie services with the same URL.
+     */
+    @Override
+    public Object getStatusBatchKey() {
+        return cluster;
+    }
+
+    @Override
+    public void kill(SlotID id, String externalID) throws ExternalServiceException {
+        try {
+            cluster.kill(externalID);
+        } catch (IllegalArgumentException e) {
+            throw new ExternalServiceException(e);
+        }
+    }
+
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.ScheduledTimeFormatter;
+import com.collective.celos.Util;
+import com.collective.celos.database.StateDatabaseConnection;
+import com.collective.celos.trigger.Trigger;
+import com.collective.celos.trigger.TriggerStatus;
+
+/**
+ * Like HDFSCheckTrigger, but checks for the data in a simulated cluster.
+ */
+public class SimulatedFileTrigger extends Trigger {
+
+    private final ScheduledTimeFormatter formatter = new ScheduledTimeFormatter();
+    private final SimulatedCluster cluster;
+    private final String rawPathString;
+
+    public SimulatedFileTrigger(SimulatedCluster cluster, String rawPathString) {
+        this.cluster = Util.requireNonNull(cluster);
+        this.rawPathString = Util.requireNonNull(rawPathString);
+    }
+
+    @Override
+    public TriggerStatus getTriggerStatus(StateDatabaseConnection connection, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
+        String path = formatter.replaceTimeTokens(rawPathString, scheduledTime);
+        boolean ready = cluster.exists(path, scheduledTime, now);
+        return makeTriggerStatus(ready, "Simulated path " + path + (ready ? " is ready" : " is not ready"));
+    }
+
+    public String getRawPathString() {
+        return rawPathString;
+    }
+
+}
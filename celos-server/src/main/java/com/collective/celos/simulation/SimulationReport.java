@@ -0,0 +1,216 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.SlotID;
+import com.collective.celos.SlotState;
+import com.collective.celos.Util;
+
+/**
+ * What happened during a simulation.
+ *
+ * Step durations are wall times.  Everything else is measured in virtual time:
+ *
+ * - Throughput is the number of slots that finished (succeeded or failed for
+ *   good) per simulated hour.
+ *
+ * - Scheduling lag is the time from the scheduled time of a slot to its first
+ *   submission.  It includes the time spent waiting for data and upstream
+ *   workflows.
+ *
+ * - Queue lag is the time from a slot becoming READY to its submission, i.e.
+ *   the time it was held back by its scheduling strategy or the submission
+ *   throttle.
+ *
+ * Lags are only as precise as the step interval of the simulation.
+ */
+public class SimulationReport {
+
+    private final ScheduledTime start;
+    private final int workflowCount;
+    private ScheduledTime end;
+    private long wallMillis;
+    private final List<Long> stepMillis = new ArrayList<>();
+    private final List<Long> schedulingLagSeconds = new ArrayList<>();
+    private final List<Long> queueLagSeconds = new ArrayList<>();
+    // Virtual time at which WAITING slots became READY
+    private final Map<SlotID, Long> readyMillis = new HashMap<>();
+    private long submitted;
+    private long succeeded;
+    private long failed;
+    private long retried;
+    private long waitTimeouts;
+
+    public SimulationReport(ScheduledTime start, int workflowCount) {
+        this.start = Util.requireNonNull(start);
+        this.end = start;
+        this.workflowCount = workflowCount;
+    }
+
+    /**
+     * Records a step that took the given wall time, after which time was simulated up to the given time.
+     */
+    public synchronized void recordStep(long millis, ScheduledTime simulatedUntil) {
+        stepMillis.add(millis);
+        end = simulatedUntil;
+    }
+
+    public synchronized void recordWallMillis(long millis) {
+        wallMillis = millis;
+    }
+
+    public synchronized void recordTransition(SlotState previous, SlotState next, ScheduledTime now) {
+        SlotID slot = next.getSlotID();
+        switch (next.getStatus()) {
+            case READY:
+                readyMillis.put(slot, now.getMillis());
+                break;
+            case RUNNING:
+                submitted++;
+                if (next.getRetryCount() == 0) {
+                    schedulingLagSeconds.add((now.getMillis() - slot.getScheduledTime().getMillis()) / 1000);
+                }
+                Long ready = readyMillis.remove(slot);
+                if (ready != null) {
+                    queueLagSeconds.add((now.getMillis() - ready) / 1000);
+                }
+                break;
+            case SUCCESS:
+                succeeded++;
+                break;
+            case FAILURE:
+                failed++;
+                break;
+            case WAITING:
+                if (previous != null && previous.getStatus() == SlotState.Status.RUNNING) {
+                    retried++;
+                }
+                break;
+            case WAIT_TIMEOUT:
+                waitTimeouts++;
+                break;
+            default:
+                break;
+        }
+    }
+
+    public int getWorkflowCount() {
+        return workflowCount;
+    }
+
+    public synchronized int getSteps() {
+        return stepMillis.size();
+    }
+
+    public synchronized double getSimulatedHours() {
+        return (end.getMillis() - start.getMillis()) / (3600.0 * 1000);
+    }
+
+    public synchronized long getWallMillis() {
+        return wallMillis;
+    }
+
+    public synchronized long getSubmitted() {
+        return submitted;
+    }
+
+    public synchronized long getSucceeded() {
+        return succeeded;
+    }
+
+    public synchronized long getFailed() {
+        return failed;
+    }
+
+    public synchronized long getRetried() {
+        return retried;
+    }
+
+    public synchronized long getWaitTimeouts() {
+        return waitTimeouts;
+    }
+
+    /**
+     * Finished slots per simulated hour, or zero if no time was simulated.
+     */
+    public synchronized double getThroughput() {
+        double hours = getSimulatedHours();
+        return hours == 0 ? 0 : (succeeded + failed) / hours;
+    }
+
+    /**
+     * Returns the given percentile (between 0 and 100) of the step wall times in milliseconds.
+     */
+    public synchronized long getStepMillisPercentile(double percentile) {
+        return getPercentile(stepMillis, percentile);
+    }
+
+    /**
+     * Returns the given percentile (between 0 and 100) of the scheduling lags in seconds.
+     */
+    public synchronized long getSchedulingLagSecondsPercentile(double percentile) {
+        return getPercentile(schedulingLagSeconds, percentile);
+    }
+
+    /**
+     * Returns the given percentile (between 0 and 100) of the queue lags in seconds.
+     */
+    public synchronized long getQueueLagSecondsPercentile(double percentile) {
+        return getPercentile(queueLagSeconds, percentile);
+    }
+
+    /**
+     * Nearest-rank percentile, or zero if there are no values.
+     */
+    static long getPercentile(List<Long> values, double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100.");
+        }
+        if (values.isEmpty()) {
+            return 0;
+        }
+        List<Long> sorted = new ArrayList<>(values);
+        Collections.sort(sorted);
+        int rank = (int) Math.ceil(percentile / 100 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    public synchronized void print(PrintStream out) {
+        out.println(String.format("Simulated %.1f hours (%s -- %s) of %d workflows in %d steps, wall time %.1f s",
+                getSimulatedHours(), start, end, workflowCount, getSteps(), wallMillis / 1000.0));
+        out.println(String.format("Slots: %d submitted, %d succeeded, %d failed, %d retried, %d wait timeouts",
+                submitted, succeeded, failed, retried, waitTimeouts));
+        out.println(String.format("Throughput: %.1f finished slots per simulated hour, %.2f simulated hours per wall second",
+                getThroughput(), wallMillis == 0 ? 0 : getSimulatedHours() * 1000 / wallMillis));
+        out.println("Step duration (ms): " + formatPercentiles(stepMillis));
+        out.println("Scheduling lag (s): " + formatPercentiles(schedulingLagSeconds));
+        out.println("Queue lag (s): " + formatPercentiles(queueLagSeconds));
+    }
+
+    private static String formatPercentiles(List<Long> values) {
+        return "p50 " + getPercentile(values, 50) + ", p90 " + getPercentile(values, 90)
+                + ", p99 " + getPercentile(values, 99) + ", max " + getPercentile(values, 100);
+    }
+
+}
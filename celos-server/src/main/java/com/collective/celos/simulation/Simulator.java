@@ -0,0 +1,87 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import java.util.Collections;
+
+import org.apache.log4j.Logger;
+
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.Scheduler;
+import com.collective.celos.SlotTransitionBus;
+import com.collective.celos.SlotTransitionListener;
+import com.collective.celos.Util;
+import com.collective.celos.WorkflowID;
+import com.collective.celos.database.StateDatabase;
+
+/**
+ * Drives a scheduler with the virtual clock of a simulated cluster.
+ *
+ * Each step runs at the current virtual time, like a step of the scheduler
+ * loop of the server, and then advances the clock by the step interval.
+ * Steps run back to back, so a day of scheduling takes as long as the
+ * scheduler needs for its steps.
+ */
+public class Simulator {
+
+    private static final Logger LOGGER = Logger.getLogger(Simulator.class);
+
+    private final SimulatedCluster cluster;
+    private final Scheduler scheduler;
+    private final StateDatabase database;
+
+    public Simulator(SimulatedCluster cluster, Scheduler scheduler, StateDatabase database) {
+        this.cluster = Util.requireNonNull(cluster);
+        this.scheduler = Util.requireNonNull(scheduler);
+        this.database = Util.requireNonNull(database);
+    }
+
+    /**
+     * Steps the scheduler every stepSeconds of virtual time, for the given number of virtual hours.
+     */
+    public SimulationReport run(int hours, int stepSeconds) throws Exception {
+        if (hours <= 0) {
+            throw new IllegalArgumentException("Hours must greater then zero.");
+        }
+        if (stepSeconds <= 0) {
+            throw new IllegalArgumentException("Step seconds must greater then zero.");
+        }
+        VirtualClock clock = cluster.getClock();
+        ScheduledTime end = clock.now().plusHours(hours);
+        SimulationReport report = new SimulationReport(clock.now(), scheduler.getWorkflowConfiguration().getWorkflows().size());
+        SlotTransitionListener listener = (previous, next) -> report.recordTransition(previous, next, clock.now());
+        SlotTransitionBus.getInstance().addListener(listener);
+        long startMillis = System.currentTimeMillis();
+        try {
+            while (clock.now().isBefore(end)) {
+                ScheduledTime current = clock.now();
+                long stepStartMillis = System.currentTimeMillis();
+                scheduler.step(current, Collections.<WorkflowID>emptySet(), database);
+                long stepMillis = System.currentTimeMillis() - stepStartMillis;
+                clock.advanceSeconds(stepSeconds);
+                report.recordStep(stepMillis, clock.now());
+                if (current.getHour() != clock.now().getHour()) {
+                    LOGGER.info("Simulated until " + clock.now() + ", submitted jobs: " + cluster.getSubmits() + ", exists checks: " + cluster.getExistsChecks());
+                }
+            }
+        } finally {
+            SlotTransitionBus.getInstance().removeListener(listener);
+            report.recordWallMillis(System.currentTimeMillis() - startMillis);
+        }
+        return report;
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import java.io.File;
+
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.Util;
+
+/**
+ * Command-line options for the simulator.
+ */
+public class SimulatorCommandLine {
+
+    private final File workDir;
+    private final int workflowCount;
+    private final File workflowsDir;
+    private final File defaultsDir;
+    private final int hours;
+    private final int stepSeconds;
+    private final ScheduledTime startTime;
+    private final long seed;
+    private final Distribution runtimeSeconds;
+    private final double failureRate;
+    private final Distribution submitLatencyMillis;
+    private final Distribution arrivalDelaySeconds;
+    private final Distribution existsLatencyMillis;
+    private final double latencyScale;
+    private final int stepThreads;
+    private final boolean slotStateCache;
+    private final int maxRunning;
+    private final int triggerBackoffMax;
+    private final boolean logStdout;
+
+    public SimulatorCommandLine(File workDir, int workflowCount, File workflowsDir, File defaultsDir, int hours, int stepSeconds, ScheduledTime startTime, long seed,
+                                Distribution runtimeSeconds, double failureRate, Distribution submitLatencyMillis, Distribution arrivalDelaySeconds, Distribution existsLatencyMillis, double latencyScale,
+                                int stepThreads, boolean slotStateCache, int maxRunning, int triggerBackoffMax, boolean logStdout) {
+        this.workDir = Util.requireNonNull(workDir);
+        this.workflowCount = workflowCount;
+        this.workflowsDir = workflowsDir;
+        this.defaultsDir = defaultsDir;
+        this.hours = hours;
+        this.stepSeconds = stepSeconds;
+        this.startTime = Util.requireNonNull(startTime);
+        this.seed = seed;
+        this.runtimeSeconds = Util.requireNonNull(runtimeSeconds);
+        this.failureRate = failureRate;
+        this.submitLatencyMillis = Util.requireNonNull(submitLatencyMillis);
+        this.arrivalDelaySeconds = Util.requireNonNull(arrivalDelaySeconds);
+        this.existsLatencyMillis = Util.requireNonNull(existsLatencyMillis);
+        this.latencyScale = latencyScale;
+        this.stepThreads = stepThreads;
+        this.slotStateCache = slotStateCache;
+        this.maxRunning = maxRunning;
+        this.triggerBackoffMax = triggerBackoffMax;
+        this.logStdout = logStdout;
+    }
+
+    public File getWorkDir() {
+        return workDir;
+    }
+
+    public int getWorkflowCount() {
+        return workflowCount;
+    }
+
+    /**
+     * Existing workflow files to simulate, or null to generate them.
+     */
+    public File getWorkflowsDir() {
+        return workflowsDir;
+    }
+
+    /**
+     * Defaults of the existing workflow files, or null to generate them.
+     */
+    public File getDefaultsDir() {
+        return defaultsDir;
+    }
+
+    public int getHours() {
+        return hours;
+    }
+
+    public int getStepSeconds() {
+        return stepSeconds;
+    }
+
+    public ScheduledTime getStartTime() {
+        return startTime;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public Distribution getRuntimeSeconds() {
+        return runtimeSeconds;
+    }
+
+    public double getFailureRate() {
+        return failureRate;
+    }
+
+    public Distribution getSubmitLatencyMillis() {
+        return submitLatencyMillis;
+    }
+
+    public Distribution getArrivalDelaySeconds() {
+        return arrivalDelaySeconds;
+    }
+
+    public Distribution getExistsLatencyMillis() {
+        return existsLatencyMillis;
+    }
+
+    public double getLatencyScale() {
+        return latencyScale;
+    }
+
+    public int getStepThreads() {
+        return stepThreads;
+    }
+
+    public boolean getSlotStateCache() {
+        return slotStateCache;
+    }
+
+    public int getMaxRunning() {
+        return maxRunning;
+    }
+
+    public int getTriggerBackoffMax() {
+        return triggerBackoffMax;
+    }
+
+    public boolean getLogStdout() {
+        return logStdout;
+    }
+
+}
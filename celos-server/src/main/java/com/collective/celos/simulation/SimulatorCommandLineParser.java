@@ -0,0 +1,156 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+
+import org.apache.commons.cli.*;
+
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.Scheduler;
+
+/**
+ * Parses the simulator command-line options.
+ */
+public class SimulatorCommandLineParser {
+
+    public static final String DEFAULT_START_TIME = "2015-01-01T00:00:00.000Z";
+    public static final String DEFAULT_RUNTIME = "lognormal:600,1";
+    public static final String DEFAULT_SUBMIT_LATENCY = "lognormal:50,0.5";
+    public static final String DEFAULT_ARRIVAL_DELAY = "exponential:900";
+    public static final String DEFAULT_EXISTS_LATENCY = "uniform:1,5";
+
+    private static final String CLI_WORK_DIR = "workDir";
+    private static final String CLI_WORKFLOW_COUNT = "workflowCount";
+    private static final String CLI_WF_DIR = "workflows";
+    private static final String CLI_DEFAULTS_DIR = "defaults";
+    private static final String CLI_HOURS = "hours";
+    private static final String CLI_STEP_SECONDS = "stepSeconds";
+    private static final String CLI_START_TIME = "startTime";
+    private static final String CLI_SEED = "seed";
+    private static final String CLI_RUNTIME = "runtime";
+    private static final String CLI_FAILURE_RATE = "failureRate";
+    private static final String CLI_SUBMIT_LATENCY = "submitLatency";
+    private static final String CLI_ARRIVAL_DELAY = "arrivalDelay";
+    private static final String CLI_EXISTS_LATENCY = "existsLatency";
+    private static final String CLI_LATENCY_SCALE = "latencyScale";
+    private static final String CLI_STEP_THREADS = "stepThreads";
+    private static final String CLI_SLOT_STATE_CACHE = "slotStateCache";
+    private static final String CLI_MAX_RUNNING = "maxRunning";
+    private static final String CLI_TRIGGER_BACKOFF_MAX = "triggerBackoffMax";
+    private static final String CLI_LOG_STDOUT = "stdout";
+
+    public SimulatorCommandLine parse(final String[] commandLineArguments) throws Exception {
+
+        final CommandLineParser cmdLineGnuParser = new GnuParser();
+        final Options gnuOptions = constructOptions();
+        CommandLine commandLine = cmdLineGnuParser.parse(gnuOptions, commandLineArguments);
+
+        String workDirName = commandLine.getOptionValue(CLI_WORK_DIR);
+        File workDir = workDirName != null ? new File(workDirName) : Files.createTempDirectory("celos-simulation").toFile();
+        Integer workflowCount = Integer.valueOf(getDefault(commandLine, CLI_WORKFLOW_COUNT, "100"));
+        File workflowsDir = getOptionalDir(commandLine, CLI_WF_DIR);
+        File defaultsDir = getOptionalDir(commandLine, CLI_DEFAULTS_DIR);
+        if ((workflowsDir == null) != (defaultsDir == null)) {
+            printHelp(80, 5, 3, true, System.out);
+            throw new IllegalArgumentException("--" + CLI_WF_DIR + " and --" + CLI_DEFAULTS_DIR + " must be specified together");
+        }
+        Integer hours = Integer.valueOf(getDefault(commandLine, CLI_HOURS, "24"));
+        Integer stepSeconds = Integer.valueOf(getDefault(commandLine, CLI_STEP_SECONDS, "60"));
+        ScheduledTime startTime = new ScheduledTime(getDefault(commandLine, CLI_START_TIME, DEFAULT_START_TIME));
+        Long seed = Long.valueOf(getDefault(commandLine, CLI_SEED, "0"));
+        Distribution runtime = Distribution.parse(getDefault(commandLine, CLI_RUNTIME, DEFAULT_RUNTIME));
+        Double failureRate = Double.valueOf(getDefault(commandLine, CLI_FAILURE_RATE, "0.02"));
+        Distribution submitLatency = Distribution.parse(getDefault(commandLine, CLI_SUBMIT_LATENCY, DEFAULT_SUBMIT_LATENCY));
+        Distribution arrivalDelay = Distribution.parse(getDefault(commandLine, CLI_ARRIVAL_DELAY, DEFAULT_ARRIVAL_DELAY));
+        Distribution existsLatency = Distribution.parse(getDefault(commandLine, CLI_EXISTS_LATENCY, DEFAULT_EXISTS_LATENCY));
+        Double latencyScale = Double.valueOf(getDefault(commandLine, CLI_LATENCY_SCALE, "1"));
+        Integer stepThreads = Integer.valueOf(getDefault(commandLine, CLI_STEP_THREADS, String.valueOf(Scheduler.DEFAULT_STEP_THREADS)));
+        boolean slotStateCache = commandLine.hasOption(CLI_SLOT_STATE_CACHE);
+        Integer maxRunning = Integer.valueOf(getDefault(commandLine, CLI_MAX_RUNNING, "0"));
+        Integer triggerBackoffMax = Integer.valueOf(getDefault(commandLine, CLI_TRIGGER_BACKOFF_MAX, "0"));
+        boolean logStdout = commandLine.hasOption(CLI_LOG_STDOUT);
+
+        return new SimulatorCommandLine(workDir, workflowCount, workflowsDir, defaultsDir, hours, stepSeconds, startTime, seed,
+                runtime, failureRate, submitLatency, arrivalDelay, existsLatency, latencyScale,
+                stepThreads, slotStateCache, maxRunning, triggerBackoffMax, logStdout);
+    }
+
+    private File getOptionalDir(CommandLine commandLine, String optionName) {
+        String value = commandLine.getOptionValue(optionName);
+        return value == null ? null : new File(value);
+    }
+
+    private String getDefault(CommandLine commandLine, String optionName, String defaultValue) {
+        String value = commandLine.getOptionValue(optionName);
+        if (value == null) {
+            System.out.println("--" + optionName + " not specified, using default value: " + defaultValue);
+            return defaultValue;
+        } else {
+            return value;
+        }
+    }
+
+    public Options constructOptions() {
+        final Options options = new Options();
+        options.addOption(CLI_WORK_DIR, CLI_WORK_DIR, true, "Dir for the generated workflows, the state db and the logs.  Defaults to a new temporary dir")
+                .addOption(CLI_WORKFLOW_COUNT, CLI_WORKFLOW_COUNT, true, "Number of workflows to generate.  Defaults to 100")
+                .addOption(CLI_WF_DIR, CLI_WF_DIR, true, "Path to WORKFLOWS dir with existing workflows to simulate instead of generated ones.  Requires --" + CLI_DEFAULTS_DIR)
+                .addOption(CLI_DEFAULTS_DIR, CLI_DEFAULTS_DIR, true, "Path to DEFAULTS dir of the existing workflows")
+                .addOption(CLI_HOURS, CLI_HOURS, true, "Simulated hours.  Defaults to 24")
+                .addOption(CLI_STEP_SECONDS, CLI_STEP_SECONDS, true, "Simulated seconds between scheduler steps.  Defaults to 60")
+                .addOption(CLI_START_TIME, CLI_START_TIME, true, "Simulated time of the first step.  Defaults to " + DEFAULT_START_TIME)
+                .addOption(CLI_SEED, CLI_SEED, true, "Seed for generating workflows and drawing from distributions.  Defaults to 0")
+                .addOption(CLI_RUNTIME, CLI_RUNTIME, true, "Distribution of job runtimes in simulated seconds.  Defaults to " + DEFAULT_RUNTIME)
+                .addOption(CLI_FAILURE_RATE, CLI_FAILURE_RATE, true, "Fraction of jobs that fail.  Defaults to 0.02")
+                .addOption(CLI_SUBMIT_LATENCY, CLI_SUBMIT_LATENCY, true, "Distribution of job submit latencies in milliseconds.  Defaults to " + DEFAULT_SUBMIT_LATENCY)
+                .addOption(CLI_ARRIVAL_DELAY, CLI_ARRIVAL_DELAY, true, "Distribution of data arrival delays after the scheduled time in simulated seconds.  Defaults to " + DEFAULT_ARRIVAL_DELAY)
+                .addOption(CLI_EXISTS_LATENCY, CLI_EXISTS_LATENCY, true, "Distribution of path exists check latencies in milliseconds.  Defaults to " + DEFAULT_EXISTS_LATENCY)
+                .addOption(CLI_LATENCY_SCALE, CLI_LATENCY_SCALE, true, "Factor applied to submit and exists latencies, which are spent in real time.  Defaults to 1, 0 disables them")
+                .addOption(CLI_STEP_THREADS, CLI_STEP_THREADS, true, "Number of threads used to step workflows in parallel. Defaults to " + Scheduler.DEFAULT_STEP_THREADS + " (sequential)")
+                .addOption(CLI_SLOT_STATE_CACHE, CLI_SLOT_STATE_CACHE, false, "If specified, keeps the slot states of the sliding window in memory")
+                .addOption(CLI_MAX_RUNNING, CLI_MAX_RUNNING, true, "Maximum number of running slots, across all workflows.  Defaults to 0 (unlimited)")
+                .addOption(CLI_TRIGGER_BACKOFF_MAX, CLI_TRIGGER_BACKOFF_MAX, true, "Maximum time in seconds between trigger checks of long-waiting slots.  Defaults to 0 (check in every step)")
+                .addOption(CLI_LOG_STDOUT, CLI_LOG_STDOUT, false, "If specified, will send all logs to stdout instead of the work dir");
+        return options;
+    }
+
+    public void printHelp(
+            final int printedRowWidth,
+            final int spacesBeforeOption,
+            final int spacesBeforeOptionDescription,
+            final boolean displayUsage,
+            final OutputStream out) {
+        final String commandLineSyntax = "java -cp <celos>.jar " + SimulatorMain.class.getName();
+        final PrintWriter writer = new PrintWriter(out);
+        final HelpFormatter helpFormatter = new HelpFormatter();
+        helpFormatter.printHelp(
+                writer,
+                printedRowWidth,
+                commandLineSyntax,
+                null,
+                constructOptions(),
+                spacesBeforeOption,
+                spacesBeforeOptionDescription,
+                null,
+                displayUsage);
+        writer.flush();
+    }
+
+}
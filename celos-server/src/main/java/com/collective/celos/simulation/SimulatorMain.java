@@ -0,0 +1,96 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import com.collective.celos.JSConfigParser;
+import com.collective.celos.SchedulerConfiguration;
+import com.collective.celos.SchedulerHolder;
+import com.collective.celos.SchedulerOptions;
+import com.collective.celos.Util;
+import com.collective.celos.WorkflowConfigurationParser;
+import com.collective.celos.database.CachingStateDatabase;
+import com.collective.celos.database.FileSystemStateDatabase;
+import com.collective.celos.database.StateDatabase;
+import com.google.common.collect.ImmutableMap;
+
+/**
+ * Main entry point to the simulator.
+ *
+ * Runs the scheduler against a simulated cluster, with generated or existing
+ * workflow files, and prints a report.  Existing workflow files must use
+ * SimulatedExternalService and SimulatedFileTrigger with the cluster in the
+ * celosSimulatedCluster variable, like generated ones do.
+ */
+public class SimulatorMain {
+
+    public static void main(String... args) throws Exception {
+
+        SimulatorCommandLine commandLine = new SimulatorCommandLineParser().parse(args);
+        if (commandLine.getLogStdout()) {
+            Util.setupLoggingToStdout();
+        } else if (System.getProperty("log4j.configuration") == null) {
+            Util.setupLogging(new File(commandLine.getWorkDir(), "logs"));
+        }
+        System.out.println("Simulating in " + commandLine.getWorkDir());
+        simulate(commandLine).print(System.out);
+
+    }
+
+    public static SimulationReport simulate(SimulatorCommandLine commandLine) throws Exception {
+        File dbDir = new File(commandLine.getWorkDir(), "db");
+        if (dbDir.exists()) {
+            throw new IllegalStateException("Work dir has been used by another simulation: " + commandLine.getWorkDir());
+        }
+
+        File workflowsDir = commandLine.getWorkflowsDir();
+        File defaultsDir = commandLine.getDefaultsDir();
+        if (workflowsDir == null) {
+            workflowsDir = new File(commandLine.getWorkDir(), "workflows");
+            defaultsDir = new File(commandLine.getWorkDir(), "defaults");
+            new SyntheticWorkflowGenerator(commandLine.getSeed()).write(workflowsDir, defaultsDir, commandLine.getWorkflowCount(), commandLine.getStartTime());
+        }
+
+        if (!dbDir.mkdirs()) {
+            throw new IOException("Failed to create state db dir: " + dbDir);
+        }
+        StateDatabase db = new FileSystemStateDatabase(dbDir);
+        if (commandLine.getSlotStateCache()) {
+            db = new CachingStateDatabase(db, 24 * SchedulerConfiguration.SLIDING_WINDOW_DAYS);
+        }
+
+        VirtualClock clock = new VirtualClock(commandLine.getStartTime());
+        SimulatedCluster cluster = new SimulatedCluster(clock, commandLine.getSeed(), commandLine.getRuntimeSeconds(), commandLine.getFailureRate(),
+                commandLine.getSubmitLatencyMillis(), commandLine.getArrivalDelaySeconds(), commandLine.getExistsLatencyMillis(), commandLine.getLatencyScale());
+        SchedulerOptions options = new SchedulerOptions(commandLine.getStepThreads(), 0, 0, 0, commandLine.getMaxRunning(), commandLine.getTriggerBackoffMax(),
+                JSConfigParser.DEFAULT_OPTIMIZATION_LEVEL, WorkflowConfigurationParser.DEFAULT_PARSE_THREADS, WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS);
+        // The state kept across steps goes by the virtual clock, like the steps themselves
+        SchedulerConfiguration configuration = new SchedulerConfiguration(workflowsDir, defaultsDir, db, Collections.<String, String>emptyMap(), options,
+                ImmutableMap.<String, Object>of(SimulatedCluster.JS_VARIABLE, cluster),
+                () -> clock.now().getMillis(), () -> TimeUnit.MILLISECONDS.toNanos(clock.now().getMillis()));
+        SchedulerHolder holder = new SchedulerHolder(configuration);
+        try {
+            return new Simulator(cluster, holder.getScheduler(), db).run(commandLine.getHours(), commandLine.getStepSeconds());
+        } finally {
+            holder.close();
+        }
+    }
+
+}
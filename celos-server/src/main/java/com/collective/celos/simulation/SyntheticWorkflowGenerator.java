@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+
+import org.apache.commons.io.FileUtils;
+
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.Util;
+
+/**
+ * Writes synthetic workflow files that use simulated external services and triggers.
+ *
+ * The mix is modeled on production configurations:
+ *
+ * - Half of the workflows are hourly, and wait for an hourly input feed.
+ *
+ * - A tenth run every 15 minutes, and wait for a 15 minute feed.
+ *
+ * - A tenth run daily, at an early hour, and wait for a daily feed.
+ *
+ * - The rest depend on an earlier workflow: they use its schedule, and wait
+ *   for its success.  Since the earlier workflow may itself depend on
+ *   another one, this makes chains of varying length.
+ *
+ * There are about a quarter as many feeds as workflows, so several workflows
+ * wait for the same paths.  Concurrency and retries vary between workflows.
+ *
+ * The same seed always gives the same files.
+ */
+public class SyntheticWorkflowGenerator {
+
+    public static final String DEFAULTS_LABEL = "simulation";
+
+    private static final String DEFAULTS =
+            "importPackage(Packages.com.collective.celos.simulation);\n"
+            + "function simulatedWorkflow(id, schedule, trigger, concurrency, maxRetryCount) {\n"
+            + "    celos.defineWorkflow({\n"
+            + "        id: id,\n"
+            + "        schedule: schedule,\n"
+            + "        schedulingStrategy: celos.serialSchedulingStrategy(concurrency),\n"
+            + "        trigger: trigger,\n"
+            + "        externalService: new SimulatedExternalService(" + SimulatedCluster.JS_VARIABLE + "),\n"
+            + "        maxRetryCount: maxRetryCount,\n"
+            + "        startTime: SIMULATION_START_TIME\n"
+            + "    });\n"
+            + "}\n"
+            + "function simulatedFileTrigger(path) {\n"
+            + "    return new SimulatedFileTrigger(" + SimulatedCluster.JS_VARIABLE + ", path);\n"
+            + "}\n";
+
+    private final Random random;
+
+    public SyntheticWorkflowGenerator(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Writes the defaults file and the given number of workflow files, with IDs
+     * sim-0, sim-1, ...  The workflows have no slots before the given start time.
+     */
+    public void write(File workflowsDir, File defaultsDir, int count, ScheduledTime startTime) throws IOException {
+        Util.requireNonNull(startTime);
+        if (count <= 0) {
+            throw new IllegalArgumentException("Workflow count must greater then zero.");
+        }
+        FileUtils.write(new File(defaultsDir, DEFAULTS_LABEL + ".js"),
+                "var SIMULATION_START_TIME = '" + startTime + "';\n" + DEFAULTS);
+        int feeds = Math.max(1, count / 4);
+        for (int i = 0; i < count; i++) {
+            FileUtils.write(new File(workflowsDir, getWorkflowID(i) + ".js"), getWorkflowFile(i, feeds));
+        }
+    }
+
+    public static String getWorkflowID(int i) {
+        return "sim-" + i;
+    }
+
+    private String getWorkflowFile(int i, int feeds) {
+        String feed = "/simulated/feed-" + random.nextInt(feeds);
+        String schedule;
+        String trigger;
+        double kind = random.nextDouble();
+        if (kind < 0.5 || i == 0) {
+            schedule = "celos.hourlySchedule()";
+            trigger = fileTrigger(feed + "/${year}/${month}/${day}/${hour}/_SUCCESS");
+        } else if (kind < 0.6) {
+            schedule = "celos.cronSchedule('0 0/15 * * * ?')";
+            trigger = fileTrigger(feed + "/${year}/${month}/${day}/${hour}${minute}/_SUCCESS");
+        } else if (kind < 0.7) {
+            schedule = "celos.cronSchedule('0 0 " + random.nextInt(6) + " * * ?')";
+            trigger = fileTrigger(feed + "/${year}/${month}/${day}/_SUCCESS");
+        } else {
+            String upstream = getWorkflowID(random.nextInt(i));
+            schedule = "celos.dependentSchedule('" + upstream + "')";
+            trigger = "celos.successTrigger('" + upstream + "')";
+        }
+        int concurrency = 1 + random.nextInt(3);
+        int maxRetryCount = random.nextInt(3);
+        return "celos.importDefaults('" + DEFAULTS_LABEL + "');\n"
+                + "simulatedWorkflow('" + getWorkflowID(i) + "', " + schedule + ", " + trigger + ", " + concurrency + ", " + maxRetryCount + ");\n";
+    }
+
+    private static String fileTrigger(String path) {
+        return "simulatedFileTrigger('" + path + "')";
+    }
+
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.Util;
+
+/**
+ * Simulated time, which only moves when the simulator advances it.
+ */
+public class VirtualClock {
+
+    private volatile ScheduledTime now;
+
+    public VirtualClock(ScheduledTime start) {
+        this.now = Util.requireNonNull(start);
+    }
+
+    public ScheduledTime now() {
+        return now;
+    }
+
+    public void advanceSeconds(int seconds) {
+        if (seconds <= 0) {
+            throw new IllegalArgumentException("Seconds must greater then zero.");
+        }
+        now = now.plusSeconds(seconds);
+    }
+
+}
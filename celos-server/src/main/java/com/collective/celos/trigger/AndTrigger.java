@@ -46,12 +46,19 @@ public class AndTrigger extends Trigger {
     public TriggerStatus getTriggerStatus(StateDatabaseConnection connection, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
         final List<TriggerStatus> subStatuses = new ArrayList<>();
         for (Trigger trigger : triggers) {
-            subStatuses.add(trigger.getTriggerStatus(connection, now, scheduledTime));
+            subStatuses.add(trigger.evaluate(connection, now, scheduledTime));
         }
         boolean ready = this.checkSubTriggers(subStatuses);
         return makeTriggerStatus(ready, humanReadableDescription(ready), subStatuses);
     }
 
+    @Override
+    public void addHDFSChecks(HDFSCheckCache cache, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
+        for (Trigger trigger : triggers) {
+            trigger.addHDFSChecks(cache, now, scheduledTime);
+        }
+    }
+
     private String humanReadableDescription(boolean ready) {
         if (ready) {
             return "All nested triggers are ready";
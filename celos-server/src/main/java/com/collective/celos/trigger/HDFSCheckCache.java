@@ -0,0 +1,247 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.trigger;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.log4j.Logger;
+
+import com.collective.celos.Util;
+import com.collective.celos.metrics.MetricsRegistry;
+
+/**
+ * Caches the HDFS existence checks of HDFSCheckTriggers during a scheduler step.
+ *
+ * Many workflows wait for the same paths, so each distinct (file system, path)
+ * is checked at most once per step.
+ *
+ * Optionally, paths that were found missing are not checked again for a
+ * configurable time, across steps (negative cache).  What is known across
+ * steps is kept by an HDFSCheckHistory, which the scheduler passes in.
+ *
+ * Before triggers are evaluated, the scheduler collects the paths they will
+ * check, and prefetches them: paths are grouped by parent directory, and each
+ * directory with several paths is listed once instead of checking each path.
+ * A missing directory means all its paths are missing.  Directories that turn
+ * out to be huge are remembered for a while, and their paths are checked one
+ * by one.
+ *
+ * The scheduler makes a cache current for the threads that evaluate triggers
+ * during a step.  Trigger evaluations outside of steps, e.g. by the trigger
+ * status servlet, have no current cache and always go to the file system.
+ */
+public class HDFSCheckCache {
+
+    /**
+     * Directories with more entries than this are not listed again.
+     */
+    public static final int MAX_LISTING_SIZE = 10000;
+
+    private static final Logger LOGGER = Logger.getLogger(HDFSCheckCache.class);
+
+    private static final ThreadLocal<HDFSCheckCache> CURRENT = new ThreadLocal<>();
+
+    private static final AtomicLong TOTAL_CHECKS = new AtomicLong();
+    private static final AtomicLong TOTAL_FILE_SYSTEM_CALLS = new AtomicLong();
+
+    static {
+        MetricsRegistry.getInstance().counter("celos_hdfs_checks_total", "HDFS path checks by triggers.", TOTAL_CHECKS::get);
+        MetricsRegistry.getInstance().counter("celos_hdfs_file_system_calls_total", "HDFS calls made for path checks.", TOTAL_FILE_SYSTEM_CALLS::get);
+    }
+
+    private final HDFSCheckHistory history;
+    private final ConcurrentMap<List<String>, Boolean> results = new ConcurrentHashMap<>();
+    // Paths to prefetch: (file system, parent directory) -> paths
+    private final Map<List<String>, Set<Path>> pending = new HashMap<>();
+    private final Map<String, FileSystem> pendingFileSystems = new HashMap<>();
+    private final AtomicLong checks = new AtomicLong();
+    private final AtomicLong fileSystemCalls = new AtomicLong();
+
+    /**
+     * Creates a cache that doesn't remember anything across steps.
+     */
+    public HDFSCheckCache() {
+        this(new HDFSCheckHistory(0));
+    }
+
+    public HDFSCheckCache(HDFSCheckHistory history) {
+        this.history = Util.requireNonNull(history);
+    }
+
+    /**
+     * Returns the cache of the step the current thread works on, or null.
+     */
+    public static HDFSCheckCache getCurrent() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes the given cache (which may be null) current for this thread, and returns the previous one.
+     */
+    public static HDFSCheckCache setCurrent(HDFSCheckCache cache) {
+        HDFSCheckCache previous = CURRENT.get();
+        if (cache == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(cache);
+        }
+        return previous;
+    }
+
+    /**
+     * Number of path checks by all steps so far.
+     */
+    public static long getTotalChecks() {
+        return TOTAL_CHECKS.get();
+    }
+
+    /**
+     * Number of file system calls made by all steps so far.
+     */
+    public static long getTotalFileSystemCalls() {
+        return TOTAL_FILE_SYSTEM_CALLS.get();
+    }
+
+    public boolean exists(String fsString, FileSystem fs, Path path) throws IOException {
+        checks.incrementAndGet();
+        TOTAL_CHECKS.incrementAndGet();
+        List<String> key = Arrays.asList(fsString, path.toString());
+        Boolean result = getCachedResult(key);
+        if (result != null) {
+            return result;
+        }
+        countFileSystemCall();
+        boolean exists = fs.exists(path);
+        putResult(key, exists);
+        return exists;
+    }
+
+    private Boolean getCachedResult(List<String> key) {
+        Boolean result = results.get(key);
+        if (result != null) {
+            return result;
+        }
+        if (history.isMissing(key)) {
+            results.put(key, false);
+            return false;
+        }
+        return null;
+    }
+
+    private void putResult(List<String> key, boolean exists) {
+        results.put(key, exists);
+        if (!exists) {
+            history.missing(key);
+        }
+    }
+
+    private void countFileSystemCall() {
+        fileSystemCalls.incrementAndGet();
+        TOTAL_FILE_SYSTEM_CALLS.incrementAndGet();
+    }
+
+    /**
+     * Registers a path that a trigger is going to check, for prefetching.
+     */
+    public synchronized void addPending(String fsString, FileSystem fs, Path path) {
+        Path parent = path.getParent();
+        if (parent == null || getCachedResult(Arrays.asList(fsString, path.toString())) != null) {
+            return;
+        }
+        pendingFileSystems.put(fsString, fs);
+        pending.computeIfAbsent(Arrays.asList(fsString, parent.toString()), k -> new HashSet<>()).add(path);
+    }
+
+    /**
+     * Lists each parent directory that has more than one pending path, and
+     * records the existence of its pending paths.  The remaining paths are
+     * checked one by one when the triggers are evaluated.
+     *
+     * Called once per step, so it also prunes the history.
+     */
+    public synchronized void prefetch() {
+        history.prune();
+        for (Map.Entry<List<String>, Set<Path>> entry : pending.entrySet()) {
+            List<String> dirKey = entry.getKey();
+            Set<Path> paths = entry.getValue();
+            if (paths.size() < 2 || history.isHuge(dirKey)) {
+                continue;
+            }
+            String fsString = dirKey.get(0);
+            Path dir = new Path(dirKey.get(1));
+            Set<String> names = new HashSet<>();
+            try {
+                countFileSystemCall();
+                FileStatus[] statuses = pendingFileSystems.get(fsString).listStatus(dir);
+                if (statuses.length > MAX_LISTING_SIZE) {
+                    LOGGER.info("Not listing huge HDFS directory again for a while: " + dir);
+                    history.huge(dirKey);
+                }
+                for (FileStatus status : statuses) {
+                    names.add(status.getPath().getName());
+                }
+            } catch (FileNotFoundException e) {
+                // Directory doesn't exist, so none of the paths exists
+            } catch (IOException e) {
+                LOGGER.warn("Failed to list HDFS directory " + dir + ", checking paths one by one: " + e.getMessage());
+                continue;
+            }
+            for (Path path : paths) {
+                putResult(Arrays.asList(fsString, path.toString()), names.contains(path.getName()));
+            }
+        }
+        pending.clear();
+        pendingFileSystems.clear();
+    }
+
+    /**
+     * Number of path checks during this step.
+     */
+    public long getChecks() {
+        return checks.get();
+    }
+
+    /**
+     * Number of file system calls made during this step.
+     */
+    public long getFileSystemCalls() {
+        return fileSystemCalls.get();
+    }
+
+    /**
+     * Number of file system calls saved by the cache during this step.
+     */
+    public long getSavedCalls() {
+        return getChecks() - getFileSystemCalls();
+    }
+
+    /**
+     * Fraction of path checks that were answered by the cache, or zero if there were no checks.
+     */
+    public double getDedupRatio() {
+        long checks = getChecks();
+        return checks == 0 ? 0 : (double) getSavedCalls() / checks;
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.trigger;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.LongSupplier;
+
+import com.collective.celos.Util;
+
+/**
+ * What the HDFS checks of earlier steps found out, kept across steps by the
+ * scheduler configuration and shared by the step caches (see HDFSCheckCache).
+ *
+ * Paths found missing are considered missing for the negative cache TTL,
+ * unless it is zero.  Directories that were too big to list are not listed
+ * again for HUGE_DIR_TTL_SECONDS, after which they are listed once more in
+ * case they shrank.
+ *
+ * Expired entries are pruned once per step, when the step cache prefetches.
+ */
+public class HDFSCheckHistory {
+
+    /**
+     * For how long a directory that was too big to list is not listed again.
+     */
+    public static final int HUGE_DIR_TTL_SECONDS = 60 * 60;
+
+    private final long negativeCacheTtlMillis;
+    private final LongSupplier clock;
+    // (file system, path) -> time until which the path is considered missing
+    private final ConcurrentMap<List<String>, Long> missingUntil = new ConcurrentHashMap<>();
+    // (file system, directory) -> time until which the directory is not listed
+    private final ConcurrentMap<List<String>, Long> hugeUntil = new ConcurrentHashMap<>();
+
+    public HDFSCheckHistory(int negativeCacheTtlSeconds) {
+        this(negativeCacheTtlSeconds, System::currentTimeMillis);
+    }
+
+    public HDFSCheckHistory(int negativeCacheTtlSeconds, LongSupplier clock) {
+        if (negativeCacheTtlSeconds < 0) {
+            throw new IllegalArgumentException("Negative cache TTL must not be negative.");
+        }
+        this.negativeCacheTtlMillis = negativeCacheTtlSeconds * 1000L;
+        this.clock = Util.requireNonNull(clock);
+    }
+
+    public int getNegativeCacheTtlSeconds() {
+        return (int) (negativeCacheTtlMillis / 1000);
+    }
+
+    boolean isMissing(List<String> key) {
+        return isCurrent(missingUntil, key);
+    }
+
+    void missing(List<String> key) {
+        if (negativeCacheTtlMillis > 0) {
+            missingUntil.put(key, clock.getAsLong() + negativeCacheTtlMillis);
+        }
+    }
+
+    boolean isHuge(List<String> dirKey) {
+        return isCurrent(hugeUntil, dirKey);
+    }
+
+    void huge(List<String> dirKey) {
+        hugeUntil.put(dirKey, clock.getAsLong() + HUGE_DIR_TTL_SECONDS * 1000L);
+    }
+
+    /**
+     * Removes the expired entries.
+     */
+    public void prune() {
+        long now = clock.getAsLong();
+        missingUntil.values().removeIf(until -> until <= now);
+        hugeUntil.values().removeIf(until -> until <= now);
+    }
+
+    /**
+     * Number of paths currently considered missing.
+     */
+    public int getMissingCount() {
+        return missingUntil.size();
+    }
+
+    /**
+     * Number of directories currently not listed.
+     */
+    public int getHugeDirCount() {
+        return hugeUntil.size();
+    }
+
+    private boolean isCurrent(ConcurrentMap<List<String>, Long> untils, List<String> key) {
+        Long until = untils.get(key);
+        if (until == null) {
+            return false;
+        }
+        if (clock.getAsLong() < until) {
+            return true;
+        }
+        untils.remove(key, until);
+        return false;
+    }
+
+}
@@ -70,12 +70,22 @@ public class HDFSCheckTrigger extends Trigger {
 
     @Override
     public TriggerStatus getTriggerStatus(StateDatabaseConnection connection, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
-        Path path = new Path(formatter.replaceTimeTokens(getRawPathString(), scheduledTime));
+        Path path = getPath(scheduledTime);
         LOGGER.info("Checking HDFS path: " + path);
-        boolean ready = getFs().exists(path);
+        HDFSCheckCache cache = HDFSCheckCache.getCurrent();
+        boolean ready = cache != null ? cache.exists(getFsString(), getFs(), path) : getFs().exists(path);
         return makeTriggerStatus(ready, humanReadableDescription(ready, path));
     }
 
+    @Override
+    public void addHDFSChecks(HDFSCheckCache cache, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
+        cache.addPending(getFsString(), getFs(), getPath(scheduledTime));
+    }
+
+    private Path getPath(ScheduledTime scheduledTime) {
+        return new Path(formatter.replaceTimeTokens(getRawPathString(), scheduledTime));
+    }
+
     private String humanReadableDescription(boolean ready, Path path) {
         if (ready) {
             return "HDFS path " + path.toString() + " is ready";
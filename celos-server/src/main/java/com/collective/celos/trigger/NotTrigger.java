@@ -35,11 +35,16 @@ public class NotTrigger extends Trigger {
 
     @Override
     public TriggerStatus getTriggerStatus(StateDatabaseConnection connection, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
-        TriggerStatus status = trigger.getTriggerStatus(connection, now, scheduledTime);
+        TriggerStatus status = trigger.evaluate(connection, now, scheduledTime);
         boolean ready = !status.isReady();
         return makeTriggerStatus(ready, humanReadableDescription(ready), Collections.singletonList(status));
     }
 
+    @Override
+    public void addHDFSChecks(HDFSCheckCache cache, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
+        trigger.addHDFSChecks(cache, now, scheduledTime);
+    }
+
     private String humanReadableDescription(boolean ready) {
         if (ready) {
             return "Ready, nested trigger isn't ready";
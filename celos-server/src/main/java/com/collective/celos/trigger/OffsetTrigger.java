@@ -36,11 +36,16 @@ public class OffsetTrigger extends Trigger {
 
     @Override
     public TriggerStatus getTriggerStatus(StateDatabaseConnection connection, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
-        TriggerStatus status = trigger.getTriggerStatus(connection, now, scheduledTime.plusSeconds(seconds));
+        TriggerStatus status = trigger.evaluate(connection, now, scheduledTime.plusSeconds(seconds));
         boolean ready = status.isReady();
         return makeTriggerStatus(ready, humanReadableDescription(ready), Collections.singletonList(status));
     }
 
+    @Override
+    public void addHDFSChecks(HDFSCheckCache cache, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
+        trigger.addHDFSChecks(cache, now, scheduledTime.plusSeconds(seconds));
+    }
+
     private String humanReadableDescription(boolean ready) {
         if (ready) {
             return "Nested trigger offset by " + getSeconds() + " seconds ready";
@@ -30,7 +30,7 @@ public class SuccessTrigger extends Trigger {
     private WorkflowID triggerWorkflowID;
 
     public SuccessTrigger(String workflowName) throws Exception {
-        this.triggerWorkflowID = new WorkflowID(workflowName);
+        this.triggerWorkflowID = new WorkflowID(workflowName).intern();
     }
     
     @Override
@@ -20,23 +20,43 @@ import java.util.List;
 
 import com.collective.celos.ScheduledTime;
 import com.collective.celos.database.StateDatabaseConnection;
+import com.collective.celos.metrics.Histogram;
+import com.collective.celos.metrics.MetricsRegistry;
 
 /**
  * A trigger is called to determine data availability for a workflow.
  */
 public abstract class Trigger {
 
+    private static final Histogram EVALUATION_SECONDS = MetricsRegistry.getInstance().histogram(
+            "celos_trigger_evaluation_seconds", "Time taken to evaluate a trigger, including nested triggers.", "trigger");
+
     /**
      * Returns information about data availablity for the given scheduled time.
      */
     public abstract TriggerStatus getTriggerStatus(StateDatabaseConnection connection, ScheduledTime now, ScheduledTime scheduledTime) throws Exception;
 
+    /**
+     * Like getTriggerStatus, but records the time taken per trigger class.
+     * Clients, including triggers that call nested triggers, should use this.
+     */
+    public final TriggerStatus evaluate(StateDatabaseConnection connection, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
+        return EVALUATION_SECONDS.time(() -> getTriggerStatus(connection, now, scheduledTime), getClass().getSimpleName());
+    }
+
     /**
      * Returns true if data is available for the given scheduled time, false if not.
      * For clients that don't need the full TriggerStatus information.
      */
     public final boolean isDataAvailable(StateDatabaseConnection connection, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
-        return getTriggerStatus(connection, now, scheduledTime).isReady();
+        return evaluate(connection, now, scheduledTime).isReady();
+    }
+
+    /**
+     * Registers the HDFS paths this trigger will check for the given scheduled time
+     * with the cache, so that they can be prefetched.  Does nothing by default.
+     */
+    public void addHDFSChecks(HDFSCheckCache cache, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
     }
 
     protected final TriggerStatus makeTriggerStatus(boolean ready, String description, List<TriggerStatus> subStatuses) {
@@ -57,9 +57,20 @@ celos.defineWorkflow = function (json) {
         }
     }
 
+    var dispatchWeight;
+    if (typeof(json.dispatchWeight) === "undefined") {
+        dispatchWeight = Workflow.DEFAULT_DISPATCH_WEIGHT;
+    } else {
+        if (typeof(json.dispatchWeight) === "number") {
+            dispatchWeight = json.dispatchWeight;
+        } else {
+            throw "dispatchWeight must be a number: " + json.dispatchWeight;
+        }
+    }
+
     var workflowInfo = createWorkflowInfo(json);
     var workflow = new Workflow(
-            new WorkflowID(json.id),
+            new WorkflowID(json.id).intern(),
             json.schedule,
             json.schedulingStrategy,
             json.trigger,
@@ -67,7 +78,8 @@ celos.defineWorkflow = function (json) {
             json.maxRetryCount ? json.maxRetryCount : 0,
             new ScheduledTime(json.startTime ? json.startTime : "1970-01-01T00:00:00.000Z"),
             waitTimeoutSeconds,
-            workflowInfo
+            workflowInfo,
+            dispatchWeight
     );
 
     celosWorkflowConfigurationParser.addWorkflow(workflow);
@@ -94,13 +106,31 @@ celos.cronSchedule = function (cronExpression) {
 }
 
 celos.dependentSchedule = function (workflowID) {
-    return new DependentSchedule(new WorkflowID(workflowID));
+    return new DependentSchedule(new WorkflowID(workflowID).intern());
 }
 
 celos.serialSchedulingStrategy = function (concurrency) {
     return new SerialSchedulingStrategy(concurrency === undefined ? 1 : concurrency);
 }
 
+celos.newestFirstSchedulingStrategy = function (concurrency) {
+    return new NewestFirstSchedulingStrategy(concurrency === undefined ? 1 : concurrency);
+}
+
+celos.deadlineSchedulingStrategy = function (slaSeconds, concurrency, maxBacklog) {
+    if (slaSeconds === undefined) {
+        throw "Undefined SLA seconds";
+    }
+    return new DeadlineSchedulingStrategy(slaSeconds, concurrency === undefined ? 1 : concurrency, maxBacklog === undefined ? 0 : maxBacklog);
+}
+
+celos.adaptiveSchedulingStrategy = function (maxConcurrency, minConcurrency) {
+    if (maxConcurrency === undefined) {
+        throw "Undefined max concurrency";
+    }
+    return new AdaptiveSchedulingStrategy(minConcurrency === undefined ? 1 : minConcurrency, maxConcurrency, celosAdaptiveConcurrency);
+}
+
 celos.alwaysTrigger = function () {
     return new AlwaysTrigger();
 }
@@ -259,6 +289,7 @@ celos.isRunningInTestMode = function() {
 }
 
 celos.getRegister = function(bucket, key) {
+    celosWorkflowConfigurationParser.noteRegisterAccess();
     var node = celosConnection.getRegister(new BucketID(bucket), new RegisterKey(key));
     if (node === null) {
         return null;
@@ -268,6 +299,7 @@ celos.getRegister = function(bucket, key) {
 }
 
 celos.forEachRegister = function(bucket, fn) {
+    celosWorkflowConfigurationParser.noteRegisterAccess();
     var bucketID = new BucketID(bucket);
     var iterator = celosConnection.getAllRegisters(bucketID).iterator();
     while(iterator.hasNext()) {
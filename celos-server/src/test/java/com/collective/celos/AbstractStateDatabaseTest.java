@@ -137,6 +137,25 @@ public abstract class AbstractStateDatabaseTest {
         Assert.assertEquals(slotStates6.get(0).getScheduledTime(), time4);
     }
 
+    @Test
+    public void testGetSlotStatesFrom() throws Exception {
+        StateDatabaseConnection db = getStateDatabaseConnection();
+        for (SlotState state : getStatesForSeveralDays()) {
+            db.putSlotState(state);
+        }
+        db.putSlotState(new SlotState(new SlotID(new WorkflowID("workflow-2"), new ScheduledTime("2013-12-04T01:00Z")), SlotState.Status.WAITING));
+        WorkflowID wf1 = new WorkflowID("workflow-1");
+        ScheduledTime time1 = new ScheduledTime("2013-12-02T20:00Z");
+        ScheduledTime time4 = new ScheduledTime("2013-12-04T01:00Z");
+
+        Map<SlotID, SlotState> from1 = db.getSlotStatesFrom(wf1, time1);
+        Assert.assertEquals(db.getSlotStates(wf1, time1, time4.plusYears(1)), from1);
+        Assert.assertEquals(new SlotState(new SlotID(wf1, time4), SlotState.Status.SUCCESS), from1.get(new SlotID(wf1, time4)));
+        Assert.assertEquals(1, db.getSlotStatesFrom(wf1, time4).size());
+        Assert.assertEquals(0, db.getSlotStatesFrom(wf1, time4.plusSeconds(1)).size());
+        Assert.assertEquals(0, db.getSlotStatesFrom(new WorkflowID("workflow-3"), time1).size());
+    }
+
     @Test
     public void testGetSlotStatesForParticularTimes() throws Exception {
         StateDatabaseConnection db = getStateDatabaseConnection();
@@ -160,6 +179,38 @@ public abstract class AbstractStateDatabaseTest {
         Assert.assertEquals(slotStates.get(2).getSlotID(), new SlotID(wf1, new ScheduledTime("2013-12-03T00:00Z")));
     }
 
+    @Test
+    public void testGetActiveSlotStatesAndSlotTimes() throws Exception {
+        StateDatabaseConnection db = getStateDatabaseConnection();
+        WorkflowID wf = new WorkflowID("active-test");
+        ScheduledTime start = new ScheduledTime("2013-12-02T22:00Z");
+        ScheduledTime end = new ScheduledTime("2013-12-03T02:00Z");
+        SlotState waiting = new SlotState(new SlotID(wf, start), SlotState.Status.WAITING);
+        SlotState running = new SlotState(new SlotID(wf, start.plusHours(1)), SlotState.Status.READY).transitionToRunning("ext");
+        SlotState success = new SlotState(new SlotID(wf, start.plusHours(2)), SlotState.Status.READY).transitionToRunning("ext").transitionToSuccess();
+        SlotState ready = new SlotState(new SlotID(wf, start.plusHours(3)), SlotState.Status.READY);
+        SlotState outside = new SlotState(new SlotID(wf, end), SlotState.Status.READY);
+        for (SlotState state : Arrays.asList(waiting, running, success, ready, outside)) {
+            db.putSlotState(state);
+        }
+
+        Assert.assertEquals(ImmutableMap.of(waiting.getSlotID(), waiting, running.getSlotID(), running, ready.getSlotID(), ready), db.getActiveSlotStates(wf, start, end));
+        Assert.assertEquals(Sets.newTreeSet(Arrays.asList(start, start.plusHours(1), start.plusHours(2), start.plusHours(3))), db.getSlotTimes(wf, start, end));
+        Assert.assertTrue(db.getActiveSlotStates(wf, end, start).isEmpty());
+
+        // Transitions are reflected in later queries
+        SlotState runningSucceeded = running.transitionToSuccess();
+        SlotState successRerun = success.transitionToRerun();
+        db.putSlotState(runningSucceeded);
+        db.putSlotState(successRerun);
+        Assert.assertEquals(ImmutableMap.of(waiting.getSlotID(), waiting, success.getSlotID(), successRerun, ready.getSlotID(), ready), db.getActiveSlotStates(wf, start, end));
+
+        // Extending the range backwards
+        SlotState earlier = new SlotState(new SlotID(wf, start.minusDays(1)), SlotState.Status.WAITING);
+        db.putSlotState(earlier);
+        Assert.assertEquals(earlier, db.getActiveSlotStates(wf, start.minusDays(2), start).get(earlier.getSlotID()));
+    }
+
     @Test
     public void testGetSlotStatesForPeriodEmptyList() throws Exception {
         StateDatabaseConnection db = getStateDatabaseConnection();
@@ -210,6 +261,30 @@ public abstract class AbstractStateDatabaseTest {
         Assert.assertFalse(db.isPaused(workflowID));
     }
 
+    @Test
+    public void testNextTriggerChecks() throws Exception {
+        StateDatabaseConnection db = getStateDatabaseConnection();
+        WorkflowID wf1 = new WorkflowID("check-wf1");
+        WorkflowID wf2 = new WorkflowID("check-wf2");
+        ScheduledTime time1 = new ScheduledTime("2013-12-02T13:00Z");
+        ScheduledTime time2 = new ScheduledTime("2013-12-03T14:00Z");
+        ScheduledTime nextCheck1 = new ScheduledTime("2013-12-04T15:00Z");
+        ScheduledTime nextCheck2 = new ScheduledTime("2013-12-04T15:30Z");
+        Assert.assertEquals(Collections.emptyMap(), db.getNextTriggerChecks(wf1));
+
+        db.setNextTriggerCheck(new SlotID(wf1, time1), nextCheck1);
+        db.setNextTriggerCheck(new SlotID(wf1, time2), nextCheck1);
+        db.setNextTriggerCheck(new SlotID(wf2, time1), nextCheck2);
+        Assert.assertEquals(ImmutableMap.of(time1, nextCheck1, time2, nextCheck1), db.getNextTriggerChecks(wf1));
+        Assert.assertEquals(ImmutableMap.of(time1, nextCheck2), db.getNextTriggerChecks(wf2));
+
+        db.setNextTriggerCheck(new SlotID(wf1, time2), nextCheck2);
+        db.clearNextTriggerCheck(new SlotID(wf1, time1));
+        db.clearNextTriggerCheck(new SlotID(wf1, time1));
+        Assert.assertEquals(ImmutableMap.of(time2, nextCheck2), db.getNextTriggerChecks(wf1));
+        Assert.assertEquals(ImmutableMap.of(time1, nextCheck2), db.getNextTriggerChecks(wf2));
+    }
+
     @Test
     public void testRegisters() throws Exception {
         StateDatabaseConnection db = getStateDatabaseConnection();
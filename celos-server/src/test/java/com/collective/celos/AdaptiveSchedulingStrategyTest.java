@@ -0,0 +1,184 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.collective.celos.trigger.AlwaysTrigger;
+import com.google.common.collect.Lists;
+
+public class AdaptiveSchedulingStrategyTest {
+
+    private final WorkflowID id = new WorkflowID("foo");
+    private final AtomicLong millis = new AtomicLong(1000000);
+    private final AdaptiveConcurrency concurrency = new AdaptiveConcurrency(millis::get);
+
+    @Test
+    public void startsAtMinimum() {
+        AdaptiveSchedulingStrategy strategy = new AdaptiveSchedulingStrategy(2, 5, concurrency);
+        Assert.assertEquals(2, strategy.getConcurrencyLimit(id).intValue());
+        List<SlotState> candidates = strategy.getSchedulingCandidates(makeReadySlots(4));
+        Assert.assertEquals(2, candidates.size());
+        Assert.assertEquals(2, concurrency.getCurrentLimit(id).intValue());
+    }
+
+    @Test
+    public void increasesWithSuccessfulRuns() {
+        concurrency.getLimit(id, 1, 3);
+        // 1 -> 2 after one run, 2 -> 3 after two more
+        runSlots(1, 1000);
+        Assert.assertEquals(2, concurrency.getCurrentLimit(id).intValue());
+        runSlots(2, 1000);
+        Assert.assertEquals(3, concurrency.getCurrentLimit(id).intValue());
+        // Capped at the maximum
+        runSlots(10, 1000);
+        Assert.assertEquals(3, concurrency.getCurrentLimit(id).intValue());
+    }
+
+    @Test
+    public void decreasesOnSlowRuns() {
+        concurrency.getLimit(id, 1, 10);
+        // 1 + 2 + ... + 7 runs to get from 1 to 8
+        runSlots(28, 1000);
+        Assert.assertEquals(8, concurrency.getCurrentLimit(id).intValue());
+        runSlots(1, 5000);
+        Assert.assertEquals(4, concurrency.getCurrentLimit(id).intValue());
+    }
+
+    @Test
+    public void decreasesWhileSlotRunsSlow() {
+        concurrency.getLimit(id, 1, 10);
+        runSlots(28, 1000);
+        SlotState running = new SlotState(new SlotID(id, new ScheduledTime("2013-11-28T00:00Z")), SlotState.Status.READY).transitionToRunning("ext");
+        concurrency.slotTransitioned(null, running);
+        millis.addAndGet(1500);
+        Assert.assertEquals(8, concurrency.getLimit(id, 1, 10));
+        millis.addAndGet(1000);
+        Assert.assertEquals(4, concurrency.getLimit(id, 1, 10));
+        // Only once for the same slot, even after the hold
+        millis.addAndGet(AdaptiveConcurrency.DECREASE_HOLD_MILLIS);
+        Assert.assertEquals(4, concurrency.getLimit(id, 1, 10));
+        // And not again when it finishes
+        concurrency.slotTransitioned(running, running.transitionToSuccess());
+        Assert.assertEquals(4, concurrency.getLimit(id, 1, 10));
+    }
+
+    @Test
+    public void decreasesOnSlowFailures() {
+        concurrency.getLimit(id, 1, 10);
+        runSlots(28, 1000);
+        SlotState running = new SlotState(new SlotID(id, new ScheduledTime("2013-11-28T00:00Z")), SlotState.Status.READY).transitionToRunning("ext");
+        // A quick failure changes nothing
+        concurrency.slotTransitioned(null, running);
+        millis.addAndGet(500);
+        concurrency.slotTransitioned(running, running.transitionToFailure());
+        Assert.assertEquals(8, concurrency.getCurrentLimit(id).intValue());
+        concurrency.slotTransitioned(null, running);
+        millis.addAndGet(5000);
+        concurrency.slotTransitioned(running, running.transitionToFailure());
+        Assert.assertEquals(4, concurrency.getCurrentLimit(id).intValue());
+    }
+
+    @Test
+    public void forgetsWorkflowsNotInConfiguration() {
+        WorkflowID other = new WorkflowID("bar");
+        WorkflowID notAdaptive = new WorkflowID("baz");
+        concurrency.getLimit(id, 1, 10);
+        concurrency.getLimit(other, 1, 10);
+        concurrency.getLimit(notAdaptive, 1, 10);
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        cfg.addWorkflow(makeWorkflow(other, new AdaptiveSchedulingStrategy(1, 10, concurrency)));
+        cfg.addWorkflow(makeWorkflow(notAdaptive, new TrivialSchedulingStrategy()));
+        concurrency.retainAll(cfg);
+        Assert.assertNull(concurrency.getCurrentLimit(id));
+        Assert.assertNull(concurrency.getCurrentLimit(notAdaptive));
+        Assert.assertEquals(1, concurrency.getCurrentLimit(other).intValue());
+    }
+
+    @Test
+    public void decreasesOnSubmitFailuresAtMostOncePerHold() {
+        concurrency.getLimit(id, 1, 10);
+        // 1 + 2 + ... + 7 runs to get from 1 to 8
+        runSlots(28, 1000);
+        Assert.assertEquals(8, concurrency.getCurrentLimit(id).intValue());
+        concurrency.recordSubmit(id, 10, false);
+        concurrency.recordSubmit(id, AdaptiveConcurrency.SLOW_SUBMIT_MILLIS + 1, true);
+        Assert.assertEquals(4, concurrency.getCurrentLimit(id).intValue());
+        millis.addAndGet(AdaptiveConcurrency.DECREASE_HOLD_MILLIS);
+        concurrency.recordSubmit(id, AdaptiveConcurrency.SLOW_SUBMIT_MILLIS + 1, true);
+        Assert.assertEquals(2, concurrency.getCurrentLimit(id).intValue());
+        millis.addAndGet(AdaptiveConcurrency.DECREASE_HOLD_MILLIS);
+        concurrency.recordSubmit(id, 10, false);
+        millis.addAndGet(AdaptiveConcurrency.DECREASE_HOLD_MILLIS);
+        concurrency.recordSubmit(id, 10, false);
+        Assert.assertEquals(1, concurrency.getCurrentLimit(id).intValue());
+    }
+
+    @Test
+    public void ignoresUntrackedWorkflows() {
+        concurrency.recordSubmit(id, 10, false);
+        runSlots(1, 1000);
+        Assert.assertNull(concurrency.getCurrentLimit(id));
+    }
+
+    @Test
+    public void keepsLimitWithinChangedBounds() {
+        concurrency.getLimit(id, 1, 10);
+        runSlots(20, 1000);
+        Assert.assertEquals(3, concurrency.getLimit(id, 1, 3));
+        Assert.assertEquals(5, concurrency.getLimit(id, 5, 10));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void minMustBePositive() {
+        new AdaptiveSchedulingStrategy(0, 5, concurrency);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxMustNotBeLessThanMin() {
+        new AdaptiveSchedulingStrategy(3, 2, concurrency);
+    }
+
+    private void runSlots(int count, long runMillis) {
+        for (int i = 0; i < count; i++) {
+            SlotState ready = new SlotState(new SlotID(id, new ScheduledTime("2013-11-27T00:00Z").plusHours(i)), SlotState.Status.READY);
+            SlotState running = ready.transitionToRunning("ext");
+            concurrency.slotTransitioned(ready, running);
+            millis.addAndGet(runMillis);
+            concurrency.slotTransitioned(running, running.transitionToSuccess());
+        }
+    }
+
+    private static Workflow makeWorkflow(WorkflowID id, SchedulingStrategy strategy) {
+        return new Workflow(id, new HourlySchedule(), strategy, new AlwaysTrigger(),
+                new MockExternalService(new MockExternalService.MockExternalStatusSuccess()), 0, Workflow.DEFAULT_START_TIME,
+                Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, new WorkflowInfo(null, Collections.<WorkflowInfo.ContactsInfo>emptyList()));
+    }
+
+    private List<SlotState> makeReadySlots(int count) {
+        List<SlotState> states = Lists.newArrayList();
+        for (int i = 0; i < count; i++) {
+            states.add(new SlotState(new SlotID(id, new ScheduledTime("2013-11-27T00:00Z").plusHours(i)), SlotState.Status.READY));
+        }
+        return states;
+    }
+
+}
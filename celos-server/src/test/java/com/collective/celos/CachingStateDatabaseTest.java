@@ -0,0 +1,124 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import com.collective.celos.database.CachingStateDatabase;
+import com.collective.celos.database.StateDatabaseConnection;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+
+public class CachingStateDatabaseTest extends AbstractStateDatabaseTest {
+
+    private final WorkflowID wf = new WorkflowID("foo");
+
+    @Override
+    public StateDatabaseConnection getStateDatabaseConnection() throws IOException {
+        try {
+            return new CachingStateDatabase(new MemoryStateDatabase(), 24).openConnection();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void slidingWindowHoursPositive() {
+        new CachingStateDatabase(new MemoryStateDatabase(), 0);
+    }
+
+    @Test
+    public void loadsOnceAndThenAnswersFromMemory() throws Exception {
+        MemoryStateDatabase backing = new MemoryStateDatabase();
+        SlotState existing = new SlotState(new SlotID(wf, new ScheduledTime("2013-11-27T10:00Z")), SlotState.Status.SUCCESS);
+        backing.openConnection().putSlotState(existing);
+
+        CachingStateDatabase db = new CachingStateDatabase(backing, 24);
+        StateDatabaseConnection connection = db.openConnection();
+        Map<SlotID, SlotState> states = connection.getSlotStates(wf, new ScheduledTime("2013-11-27T00:00Z"), new ScheduledTime("2013-11-27T12:00Z"));
+        Assert.assertEquals(1, states.size());
+        Assert.assertEquals(existing, states.get(existing.getSlotID()));
+        Assert.assertEquals(0, db.getHits());
+        Assert.assertEquals(1, db.getMisses());
+
+        // Data that only exists in the backing database is not seen anymore
+        SlotState sneaky = new SlotState(new SlotID(wf, new ScheduledTime("2013-11-27T11:00Z")), SlotState.Status.READY);
+        backing.openConnection().putSlotState(sneaky);
+        states = connection.getSlotStates(wf, new ScheduledTime("2013-11-27T01:00Z"), new ScheduledTime("2013-11-27T13:00Z"));
+        Assert.assertEquals(1, states.size());
+        Assert.assertNull(connection.getSlotState(sneaky.getSlotID()));
+        Assert.assertEquals(2, db.getHits());
+        Assert.assertEquals(1, db.getMisses());
+    }
+
+    @Test
+    public void writesGoThrough() throws Exception {
+        MemoryStateDatabase backing = new MemoryStateDatabase();
+        CachingStateDatabase db = new CachingStateDatabase(backing, 24);
+        StateDatabaseConnection connection = db.openConnection();
+        connection.getSlotStates(wf, new ScheduledTime("2013-11-27T00:00Z"), new ScheduledTime("2013-11-27T12:00Z"));
+
+        SlotState state = new SlotState(new SlotID(wf, new ScheduledTime("2013-11-27T12:00Z")), SlotState.Status.READY);
+        connection.putSlotState(state);
+
+        Assert.assertEquals(state, backing.openConnection().getSlotState(state.getSlotID()));
+        Assert.assertEquals(state, connection.getSlotStates(wf, new ScheduledTime("2013-11-27T00:00Z"), new ScheduledTime("2013-11-27T13:00Z")).get(state.getSlotID()));
+        Assert.assertEquals(1, db.getMisses());
+    }
+
+    @Test
+    public void firstReadOfPastRangeStillSeesLaterSlots() throws Exception {
+        MemoryStateDatabase backing = new MemoryStateDatabase();
+        SlotState past = new SlotState(new SlotID(wf, new ScheduledTime("2013-11-27T01:00Z")), SlotState.Status.SUCCESS);
+        SlotState later = new SlotState(new SlotID(wf, new ScheduledTime("2013-11-27T10:00Z")), SlotState.Status.SUCCESS);
+        backing.openConnection().putSlotState(past);
+        backing.openConnection().putSlotState(later);
+
+        CachingStateDatabase db = new CachingStateDatabase(backing, 24);
+        StateDatabaseConnection connection = db.openConnection();
+        // Like a servlet looking at the past, before the scheduler's first step
+        Assert.assertEquals(1, connection.getSlotStates(wf, new ScheduledTime("2013-11-27T00:00Z"), new ScheduledTime("2013-11-27T02:00Z")).size());
+
+        ScheduledTime start = new ScheduledTime("2013-11-27T00:00Z");
+        ScheduledTime end = new ScheduledTime("2013-11-27T12:00Z");
+        Assert.assertEquals(later, connection.getSlotStates(wf, start, end).get(later.getSlotID()));
+        Assert.assertEquals(later, connection.getSlotState(later.getSlotID()));
+        Assert.assertTrue(connection.getSlotTimes(wf, start, end).contains(later.getScheduledTime()));
+        Assert.assertTrue(connection.getActiveSlotStates(wf, start, end).isEmpty());
+        Assert.assertEquals(2, connection.getSlotStatesFrom(wf, start).size());
+        Assert.assertEquals(1, db.getMisses());
+    }
+
+    @Test
+    public void evictsSlotsOlderThanWindowAndReadsThemFromBackingDatabase() throws Exception {
+        MemoryStateDatabase backing = new MemoryStateDatabase();
+        SlotState old = new SlotState(new SlotID(wf, new ScheduledTime("2013-11-27T01:00Z")), SlotState.Status.SUCCESS);
+        backing.openConnection().putSlotState(old);
+
+        CachingStateDatabase db = new CachingStateDatabase(backing, 2);
+        StateDatabaseConnection connection = db.openConnection();
+        Assert.assertEquals(1, connection.getSlotStates(wf, new ScheduledTime("2013-11-27T00:00Z"), new ScheduledTime("2013-11-27T02:00Z")).size());
+        // Window moves on, the old slot gets evicted
+        Assert.assertEquals(0, connection.getSlotStates(wf, new ScheduledTime("2013-11-27T08:00Z"), new ScheduledTime("2013-11-27T10:00Z")).size());
+        Assert.assertEquals(1, db.getMisses());
+        // ...but is still found in the backing database
+        Assert.assertEquals(old, connection.getSlotState(old.getSlotID()));
+        Assert.assertEquals(1, connection.getSlotStates(wf, new ScheduledTime("2013-11-27T00:00Z"), new ScheduledTime("2013-11-27T10:00Z")).size());
+        Assert.assertEquals(3, db.getMisses());
+    }
+
+}
@@ -112,6 +112,22 @@ public class CelosClientServerTest {
         );
     }
 
+    @Test
+    public void testClearCacheWithoutWaitingReloadsInBackground() throws Exception {
+        File src = new File(Thread.currentThread().getContextClassLoader().getResource("com/collective/celos/client/wf-list").toURI());
+        FileUtils.copyDirectory(src, workflowsDir);
+
+        celosClient.clearCache(false);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        Set<WorkflowID> workflowIDs = celosClient.getWorkflowList();
+        while (workflowIDs.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            workflowIDs = celosClient.getWorkflowList();
+        }
+        Assert.assertEquals(4, workflowIDs.size());
+    }
+
     @Test(expected = HttpHostConnectException.class)
     public void testServerStops() throws Exception {
         celosClient.getWorkflowList();
@@ -397,7 +413,39 @@ public class CelosClientServerTest {
     public void testServerRespondsToSchedulerPOST() throws IOException {
         HttpPost request = new HttpPost(celosClient.getAddress() + "/scheduler");
         HttpResponse response = new DefaultHttpClient().execute(request);
-        Assert.assertEquals(response.getStatusLine().getStatusCode(), 200);
+        Assert.assertEquals(response.getStatusLine().getStatusCode(), 202);
+    }
+
+    @Test
+    public void testSchedulerStepReportsOutcomes() throws Exception {
+        File src = new File(Thread.currentThread().getContextClassLoader().getResource("com/collective/celos/client/wf-list").toURI());
+        FileUtils.copyDirectory(src, workflowsDir);
+
+        celosClient.iterateScheduler(ScheduledTime.now(), Collections.singleton(new WorkflowID("workflow-2")));
+        long stepID = celosClient.startSchedulerStep(ScheduledTime.now(), Collections.<WorkflowID>emptySet());
+        Assert.assertTrue(stepID > 1);
+
+        long deadline = System.currentTimeMillis() + 10000;
+        ObjectNode step = celosClient.getSchedulerStep(stepID);
+        while (!isFinished(step) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            step = celosClient.getSchedulerStep(stepID);
+        }
+        Assert.assertEquals(CelosClient.STEP_SUCCEEDED, step.get(CelosClient.STEP_STATUS_NODE).asText());
+        Assert.assertEquals(4, step.get(StepReport.WORKFLOW_COUNT_NODE).asInt());
+        Assert.assertEquals(4, step.get(StepReport.STEPPED_COUNT_NODE).asInt());
+        Assert.assertEquals(StepReport.Phase.DONE.name(), step.get(StepReport.PHASE_NODE).asText());
+        Assert.assertEquals(StepReport.Outcome.OK.name(), step.get(StepReport.WORKFLOWS_NODE).get("workflow-2").get(StepReport.OUTCOME_NODE).asText());
+    }
+
+    private static boolean isFinished(ObjectNode step) {
+        String status = step.get(CelosClient.STEP_STATUS_NODE).asText();
+        return status.equals(CelosClient.STEP_SUCCEEDED) || status.equals(CelosClient.STEP_FAILED);
+    }
+
+    @Test(expected = IOException.class)
+    public void testSchedulerStepNotFound() throws Exception {
+        celosClient.getSchedulerStep(1234);
     }
 
     @Test
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.io.File;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.mozilla.javascript.Script;
+import org.mozilla.javascript.tools.shell.Global;
+
+import com.google.common.collect.ImmutableMap;
+
+public class CompiledScriptCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final CompiledScriptCache cache = new CompiledScriptCache();
+
+    @Test
+    public void reusesScriptOfUnchangedSource() throws Exception {
+        JSConfigParser parser = new JSConfigParser();
+        Script first = cache.getScript(parser, "var x = 1;", "a.js");
+        Script second = cache.getScript(parser, "var x = 1;", "a.js");
+        Assert.assertSame(first, second);
+        Assert.assertEquals(1, cache.getMisses());
+        Assert.assertEquals(1, cache.getHits());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void compilesChangedSourceAgain() throws Exception {
+        JSConfigParser parser = new JSConfigParser();
+        Script first = cache.getScript(parser, "var x = 1;", "a.js");
+        Script second = cache.getScript(parser, "var x = 2;", "a.js");
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(2, cache.getMisses());
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void keepsOneEntryPerFileName() throws Exception {
+        JSConfigParser parser = new JSConfigParser();
+        Script first = cache.getScript(parser, "var x = 1;", "a.js");
+        Script second = cache.getScript(parser, "var x = 1;", "b.js");
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(2, cache.size());
+        cache.clear();
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void compilesAgainWithOtherOptimizationLevel() throws Exception {
+        Script first = cache.getScript(new JSConfigParser(9), "var x = 1;", "a.js");
+        Script second = cache.getScript(new JSConfigParser(JSConfigParser.INTERPRETED_OPTIMIZATION_LEVEL), "var x = 1;", "a.js");
+        Assert.assertNotSame(first, second);
+        Assert.assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void executesScriptInDifferentScopes() throws Exception {
+        JSConfigParser parser = new JSConfigParser();
+        Script script = cache.getScript(parser, "var x = (typeof x === 'undefined') ? 1 : x + 1; x", "a.js");
+        Global scope1 = parser.createGlobalScope();
+        Global scope2 = parser.createGlobalScope();
+        Assert.assertEquals(1, ((Number) parser.executeScript(scope1, script)).intValue());
+        Assert.assertEquals(2, ((Number) parser.executeScript(scope1, script)).intValue());
+        Assert.assertEquals(1, ((Number) parser.executeScript(scope2, script)).intValue());
+    }
+
+    @Test
+    public void parserDoesntCompileUnchangedFilesAgain() throws Exception {
+        File workflowsDir = tempFolder.newFolder("workflows");
+        File defaultsDir = tempFolder.newFolder("defaults");
+        FileUtils.write(new File(defaultsDir, "common.js"), "var COMMON = 'wf';");
+        FileUtils.write(new File(workflowsDir, "a.js"),
+                "celos.importDefaults('common');\n"
+                + "celos.defineWorkflow({ id: COMMON, schedule: celos.hourlySchedule(), schedulingStrategy: celos.serialSchedulingStrategy(),"
+                + " trigger: celos.alwaysTrigger(), externalService: celos.oozieExternalService({}, 'oj01/oozie') });");
+        CompiledScriptCache scriptCache = CompiledScriptCache.getInstance();
+        parse(workflowsDir, defaultsDir);
+        long misses = scriptCache.getMisses();
+        long hits = scriptCache.getHits();
+
+        WorkflowConfiguration cfg = parse(workflowsDir, defaultsDir);
+        Assert.assertNotNull(cfg.findWorkflow(new WorkflowID("wf")));
+        Assert.assertEquals(misses, scriptCache.getMisses());
+        // celos-scripts.js, the defaults file, and the workflow file
+        Assert.assertEquals(hits + 3, scriptCache.getHits());
+    }
+
+    private WorkflowConfiguration parse(File workflowsDir, File defaultsDir) throws Exception {
+        WorkflowConfigurationParser parser = new WorkflowConfigurationParser(defaultsDir, ImmutableMap.<String, String>of());
+        return parser.parseConfiguration(workflowsDir, new MemoryStateDatabase().openConnection()).getWorkflowConfiguration();
+    }
+
+}
@@ -82,6 +82,17 @@ public class CronScheduleTest {
     }
 
 
+    @Test
+    public void cronScheduleStartWithMillisIsNotIncluded() {
+        Schedule sch = makeCronSchedule("0 0 12 * * ?");
+        ScheduledTime t1 = new ScheduledTime("2013-11-25T12:00:00.500Z");
+        ScheduledTime t2 = new ScheduledTime("2013-11-26T13:00Z");
+        Set<ScheduledTime> times = sch.getScheduledTimes(null, t1, t2);
+
+        List<ScheduledTime> expected = Arrays.asList(new ScheduledTime("2013-11-26T12:00Z"));
+        Assert.assertEquals(new TreeSet<ScheduledTime>(expected), times);
+    }
+
     @Test
     public void cronScheduleOneHourBorderExcludedEmpty() {
         Schedule sch = makeCronSchedule("0 0 12 * * ?");
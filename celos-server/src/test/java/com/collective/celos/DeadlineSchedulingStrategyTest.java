@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import static com.collective.celos.SlotState.Status.READY;
+import static com.collective.celos.SlotState.Status.RUNNING;
+import static com.collective.celos.SlotState.Status.WAITING;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DeadlineSchedulingStrategyTest {
+
+    private final WorkflowID workflow = new WorkflowID("foo");
+    private final ScheduledTime now = new ScheduledTime("2013-11-19T01:30Z");
+
+    // Slots are due two hours after their scheduled time, so slots before 23:30 are backlog
+    private DeadlineSchedulingStrategy makeStrategy(int concurrency, int maxBacklog) {
+        return new DeadlineSchedulingStrategy(2 * 60 * 60, concurrency, maxBacklog);
+    }
+
+    @Test
+    public void submitsEarliestDeadlineFirstWithoutFreshReadySlots() {
+        List<SlotState> input = Arrays.asList(
+                slot("2013-11-18T20:00Z", READY),
+                slot("2013-11-18T21:00Z", READY),
+                slot("2013-11-18T22:00Z", READY),
+                slot("2013-11-19T00:00Z", WAITING),
+                slot("2013-11-19T01:00Z", WAITING));
+        List<SlotState> expected = Arrays.asList(slot("2013-11-18T20:00Z", READY), slot("2013-11-18T21:00Z", READY));
+        Assert.assertEquals(expected, makeStrategy(2, 0).getSchedulingCandidates(input, now));
+    }
+
+    @Test
+    public void limitsBacklogWhileFreshSlotIsReady() {
+        List<SlotState> input = Arrays.asList(
+                slot("2013-11-18T20:00Z", READY),
+                slot("2013-11-18T21:00Z", READY),
+                slot("2013-11-18T22:00Z", READY),
+                slot("2013-11-19T00:00Z", READY),
+                slot("2013-11-19T01:00Z", READY));
+        Assert.assertEquals(Arrays.asList(slot("2013-11-19T00:00Z", READY), slot("2013-11-19T01:00Z", READY)),
+                makeStrategy(3, 0).getSchedulingCandidates(input, now));
+        Assert.assertEquals(Arrays.asList(slot("2013-11-18T20:00Z", READY), slot("2013-11-19T00:00Z", READY), slot("2013-11-19T01:00Z", READY)),
+                makeStrategy(3, 1).getSchedulingCandidates(input, now));
+    }
+
+    @Test
+    public void countsRunningBacklogSlots() {
+        List<SlotState> input = Arrays.asList(
+                slot("2013-11-18T20:00Z", RUNNING),
+                slot("2013-11-18T21:00Z", READY),
+                slot("2013-11-19T00:00Z", READY));
+        Assert.assertEquals(Arrays.asList(slot("2013-11-19T00:00Z", READY)), makeStrategy(3, 1).getSchedulingCandidates(input, now));
+        Assert.assertEquals(Arrays.asList(slot("2013-11-18T21:00Z", READY), slot("2013-11-19T00:00Z", READY)), makeStrategy(3, 2).getSchedulingCandidates(input, now));
+        Assert.assertEquals(Collections.emptyList(), makeStrategy(1, 2).getSchedulingCandidates(input, now));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void concurrencyMustBePositive() {
+        makeStrategy(0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxBacklogMustNotBeNegative() {
+        makeStrategy(1, -1);
+    }
+
+    private SlotState slot(String time, SlotState.Status status) {
+        return new SlotState(new SlotID(workflow, new ScheduledTime(time)), status);
+    }
+
+}
@@ -0,0 +1,292 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import com.collective.celos.database.StateDatabaseConnection;
+import com.collective.celos.trigger.HDFSCheckCache;
+import com.collective.celos.trigger.HDFSCheckHistory;
+import com.collective.celos.trigger.AndTrigger;
+import com.collective.celos.trigger.HDFSCheckTrigger;
+import com.collective.celos.trigger.OffsetTrigger;
+import com.collective.celos.trigger.Trigger;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.Mockito.*;
+
+public class HDFSCheckCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final AtomicLong millis = new AtomicLong();
+
+    @After
+    public void tearDown() {
+        HDFSCheckCache.setCurrent(null);
+    }
+
+    @Test
+    public void checksEachPathOncePerStep() throws Exception {
+        FileSystem fs = mock(FileSystem.class);
+        when(fs.exists(new Path("/a"))).thenReturn(true);
+        when(fs.exists(new Path("/b"))).thenReturn(false);
+        HDFSCheckCache cache = new HDFSCheckCache();
+        for (int i = 0; i < 3; i++) {
+            Assert.assertTrue(cache.exists("hdfs://nn", fs, new Path("/a")));
+            Assert.assertFalse(cache.exists("hdfs://nn", fs, new Path("/b")));
+        }
+        verify(fs, times(1)).exists(new Path("/a"));
+        verify(fs, times(1)).exists(new Path("/b"));
+        Assert.assertEquals(6, cache.getChecks());
+        Assert.assertEquals(2, cache.getFileSystemCalls());
+        Assert.assertEquals(4, cache.getSavedCalls());
+        Assert.assertEquals(4.0 / 6, cache.getDedupRatio(), 0.0001);
+    }
+
+    @Test
+    public void distinguishesFileSystems() throws Exception {
+        FileSystem fs = mock(FileSystem.class);
+        when(fs.exists(new Path("/a"))).thenReturn(true);
+        HDFSCheckCache cache = new HDFSCheckCache();
+        cache.exists("hdfs://nn1", fs, new Path("/a"));
+        cache.exists("hdfs://nn2", fs, new Path("/a"));
+        Assert.assertEquals(2, cache.getFileSystemCalls());
+    }
+
+    @Test
+    public void noDedupRatioWithoutChecks() {
+        Assert.assertEquals(0.0, new HDFSCheckCache().getDedupRatio(), 0);
+    }
+
+    @Test
+    public void stepsDontShareResultsWithoutNegativeCache() throws Exception {
+        FileSystem fs = mock(FileSystem.class);
+        when(fs.exists(new Path("/b"))).thenReturn(false);
+        new HDFSCheckCache().exists("hdfs://nn", fs, new Path("/b"));
+        new HDFSCheckCache().exists("hdfs://nn", fs, new Path("/b"));
+        verify(fs, times(2)).exists(new Path("/b"));
+    }
+
+    @Test
+    public void negativeCacheSpansSteps() throws Exception {
+        HDFSCheckHistory history = new HDFSCheckHistory(3600, millis::get);
+        FileSystem fs = mock(FileSystem.class);
+        when(fs.exists(new Path("/a"))).thenReturn(true);
+        when(fs.exists(new Path("/b"))).thenReturn(false);
+        new HDFSCheckCache(history).exists("hdfs://nn", fs, new Path("/a"));
+        new HDFSCheckCache(history).exists("hdfs://nn", fs, new Path("/b"));
+        HDFSCheckCache nextStep = new HDFSCheckCache(history);
+        Assert.assertTrue(nextStep.exists("hdfs://nn", fs, new Path("/a")));
+        Assert.assertFalse(nextStep.exists("hdfs://nn", fs, new Path("/b")));
+        verify(fs, times(2)).exists(new Path("/a"));
+        verify(fs, times(1)).exists(new Path("/b"));
+        Assert.assertEquals(1, nextStep.getSavedCalls());
+    }
+
+    @Test
+    public void negativeCacheExpires() throws Exception {
+        HDFSCheckHistory history = new HDFSCheckHistory(3600, millis::get);
+        FileSystem fs = mock(FileSystem.class);
+        when(fs.exists(new Path("/b"))).thenReturn(false);
+        new HDFSCheckCache(history).exists("hdfs://nn", fs, new Path("/b"));
+        millis.addAndGet(3600 * 1000L);
+        new HDFSCheckCache(history).exists("hdfs://nn", fs, new Path("/b"));
+        verify(fs, times(2)).exists(new Path("/b"));
+    }
+
+    @Test
+    public void prefetchPrunesExpiredEntries() throws Exception {
+        HDFSCheckHistory history = new HDFSCheckHistory(60, millis::get);
+        FileSystem fs = mock(FileSystem.class);
+        when(fs.exists(any(Path.class))).thenReturn(false);
+        HDFSCheckCache cache = new HDFSCheckCache(history);
+        cache.exists("hdfs://nn", fs, new Path("/a"));
+        cache.exists("hdfs://nn", fs, new Path("/b"));
+        Assert.assertEquals(2, history.getMissingCount());
+        millis.addAndGet(30 * 1000L);
+        HDFSCheckCache nextStep = new HDFSCheckCache(history);
+        nextStep.exists("hdfs://nn", fs, new Path("/c"));
+        nextStep.prefetch();
+        Assert.assertEquals(3, history.getMissingCount());
+        millis.addAndGet(30 * 1000L);
+        new HDFSCheckCache(history).prefetch();
+        Assert.assertEquals(1, history.getMissingCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void negativeCacheTtlMustNotBeNegative() {
+        new HDFSCheckHistory(-1);
+    }
+
+    @Test
+    public void triggerUsesCurrentCache() throws Exception {
+        File root = tempFolder.getRoot();
+        new File(root, "2013-11-22").mkdirs();
+        HDFSCheckTrigger trigger = new HDFSCheckTrigger(root.getPath() + "/${year}-${month}-${day}", "file:///");
+        StateDatabaseConnection connection = mock(StateDatabaseConnection.class);
+
+        HDFSCheckCache cache = new HDFSCheckCache();
+        Assert.assertNull(HDFSCheckCache.setCurrent(cache));
+        Assert.assertTrue(trigger.isDataAvailable(connection, ScheduledTime.now(), new ScheduledTime("2013-11-22T15:00Z")));
+        Assert.assertTrue(trigger.isDataAvailable(connection, ScheduledTime.now(), new ScheduledTime("2013-11-22T16:00Z")));
+        Assert.assertFalse(trigger.isDataAvailable(connection, ScheduledTime.now(), new ScheduledTime("2013-11-23T16:00Z")));
+        Assert.assertSame(cache, HDFSCheckCache.setCurrent(null));
+        Assert.assertEquals(3, cache.getChecks());
+        Assert.assertEquals(2, cache.getFileSystemCalls());
+    }
+
+    @Test
+    public void prefetchListsDirectoryOnce() throws Exception {
+        FileSystem fs = mock(FileSystem.class);
+        when(fs.listStatus(new Path("/dir"))).thenReturn(new FileStatus[] { fileStatus("/dir/a"), fileStatus("/dir/b") });
+        HDFSCheckCache cache = new HDFSCheckCache();
+        cache.addPending("hdfs://nn", fs, new Path("/dir/a"));
+        cache.addPending("hdfs://nn", fs, new Path("/dir/b"));
+        cache.addPending("hdfs://nn", fs, new Path("/dir/c"));
+        cache.prefetch();
+        Assert.assertTrue(cache.exists("hdfs://nn", fs, new Path("/dir/a")));
+        Assert.assertTrue(cache.exists("hdfs://nn", fs, new Path("/dir/b")));
+        Assert.assertFalse(cache.exists("hdfs://nn", fs, new Path("/dir/c")));
+        verify(fs, times(1)).listStatus(new Path("/dir"));
+        verify(fs, never()).exists(any(Path.class));
+        Assert.assertEquals(1, cache.getFileSystemCalls());
+        Assert.assertEquals(2, cache.getSavedCalls());
+    }
+
+    @Test
+    public void prefetchOfMissingDirectory() throws Exception {
+        FileSystem fs = mock(FileSystem.class);
+        when(fs.listStatus(new Path("/missing"))).thenThrow(new FileNotFoundException());
+        HDFSCheckCache cache = new HDFSCheckCache();
+        cache.addPending("hdfs://nn", fs, new Path("/missing/a"));
+        cache.addPending("hdfs://nn", fs, new Path("/missing/b"));
+        cache.prefetch();
+        Assert.assertFalse(cache.exists("hdfs://nn", fs, new Path("/missing/a")));
+        Assert.assertFalse(cache.exists("hdfs://nn", fs, new Path("/missing/b")));
+        verify(fs, never()).exists(any(Path.class));
+    }
+
+    @Test
+    public void prefetchDoesntListForSinglePath() throws Exception {
+        FileSystem fs = mock(FileSystem.class);
+        when(fs.exists(new Path("/single/a"))).thenReturn(true);
+        HDFSCheckCache cache = new HDFSCheckCache();
+        cache.addPending("hdfs://nn", fs, new Path("/single/a"));
+        cache.prefetch();
+        Assert.assertTrue(cache.exists("hdfs://nn", fs, new Path("/single/a")));
+        verify(fs, never()).listStatus(any(Path.class));
+    }
+
+    @Test
+    public void prefetchFallsBackToExistsOnError() throws Exception {
+        FileSystem fs = mock(FileSystem.class);
+        when(fs.listStatus(new Path("/broken"))).thenThrow(new IOException("fail"));
+        when(fs.exists(new Path("/broken/a"))).thenReturn(true);
+        HDFSCheckCache cache = new HDFSCheckCache();
+        cache.addPending("hdfs://nn", fs, new Path("/broken/a"));
+        cache.addPending("hdfs://nn", fs, new Path("/broken/b"));
+        cache.prefetch();
+        Assert.assertTrue(cache.exists("hdfs://nn", fs, new Path("/broken/a")));
+        Assert.assertFalse(cache.exists("hdfs://nn", fs, new Path("/broken/b")));
+        verify(fs, times(2)).exists(any(Path.class));
+    }
+
+    @Test
+    public void hugeDirectoryIsNotListedAgain() throws Exception {
+        FileStatus[] statuses = new FileStatus[HDFSCheckCache.MAX_LISTING_SIZE + 1];
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = fileStatus("/huge/" + i);
+        }
+        FileSystem fs = mock(FileSystem.class);
+        when(fs.listStatus(new Path("/huge"))).thenReturn(statuses);
+        HDFSCheckHistory history = new HDFSCheckHistory(0, millis::get);
+        HDFSCheckCache cache = new HDFSCheckCache(history);
+        cache.addPending("hdfs://nn", fs, new Path("/huge/1"));
+        cache.addPending("hdfs://nn", fs, new Path("/huge/x"));
+        cache.prefetch();
+        Assert.assertTrue(cache.exists("hdfs://nn", fs, new Path("/huge/1")));
+        Assert.assertFalse(cache.exists("hdfs://nn", fs, new Path("/huge/x")));
+
+        HDFSCheckCache nextStep = new HDFSCheckCache(history);
+        nextStep.addPending("hdfs://nn", fs, new Path("/huge/1"));
+        nextStep.addPending("hdfs://nn", fs, new Path("/huge/x"));
+        nextStep.prefetch();
+        nextStep.exists("hdfs://nn", fs, new Path("/huge/1"));
+        nextStep.exists("hdfs://nn", fs, new Path("/huge/x"));
+        verify(fs, times(1)).listStatus(new Path("/huge"));
+        verify(fs, times(2)).exists(any(Path.class));
+    }
+
+    @Test
+    public void hugeDirectoryIsListedAgainAfterTtl() throws Exception {
+        FileStatus[] statuses = new FileStatus[HDFSCheckCache.MAX_LISTING_SIZE + 1];
+        for (int i = 0; i < statuses.length; i++) {
+            statuses[i] = fileStatus("/huge/" + i);
+        }
+        FileSystem fs = mock(FileSystem.class);
+        when(fs.listStatus(new Path("/huge"))).thenReturn(statuses);
+        HDFSCheckHistory history = new HDFSCheckHistory(0, millis::get);
+        for (int i = 0; i < 2; i++) {
+            HDFSCheckCache cache = new HDFSCheckCache(history);
+            cache.addPending("hdfs://nn", fs, new Path("/huge/1"));
+            cache.addPending("hdfs://nn", fs, new Path("/huge/x"));
+            cache.prefetch();
+            Assert.assertEquals(1, history.getHugeDirCount());
+            millis.addAndGet(HDFSCheckHistory.HUGE_DIR_TTL_SECONDS * 1000L);
+        }
+        verify(fs, times(2)).listStatus(new Path("/huge"));
+    }
+
+    @Test
+    public void triggersAddHDFSChecks() throws Exception {
+        File root = tempFolder.getRoot();
+        new File(root, "2013-11-22T15").mkdirs();
+        new File(root, "2013-11-22T16").mkdirs();
+        String path = root.getPath() + "/${year}-${month}-${day}T${hour}";
+        Trigger trigger = new AndTrigger(Arrays.<Trigger>asList(
+                new HDFSCheckTrigger(path, "file:///"),
+                new OffsetTrigger(3600, new HDFSCheckTrigger(path, "file:///"))));
+        StateDatabaseConnection connection = mock(StateDatabaseConnection.class);
+        ScheduledTime scheduledTime = new ScheduledTime("2013-11-22T15:00Z");
+
+        HDFSCheckCache cache = new HDFSCheckCache();
+        trigger.addHDFSChecks(cache, ScheduledTime.now(), scheduledTime);
+        cache.prefetch();
+        Assert.assertEquals(1, cache.getFileSystemCalls());
+        HDFSCheckCache.setCurrent(cache);
+        Assert.assertTrue(trigger.isDataAvailable(connection, ScheduledTime.now(), scheduledTime));
+        Assert.assertFalse(trigger.isDataAvailable(connection, ScheduledTime.now(), scheduledTime.plusHours(1)));
+        Assert.assertEquals(2, cache.getFileSystemCalls());
+    }
+
+    private static FileStatus fileStatus(String path) {
+        return new FileStatus(0, false, 1, 0, 0, new Path(path));
+    }
+
+}
@@ -32,6 +32,8 @@ public class JDBCStateDatabaseTest extends AbstractStateDatabaseTest {
             "WORKFLOWID VARCHAR(512) NOT NULL, DATE TIMESTAMP NOT NULL, STATUS VARCHAR(512) NOT NULL, " +
             "EXTERNALID VARCHAR(512), RETRYCOUNT INTEGER NOT NULL DEFAULT 0)";
 
+    public static final String CREATE_SLOT_STATE_ACTIVE_INDEX = "CREATE INDEX SLOTSTATE_ACTIVE ON SLOTSTATE(WORKFLOWID, STATUS, DATE)";
+
     public static final String CREATE_RERUN_SLOT_TABLE = "CREATE TABLE RERUNSLOT (" +
             "WORKFLOWID VARCHAR(512) NOT NULL, DATE TIMESTAMP NOT NULL, WALLCLOCK TIMESTAMP NOT NULL)";
 
@@ -41,6 +43,9 @@ public class JDBCStateDatabaseTest extends AbstractStateDatabaseTest {
     public static final String CREATE_REGISTERS_TABLE = "CREATE TABLE REGISTER (" +
             "BUCKETID VARCHAR(512) NOT NULL, KEY VARCHAR(512) NOT NULL, JSON VARCHAR(512) NOT NULL)";
 
+    public static final String CREATE_TRIGGER_CHECK_TABLE = "CREATE TABLE TRIGGERCHECK (" +
+            "WORKFLOWID VARCHAR(512) NOT NULL, DATE TIMESTAMP NOT NULL, NEXTCHECK TIMESTAMP NOT NULL)";
+
     private static Server SERVER;
     private static String URL = "jdbc:h2:mem:test;DB_CLOSE_DELAY=-1";
     private static String USERNAME = "sa";
@@ -54,9 +59,11 @@ public class JDBCStateDatabaseTest extends AbstractStateDatabaseTest {
         try (Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD)) {
             try (Statement statement = connection.createStatement()) {
                 statement.execute(CREATE_SLOT_STATE_TABLE);
+                statement.execute(CREATE_SLOT_STATE_ACTIVE_INDEX);
                 statement.execute(CREATE_RERUN_SLOT_TABLE);
                 statement.execute(CREATE_WORKFLOW_INFO_TABLE);
                 statement.execute(CREATE_REGISTERS_TABLE);
+                statement.execute(CREATE_TRIGGER_CHECK_TABLE);
             }
         }
     }
@@ -1,8 +1,10 @@
 
 package com.collective.celos;
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.mozilla.javascript.EvaluatorException;
+import org.mozilla.javascript.Script;
 
 import java.io.File;
 import java.io.FileReader;
@@ -25,4 +27,34 @@ public class JSConfigParserTest {
         parser.validateJsSyntax(new FileReader(file), file.getName());
     }
 
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsInvalidOptimizationLevel() throws Exception {
+        new JSConfigParser(JSConfigParser.MAX_OPTIMIZATION_LEVEL + 1);
+    }
+
+    @Test
+    public void testCompiledScriptCanBeExecutedRepeatedly() throws Exception {
+        JSConfigParser parser = new JSConfigParser(JSConfigParser.INTERPRETED_OPTIMIZATION_LEVEL);
+        Script script = parser.compileString("1 + 2", "string");
+        Assert.assertEquals(3, ((Number) parser.executeScript(parser.createGlobalScope(), script)).intValue());
+        Assert.assertEquals(3, ((Number) parser.executeScript(parser.createGlobalScope(), script)).intValue());
+    }
+
+    @Test
+    public void testTimeLimitAbortsCompiledAndInterpretedScripts() throws Exception {
+        for (int level : new int[] { JSConfigParser.INTERPRETED_OPTIMIZATION_LEVEL, JSConfigParser.MAX_OPTIMIZATION_LEVEL }) {
+            JSConfigParser parser = new JSConfigParser(level);
+            Script script = parser.compileString("while (true) { try { while (true) {} } catch (e) {} }", "string");
+            parser.setTimeLimit(100);
+            try {
+                parser.executeScript(parser.createGlobalScope(), script);
+                Assert.fail();
+            } catch (JSConfigParser.TimeLimitExceededError e) {
+                // expected
+            } finally {
+                parser.clearTimeLimit();
+            }
+        }
+    }
+
 }
@@ -75,6 +75,42 @@ public class JavaScriptFunctionsTest {
         Assert.assertEquals(s.getConcurrencyLevel(), 5);
     }
 
+    @Test
+    public void testAdaptiveSchedulingStrategy() throws Exception {
+        AdaptiveSchedulingStrategy s = (AdaptiveSchedulingStrategy) runJS("celos.adaptiveSchedulingStrategy(10)");
+        Assert.assertEquals(1, s.getMinConcurrency());
+        Assert.assertEquals(10, s.getMaxConcurrency());
+        s = (AdaptiveSchedulingStrategy) runJS("celos.adaptiveSchedulingStrategy(10, 3)");
+        Assert.assertEquals(3, s.getMinConcurrency());
+    }
+
+    @Test
+    public void testNewestFirstSchedulingStrategy() throws Exception {
+        Assert.assertEquals(1, ((NewestFirstSchedulingStrategy) runJS("celos.newestFirstSchedulingStrategy()")).getConcurrencyLevel());
+        Assert.assertEquals(4, ((NewestFirstSchedulingStrategy) runJS("celos.newestFirstSchedulingStrategy(4)")).getConcurrencyLevel());
+    }
+
+    @Test
+    public void testDeadlineSchedulingStrategy() throws Exception {
+        DeadlineSchedulingStrategy s = (DeadlineSchedulingStrategy) runJS("celos.deadlineSchedulingStrategy(3600)");
+        Assert.assertEquals(3600, s.getSlaSeconds());
+        Assert.assertEquals(1, s.getConcurrencyLevel());
+        Assert.assertEquals(0, s.getMaxBacklog());
+        s = (DeadlineSchedulingStrategy) runJS("celos.deadlineSchedulingStrategy(3600, 4, 2)");
+        Assert.assertEquals(4, s.getConcurrencyLevel());
+        Assert.assertEquals(2, s.getMaxBacklog());
+    }
+
+    @Test
+    public void testDeadlineSchedulingStrategyRequiresSla() throws Exception {
+        expectMessage("celos.deadlineSchedulingStrategy()", "Undefined SLA seconds (celos-scripts.js#");
+    }
+
+    @Test
+    public void testAdaptiveSchedulingStrategyRequiresMax() throws Exception {
+        expectMessage("celos.adaptiveSchedulingStrategy()", "Undefined max concurrency (celos-scripts.js#");
+    }
+
     @Test
     public void testAlwaysTrigger() throws Exception {
         AlwaysTrigger t = (AlwaysTrigger) runJS("celos.alwaysTrigger()");
@@ -23,7 +23,6 @@ import java.util.stream.Collectors;
 import com.collective.celos.database.StateDatabase;
 import com.collective.celos.database.StateDatabaseConnection;
 import org.apache.commons.lang.StringUtils;
-import org.joda.time.DateTime;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.Maps;
@@ -33,9 +32,11 @@ import com.google.common.collect.Maps;
  */
 public class MemoryStateDatabase implements StateDatabase {
 
-    protected final Map<SlotID, SlotState> map = new HashMap<>();
+    // Concurrent maps, so that the database can be used by parallel scheduler steps
+    protected final Map<SlotID, SlotState> map = new ConcurrentHashMap<>();
     protected final Map<SlotID, ScheduledTime> rerun = new ConcurrentHashMap<>();
-    protected final Set<WorkflowID> pausedWorkflows = new HashSet<>();
+    protected final Map<SlotID, ScheduledTime> nextTriggerChecks = new ConcurrentHashMap<>();
+    protected final Set<WorkflowID> pausedWorkflows = Collections.newSetFromMap(new ConcurrentHashMap<WorkflowID, Boolean>());
     // Use SortedMap for easier testing of register contents
     protected final SortedMap<BucketID, SortedMap<RegisterKey, JsonNode>> registers = new TreeMap<>();
 
@@ -52,12 +53,23 @@ public class MemoryStateDatabase implements StateDatabase {
 
     protected class MemoryStateDatabaseConnection implements StateDatabaseConnection {
         @Override
-        public Map<SlotID, SlotState> getSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
-            Map<SlotID, SlotState> slotStates = Maps.newHashMap();
+        public SlotStates getSlotStates(WorkflowID id, ScheduledTime start, ScheduledTime end) throws Exception {
+            SlotStates slotStates = new SlotStates(id);
             for (Map.Entry<SlotID, SlotState> entry : map.entrySet()) {
-                DateTime dateTime = entry.getKey().getScheduledTime().getDateTime();
-                if (!dateTime.isBefore(start.getDateTime()) && dateTime.isBefore(end.getDateTime())) {
-                    slotStates.put(entry.getKey(), entry.getValue());
+                ScheduledTime time = entry.getKey().getScheduledTime();
+                if (entry.getKey().getWorkflowID().equals(id) && !time.isBefore(start) && time.isBefore(end)) {
+                    slotStates.add(entry.getValue());
+                }
+            }
+            return slotStates;
+        }
+
+        @Override
+        public SlotStates getSlotStatesFrom(WorkflowID id, ScheduledTime start) throws Exception {
+            SlotStates slotStates = new SlotStates(id);
+            for (Map.Entry<SlotID, SlotState> entry : map.entrySet()) {
+                if (entry.getKey().getWorkflowID().equals(id) && !entry.getKey().getScheduledTime().isBefore(start)) {
+                    slotStates.add(entry.getValue());
                 }
             }
             return slotStates;
@@ -112,6 +124,27 @@ public class MemoryStateDatabase implements StateDatabase {
             }
         }
         
+        @Override
+        public Map<ScheduledTime, ScheduledTime> getNextTriggerChecks(WorkflowID workflowID) throws Exception {
+            Map<ScheduledTime, ScheduledTime> res = Maps.newHashMap();
+            for (Map.Entry<SlotID, ScheduledTime> entry : nextTriggerChecks.entrySet()) {
+                if (entry.getKey().getWorkflowID().equals(workflowID)) {
+                    res.put(entry.getKey().getScheduledTime(), entry.getValue());
+                }
+            }
+            return res;
+        }
+
+        @Override
+        public void setNextTriggerCheck(SlotID slot, ScheduledTime nextCheck) throws Exception {
+            nextTriggerChecks.put(slot, nextCheck);
+        }
+
+        @Override
+        public void clearNextTriggerCheck(SlotID slot) throws Exception {
+            nextTriggerChecks.remove(slot);
+        }
+
         @Override
         public JsonNode getRegister(BucketID bucket, RegisterKey key) throws Exception {
             Util.requireNonNull(bucket);
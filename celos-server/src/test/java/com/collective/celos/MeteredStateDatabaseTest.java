@@ -0,0 +1,51 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import com.collective.celos.database.MeteredStateDatabase;
+import com.collective.celos.database.StateDatabaseConnection;
+import com.collective.celos.metrics.Histogram;
+import com.collective.celos.metrics.MetricsRegistry;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+
+public class MeteredStateDatabaseTest extends AbstractStateDatabaseTest {
+
+    @Override
+    public StateDatabaseConnection getStateDatabaseConnection() throws IOException {
+        try {
+            return new MeteredStateDatabase(new MemoryStateDatabase()).openConnection();
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Test
+    public void recordsOperationTimes() throws Exception {
+        StateDatabaseConnection connection = getStateDatabaseConnection();
+        Histogram histogram = (Histogram) MetricsRegistry.getInstance().get("celos_state_database_seconds");
+        long puts = histogram.getCount("putSlotState");
+        long gets = histogram.getCount("getSlotState");
+        SlotID slotID = new SlotID(new WorkflowID("foo"), new ScheduledTime("2013-11-27T10:00Z"));
+        connection.putSlotState(new SlotState(slotID, SlotState.Status.READY));
+        Assert.assertEquals(SlotState.Status.READY, connection.getSlotState(slotID).getStatus());
+        Assert.assertEquals(puts + 1, histogram.getCount("putSlotState"));
+        Assert.assertEquals(gets + 1, histogram.getCount("getSlotState"));
+    }
+
+}
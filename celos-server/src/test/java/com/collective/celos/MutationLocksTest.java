@@ -0,0 +1,97 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MutationLocksTest {
+
+    private final SlotID slot1 = new SlotID(new WorkflowID("wf1"), new ScheduledTime("2013-11-27T15:00Z"));
+    private final SlotID slot2 = new SlotID(new WorkflowID("wf2"), new ScheduledTime("2013-11-27T15:00Z"));
+
+    @Test
+    public void serializesHoldersOfTheSameKey() throws Exception {
+        MutationLocks locks = new MutationLocks(4);
+        CountDownLatch acquired = new CountDownLatch(1);
+        AtomicBoolean done = new AtomicBoolean();
+        Thread other;
+        locks.lock(slot1, "test");
+        try {
+            other = new Thread(() -> {
+                locks.lock(slot1, "other");
+                acquired.countDown();
+                locks.unlock(slot1);
+            });
+            other.start();
+            Assert.assertFalse(acquired.await(100, TimeUnit.MILLISECONDS));
+            done.set(true);
+        } finally {
+            locks.unlock(slot1);
+        }
+        Assert.assertTrue(acquired.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(done.get());
+        other.join();
+    }
+
+    @Test
+    public void locksAreReentrant() throws Exception {
+        MutationLocks locks = new MutationLocks(1);
+        locks.lock(slot1, "test");
+        try {
+            // Both keys are on the only stripe
+            locks.lock(slot2, "test");
+            locks.unlock(slot2);
+        } finally {
+            locks.unlock(slot1);
+        }
+    }
+
+    @Test
+    public void reportsSlotsChangedSinceCount() throws Exception {
+        MutationLocks locks = new MutationLocks(4);
+        long before = locks.getChangeCount();
+        locks.slotChanged(slot1);
+        long between = locks.getChangeCount();
+        locks.slotChanged(slot2);
+        Assert.assertTrue(locks.isChangedSince(slot1, before));
+        Assert.assertFalse(locks.isChangedSince(slot1, between));
+        Assert.assertTrue(locks.isChangedSince(slot2, between));
+        Assert.assertFalse(locks.isChangedSince(slot2, Long.MAX_VALUE));
+    }
+
+    @Test
+    public void forgetsChangesUpToCount() throws Exception {
+        MutationLocks locks = new MutationLocks(4);
+        locks.slotChanged(slot1);
+        long between = locks.getChangeCount();
+        locks.slotChanged(slot2);
+        locks.forgetChangesUpTo(between);
+        Assert.assertEquals(1, locks.getChangedSlotCount());
+        Assert.assertFalse(locks.isChangedSince(slot1, 0));
+        Assert.assertTrue(locks.isChangedSince(slot2, between));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void stripesMustBePositive() {
+        new MutationLocks(0);
+    }
+
+}
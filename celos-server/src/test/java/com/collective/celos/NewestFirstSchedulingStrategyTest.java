@@ -0,0 +1,65 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import static com.collective.celos.SlotState.Status.READY;
+import static com.collective.celos.SlotState.Status.RUNNING;
+import static com.collective.celos.SlotState.Status.SUCCESS;
+import static com.collective.celos.SlotState.Status.WAITING;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class NewestFirstSchedulingStrategyTest {
+
+    private final WorkflowID workflow = new WorkflowID("foo");
+
+    @Test
+    public void submitsNewestReadySlotsFirst() {
+        List<SlotState> input = Arrays.asList(
+                slot("2013-11-18T20:00Z", SUCCESS),
+                slot("2013-11-18T21:00Z", READY),
+                slot("2013-11-18T22:00Z", READY),
+                slot("2013-11-18T23:00Z", READY),
+                slot("2013-11-19T00:00Z", WAITING));
+        List<SlotState> expected = Arrays.asList(slot("2013-11-18T23:00Z", READY), slot("2013-11-18T22:00Z", READY));
+        Assert.assertEquals(expected, new NewestFirstSchedulingStrategy(2).getSchedulingCandidates(input));
+    }
+
+    @Test
+    public void countsRunningSlots() {
+        List<SlotState> input = Arrays.asList(
+                slot("2013-11-18T20:00Z", RUNNING),
+                slot("2013-11-18T21:00Z", READY),
+                slot("2013-11-18T22:00Z", READY));
+        Assert.assertEquals(Arrays.asList(slot("2013-11-18T22:00Z", READY)), new NewestFirstSchedulingStrategy(2).getSchedulingCandidates(input));
+        Assert.assertEquals(Collections.emptyList(), new NewestFirstSchedulingStrategy(1).getSchedulingCandidates(input));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void concurrencyMustBePositive() {
+        new NewestFirstSchedulingStrategy(0);
+    }
+
+    private SlotState slot(String time, SlotState.Status status) {
+        return new SlotState(new SlotID(workflow, new ScheduledTime(time)), status);
+    }
+
+}
@@ -15,14 +15,26 @@
  */
 package com.collective.celos;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 
 import junit.framework.Assert;
 
+import org.apache.oozie.client.OozieClient;
+import org.apache.oozie.client.WorkflowJob;
 import org.junit.Test;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
 
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.*;
+
 public class OozieExternalServiceTest {
 
     @Test(expected=NullPointerException.class)
@@ -56,6 +68,68 @@ public class OozieExternalServiceTest {
         Assert.assertEquals("test@2013-11-26T17:23Z", runProperties.getProperty(OozieExternalService.WORKFLOW_NAME_PROP));
     }
     
+    @Test
+    public void idFilterIsCorrectlySetup() {
+        Assert.assertEquals("id=a", OozieExternalService.makeIdFilter(Collections.singletonList("a")));
+        Assert.assertEquals("id=a;id=b;id=c", OozieExternalService.makeIdFilter(Arrays.asList("a", "b", "c")));
+    }
+
+    @Test
+    public void getStatusesQueriesJobsInBatches() throws Exception {
+        OozieClient client = mock(OozieClient.class);
+        Map<SlotID, String> externalIDs = new HashMap<>();
+        List<WorkflowJob> jobs = new ArrayList<>();
+        int count = OozieExternalService.STATUS_BATCH_SIZE + 1;
+        for (int i = 0; i < count; i++) {
+            externalIDs.put(new SlotID(new WorkflowID("wf"), new ScheduledTime("2013-11-26T17:00Z").plusHours(i)), "job-" + i);
+            jobs.add(makeJob("job-" + i, WorkflowJob.Status.SUCCEEDED));
+        }
+        when(client.getJobsInfo(anyString(), anyInt(), anyInt())).thenReturn(jobs);
+
+        Map<SlotID, ExternalStatus> statuses = new OozieExternalService("http://example.com", PropertiesGenerator.EMPTY, client).getStatuses(externalIDs);
+
+        Assert.assertEquals(count, statuses.size());
+        for (ExternalStatus status : statuses.values()) {
+            Assert.assertTrue(status.isSuccess());
+        }
+        verify(client, times(2)).getJobsInfo(anyString(), eq(1), anyInt());
+        verify(client, never()).getJobInfo(anyString());
+    }
+
+    @Test
+    public void getStatusesLooksUpMissingJobsIndividually() throws Exception {
+        OozieClient client = mock(OozieClient.class);
+        SlotID found = new SlotID(new WorkflowID("wf"), new ScheduledTime("2013-11-26T17:00Z"));
+        SlotID missing = new SlotID(new WorkflowID("wf"), new ScheduledTime("2013-11-26T18:00Z"));
+        Map<SlotID, String> externalIDs = new HashMap<>();
+        externalIDs.put(found, "job-found");
+        externalIDs.put(missing, "job-missing");
+        WorkflowJob foundJob = makeJob("job-found", WorkflowJob.Status.RUNNING);
+        when(client.getJobsInfo(anyString(), anyInt(), anyInt())).thenReturn(Collections.singletonList(foundJob));
+        WorkflowJob missingJob = makeJob("job-missing", WorkflowJob.Status.KILLED);
+        when(client.getJobInfo("job-missing")).thenReturn(missingJob);
+
+        Map<SlotID, ExternalStatus> statuses = new OozieExternalService("http://example.com", PropertiesGenerator.EMPTY, client).getStatuses(externalIDs);
+
+        Assert.assertTrue(statuses.get(found).isRunning());
+        Assert.assertFalse(statuses.get(missing).isRunning());
+        Assert.assertFalse(statuses.get(missing).isSuccess());
+        verify(client).getJobInfo("job-missing");
+    }
+
+    @Test
+    public void servicesWithSameOozieShareBatchKey() {
+        Assert.assertEquals(makeOozieExternalService().getStatusBatchKey(), makeOozieExternalService().getStatusBatchKey());
+        Assert.assertFalse(makeOozieExternalService().getStatusBatchKey().equals(new OozieExternalService("http://other.com", PropertiesGenerator.EMPTY).getStatusBatchKey()));
+    }
+
+    private WorkflowJob makeJob(String id, WorkflowJob.Status status) {
+        WorkflowJob job = mock(WorkflowJob.class);
+        when(job.getId()).thenReturn(id);
+        when(job.getStatus()).thenReturn(status);
+        return job;
+    }
+
     private OozieExternalService makeOozieExternalService() {
         return new OozieExternalService("http://example.com", PropertiesGenerator.EMPTY);
     }
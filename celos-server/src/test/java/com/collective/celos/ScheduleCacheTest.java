@@ -0,0 +1,107 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.Collections;
+
+import com.collective.celos.trigger.AlwaysTrigger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ScheduleCacheTest {
+
+    private static WorkflowInfo emptyWorkflowInfo = new WorkflowInfo(null, Collections.<WorkflowInfo.ContactsInfo>emptyList());
+
+    @Test
+    public void slidingWindowGivesSameResultsAsEvaluation() {
+        ScheduleCache cache = new ScheduleCache(24);
+        CronSchedule schedule = new CronSchedule("0 0/7 * * * ?");
+        ScheduledTime current = new ScheduledTime("2013-11-27T15:00:00.123Z");
+        for (int i = 0; i < 200; i++) {
+            ScheduledTime start = current.minusHours(24);
+            Assert.assertEquals(schedule.evaluate(start, current), cache.getScheduledTimes(schedule, start, current));
+            current = current.plusSeconds(37);
+        }
+        Assert.assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void repeatedRequestIsAHit() {
+        ScheduleCache cache = new ScheduleCache(24);
+        CronSchedule schedule = new HourlySchedule();
+        ScheduledTime start = new ScheduledTime("2013-11-27T00:00Z");
+        ScheduledTime end = new ScheduledTime("2013-11-27T12:00Z");
+        Assert.assertEquals(12, cache.getScheduledTimes(schedule, start, end).size());
+        Assert.assertEquals(12, cache.getScheduledTimes(schedule, start, end).size());
+        Assert.assertEquals(6, cache.getScheduledTimes(schedule, start.plusHours(3), end.minusHours(3)).size());
+        Assert.assertEquals(2, cache.getHits());
+        Assert.assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void schedulesWithSameExpressionShareEntry() {
+        ScheduleCache cache = new ScheduleCache(24);
+        ScheduledTime start = new ScheduledTime("2013-11-27T00:00Z");
+        ScheduledTime end = new ScheduledTime("2013-11-27T12:00Z");
+        cache.getScheduledTimes(new HourlySchedule(), start, end);
+        cache.getScheduledTimes(new CronSchedule("0 0 * * * ?"), start, end);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1, cache.getHits());
+        cache.getScheduledTimes(new MinutelySchedule(), start, end);
+        Assert.assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void returnedSetsAreIndependentOfCache() {
+        ScheduleCache cache = new ScheduleCache(24);
+        CronSchedule schedule = new HourlySchedule();
+        ScheduledTime start = new ScheduledTime("2013-11-27T00:00Z");
+        ScheduledTime end = new ScheduledTime("2013-11-27T12:00Z");
+        cache.getScheduledTimes(schedule, start, end).clear();
+        Assert.assertEquals(12, cache.getScheduledTimes(schedule, start, end).size());
+    }
+
+    @Test
+    public void requestsBeforeRetentionAreEvaluatedDirectly() {
+        ScheduleCache cache = new ScheduleCache(24);
+        CronSchedule schedule = new HourlySchedule();
+        ScheduledTime end = new ScheduledTime("2013-11-27T12:00Z");
+        cache.getScheduledTimes(schedule, end.minusHours(24), end);
+        ScheduledTime oldStart = end.minusDays(10);
+        Assert.assertEquals(schedule.evaluate(oldStart, end), cache.getScheduledTimes(schedule, oldStart, end));
+        Assert.assertEquals(2, cache.getMisses());
+        // the cached window is still there
+        cache.getScheduledTimes(schedule, end.minusHours(24), end);
+        Assert.assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void retainAllDropsUnusedExpressions() {
+        ScheduleCache cache = new ScheduleCache(24);
+        ScheduledTime start = new ScheduledTime("2013-11-27T00:00Z");
+        ScheduledTime end = new ScheduledTime("2013-11-27T12:00Z");
+        cache.getScheduledTimes(new HourlySchedule(), start, end);
+        cache.getScheduledTimes(new MinutelySchedule(), start, end);
+
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        cfg.addWorkflow(new Workflow(new WorkflowID("wf1"), new HourlySchedule(), new TrivialSchedulingStrategy(), new AlwaysTrigger(),
+                new MockExternalService(new MockExternalService.MockExternalStatusRunning()), 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+        cache.retainAll(cfg);
+        Assert.assertEquals(1, cache.size());
+    }
+
+}
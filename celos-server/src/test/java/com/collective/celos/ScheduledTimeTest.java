@@ -17,6 +17,8 @@ package com.collective.celos;
 
 import static org.junit.Assert.assertEquals;
 
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -138,4 +140,51 @@ public class ScheduledTimeTest {
         assertEquals(new ScheduledTime("2013-11-18T20:12:52.023Z"), t.minusSeconds(1));
     }
 
+    @Test
+    public void parsesCanonicalAndOtherFormatsAlike() {
+        ScheduledTime t = new ScheduledTime("2013-11-18T20:12:53.023Z");
+        assertEquals(new ScheduledTime(DateTime.parse("2013-11-18T20:12:53.023Z")), t);
+        assertEquals(new ScheduledTime("2013-11-18T20:00Z"), new ScheduledTime("2013-11-18T20:00:00.000Z"));
+        assertEquals(t.getDateTime().getMillis(), t.getMillis());
+    }
+
+    @Test
+    public void toStringMatchesDateTime() {
+        for (String s : new String[] { "2013-11-18T20:12:53.023Z", "1970-01-01T00:00Z", "0099-02-28T23:59:59.999Z", "12013-11-18T20:00Z" }) {
+            ScheduledTime t = new ScheduledTime(s);
+            assertEquals(t.getDateTime().toString(), t.toString());
+            assertEquals(t, new ScheduledTime(t.toString()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonUTC() {
+        new ScheduledTime("2013-11-18T20:00:00.000+01:00");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidCanonical() {
+        new ScheduledTime("2013-13-18T20:00:00.000Z");
+    }
+
+    @Test
+    public void equalsAndHashCodeUseMillis() {
+        ScheduledTime t1 = new ScheduledTime("2013-11-18T20:00Z");
+        ScheduledTime t2 = new ScheduledTime(new DateTime(t1.getMillis(), DateTimeZone.UTC));
+        assertEquals(t1, t2);
+        assertEquals(t1.hashCode(), t2.hashCode());
+        Assert.assertNotEquals(t1, t1.plusSeconds(1));
+        Assert.assertTrue(t1.isBefore(t1.plusSeconds(1)));
+        Assert.assertTrue(t1.isAfter(t1.minusSeconds(1)));
+        Assert.assertSame(t1, t1.plusHours(0));
+    }
+
+    @Test
+    public void shiftsAcrossMonthEnds() {
+        ScheduledTime t = new ScheduledTime("2016-01-31T10:00Z");
+        assertEquals(new ScheduledTime("2016-02-29T10:00Z"), t.plusMonths(1));
+        assertEquals(new ScheduledTime("2017-02-28T10:00Z"), t.plusMonths(1).plusYears(1));
+        assertEquals(new ScheduledTime("2016-03-01T10:00Z"), t.plusDays(30));
+    }
+
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.collective.celos.trigger.AlwaysTrigger;
+import com.google.common.collect.ImmutableMap;
+
+public class SchedulerConfigurationTest {
+
+    private final AtomicLong millis = new AtomicLong();
+    private final AtomicLong nanos = new AtomicLong();
+
+    @Test
+    public void throttleUsesGivenClock() throws Exception {
+        SchedulerConfiguration cfg = makeConfiguration(new SchedulerOptions(1, 0, 1, 1, 0, 0, JSConfigParser.DEFAULT_OPTIMIZATION_LEVEL,
+                WorkflowConfigurationParser.DEFAULT_PARSE_THREADS, WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS));
+        Workflow wf = new Workflow(new WorkflowID("a"), new HourlySchedule(), new TrivialSchedulingStrategy(), new AlwaysTrigger(),
+                new MockExternalService(new MockExternalService.MockExternalStatusSuccess()), 0, Workflow.DEFAULT_START_TIME,
+                Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, new WorkflowInfo(null, Collections.<WorkflowInfo.ContactsInfo>emptyList()), 1);
+        List<Workflow> workflows = Arrays.asList(wf);
+        SlotState ready = new SlotState(new SlotID(wf.getID(), new ScheduledTime("2013-11-27T00:00Z")), SlotState.Status.READY);
+        Map<WorkflowID, List<SlotState>> candidates = ImmutableMap.of(wf.getID(), Arrays.asList(ready));
+        SubmissionThrottle throttle = cfg.getSubmissionThrottle();
+        Assert.assertEquals(candidates, throttle.select(workflows, candidates, 0));
+        Assert.assertTrue(throttle.select(workflows, candidates, 0).isEmpty());
+        nanos.addAndGet(1000L * 1000 * 1000);
+        Assert.assertEquals(candidates, throttle.select(workflows, candidates, 0));
+    }
+
+    @Test
+    public void adaptiveConcurrencyUsesGivenClock() throws Exception {
+        AdaptiveConcurrency concurrency = makeConfiguration(new SchedulerOptions()).getAdaptiveConcurrency();
+        WorkflowID id = new WorkflowID("a");
+        concurrency.getLimit(id, 1, 8);
+        for (int i = 0; i < 28; i++) {
+            SlotID slot = new SlotID(id, new ScheduledTime("2013-11-27T00:00Z").plusHours(i));
+            concurrency.slotTransitioned(new SlotState(slot, SlotState.Status.READY), new SlotState(slot, SlotState.Status.RUNNING));
+            concurrency.slotTransitioned(new SlotState(slot, SlotState.Status.RUNNING), new SlotState(slot, SlotState.Status.SUCCESS));
+        }
+        Assert.assertEquals(Integer.valueOf(8), concurrency.getCurrentLimit(id));
+        concurrency.recordSubmit(id, 0, false);
+        Assert.assertEquals(Integer.valueOf(4), concurrency.getCurrentLimit(id));
+        concurrency.recordSubmit(id, 0, false);
+        Assert.assertEquals(Integer.valueOf(4), concurrency.getCurrentLimit(id));
+        millis.addAndGet(AdaptiveConcurrency.DECREASE_HOLD_MILLIS);
+        concurrency.recordSubmit(id, 0, false);
+        Assert.assertEquals(Integer.valueOf(2), concurrency.getCurrentLimit(id));
+    }
+
+    private SchedulerConfiguration makeConfiguration(SchedulerOptions options) throws Exception {
+        return new SchedulerConfiguration(new File("workflows"), new File("defaults"), new MemoryStateDatabase(), ImmutableMap.<String, String>of(), options,
+                ImmutableMap.<String, Object>of(), millis::get, nanos::get);
+    }
+
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+
+public class SchedulerHolderTest {
+
+    @Test
+    public void loadsSchedulerOnFirstUseOnly() throws Exception {
+        CountingConfiguration cfg = new CountingConfiguration();
+        SchedulerHolder holder = new SchedulerHolder(cfg);
+        Assert.assertNull(holder.getCurrentScheduler());
+        Scheduler scheduler = holder.getScheduler();
+        Assert.assertSame(scheduler, holder.getScheduler());
+        Assert.assertSame(scheduler, holder.getCurrentScheduler());
+        Assert.assertEquals(1, cfg.loads.get());
+    }
+
+    @Test
+    public void reloadPublishesNewScheduler() throws Exception {
+        CountingConfiguration cfg = new CountingConfiguration();
+        SchedulerHolder holder = new SchedulerHolder(cfg);
+        Scheduler first = holder.getScheduler();
+        Scheduler second = holder.reload();
+        Assert.assertNotSame(first, second);
+        Assert.assertSame(second, holder.getScheduler());
+        Scheduler third = holder.reloadInBackground().get();
+        Assert.assertNotSame(second, third);
+        Assert.assertSame(third, holder.getScheduler());
+        Assert.assertEquals(3, cfg.loads.get());
+        holder.close();
+    }
+
+    @Test
+    public void failedReloadKeepsCurrentScheduler() throws Exception {
+        CountingConfiguration cfg = new CountingConfiguration();
+        SchedulerHolder holder = new SchedulerHolder(cfg);
+        Scheduler scheduler = holder.getScheduler();
+        cfg.fail = true;
+        try {
+            holder.reload();
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertSame(scheduler, holder.getScheduler());
+    }
+
+    @Test
+    public void coalescesPendingBackgroundReloads() throws Exception {
+        CountingConfiguration cfg = new CountingConfiguration();
+        cfg.blocked = new CountDownLatch(1);
+        SchedulerHolder holder = new SchedulerHolder(cfg);
+        try {
+            Future<Scheduler> running = holder.reloadInBackground();
+            Assert.assertTrue(cfg.started.await(10, TimeUnit.SECONDS));
+            Future<Scheduler> pending = holder.reloadInBackground();
+            Assert.assertNotSame(running, pending);
+            Assert.assertSame(pending, holder.reloadInBackground());
+            // Requests don't wait for the running reload
+            Assert.assertNull(holder.getCurrentScheduler());
+            cfg.blocked.countDown();
+            Scheduler scheduler = pending.get(10, TimeUnit.SECONDS);
+            Assert.assertSame(scheduler, holder.getCurrentScheduler());
+            Assert.assertEquals(2, cfg.loads.get());
+        } finally {
+            holder.close();
+        }
+    }
+
+    @Test
+    public void notifiesAdaptiveConcurrencyUntilClosed() throws Exception {
+        CountingConfiguration cfg = new CountingConfiguration();
+        AdaptiveConcurrency concurrency = cfg.getAdaptiveConcurrency();
+        WorkflowID id = new WorkflowID("adaptive");
+        concurrency.getLimit(id, 1, 10);
+        SchedulerHolder holder = new SchedulerHolder(cfg);
+        runSlot(new SlotID(id, new ScheduledTime("2013-11-27T00:00Z")));
+        Assert.assertEquals(Integer.valueOf(2), concurrency.getCurrentLimit(id));
+        holder.close();
+        runSlot(new SlotID(id, new ScheduledTime("2013-11-27T01:00Z")));
+        runSlot(new SlotID(id, new ScheduledTime("2013-11-27T02:00Z")));
+        Assert.assertEquals(Integer.valueOf(2), concurrency.getCurrentLimit(id));
+    }
+
+    private static void runSlot(SlotID id) {
+        SlotState running = new SlotState(id, SlotState.Status.RUNNING);
+        SlotTransitionBus.getInstance().publish(new SlotState(id, SlotState.Status.READY), running);
+        SlotTransitionBus.getInstance().publish(running, new SlotState(id, SlotState.Status.SUCCESS));
+    }
+
+    private static class CountingConfiguration extends SchedulerConfiguration {
+
+        private final AtomicInteger loads = new AtomicInteger();
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile CountDownLatch blocked = new CountDownLatch(0);
+        private volatile boolean fail;
+
+        private CountingConfiguration() throws Exception {
+            super(new File("workflows"), new File("defaults"), new MemoryStateDatabase(), ImmutableMap.<String, String>of());
+        }
+
+        @Override
+        public Scheduler makeDefaultScheduler() throws Exception {
+            started.countDown();
+            blocked.await();
+            if (fail) {
+                throw new IllegalStateException("Broken configuration");
+            }
+            loads.incrementAndGet();
+            return new Scheduler(new WorkflowConfiguration(), 1);
+        }
+    }
+
+}
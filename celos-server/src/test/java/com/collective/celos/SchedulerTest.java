@@ -15,7 +15,9 @@
  */
 package com.collective.celos;
 
+import com.collective.celos.database.StateDatabaseConnection;
 import com.collective.celos.trigger.AlwaysTrigger;
+import com.collective.celos.trigger.SuccessTrigger;
 import com.collective.celos.trigger.Trigger;
 import com.collective.celos.trigger.TriggerStatus;
 import com.google.common.collect.Maps;
@@ -30,6 +32,7 @@ import org.mockito.InOrder;
 import java.util.*;
 
 import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyMapOf;
 import static org.mockito.Mockito.*;
 
 /**
@@ -314,6 +317,11 @@ public class SchedulerTest {
         new Scheduler(null, 1);
     }
 
+    @Test(expected=IllegalArgumentException.class)
+    public void stepThreadsPositive() {
+        new Scheduler(new WorkflowConfiguration(), 1, 0);
+    }
+
     @Test
     public void slidingWindowSizeWorks() {
         ScheduledTime t = new ScheduledTime("2013-11-26T20:00Z");
@@ -362,6 +370,436 @@ public class SchedulerTest {
 
     }
 
+    /**
+     * Create many workflows with a hourly schedule and an always trigger,
+     * plus one workflow whose trigger throws.
+     *
+     * Step them in parallel a single time.
+     *
+     * Ensure that all hourly slots of the good workflows have been changed to ready,
+     * and that the failing workflow didn't affect them.
+     */
+    @Test
+    public void parallelStepUpdatesWaitingSlotsToReady() throws Exception {
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        int workflowCount = 20;
+        for (int i = 0; i < workflowCount; i++) {
+            Workflow wf = new Workflow(new WorkflowID("wf" + i), makeHourlySchedule(), makeSerialSchedulingStrategy(), makeAlwaysTrigger(),
+                    new MockExternalService(new MockExternalService.MockExternalStatusRunning()), 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo);
+            cfg.addWorkflow(wf);
+        }
+        WorkflowID failingID = new WorkflowID("failing");
+        Trigger failingTrigger = mock(Trigger.class);
+        when(failingTrigger.getTriggerStatus(any(StateDatabaseConnection.class), any(ScheduledTime.class), any(ScheduledTime.class)))
+                .thenThrow(new RuntimeException("trigger failed"));
+        cfg.addWorkflow(new Workflow(failingID, makeHourlySchedule(), makeSerialSchedulingStrategy(), failingTrigger,
+                new MockExternalService(new MockExternalService.MockExternalStatusRunning()), 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+
+        int slidingWindowHours = 24;
+        DateTime current = DateTime.parse("2013-11-27T15:01Z");
+        DateTime currentFullHour = Util.toFullHour(current);
+
+        MemoryStateDatabase db = new MemoryStateDatabase();
+        Scheduler sched = new Scheduler(cfg, slidingWindowHours, 4);
+        sched.step(new ScheduledTime(current), Collections.<WorkflowID>emptySet(), db);
+
+        MemoryStateDatabase.MemoryStateDatabaseConnection conn = db.getMemoryStateDatabaseConnection();
+        Assert.assertEquals(workflowCount * slidingWindowHours, conn.size());
+        for (int i = 0; i < workflowCount; i++) {
+            for (int h = 0; h < slidingWindowHours; h++) {
+                SlotID id = new SlotID(new WorkflowID("wf" + i), new ScheduledTime(currentFullHour.minusHours(h)));
+                Assert.assertEquals(SlotState.Status.READY, conn.getSlotState(id).getStatus());
+            }
+        }
+        Assert.assertNull(conn.getSlotState(new SlotID(failingID, new ScheduledTime(currentFullHour))));
+    }
+
+    /**
+     * Ensure that a parallel step only processes the requested workflows.
+     */
+    @Test
+    public void parallelStepHonorsWorkflowIDs() throws Exception {
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        for (int i = 0; i < 5; i++) {
+            cfg.addWorkflow(new Workflow(new WorkflowID("wf" + i), makeHourlySchedule(), makeSerialSchedulingStrategy(), makeAlwaysTrigger(),
+                    new MockExternalService(new MockExternalService.MockExternalStatusRunning()), 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+        }
+        MemoryStateDatabase db = new MemoryStateDatabase();
+        Scheduler sched = new Scheduler(cfg, 1, 3);
+        ScheduledTime current = new ScheduledTime("2013-11-27T15:01Z");
+        sched.step(current, Sets.newHashSet(new WorkflowID("wf2")), db);
+
+        MemoryStateDatabase.MemoryStateDatabaseConnection conn = db.getMemoryStateDatabaseConnection();
+        Assert.assertEquals(1, conn.size());
+        Assert.assertEquals(SlotState.Status.READY, conn.getSlotState(new SlotID(new WorkflowID("wf2"), new ScheduledTime("2013-11-27T15:00Z"))).getStatus());
+    }
+
+    /**
+     * Create three workflows with a READY slot each, one of them also with a RUNNING slot.
+     *
+     * Step them with a throttle that allows two running slots.
+     *
+     * Ensure that only one READY slot was submitted, and the others stay READY.
+     */
+    @Test
+    public void throttlesSubmissions() throws Exception {
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        ScheduledTime current = new ScheduledTime("2013-11-27T15:01Z");
+        for (String id : Arrays.asList("wf1", "wf2", "wf3")) {
+            cfg.addWorkflow(new Workflow(new WorkflowID(id), makeHourlySchedule(), makeTrivialSchedulingStrategy(), makeAlwaysTrigger(),
+                    new MockExternalService(new MockExternalService.MockExternalStatusRunning()), 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+            connection.putSlotState(new SlotState(new SlotID(new WorkflowID(id), new ScheduledTime("2013-11-27T15:00Z")), SlotState.Status.READY));
+        }
+        connection.putSlotState(new SlotState(new SlotID(new WorkflowID("wf1"), new ScheduledTime("2013-11-27T14:00Z")), SlotState.Status.READY).transitionToRunning("ext"));
+        SubmissionThrottle throttle = new SubmissionThrottle(System::nanoTime);
+        throttle.configure(0, 0, 2);
+
+        new Scheduler(cfg, 2, 1, throttle, new TriggerBackoff(0)).step(current, connection);
+
+        int running = 0;
+        for (String id : Arrays.asList("wf1", "wf2", "wf3")) {
+            SlotState state = connection.getSlotState(new SlotID(new WorkflowID(id), new ScheduledTime("2013-11-27T15:00Z")));
+            if (state.getStatus().equals(SlotState.Status.RUNNING)) {
+                running++;
+            } else {
+                Assert.assertEquals(SlotState.Status.READY, state.getStatus());
+            }
+        }
+        Assert.assertEquals(1, running);
+        Assert.assertEquals(2, throttle.getThrottled());
+    }
+
+    /**
+     * Create two workflows, one with a RUNNING slot, the other with a READY slot.
+     *
+     * Step only the second one with a throttle that allows one running slot.
+     *
+     * Ensure that the READY slot isn't submitted, because the limit counts the
+     * running slots of all workflows.
+     */
+    @Test
+    public void limitsRunningSlotsOfAllWorkflowsWhenSteppingSome() throws Exception {
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        ScheduledTime current = new ScheduledTime("2013-11-27T15:01Z");
+        for (String id : Arrays.asList("wf1", "wf2")) {
+            cfg.addWorkflow(new Workflow(new WorkflowID(id), makeHourlySchedule(), makeTrivialSchedulingStrategy(), makeAlwaysTrigger(),
+                    new MockExternalService(new MockExternalService.MockExternalStatusRunning()), 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+        }
+        connection.putSlotState(new SlotState(new SlotID(new WorkflowID("wf1"), new ScheduledTime("2013-11-27T14:00Z")), SlotState.Status.READY).transitionToRunning("ext"));
+        SlotID ready = new SlotID(new WorkflowID("wf2"), new ScheduledTime("2013-11-27T15:00Z"));
+        connection.putSlotState(new SlotState(ready, SlotState.Status.READY));
+        SubmissionThrottle throttle = new SubmissionThrottle(System::nanoTime);
+        throttle.configure(0, 0, 1);
+
+        new Scheduler(cfg, 2, 1, throttle, new TriggerBackoff(0)).step(current, Sets.newHashSet(new WorkflowID("wf2")), connection);
+
+        Assert.assertEquals(SlotState.Status.READY, connection.getSlotState(ready).getStatus());
+        Assert.assertEquals(1, throttle.getThrottled());
+    }
+
+    /**
+     * Create two workflows, a paused one with a RUNNING slot, and one with a READY slot.
+     *
+     * Step both with a throttle that allows one running slot.
+     *
+     * Ensure that the READY slot isn't submitted, because the running slots
+     * of paused workflows count towards the limit.
+     */
+    @Test
+    public void limitsRunningSlotsOfPausedWorkflows() throws Exception {
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        ScheduledTime current = new ScheduledTime("2013-11-27T15:01Z");
+        for (String id : Arrays.asList("wf1", "wf2")) {
+            cfg.addWorkflow(new Workflow(new WorkflowID(id), makeHourlySchedule(), makeTrivialSchedulingStrategy(), makeAlwaysTrigger(),
+                    new MockExternalService(new MockExternalService.MockExternalStatusRunning()), 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+        }
+        connection.putSlotState(new SlotState(new SlotID(new WorkflowID("wf1"), new ScheduledTime("2013-11-27T14:00Z")), SlotState.Status.READY).transitionToRunning("ext"));
+        connection.setPaused(new WorkflowID("wf1"), true);
+        SlotID ready = new SlotID(new WorkflowID("wf2"), new ScheduledTime("2013-11-27T15:00Z"));
+        connection.putSlotState(new SlotState(ready, SlotState.Status.READY));
+        SubmissionThrottle throttle = new SubmissionThrottle(System::nanoTime);
+        throttle.configure(0, 0, 1);
+
+        new Scheduler(cfg, 2, 1, throttle, new TriggerBackoff(0)).step(current, connection);
+
+        Assert.assertEquals(SlotState.Status.READY, connection.getSlotState(ready).getStatus());
+        Assert.assertEquals(1, throttle.getThrottled());
+    }
+
+    /**
+     * Create a workflow with a deadline strategy and READY slots at 13:00 and 15:00,
+     * due an hour after their scheduled time.
+     *
+     * Step it at 15:01, and ensure that the fresh 15:00 slot is submitted, not the
+     * 13:00 backlog slot, which means the strategy used the step's time and not
+     * the system clock (by which both slots would be backlog).
+     */
+    @Test
+    public void passesStepTimeToSchedulingStrategy() throws Exception {
+        WorkflowID id = new WorkflowID("wf1");
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        cfg.addWorkflow(new Workflow(id, makeHourlySchedule(), new DeadlineSchedulingStrategy(60 * 60, 1, 0), makeAlwaysTrigger(),
+                new MockExternalService(new MockExternalService.MockExternalStatusRunning()), 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+        SlotID backlog = new SlotID(id, new ScheduledTime("2013-11-27T13:00Z"));
+        SlotID fresh = new SlotID(id, new ScheduledTime("2013-11-27T15:00Z"));
+        connection.putSlotState(new SlotState(backlog, SlotState.Status.READY));
+        connection.putSlotState(new SlotState(fresh, SlotState.Status.READY));
+
+        new Scheduler(cfg, 3, 1, new SubmissionThrottle(System::nanoTime), new TriggerBackoff(0)).step(new ScheduledTime("2013-11-27T15:01Z"), connection);
+
+        Assert.assertEquals(SlotState.Status.RUNNING, connection.getSlotState(fresh).getStatus());
+        Assert.assertEquals(SlotState.Status.READY, connection.getSlotState(backlog).getStatus());
+    }
+
+    /**
+     * Create a workflow whose trigger is never ready, and whose 10:00 slot has waited three hours.
+     *
+     * Step it with a trigger backoff, and ensure that the slot's trigger is only
+     * checked again after four minutes, or right away after a reset.
+     */
+    @Test
+    public void backsOffTriggerChecksOfLongWaitingSlots() throws Exception {
+        ScheduledTime slotTime = new ScheduledTime("2013-11-27T10:00Z");
+        SlotID slotID = new SlotID(new WorkflowID("wf1"), slotTime);
+        Map<ScheduledTime, Integer> checks = new HashMap<>();
+        Trigger countingTrigger = new Trigger() {
+            @Override
+            public TriggerStatus getTriggerStatus(StateDatabaseConnection connection, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
+                checks.merge(scheduledTime, 1, Integer::sum);
+                return makeTriggerStatus(false, "Never ready");
+            }
+        };
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        cfg.addWorkflow(new Workflow(slotID.getWorkflowID(), makeHourlySchedule(), makeTrivialSchedulingStrategy(), countingTrigger,
+                new MockExternalService(new MockExternalService.MockExternalStatusRunning()), 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+        TriggerBackoff backoff = new TriggerBackoff(900);
+        Scheduler scheduler = new Scheduler(cfg, 24, 1, new SubmissionThrottle(System::nanoTime), backoff);
+
+        scheduler.step(new ScheduledTime("2013-11-27T13:00Z"), connection);
+        Assert.assertEquals(1, (int) checks.get(slotTime));
+        Assert.assertEquals(new ScheduledTime("2013-11-27T13:04Z"), connection.getNextTriggerChecks(slotID.getWorkflowID()).get(slotTime));
+
+        scheduler.step(new ScheduledTime("2013-11-27T13:01Z"), connection);
+        Assert.assertEquals(1, (int) checks.get(slotTime));
+        Assert.assertEquals(SlotState.Status.WAITING, scheduler.getSlotStates(cfg.findWorkflow(slotID.getWorkflowID()), slotTime, slotTime.plusHours(1), connection).get(0).getStatus());
+
+        scheduler.step(new ScheduledTime("2013-11-27T13:04Z"), connection);
+        Assert.assertEquals(2, (int) checks.get(slotTime));
+
+        backoff.reset(slotID, connection);
+        scheduler.step(new ScheduledTime("2013-11-27T13:05Z"), connection);
+        Assert.assertEquals(3, (int) checks.get(slotTime));
+    }
+
+    /**
+     * Create a workflow with a READY 14:00 slot and a WAITING 15:00 slot, whose
+     * trigger kills both slots through the mutation locks, like the kill servlet,
+     * while the step is running.
+     *
+     * Step it, and ensure that the step neither overwrites nor submits the
+     * killed slots.  Step it again, and ensure that the changes are forgotten.
+     */
+    @Test
+    public void doesntOverwriteSlotsChangedDuringStep() throws Exception {
+        WorkflowID wfID = new WorkflowID("wf1");
+        SlotID readySlot = new SlotID(wfID, new ScheduledTime("2013-11-27T14:00Z"));
+        SlotID waitingSlot = new SlotID(wfID, new ScheduledTime("2013-11-27T15:00Z"));
+        MutationLocks locks = new MutationLocks(4);
+        Trigger killingTrigger = new Trigger() {
+            @Override
+            public TriggerStatus getTriggerStatus(StateDatabaseConnection connection, ScheduledTime now, ScheduledTime scheduledTime) throws Exception {
+                for (SlotID slotID : Arrays.asList(readySlot, waitingSlot)) {
+                    locks.lock(slotID, "test");
+                    try {
+                        connection.putSlotState(connection.getSlotState(slotID).transitionToKill());
+                        locks.slotChanged(slotID);
+                    } finally {
+                        locks.unlock(slotID);
+                    }
+                }
+                return makeTriggerStatus(true, "Ready");
+            }
+        };
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        cfg.addWorkflow(new Workflow(wfID, makeHourlySchedule(), makeTrivialSchedulingStrategy(), killingTrigger,
+                new MockExternalService(new MockExternalService.MockExternalStatusRunning()), 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+        connection.putSlotState(new SlotState(new SlotID(wfID, new ScheduledTime("2013-11-27T13:00Z")), SlotState.Status.SUCCESS));
+        connection.putSlotState(new SlotState(readySlot, SlotState.Status.READY));
+        connection.putSlotState(new SlotState(waitingSlot, SlotState.Status.WAITING));
+
+        Scheduler scheduler = new Scheduler(cfg, 2, 1, new SubmissionThrottle(System::nanoTime), new TriggerBackoff(0), locks);
+        scheduler.step(new ScheduledTime("2013-11-27T15:01Z"), connection);
+
+        Assert.assertEquals(SlotState.Status.KILLED, connection.getSlotState(readySlot).getStatus());
+        Assert.assertEquals(SlotState.Status.KILLED, connection.getSlotState(waitingSlot).getStatus());
+        Assert.assertEquals(2, locks.getChangedSlotCount());
+
+        scheduler.step(new ScheduledTime("2013-11-27T15:02Z"), connection);
+        Assert.assertEquals(0, locks.getChangedSlotCount());
+    }
+
+    /**
+     * Create two workflows with RUNNING slots whose external services share a batch key.
+     *
+     * Step them a single time.
+     *
+     * Ensure that the statuses were polled with a single getStatuses call, and
+     * that the slots were updated according to it.
+     */
+    @Test
+    public void pollsRunningSlotsInBatches() throws Exception {
+        ExternalService srv1 = mock(ExternalService.class);
+        ExternalService srv2 = mock(ExternalService.class);
+        when(srv1.getStatusBatchKey()).thenReturn("oozie");
+        when(srv2.getStatusBatchKey()).thenReturn("oozie");
+        Map<SlotID, ExternalStatus> statuses = Maps.newHashMap();
+        when(srv1.getStatuses(anyMapOf(SlotID.class, String.class))).thenReturn(statuses);
+
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        ScheduledTime current = new ScheduledTime("2013-11-27T15:01Z");
+        SlotID slot1 = new SlotID(new WorkflowID("wf1"), new ScheduledTime("2013-11-27T15:00Z"));
+        SlotID slot2 = new SlotID(new WorkflowID("wf2"), new ScheduledTime("2013-11-27T15:00Z"));
+        for (SlotID slot : Arrays.asList(slot1, slot2)) {
+            ExternalService srv = slot == slot1 ? srv1 : srv2;
+            cfg.addWorkflow(new Workflow(slot.getWorkflowID(), makeHourlySchedule(), makeSerialSchedulingStrategy(), makeAlwaysTrigger(),
+                    srv, 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+            connection.putSlotState(new SlotState(slot, SlotState.Status.READY).transitionToRunning("ext-" + slot.getWorkflowID()));
+        }
+        statuses.put(slot1, new MockExternalService.MockExternalStatusSuccess());
+        statuses.put(slot2, new MockExternalService.MockExternalStatusFailure());
+
+        new Scheduler(cfg, 1).step(current, connection);
+
+        Map<SlotID, String> expectedBatch = Maps.newHashMap();
+        expectedBatch.put(slot1, "ext-wf1");
+        expectedBatch.put(slot2, "ext-wf2");
+        verify(srv1).getStatuses(expectedBatch);
+        verify(srv1, never()).getStatus(any(SlotID.class), anyString());
+        verify(srv2, never()).getStatuses(anyMapOf(SlotID.class, String.class));
+        verify(srv2, never()).getStatus(any(SlotID.class), anyString());
+        Assert.assertEquals(SlotState.Status.SUCCESS, connection.getSlotState(slot1).getStatus());
+        Assert.assertEquals(SlotState.Status.FAILURE, connection.getSlotState(slot2).getStatus());
+    }
+
+    /**
+     * Ensure that only active slots are returned: terminal slots in the
+     * database are left out, and not mistaken for fresh waiting slots.
+     */
+    @Test
+    public void getsActiveSlotStatesOnly() throws Exception {
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        Workflow wf1 = new Workflow(new WorkflowID("wf1"), makeHourlySchedule(), makeSerialSchedulingStrategy(), makeAlwaysTrigger(),
+                externalService, 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo);
+        cfg.addWorkflow(wf1);
+        ScheduledTime current = new ScheduledTime("2013-11-27T15:01Z");
+        SlotID fresh = new SlotID(wf1.getID(), new ScheduledTime("2013-11-27T12:00Z"));
+        SlotID running = new SlotID(wf1.getID(), new ScheduledTime("2013-11-27T13:00Z"));
+        SlotID succeeded = new SlotID(wf1.getID(), new ScheduledTime("2013-11-27T14:00Z"));
+        SlotID rerun = new SlotID(wf1.getID(), new ScheduledTime("2013-11-26T10:00Z"));
+        connection.putSlotState(new SlotState(running, SlotState.Status.READY).transitionToRunning("ext"));
+        connection.putSlotState(new SlotState(succeeded, SlotState.Status.READY).transitionToRunning("ext").transitionToSuccess());
+        connection.putSlotState(new SlotState(rerun, SlotState.Status.READY).transitionToRunning("ext").transitionToSuccess().transitionToRerun());
+        connection.markSlotForRerun(rerun, current);
+
+        Scheduler scheduler = new Scheduler(cfg, 4);
+        List<SlotState> states = scheduler.getActiveSlotStatesIncludingMarkedForRerun(wf1, current, new ScheduledTime("2013-11-27T12:00Z"), current, connection);
+
+        Assert.assertEquals(Arrays.asList(connection.getSlotState(rerun), new SlotState(fresh, SlotState.Status.WAITING), connection.getSlotState(running),
+                new SlotState(new SlotID(wf1.getID(), new ScheduledTime("2013-11-27T15:00Z")), SlotState.Status.WAITING)), states);
+    }
+
+    /**
+     * Ensure that a workflow triggered by the success of another workflow
+     * gets submitted in the same step in which the other workflow's slot
+     * succeeds, even if it comes first alphabetically.
+     */
+    @Test
+    public void stepsWorkflowsInDependencyOrder() throws Exception {
+        ExternalService srv = mock(ExternalService.class);
+        when(srv.getStatus(any(SlotID.class), anyString())).thenReturn(new MockExternalService.MockExternalStatusSuccess());
+        when(srv.submit(any(SlotID.class))).thenReturn("ext2");
+        ScheduledTime time = new ScheduledTime("2013-11-27T15:00Z");
+        SlotID upstream = new SlotID(new WorkflowID("z-upstream"), time);
+        SlotID downstream = new SlotID(new WorkflowID("a-downstream"), time);
+
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        cfg.addWorkflow(new Workflow(downstream.getWorkflowID(), makeHourlySchedule(), makeSerialSchedulingStrategy(), new SuccessTrigger("z-upstream"),
+                srv, 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+        cfg.addWorkflow(new Workflow(upstream.getWorkflowID(), makeHourlySchedule(), makeSerialSchedulingStrategy(), makeAlwaysTrigger(),
+                srv, 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+        connection.putSlotState(new SlotState(upstream, SlotState.Status.READY).transitionToRunning("ext"));
+
+        new Scheduler(cfg, 1).step(new ScheduledTime("2013-11-27T15:01Z"), Collections.<WorkflowID>emptySet(), connection);
+
+        Assert.assertEquals(SlotState.Status.SUCCESS, connection.getSlotState(upstream).getStatus());
+        Assert.assertEquals(SlotState.Status.RUNNING, connection.getSlotState(downstream).getStatus());
+        verify(srv).start(downstream, "ext2");
+    }
+
+    /**
+     * Ensure that when a slot succeeds, the slots of a chain of dependent
+     * workflows at the same time are submitted in the same step, also when
+     * stepping in parallel, and that unrelated slots are left alone.
+     */
+    @Test
+    public void submitsDependentsOfSucceededSlots() throws Exception {
+        ExternalService srv = mock(ExternalService.class);
+        when(srv.getStatus(any(SlotID.class), anyString())).thenReturn(new MockExternalService.MockExternalStatusSuccess());
+        when(srv.submit(any(SlotID.class))).thenReturn("ext2");
+        ScheduledTime time = new ScheduledTime("2013-11-27T14:00Z");
+        SlotID upstream = new SlotID(new WorkflowID("wf1"), time);
+        SlotID downstream = new SlotID(new WorkflowID("wf2"), time);
+        SlotID otherTime = new SlotID(new WorkflowID("wf2"), time.plusHours(1));
+
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        cfg.addWorkflow(new Workflow(upstream.getWorkflowID(), makeHourlySchedule(), makeSerialSchedulingStrategy(), makeAlwaysTrigger(),
+                srv, 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+        cfg.addWorkflow(new Workflow(downstream.getWorkflowID(), makeHourlySchedule(), makeTrivialSchedulingStrategy(), new SuccessTrigger("wf1"),
+                srv, 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+        MemoryStateDatabase db = new MemoryStateDatabase();
+        try (StateDatabaseConnection conn = db.openConnection()) {
+            conn.putSlotState(new SlotState(upstream, SlotState.Status.READY).transitionToRunning("ext"));
+        }
+
+        List<SlotState> transitions = Collections.synchronizedList(new ArrayList<>());
+        SlotTransitionListener listener = (previous, next) -> transitions.add(next);
+        SlotTransitionBus.getInstance().addListener(listener);
+        try {
+            new Scheduler(cfg, 2, 2).step(new ScheduledTime("2013-11-27T15:01Z"), Collections.<WorkflowID>emptySet(), db);
+        } finally {
+            SlotTransitionBus.getInstance().removeListener(listener);
+        }
+
+        try (StateDatabaseConnection conn = db.openConnection()) {
+            Assert.assertEquals(SlotState.Status.SUCCESS, conn.getSlotState(upstream).getStatus());
+            Assert.assertEquals(SlotState.Status.RUNNING, conn.getSlotState(downstream).getStatus());
+            Assert.assertNull(conn.getSlotState(otherTime));
+        }
+        Assert.assertTrue(transitions.contains(new SlotState(upstream, SlotState.Status.READY).transitionToRunning("ext").transitionToSuccess()));
+        Assert.assertTrue(transitions.contains(new SlotState(downstream, SlotState.Status.READY).transitionToRunning("ext2")));
+    }
+
+    /**
+     * Ensure that if batch polling fails, the statuses are polled one by one.
+     */
+    @Test
+    public void fallsBackToSingleStatusWhenBatchPollingFails() throws Exception {
+        ExternalService srv = mock(ExternalService.class);
+        when(srv.getStatuses(anyMapOf(SlotID.class, String.class))).thenThrow(new ExternalServiceException(new RuntimeException("down")));
+        when(srv.getStatus(any(SlotID.class), anyString())).thenReturn(new MockExternalService.MockExternalStatusSuccess());
+
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        SlotID slot = new SlotID(new WorkflowID("wf1"), new ScheduledTime("2013-11-27T15:00Z"));
+        cfg.addWorkflow(new Workflow(slot.getWorkflowID(), makeHourlySchedule(), makeSerialSchedulingStrategy(), makeAlwaysTrigger(),
+                srv, 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo));
+        connection.putSlotState(new SlotState(slot, SlotState.Status.READY).transitionToRunning("ext"));
+
+        new Scheduler(cfg, 1).step(new ScheduledTime("2013-11-27T15:01Z"), connection);
+
+        verify(srv).getStatus(slot, "ext");
+        Assert.assertEquals(SlotState.Status.SUCCESS, connection.getSlotState(slot).getStatus());
+    }
+
     /**
      * Make sure that scheduler doesn't care about very old slot.
      *
@@ -959,7 +1397,7 @@ public class SchedulerTest {
         scheduledTimes.add(time5_slot);
         scheduledTimes.add(time6_noSlot);
 
-        Map<SlotID, SlotState> dbSlotStates1 = Maps.newHashMap();
+        SlotStates dbSlotStates1 = new SlotStates(id);
         SlotID slotID1 = new SlotID(id, time2_slot);
         dbSlotStates1.put(slotID1, new SlotState(slotID1, SlotState.Status.SUCCESS));
         SlotID slotID2 = new SlotID(id, time3_slot);
@@ -1006,7 +1444,7 @@ public class SchedulerTest {
         scheduledTimes.add(time5_slot);
         scheduledTimes.add(time6_noSlot);
 
-        Map<SlotID, SlotState> dbSlotStates1 = Maps.newHashMap();
+        SlotStates dbSlotStates1 = new SlotStates(id);
         SlotID slotID1 = new SlotID(id, time2_slot);
         dbSlotStates1.put(slotID1, new SlotState(slotID1, SlotState.Status.SUCCESS));
         SlotID slotID2 = new SlotID(id, time3_slot);
@@ -1022,6 +1460,7 @@ public class SchedulerTest {
         when(mockedConnection.getSlotStates(id, time1_noSlot, time7_noSlot)).thenReturn(dbSlotStates1);
         when(schedule.getScheduledTimes(scheduler, time1_noSlot, time7_noSlot)).thenReturn(scheduledTimes);
         when(mockedConnection.getTimesMarkedForRerun(workflowId, nowTimeForRerun)).thenReturn(rerunTimes);
+        when(mockedConnection.getSlotStates(id, rerunTimes)).thenReturn(new SlotStates(id));
 
         List<SlotState> slotStates = scheduler.getSlotStatesIncludingMarkedForRerun(wf, nowTimeForRerun, time1_noSlot, time7_noSlot, mockedConnection);
         Assert.assertEquals(slotStates.size(), 6);
@@ -42,6 +42,21 @@ public class SlotStateTest {
         Assert.assertEquals(retry, running.transitionToRetry());        
     }
     
+    @Test
+    public void equalsComparesAllFields() {
+        SlotState running = new SlotState(id, SlotState.Status.RUNNING, "external", 1);
+        SlotID sameID = new SlotID(new WorkflowID("foo"), new ScheduledTime("2013-12-04T19:18:00.000Z"));
+        SlotState same = new SlotState(sameID, SlotState.Status.RUNNING, "external", 1);
+        Assert.assertEquals(running, same);
+        Assert.assertEquals(running.hashCode(), same.hashCode());
+        Assert.assertNotEquals(running, new SlotState(id, SlotState.Status.RUNNING, "other", 1));
+        Assert.assertNotEquals(running, new SlotState(id, SlotState.Status.RUNNING, null, 1));
+        Assert.assertNotEquals(running, new SlotState(id, SlotState.Status.RUNNING, "external", 2));
+        Assert.assertNotEquals(running, new SlotState(id, SlotState.Status.SUCCESS, "external", 1));
+        Assert.assertNotEquals(running, new SlotState(new SlotID(new WorkflowID("bar"), id.getScheduledTime()), SlotState.Status.RUNNING, "external", 1));
+        Assert.assertNotEquals(running, id);
+    }
+
     @Test(expected = IllegalStateException.class)
     public void rerunFailsAsExpectedForWaiting() {
         new SlotState(id, SlotState.Status.WAITING).transitionToRerun();
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class SlotStatesTest {
+
+    private final WorkflowID id = new WorkflowID("foo");
+    private final ScheduledTime t0 = new ScheduledTime("2013-12-04T19:00Z");
+
+    @Test
+    public void keepsSlotsInTimeOrder() {
+        SlotStates states = new SlotStates(id, 1);
+        states.add(state(3));
+        states.add(state(1));
+        states.add(state(5));
+        states.add(state(2));
+        Assert.assertEquals(4, states.size());
+        Assert.assertEquals(Arrays.asList(state(1), state(2), state(3), state(5)), Arrays.asList(states.values().toArray()));
+        Assert.assertEquals(t0.plusHours(1).getMillis(), states.getMillis(0));
+        Assert.assertEquals(state(5), states.getState(3));
+    }
+
+    @Test
+    public void looksUpByTimeAndSlotID() {
+        SlotStates states = new SlotStates(id);
+        states.add(state(1));
+        Assert.assertEquals(state(1), states.get(t0.plusHours(1)));
+        Assert.assertEquals(state(1), states.get(new SlotID(new WorkflowID("foo"), t0.plusHours(1))));
+        Assert.assertTrue(states.contains(t0.plusHours(1)));
+        Assert.assertNull(states.get(t0));
+        Assert.assertNull(states.get(new SlotID(new WorkflowID("bar"), t0.plusHours(1))));
+        Assert.assertNull(states.get("foo"));
+        Assert.assertFalse(states.containsKey(new SlotID(id, t0)));
+    }
+
+    @Test
+    public void replacesStateOfSameSlot() {
+        SlotStates states = new SlotStates(id);
+        states.add(state(1));
+        SlotState success = new SlotState(new SlotID(id, t0.plusHours(1)), SlotState.Status.SUCCESS);
+        Assert.assertEquals(state(1), states.add(success));
+        Assert.assertEquals(1, states.size());
+        Assert.assertEquals(success, states.get(t0.plusHours(1)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsSlotsOfOtherWorkflows() {
+        new SlotStates(id).add(new SlotState(new SlotID(new WorkflowID("bar"), t0), SlotState.Status.WAITING));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMismatchedKey() {
+        new SlotStates(id).put(new SlotID(id, t0), state(1));
+    }
+
+    @Test
+    public void copiesRanges() {
+        SlotStates states = new SlotStates(id);
+        for (int i = 0; i < 10; i++) {
+            states.add(state(i));
+        }
+        SlotStates range = states.range(t0.plusMinutes(90), t0.plusHours(4));
+        Assert.assertEquals(Arrays.asList(state(2), state(3)), Arrays.asList(range.values().toArray()));
+        Assert.assertEquals(0, states.range(t0.plusHours(4), t0.plusHours(2)).size());
+        range.add(state(20));
+        Assert.assertEquals(10, states.size());
+    }
+
+    @Test
+    public void removesSlots() {
+        SlotStates states = new SlotStates(id);
+        for (int i = 0; i < 5; i++) {
+            states.add(state(i));
+        }
+        states.removeBefore(t0.plusMinutes(90));
+        Assert.assertEquals(Arrays.asList(state(2), state(3), state(4)), Arrays.asList(states.values().toArray()));
+        Assert.assertEquals(state(3), states.remove(state(3).getSlotID()));
+        Assert.assertNull(states.remove(state(3).getSlotID()));
+        Iterator<SlotState> it = states.values().iterator();
+        it.next();
+        it.remove();
+        Assert.assertEquals(Arrays.asList(state(4)), Arrays.asList(states.values().toArray()));
+        states.clear();
+        Assert.assertTrue(states.isEmpty());
+    }
+
+    @Test
+    public void equalsMapWithSameSlots() {
+        SlotStates states = new SlotStates(id);
+        Map<SlotID, SlotState> map = new HashMap<>();
+        for (int i = 0; i < 3; i++) {
+            states.add(state(i));
+            map.put(state(i).getSlotID(), state(i));
+        }
+        Assert.assertEquals(map, states);
+        Assert.assertEquals(states, map);
+        Assert.assertEquals(map.hashCode(), states.hashCode());
+        Assert.assertEquals(map.keySet(), states.keySet());
+    }
+
+    private SlotState state(int hours) {
+        return new SlotState(new SlotID(id, t0.plusHours(hours)), SlotState.Status.WAITING);
+    }
+
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class SlotTransitionBusTest {
+
+    private final SlotID id = new SlotID(new WorkflowID("foo"), new ScheduledTime("2014-02-08T20:00Z"));
+
+    @Test
+    public void publishesToAllListeners() {
+        SlotTransitionBus bus = new SlotTransitionBus();
+        List<SlotState> first = new ArrayList<>();
+        List<SlotState> second = new ArrayList<>();
+        bus.addListener((previous, next) -> first.add(next));
+        bus.addListener((previous, next) -> second.add(next));
+        SlotState waiting = new SlotState(id, SlotState.Status.WAITING);
+        bus.publish(waiting, waiting.transitionToReady());
+        Assert.assertEquals(Arrays.asList(waiting.transitionToReady()), first);
+        Assert.assertEquals(Arrays.asList(waiting.transitionToReady()), second);
+    }
+
+    @Test
+    public void failingListenerDoesntAffectOthers() {
+        SlotTransitionBus bus = new SlotTransitionBus();
+        List<SlotState> published = new ArrayList<>();
+        bus.addListener((previous, next) -> {
+            throw new RuntimeException("fail");
+        });
+        bus.addListener((previous, next) -> published.add(next));
+        SlotState killed = new SlotState(id, SlotState.Status.KILLED);
+        bus.publish(null, killed);
+        Assert.assertEquals(Arrays.asList(killed), published);
+    }
+
+    @Test
+    public void removedListenerIsntCalled() {
+        SlotTransitionBus bus = new SlotTransitionBus();
+        List<SlotState> published = new ArrayList<>();
+        SlotTransitionListener listener = (previous, next) -> published.add(next);
+        bus.addListener(listener);
+        bus.removeListener(listener);
+        bus.publish(null, new SlotState(id, SlotState.Status.KILLED));
+        Assert.assertTrue(published.isEmpty());
+    }
+
+}
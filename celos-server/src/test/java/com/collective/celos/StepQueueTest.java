@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+
+public class StepQueueTest {
+
+    private static final ScheduledTime TIME = new ScheduledTime("2013-11-27T15:01Z");
+
+    private BlockingConfiguration cfg;
+    private StepQueue queue;
+
+    @Before
+    public void setUp() throws Exception {
+        cfg = new BlockingConfiguration();
+        queue = new StepQueue(new SchedulerHolder(cfg));
+    }
+
+    @After
+    public void tearDown() {
+        cfg.blocked.countDown();
+        queue.close();
+    }
+
+    @Test
+    public void coalescesIntoRunningStepCoveringRequest() throws Exception {
+        StepQueue.Step running = startBlockedStep(ids());
+        Assert.assertSame(running, queue.request(null, ids("a")));
+        Assert.assertSame(running, queue.request(null, ids()));
+        Assert.assertEquals(3, running.getRequests());
+
+        StepQueue.Step other = queue.request(TIME, ids("a"));
+        Assert.assertNotSame(running, other);
+        Assert.assertEquals(StepQueue.Status.QUEUED, other.getStatus());
+    }
+
+    @Test
+    public void doesntCoalesceIntoRunningStepNotCoveringRequest() throws Exception {
+        StepQueue.Step running = startBlockedStep(ids("a"));
+        Assert.assertNotSame(running, queue.request(null, ids("a", "b")));
+        Assert.assertEquals(1, running.getRequests());
+    }
+
+    @Test
+    public void mergesOverlappingRequestsIntoQueuedStep() throws Exception {
+        startBlockedStep(ids());
+        StepQueue.Step queued = queue.request(TIME, ids("a", "b"));
+        Assert.assertSame(queued, queue.request(TIME, ids("b", "c")));
+        Assert.assertEquals(ids("a", "b", "c"), queued.getWorkflowIDs());
+        Assert.assertNotSame(queued, queue.request(TIME, ids("d")));
+        Assert.assertNotSame(queued, queue.request(TIME.plusHours(1), ids("a")));
+        Assert.assertSame(queued, queue.request(TIME, ids()));
+        Assert.assertEquals(ids(), queued.getWorkflowIDs());
+        Assert.assertEquals(3, queued.getRequests());
+    }
+
+    @Test
+    public void runsStepsAndKeepsTheirStatus() throws Exception {
+        cfg.blocked.countDown();
+        StepQueue.Step step = queue.request(TIME, ids());
+        Assert.assertTrue(step.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(StepQueue.Status.SUCCEEDED, step.getStatus());
+        Assert.assertEquals(TIME, step.getTime());
+        Assert.assertEquals(StepReport.Phase.DONE, step.getReport().getPhase());
+        Assert.assertSame(step, queue.getStep(step.getID()));
+        Assert.assertNull(queue.getStep(step.getID() + 1));
+
+        cfg.fail = true;
+        StepQueue.Step failed = queue.request(TIME, ids());
+        Assert.assertNotSame(step, failed);
+        Assert.assertTrue(failed.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(StepQueue.Status.FAILED, failed.getStatus());
+        Assert.assertEquals("Broken configuration", failed.getError());
+    }
+
+    private StepQueue.Step startBlockedStep(Set<WorkflowID> workflowIDs) throws Exception {
+        StepQueue.Step step = queue.request(null, workflowIDs);
+        Assert.assertTrue(cfg.started.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(StepQueue.Status.RUNNING, step.getStatus());
+        return step;
+    }
+
+    private static Set<WorkflowID> ids(String... names) {
+        Set<WorkflowID> ids = Sets.newTreeSet();
+        for (String name : names) {
+            ids.add(new WorkflowID(name));
+        }
+        return ids;
+    }
+
+    private static class BlockingConfiguration extends SchedulerConfiguration {
+
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private volatile boolean fail;
+
+        private BlockingConfiguration() throws Exception {
+            super(new File("workflows"), new File("defaults"), new MemoryStateDatabase(), ImmutableMap.<String, String>of());
+        }
+
+        @Override
+        public Scheduler makeDefaultScheduler() throws Exception {
+            started.countDown();
+            blocked.await();
+            if (fail) {
+                throw new IllegalStateException("Broken configuration");
+            }
+            return new Scheduler(new WorkflowConfiguration(), 1);
+        }
+    }
+
+}
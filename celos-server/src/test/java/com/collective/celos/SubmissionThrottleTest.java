@@ -0,0 +1,198 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.collective.celos.trigger.AlwaysTrigger;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+public class SubmissionThrottleTest {
+
+    private static WorkflowInfo emptyWorkflowInfo = new WorkflowInfo(null, Collections.<WorkflowInfo.ContactsInfo>emptyList());
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final SubmissionThrottle throttle = new SubmissionThrottle(nanos::get);
+
+    @Test
+    public void selectsAllCandidatesByDefault() {
+        List<Workflow> workflows = Arrays.asList(makeWorkflow("a", 1), makeWorkflow("b", 1));
+        Map<WorkflowID, List<SlotState>> candidates = makeCandidates(workflows, 3);
+        Map<WorkflowID, List<SlotState>> selected = throttle.select(workflows, candidates, 1000);
+        Assert.assertEquals(candidates, selected);
+        Assert.assertEquals(0, throttle.getThrottled());
+    }
+
+    @Test
+    public void limitsRate() {
+        List<Workflow> workflows = Arrays.asList(makeWorkflow("a", 1));
+        throttle.configure(2, 4, 0);
+        Assert.assertEquals(4, count(throttle.select(workflows, makeCandidates(workflows, 10), 0)));
+        Assert.assertEquals(0, count(throttle.select(workflows, makeCandidates(workflows, 10), 0)));
+        nanos.addAndGet(1500L * 1000 * 1000);
+        Assert.assertEquals(3, count(throttle.select(workflows, makeCandidates(workflows, 10), 0)));
+        // Tokens don't accumulate beyond the burst
+        nanos.addAndGet(60L * 1000 * 1000 * 1000);
+        Assert.assertEquals(4, count(throttle.select(workflows, makeCandidates(workflows, 10), 0)));
+        Assert.assertEquals(6 + 10 + 7 + 6, throttle.getThrottled());
+    }
+
+    @Test
+    public void createsWithLimits() {
+        SubmissionThrottle limited = new SubmissionThrottle(2, 0, 10, nanos::get);
+        Assert.assertEquals(2, limited.getSubmissionsPerSecond(), 0);
+        Assert.assertEquals(120, limited.getBurst());
+        Assert.assertEquals(10, limited.getMaxRunning());
+    }
+
+    @Test
+    public void defaultBurstIsAMinute() {
+        throttle.configure(0.5, 0, 0);
+        Assert.assertEquals(30, throttle.getBurst());
+        throttle.configure(0.001, 0, 0);
+        Assert.assertEquals(1, throttle.getBurst());
+    }
+
+    @Test
+    public void limitsRunningSlots() {
+        List<Workflow> workflows = Arrays.asList(makeWorkflow("a", 1));
+        throttle.configure(0, 0, 10);
+        Assert.assertEquals(2, count(throttle.select(workflows, makeCandidates(workflows, 5), 8)));
+        Assert.assertEquals(0, count(throttle.select(workflows, makeCandidates(workflows, 5), 12)));
+    }
+
+    @Test
+    public void sharesFairlyByWeight() {
+        Workflow a = makeWorkflow("a", 1);
+        Workflow b = makeWorkflow("b", 2);
+        Workflow c = makeWorkflow("c", 1);
+        List<Workflow> workflows = Arrays.asList(a, b, c);
+        Map<WorkflowID, List<SlotState>> candidates = makeCandidates(workflows, 10);
+        candidates.put(c.getID(), candidates.get(c.getID()).subList(0, 1));
+        throttle.configure(0, 0, 9);
+        Map<WorkflowID, List<SlotState>> selected = throttle.select(workflows, candidates, 0);
+        // c only has one candidate, the rest is shared 1:2
+        Assert.assertEquals(candidates.get(a.getID()).subList(0, 3), selected.get(a.getID()));
+        Assert.assertEquals(candidates.get(b.getID()).subList(0, 5), selected.get(b.getID()));
+        Assert.assertEquals(candidates.get(c.getID()), selected.get(c.getID()));
+    }
+
+    @Test
+    public void takesTurnsAcrossSelects() {
+        List<Workflow> workflows = Arrays.asList(makeWorkflow("a", 1), makeWorkflow("b", 1), makeWorkflow("c", 1));
+        throttle.configure(0, 0, 1);
+        Map<WorkflowID, Integer> counts = Maps.newHashMap();
+        for (int i = 0; i < 6; i++) {
+            Map<WorkflowID, List<SlotState>> selected = throttle.select(workflows, makeCandidates(workflows, 10), 0);
+            Assert.assertEquals(1, count(selected));
+            for (Map.Entry<WorkflowID, List<SlotState>> entry : selected.entrySet()) {
+                counts.merge(entry.getKey(), entry.getValue().size(), Integer::sum);
+            }
+        }
+        for (Workflow wf : workflows) {
+            Assert.assertEquals(Integer.valueOf(2), counts.get(wf.getID()));
+        }
+    }
+
+    @Test
+    public void sharesByWeightAcrossSelects() {
+        Workflow a = makeWorkflow("a", 1);
+        Workflow b = makeWorkflow("b", 2);
+        List<Workflow> workflows = Arrays.asList(a, b);
+        throttle.configure(0, 0, 1);
+        int taken = 0;
+        for (int i = 0; i < 9; i++) {
+            if (throttle.select(workflows, makeCandidates(workflows, 10), 0).containsKey(a.getID())) {
+                taken++;
+            }
+        }
+        Assert.assertEquals(3, taken);
+    }
+
+    @Test
+    public void idleWorkflowDoesNotCatchUp() {
+        Workflow a = makeWorkflow("a", 1);
+        Workflow b = makeWorkflow("b", 1);
+        List<Workflow> workflows = Arrays.asList(a, b);
+        throttle.configure(0, 0, 1);
+        Map<WorkflowID, List<SlotState>> candidates = makeCandidates(workflows, 10);
+        candidates.remove(b.getID());
+        // Only a has candidates for a while
+        for (int i = 0; i < 5; i++) {
+            throttle.select(workflows, candidates, 0);
+        }
+        // Afterwards, a and b take turns
+        int taken = 0;
+        for (int i = 0; i < 4; i++) {
+            if (throttle.select(workflows, makeCandidates(workflows, 10), 0).containsKey(b.getID())) {
+                taken++;
+            }
+        }
+        Assert.assertEquals(2, taken);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rateMustNotBeNegative() {
+        throttle.configure(-1, 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxRunningMustNotBeNegative() {
+        throttle.configure(0, 0, -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dispatchWeightMustBePositive() {
+        makeWorkflow("a", 0);
+    }
+
+    private static int count(Map<WorkflowID, List<SlotState>> selected) {
+        int count = 0;
+        for (List<SlotState> list : selected.values()) {
+            count += list.size();
+        }
+        return count;
+    }
+
+    private static Map<WorkflowID, List<SlotState>> makeCandidates(List<Workflow> workflows, int perWorkflow) {
+        Map<WorkflowID, List<SlotState>> candidates = Maps.newLinkedHashMap();
+        for (Workflow wf : workflows) {
+            List<SlotState> list = Lists.newArrayList();
+            ScheduledTime time = new ScheduledTime("2013-11-27T00:00Z");
+            for (int i = 0; i < perWorkflow; i++) {
+                list.add(new SlotState(new SlotID(wf.getID(), time.plusHours(i)), SlotState.Status.READY));
+            }
+            candidates.put(wf.getID(), list);
+        }
+        return candidates;
+    }
+
+    private static Workflow makeWorkflow(String id, int weight) {
+        return new Workflow(new WorkflowID(id), new HourlySchedule(), new TrivialSchedulingStrategy(), new AlwaysTrigger(),
+                new MockExternalService(new MockExternalService.MockExternalStatusSuccess()), 0, Workflow.DEFAULT_START_TIME,
+                Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo, weight);
+    }
+
+}
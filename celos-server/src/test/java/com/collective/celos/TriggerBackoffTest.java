@@ -0,0 +1,89 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.collective.celos.database.StateDatabaseConnection;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+public class TriggerBackoffTest {
+
+    private final ScheduledTime scheduledTime = new ScheduledTime("2013-11-27T10:00Z");
+    private final WorkflowID id = new WorkflowID("wf");
+
+    @Test
+    public void intervalDoublesWithWaitAgeUpToMaximum() {
+        TriggerBackoff backoff = new TriggerBackoff(900);
+        Assert.assertEquals(0, backoff.getIntervalSeconds(scheduledTime, new ScheduledTime("2013-11-27T10:59Z")));
+        Assert.assertEquals(60, backoff.getIntervalSeconds(scheduledTime, new ScheduledTime("2013-11-27T11:00Z")));
+        Assert.assertEquals(60, backoff.getIntervalSeconds(scheduledTime, new ScheduledTime("2013-11-27T11:59Z")));
+        Assert.assertEquals(120, backoff.getIntervalSeconds(scheduledTime, new ScheduledTime("2013-11-27T12:00Z")));
+        Assert.assertEquals(480, backoff.getIntervalSeconds(scheduledTime, new ScheduledTime("2013-11-27T14:30Z")));
+        Assert.assertEquals(900, backoff.getIntervalSeconds(scheduledTime, new ScheduledTime("2013-11-27T15:00Z")));
+        Assert.assertEquals(900, backoff.getIntervalSeconds(scheduledTime, new ScheduledTime("2015-11-27T15:00Z")));
+    }
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        TriggerBackoff backoff = new TriggerBackoff(0);
+        Assert.assertFalse(backoff.isEnabled());
+        Assert.assertEquals(0, backoff.getIntervalSeconds(scheduledTime, new ScheduledTime("2013-11-28T10:00Z")));
+        StateDatabaseConnection connection = new MemoryStateDatabase().openConnection();
+        SlotID slotID = new SlotID(id, scheduledTime);
+        connection.setNextTriggerCheck(slotID, new ScheduledTime("2013-11-28T11:00Z"));
+        Assert.assertEquals(Collections.emptySet(), backoff.getBackedOffSlots(id, Arrays.asList(new SlotState(slotID, SlotState.Status.WAITING)), new ScheduledTime("2013-11-28T10:00Z"), connection));
+        Assert.assertEquals(0, new SchedulerOptions().getTriggerBackoffMaxSeconds());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void maxIntervalMustNotBeNegative() {
+        new TriggerBackoff(-1);
+    }
+
+    @Test
+    public void findsBackedOffSlotsAndClearsStoppedWaiting() throws Exception {
+        TriggerBackoff backoff = new TriggerBackoff(900);
+        StateDatabaseConnection connection = new MemoryStateDatabase().openConnection();
+        ScheduledTime current = new ScheduledTime("2013-11-27T15:00Z");
+        SlotID checked = new SlotID(id, scheduledTime);
+        SlotID due = new SlotID(id, scheduledTime.plusHours(1));
+        SlotID ready = new SlotID(id, scheduledTime.plusHours(2));
+        SlotID fresh = new SlotID(id, new ScheduledTime("2013-11-27T14:30Z"));
+
+        backoff.checked(checked, current, connection);
+        backoff.checked(fresh, current, connection);
+        connection.setNextTriggerCheck(due, current);
+        connection.setNextTriggerCheck(ready, current.plusMinutes(5));
+        Assert.assertEquals(ImmutableMap.of(checked.getScheduledTime(), current.plusSeconds(900), due.getScheduledTime(), current, ready.getScheduledTime(), current.plusMinutes(5)),
+                ImmutableMap.copyOf(connection.getNextTriggerChecks(id)));
+
+        Iterable<SlotState> slotStates = Arrays.asList(new SlotState(checked, SlotState.Status.WAITING), new SlotState(due, SlotState.Status.WAITING),
+                new SlotState(ready, SlotState.Status.READY), new SlotState(fresh, SlotState.Status.WAITING));
+        Assert.assertEquals(ImmutableSet.of(checked), backoff.getBackedOffSlots(id, slotStates, current, connection));
+        Assert.assertEquals(ImmutableSet.of(checked.getScheduledTime(), due.getScheduledTime()), connection.getNextTriggerChecks(id).keySet());
+        Assert.assertEquals(1, backoff.getSkipped());
+
+        backoff.reset(checked, connection);
+        Assert.assertEquals(Collections.emptySet(), backoff.getBackedOffSlots(id, slotStates, current, connection));
+    }
+
+}
@@ -20,8 +20,11 @@ import com.collective.celos.trigger.Trigger;
 import com.collective.celos.trigger.TriggerStatus;
 import com.google.common.collect.ImmutableMap;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.mozilla.javascript.NativeJavaObject;
 
 import java.io.File;
@@ -29,11 +32,15 @@ import java.io.StringReader;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Collections;
 import java.util.List;
 import java.util.SortedSet;
 
 public class WorkflowConfigurationParserTest {
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Test
     public void emptyDirCreatesEmptyWorkflowConfiguration() throws Exception {
         WorkflowConfiguration cfg = parseDir("empty");
@@ -104,6 +111,15 @@ public class WorkflowConfigurationParserTest {
         Assert.assertEquals(23, wf2.getWaitTimeoutSeconds());
     }
 
+    @Test
+    public void workflowIDsAreInterned() throws Exception {
+        WorkflowConfiguration cfg1 = parseFile("properties-test");
+        WorkflowConfiguration cfg2 = parseFile("properties-test");
+        WorkflowID id = new WorkflowID("workflow-1");
+        Assert.assertSame(cfg1.findWorkflow(id).getID(), cfg2.findWorkflow(id).getID());
+        Assert.assertSame(id.intern(), cfg1.findWorkflow(id).getID());
+    }
+
     @Test
     public void workflowInfoWF1() throws Exception {
         WorkflowConfiguration cfg = parseFile("workflow-info-test");
@@ -276,6 +292,113 @@ public class WorkflowConfigurationParserTest {
         Assert.fail();
     }
 
+    @Test
+    public void parsesFilesInParallel() throws Exception {
+        File dir = tempFolder.newFolder();
+        for (int i = 0; i < 20; i++) {
+            FileUtils.write(new File(dir, "wf-" + i + ".js"), defineWorkflow("wf-" + i));
+        }
+        WorkflowConfiguration cfg = parseDir(dir, 4, WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS);
+        Assert.assertEquals(20, cfg.getWorkflows().size());
+        for (int i = 0; i < 20; i++) {
+            Assert.assertNotNull(cfg.findWorkflow(new WorkflowID("wf-" + i)));
+        }
+    }
+
+    @Test
+    public void doesntAllowDuplicateIDsInParallel() throws Exception {
+        File dir = tempFolder.newFolder();
+        FileUtils.write(new File(dir, "a.js"), defineWorkflow("a") + defineWorkflow("dup"));
+        FileUtils.write(new File(dir, "b.js"), defineWorkflow("b") + defineWorkflow("dup"));
+        WorkflowConfiguration cfg = parseDir(dir, 2, WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS);
+        // The file that comes second loses the duplicate, as with sequential parsing
+        Assert.assertEquals(3, cfg.getWorkflows().size());
+        Assert.assertNotNull(cfg.findWorkflow(new WorkflowID("dup")));
+    }
+
+    @Test
+    public void abortsFilesThatTakeTooLong() throws Exception {
+        File dir = tempFolder.newFolder();
+        FileUtils.write(new File(dir, "a.js"), defineWorkflow("a"));
+        FileUtils.write(new File(dir, "runaway.js"), "while (true) { try { while (true) {} } catch (e) {} }");
+        WorkflowConfiguration cfg = parseDir(dir, WorkflowConfigurationParser.DEFAULT_PARSE_THREADS, 1);
+        Assert.assertEquals(1, cfg.getWorkflows().size());
+        Assert.assertNotNull(cfg.findWorkflow(new WorkflowID("a")));
+    }
+
+    @Test
+    public void abortsFilesThatTakeTooLongInParallel() throws Exception {
+        File dir = tempFolder.newFolder();
+        FileUtils.write(new File(dir, "a.js"), defineWorkflow("a"));
+        FileUtils.write(new File(dir, "runaway.js"), defineWorkflow("b") + "while (true) {}");
+        WorkflowConfiguration cfg = parseDir(dir, 2, 1);
+        Assert.assertEquals(1, cfg.getWorkflows().size());
+        Assert.assertNotNull(cfg.findWorkflow(new WorkflowID("a")));
+    }
+
+    @Test
+    public void parsesWithGivenOptimizationLevel() throws Exception {
+        File dir = tempFolder.newFolder();
+        FileUtils.write(new File(dir, "a.js"), defineWorkflow("a"));
+        WorkflowConfigurationParser parser = new WorkflowConfigurationParser(getDefaultsDir(), ImmutableMap.<String, String>of(), null,
+                JSConfigParser.INTERPRETED_OPTIMIZATION_LEVEL, WorkflowConfigurationParser.DEFAULT_PARSE_THREADS, WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS,
+                new AdaptiveConcurrency(System::currentTimeMillis));
+        Assert.assertEquals(JSConfigParser.INTERPRETED_OPTIMIZATION_LEVEL, parser.getOptimizationLevel());
+        WorkflowConfiguration cfg = parser.parseConfiguration(dir, new MemoryStateDatabase().openConnection()).getWorkflowConfiguration();
+        Assert.assertNotNull(cfg.findWorkflow(new WorkflowID("a")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void optimizationLevelMustBeValid() throws Exception {
+        new WorkflowConfigurationParser(getDefaultsDir(), ImmutableMap.<String, String>of(), null, JSConfigParser.MAX_OPTIMIZATION_LEVEL + 1,
+                WorkflowConfigurationParser.DEFAULT_PARSE_THREADS, WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS,
+                new AdaptiveConcurrency(System::currentTimeMillis));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseThreadsMustBePositive() throws Exception {
+        new WorkflowConfigurationParser(getDefaultsDir(), ImmutableMap.<String, String>of(), null, JSConfigParser.DEFAULT_OPTIMIZATION_LEVEL,
+                0, WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS, new AdaptiveConcurrency(System::currentTimeMillis));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void parseTimeoutMustNotBeNegative() throws Exception {
+        new WorkflowConfigurationParser(getDefaultsDir(), ImmutableMap.<String, String>of(), null, JSConfigParser.DEFAULT_OPTIMIZATION_LEVEL,
+                WorkflowConfigurationParser.DEFAULT_PARSE_THREADS, -1, new AdaptiveConcurrency(System::currentTimeMillis));
+    }
+
+    @Test
+    public void adaptiveSchedulingStrategiesUseGivenLimits() throws Exception {
+        File dir = tempFolder.newFolder();
+        FileUtils.write(new File(dir, "a.js"), "celos.defineWorkflow({ \"id\": \"a\", \"schedule\": celos.hourlySchedule(), "
+                + "\"schedulingStrategy\": celos.adaptiveSchedulingStrategy(10, 2), \"trigger\": celos.alwaysTrigger(), "
+                + "\"externalService\": celos.oozieExternalService({}, \"oj01/oozie\") });\n");
+        AdaptiveConcurrency concurrency = new AdaptiveConcurrency(System::currentTimeMillis);
+        WorkflowConfigurationParser parser = new WorkflowConfigurationParser(getDefaultsDir(), ImmutableMap.<String, String>of(), null,
+                JSConfigParser.DEFAULT_OPTIMIZATION_LEVEL, WorkflowConfigurationParser.DEFAULT_PARSE_THREADS, WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS,
+                concurrency);
+        Workflow wf = parser.parseConfiguration(dir, new MemoryStateDatabase().openConnection()).getWorkflowConfiguration().findWorkflow(new WorkflowID("a"));
+        SlotState ready = new SlotState(new SlotID(wf.getID(), new ScheduledTime("2013-11-27T00:00Z")), SlotState.Status.READY);
+        wf.getSchedulingStrategy().getSchedulingCandidates(Collections.singletonList(ready));
+        Assert.assertEquals(Integer.valueOf(2), concurrency.getCurrentLimit(wf.getID()));
+    }
+
+    private static String defineWorkflow(String id) {
+        return "celos.defineWorkflow({ \"id\": \"" + id + "\", \"schedule\": celos.hourlySchedule(), "
+                + "\"schedulingStrategy\": celos.serialSchedulingStrategy(), \"trigger\": celos.alwaysTrigger(), "
+                + "\"externalService\": celos.oozieExternalService({}, \"oj01/oozie\") });\n";
+    }
+
+    private static WorkflowConfiguration parseDir(File dir) throws Exception {
+        return new WorkflowConfigurationParser(getDefaultsDir(), ImmutableMap.<String, String>of()).parseConfiguration(dir,  new MemoryStateDatabase().openConnection()).getWorkflowConfiguration();
+    }
+
+    private static WorkflowConfiguration parseDir(File dir, int threads, int timeoutSeconds) throws Exception {
+        return new WorkflowConfigurationParser(getDefaultsDir(), ImmutableMap.<String, String>of(), null, JSConfigParser.DEFAULT_OPTIMIZATION_LEVEL, threads, timeoutSeconds,
+                new AdaptiveConcurrency(System::currentTimeMillis))
+                .parseConfiguration(dir, new MemoryStateDatabase().openConnection()).getWorkflowConfiguration();
+    }
+
     public static WorkflowConfiguration parseFile(String label) throws Exception {
         return parseNamedFile(label, "workflow-1");
     }
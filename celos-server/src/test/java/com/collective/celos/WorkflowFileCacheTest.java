@@ -0,0 +1,155 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import java.io.File;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.collective.celos.database.StateDatabaseConnection;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.google.common.collect.ImmutableMap;
+
+public class WorkflowFileCacheTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    private final WorkflowFileCache cache = new WorkflowFileCache();
+    private final StateDatabaseConnection connection = new MemoryStateDatabase().openConnection();
+    private File workflowsDir;
+    private File defaultsDir;
+
+    @Before
+    public void setUp() throws Exception {
+        workflowsDir = tempFolder.newFolder("workflows");
+        defaultsDir = tempFolder.newFolder("defaults");
+    }
+
+    @Test
+    public void reusesWorkflowsOfUnchangedFiles() throws Exception {
+        writeWorkflow("a.js", "wf-a");
+        writeWorkflow("b.js", "wf-b");
+        WorkflowConfiguration first = parse(ImmutableMap.<String, String>of());
+        Assert.assertEquals(2, first.getWorkflows().size());
+        Assert.assertEquals(2, cache.getMisses());
+
+        WorkflowConfiguration second = parse(ImmutableMap.<String, String>of());
+        Assert.assertSame(first.findWorkflow(new WorkflowID("wf-a")), second.findWorkflow(new WorkflowID("wf-a")));
+        Assert.assertSame(first.findWorkflow(new WorkflowID("wf-b")), second.findWorkflow(new WorkflowID("wf-b")));
+        Assert.assertEquals(2, cache.getHits());
+    }
+
+    @Test
+    public void evaluatesChangedFilesAgain() throws Exception {
+        writeWorkflow("a.js", "wf-a");
+        writeWorkflow("b.js", "wf-b");
+        WorkflowConfiguration first = parse(ImmutableMap.<String, String>of());
+
+        writeWorkflow("b.js", "wf-b2");
+        WorkflowConfiguration second = parse(ImmutableMap.<String, String>of());
+        Assert.assertSame(first.findWorkflow(new WorkflowID("wf-a")), second.findWorkflow(new WorkflowID("wf-a")));
+        Assert.assertNull(second.findWorkflow(new WorkflowID("wf-b")));
+        Assert.assertNotNull(second.findWorkflow(new WorkflowID("wf-b2")));
+    }
+
+    @Test
+    public void touchedFilesWithSameContentAreNotEvaluatedAgain() throws Exception {
+        File file = writeWorkflow("a.js", "wf-a");
+        WorkflowConfiguration first = parse(ImmutableMap.<String, String>of());
+        Assert.assertTrue(file.setLastModified(file.lastModified() + 10000));
+        WorkflowConfiguration second = parse(ImmutableMap.<String, String>of());
+        Assert.assertSame(first.findWorkflow(new WorkflowID("wf-a")), second.findWorkflow(new WorkflowID("wf-a")));
+    }
+
+    @Test
+    public void evaluatesDependentsOfChangedDefaultsAgain() throws Exception {
+        FileUtils.write(new File(defaultsDir, "common.js"), "var SUFFIX = '1';");
+        FileUtils.write(new File(workflowsDir, "a.js"), "importDefaults('common'); " + defineWorkflow("'wf-a-' + SUFFIX"));
+        writeWorkflow("b.js", "wf-b");
+        WorkflowConfiguration first = parse(ImmutableMap.<String, String>of());
+        Assert.assertNotNull(first.findWorkflow(new WorkflowID("wf-a-1")));
+
+        FileUtils.write(new File(defaultsDir, "common.js"), "var SUFFIX = '22';");
+        WorkflowConfiguration second = parse(ImmutableMap.<String, String>of());
+        Assert.assertNotNull(second.findWorkflow(new WorkflowID("wf-a-22")));
+        Assert.assertSame(first.findWorkflow(new WorkflowID("wf-b")), second.findWorkflow(new WorkflowID("wf-b")));
+    }
+
+    @Test
+    public void evaluatesAllFilesAgainWhenVariablesChange() throws Exception {
+        writeWorkflow("a.js", "wf-a");
+        WorkflowConfiguration first = parse(ImmutableMap.of("var1", "val1"));
+        WorkflowConfiguration second = parse(ImmutableMap.of("var1", "val2"));
+        Assert.assertNotSame(first.findWorkflow(new WorkflowID("wf-a")), second.findWorkflow(new WorkflowID("wf-a")));
+    }
+
+    @Test
+    public void alwaysEvaluatesFilesReadingRegisters() throws Exception {
+        FileUtils.write(new File(workflowsDir, "a.js"), "celos.forEachRegister('bucket', function(key, value) { " + defineWorkflow("'wf-' + key") + " });");
+        connection.putRegister(new BucketID("bucket"), new RegisterKey("x"), TextNode.valueOf("1"));
+        Assert.assertEquals(1, parse(ImmutableMap.<String, String>of()).getWorkflows().size());
+
+        connection.putRegister(new BucketID("bucket"), new RegisterKey("y"), TextNode.valueOf("1"));
+        Assert.assertEquals(2, parse(ImmutableMap.<String, String>of()).getWorkflows().size());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void dropsRemovedAndFailingFiles() throws Exception {
+        File a = writeWorkflow("a.js", "wf-a");
+        writeWorkflow("b.js", "wf-b");
+        parse(ImmutableMap.<String, String>of());
+        Assert.assertEquals(2, cache.size());
+
+        Assert.assertTrue(a.delete());
+        FileUtils.write(new File(workflowsDir, "b.js"), "this is not javascript");
+        Assert.assertEquals(0, parse(ImmutableMap.<String, String>of()).getWorkflows().size());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void duplicateIDsStillFail() throws Exception {
+        writeWorkflow("a.js", "wf-a");
+        parse(ImmutableMap.<String, String>of());
+        writeWorkflow("b.js", "wf-a");
+        WorkflowConfiguration cfg = parse(ImmutableMap.<String, String>of());
+        Assert.assertEquals(1, cfg.getWorkflows().size());
+    }
+
+    private WorkflowConfiguration parse(Map<String, String> vars) throws Exception {
+        return new WorkflowConfigurationParser(defaultsDir, vars, cache).parseConfiguration(workflowsDir, connection).getWorkflowConfiguration();
+    }
+
+    private File writeWorkflow(String fileName, String id) throws Exception {
+        File file = new File(workflowsDir, fileName);
+        FileUtils.write(file, defineWorkflow("'" + id + "'"));
+        return file;
+    }
+
+    private static String defineWorkflow(String idExpression) {
+        return "celos.defineWorkflow({ \"id\": " + idExpression + ", \"schedule\": celos.hourlySchedule(), "
+                + "\"schedulingStrategy\": celos.serialSchedulingStrategy(), \"trigger\": celos.alwaysTrigger(), "
+                + "\"externalService\": celos.oozieExternalService({}, \"oj01/oozie\") });";
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos;
+
+import com.collective.celos.trigger.*;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.*;
+
+public class WorkflowGraphTest {
+
+    private static WorkflowInfo emptyWorkflowInfo = new WorkflowInfo(null, Collections.<WorkflowInfo.ContactsInfo>emptyList());
+
+    @Test
+    public void ordersChainUpstreamFirst() throws Exception {
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        cfg.addWorkflow(makeWorkflow("a", new SuccessTrigger("b")));
+        cfg.addWorkflow(makeWorkflow("b", new SuccessTrigger("c")));
+        cfg.addWorkflow(makeWorkflow("c", new AlwaysTrigger()));
+        WorkflowGraph graph = new WorkflowGraph(cfg);
+        Assert.assertEquals(Arrays.asList(Arrays.asList("c"), Arrays.asList("b"), Arrays.asList("a")), getLevelIDs(graph));
+        Assert.assertTrue(graph.getCycles().isEmpty());
+    }
+
+    @Test
+    public void findsDependenciesInNestedTriggers() throws Exception {
+        Trigger trigger = new AndTrigger(Arrays.<Trigger>asList(
+                new OrTrigger(Arrays.<Trigger>asList(new SuccessTrigger("b"), new NotTrigger(new SuccessTrigger("c")))),
+                new OffsetTrigger(-3600, new SuccessTrigger("d"))));
+        Workflow wf = makeWorkflow("a", trigger);
+        Assert.assertEquals(ids("b", "c", "d"), WorkflowGraph.getUpstreamWorkflowIDs(wf));
+    }
+
+    @Test
+    public void findsDependentScheduleDependency() throws Exception {
+        Workflow wf = new Workflow(new WorkflowID("a"), new DependentSchedule(new WorkflowID("b")), new TrivialSchedulingStrategy(), new AlwaysTrigger(),
+                new MockExternalService(new MockExternalService.MockExternalStatusSuccess()), 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo);
+        Assert.assertEquals(ids("b"), WorkflowGraph.getUpstreamWorkflowIDs(wf));
+    }
+
+    @Test
+    public void levelsContainIndependentWorkflows() throws Exception {
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        cfg.addWorkflow(makeWorkflow("join", new AndTrigger(Arrays.<Trigger>asList(new SuccessTrigger("x"), new SuccessTrigger("y")))));
+        cfg.addWorkflow(makeWorkflow("x", new AlwaysTrigger()));
+        cfg.addWorkflow(makeWorkflow("y", new SuccessTrigger("root")));
+        cfg.addWorkflow(makeWorkflow("root", new AlwaysTrigger()));
+        WorkflowGraph graph = new WorkflowGraph(cfg);
+        Assert.assertEquals(Arrays.asList(Arrays.asList("root", "x"), Arrays.asList("y"), Arrays.asList("join")), getLevelIDs(graph));
+        Assert.assertEquals(4, graph.getOrderedWorkflows().size());
+    }
+
+    @Test
+    public void ignoresSelfAndMissingDependencies() throws Exception {
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        cfg.addWorkflow(makeWorkflow("a", new AndTrigger(Arrays.<Trigger>asList(
+                new OffsetTrigger(-3600, new SuccessTrigger("a")), new SuccessTrigger("missing")))));
+        WorkflowGraph graph = new WorkflowGraph(cfg);
+        Assert.assertEquals(Arrays.asList(Arrays.asList("a")), getLevelIDs(graph));
+        Assert.assertTrue(graph.getUpstream(new WorkflowID("a")).isEmpty());
+        Assert.assertTrue(graph.getCycles().isEmpty());
+    }
+
+    @Test
+    public void reportsCycles() throws Exception {
+        WorkflowConfiguration cfg = new WorkflowConfiguration();
+        cfg.addWorkflow(makeWorkflow("a", new SuccessTrigger("c")));
+        cfg.addWorkflow(makeWorkflow("b", new SuccessTrigger("a")));
+        cfg.addWorkflow(makeWorkflow("c", new SuccessTrigger("b")));
+        cfg.addWorkflow(makeWorkflow("d", new SuccessTrigger("c")));
+        cfg.addWorkflow(makeWorkflow("e", new AlwaysTrigger()));
+        WorkflowGraph graph = new WorkflowGraph(cfg);
+        Assert.assertEquals(Arrays.asList(Arrays.asList(new WorkflowID("a"), new WorkflowID("b"), new WorkflowID("c"))), graph.getCycles());
+        Assert.assertEquals(Arrays.asList(Arrays.asList("a", "b", "c", "e"), Arrays.asList("d")), getLevelIDs(graph));
+    }
+
+    private static List<List<String>> getLevelIDs(WorkflowGraph graph) {
+        List<List<String>> levels = new ArrayList<>();
+        for (List<Workflow> level : graph.getLevels()) {
+            List<String> ids = new ArrayList<>();
+            for (Workflow wf : level) {
+                ids.add(wf.getID().toString());
+            }
+            levels.add(ids);
+        }
+        return levels;
+    }
+
+    private static SortedSet<WorkflowID> ids(String... names) {
+        SortedSet<WorkflowID> ids = new TreeSet<>();
+        for (String name : names) {
+            ids.add(new WorkflowID(name));
+        }
+        return ids;
+    }
+
+    private static Workflow makeWorkflow(String id, Trigger trigger) {
+        return new Workflow(new WorkflowID(id), new HourlySchedule(), new TrivialSchedulingStrategy(), trigger,
+                new MockExternalService(new MockExternalService.MockExternalStatusSuccess()), 0, Workflow.DEFAULT_START_TIME, Workflow.DEFAULT_WAIT_TIMEOUT_SECONDS, emptyWorkflowInfo);
+    }
+
+}
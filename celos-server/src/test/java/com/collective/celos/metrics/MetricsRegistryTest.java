@@ -0,0 +1,125 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.metrics;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+    @Test
+    public void formatsCounters() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("requests_total", "Requests.", "path");
+        counter.inc("/b");
+        counter.add(2, "/a");
+        counter.inc("/b");
+        Assert.assertEquals(2, counter.get("/b"));
+        Assert.assertEquals(0, counter.get("/c"));
+        Assert.assertEquals("# HELP requests_total Requests.\n"
+                + "# TYPE requests_total counter\n"
+                + "requests_total{path=\"/a\"} 2\n"
+                + "requests_total{path=\"/b\"} 2\n", registry.format());
+    }
+
+    @Test
+    public void formatsGaugesAndEscapesLabelValues() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        Gauge gauge = registry.gauge("temperature", "Temperature.", "room", "kind");
+        gauge.set(1.5, "a\"b", "x\\y");
+        gauge.set(3, "c\nd", "z");
+        Assert.assertEquals("# HELP temperature Temperature.\n"
+                + "# TYPE temperature gauge\n"
+                + "temperature{room=\"a\\\"b\",kind=\"x\\\\y\"} 1.5\n"
+                + "temperature{room=\"c\\nd\",kind=\"z\"} 3\n", registry.format());
+        gauge.remove("c\nd");
+        Assert.assertEquals(0, gauge.get("c\nd", "z"), 0);
+    }
+
+    @Test
+    public void formatsHistograms() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        Histogram histogram = registry.histogram("duration_seconds", "Duration.", new double[] { 0.1, 1 }, "op");
+        histogram.observe(0.05, "get");
+        histogram.observe(0.1, "get");
+        histogram.observe(0.5, "get");
+        histogram.observe(2, "get");
+        Assert.assertEquals(4, histogram.getCount("get"));
+        Assert.assertEquals(2.65, histogram.getSum("get"), 0.0001);
+        Assert.assertEquals("# HELP duration_seconds Duration.\n"
+                + "# TYPE duration_seconds histogram\n"
+                + "duration_seconds_bucket{op=\"get\",le=\"0.1\"} 2\n"
+                + "duration_seconds_bucket{op=\"get\",le=\"1\"} 3\n"
+                + "duration_seconds_bucket{op=\"get\",le=\"+Inf\"} 4\n"
+                + "duration_seconds_sum{op=\"get\"} 2.65\n"
+                + "duration_seconds_count{op=\"get\"} 4\n", registry.format());
+    }
+
+    @Test
+    public void timesCallablesAlsoWhenTheyFail() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        Histogram histogram = registry.histogram("call_seconds", "Calls.");
+        Assert.assertEquals("foo", histogram.time(() -> "foo"));
+        try {
+            histogram.time(() -> {
+                throw new IllegalStateException();
+            });
+            Assert.fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        Assert.assertEquals(2, histogram.getCount());
+    }
+
+    @Test
+    public void formatsCallbackMetricsWithoutLabels() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.gauge("lag_seconds", "Lag.", () -> 0.25);
+        registry.counter("hits_total", "Hits.", () -> 7L);
+        Assert.assertEquals("# HELP hits_total Hits.\n"
+                + "# TYPE hits_total counter\n"
+                + "hits_total 7\n"
+                + "# HELP lag_seconds Lag.\n"
+                + "# TYPE lag_seconds gauge\n"
+                + "lag_seconds 0.25\n", registry.format());
+    }
+
+    @Test
+    public void returnsExistingMetricOfSameName() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("foo_total", "Foo.");
+        Assert.assertSame(counter, registry.counter("foo_total", "Foo."));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsOnMetricOfOtherType() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("foo", "Foo.");
+        registry.gauge("foo", "Foo.");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsOnWrongNumberOfLabelValues() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("foo_total", "Foo.", "a", "b").inc("x");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsOnUnorderedBuckets() throws Exception {
+        new MetricsRegistry().histogram("foo_seconds", "Foo.", new double[] { 1, 0.5 });
+    }
+
+}
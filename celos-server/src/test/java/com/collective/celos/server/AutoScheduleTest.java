@@ -71,9 +71,11 @@ public class AutoScheduleTest {
         File src = new File(Thread.currentThread().getContextClassLoader().getResource("com/collective/celos/client/wf-list").toURI());
         FileUtils.copyDirectory(src, workflowsDir);
 
-        Main.setupAutoschedule(port, 1);
+        celosServer.startSchedulerLoop(1);
 
         Assert.assertTrue(autoScheduleWorked());
+        Assert.assertTrue(celosServer.getSchedulerLoop().getTicks() > 0);
+        celosServer.stopServer();
     }
 
     private boolean autoScheduleWorked() throws Exception {
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.server;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SchedulerLoopTest {
+
+    private static final SchedulerLoop.Step NOOP = () -> {};
+
+    @Test(expected = IllegalArgumentException.class)
+    public void periodMustBePositive() {
+        new SchedulerLoop(0, NOOP);
+    }
+
+    @Test
+    public void nextTickIsOnePeriodLaterIfStepWasFast() {
+        SchedulerLoop loop = new SchedulerLoop(1000, NOOP);
+        Assert.assertEquals(2000, loop.getNextTick(1000, 1500));
+        Assert.assertEquals(2000, loop.getNextTick(1000, 2000));
+        Assert.assertEquals(0, loop.getCoalescedTicks());
+    }
+
+    @Test
+    public void nextTickIsDueRightAwayIfStepOverranOnePeriod() {
+        SchedulerLoop loop = new SchedulerLoop(1000, NOOP);
+        Assert.assertEquals(2000, loop.getNextTick(1000, 2500));
+        Assert.assertEquals(0, loop.getCoalescedTicks());
+    }
+
+    @Test
+    public void missedTicksAreCoalesced() {
+        SchedulerLoop loop = new SchedulerLoop(1000, NOOP);
+        Assert.assertEquals(4000, loop.getNextTick(1000, 4500));
+        Assert.assertEquals(2, loop.getCoalescedTicks());
+    }
+
+    @Test
+    public void stepsRunPeriodicallyAndSurviveExceptions() throws Exception {
+        AtomicInteger steps = new AtomicInteger();
+        SchedulerLoop loop = new SchedulerLoop(10, () -> {
+            steps.incrementAndGet();
+            throw new RuntimeException("step failed");
+        });
+        loop.start();
+        long start = System.currentTimeMillis();
+        while (steps.get() < 5 && System.currentTimeMillis() - start < 10000) {
+            Thread.sleep(10);
+        }
+        loop.stop();
+        Assert.assertTrue(steps.get() >= 5);
+        Assert.assertEquals(steps.get(), loop.getTicks());
+    }
+
+    @Test
+    public void slowStepsDoNotOverlap() throws Exception {
+        AtomicInteger concurrentSteps = new AtomicInteger();
+        AtomicInteger maxConcurrentSteps = new AtomicInteger();
+        SchedulerLoop loop = new SchedulerLoop(10, () -> {
+            maxConcurrentSteps.set(Math.max(maxConcurrentSteps.get(), concurrentSteps.incrementAndGet()));
+            Thread.sleep(35);
+            concurrentSteps.decrementAndGet();
+        });
+        loop.start();
+        long start = System.currentTimeMillis();
+        while (loop.getCoalescedTicks() == 0 && System.currentTimeMillis() - start < 10000) {
+            Thread.sleep(10);
+        }
+        loop.stop();
+        Assert.assertEquals(1, maxConcurrentSteps.get());
+        Assert.assertTrue(loop.getCoalescedTicks() > 0);
+    }
+
+}
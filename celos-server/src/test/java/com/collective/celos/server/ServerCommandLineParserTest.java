@@ -16,6 +16,9 @@
 package com.collective.celos.server;
 
 import com.collective.celos.Constants;
+import com.collective.celos.JSConfigParser;
+import com.collective.celos.Scheduler;
+import com.collective.celos.WorkflowConfigurationParser;
 import com.collective.celos.database.FileSystemStateDatabase;
 import com.collective.celos.database.JDBCStateDatabase;
 import com.collective.celos.database.StateDatabase;
@@ -64,6 +67,62 @@ public class ServerCommandLineParserTest {
         Assert.assertTrue(cmdLine.getDatabase() instanceof FileSystemStateDatabase);
         FileSystemStateDatabase db = (FileSystemStateDatabase) cmdLine.getDatabase();
         Assert.assertEquals(db.getDir(), tmpDir);
+        Assert.assertEquals(Scheduler.DEFAULT_STEP_THREADS, cmdLine.getStepThreads());
+        Assert.assertEquals(0, cmdLine.getHdfsNegativeCacheTtl());
+        Assert.assertEquals(0, cmdLine.getSubmissionRate(), 0);
+        Assert.assertEquals(0, cmdLine.getSubmissionBurst());
+        Assert.assertEquals(0, cmdLine.getMaxRunning());
+        Assert.assertEquals(0, cmdLine.getTriggerBackoffMax());
+        Assert.assertEquals(JSConfigParser.DEFAULT_OPTIMIZATION_LEVEL, cmdLine.getJsOptimizationLevel());
+        Assert.assertEquals(WorkflowConfigurationParser.DEFAULT_PARSE_THREADS, cmdLine.getParseThreads());
+        Assert.assertEquals(WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS, cmdLine.getParseTimeout());
+    }
+
+    @Test
+    public void testSubmissionThrottle() throws Exception {
+        ServerCommandLine cmdLine = new ServerCommandLineParser().parse(new String[] {"--port", "1337", "--db", tmpDir.getAbsolutePath(),
+                "--submissionRate", "0.5", "--submissionBurst", "20", "--maxRunning", "100" });
+        Assert.assertEquals(0.5, cmdLine.getSubmissionRate(), 0);
+        Assert.assertEquals(20, cmdLine.getSubmissionBurst());
+        Assert.assertEquals(100, cmdLine.getMaxRunning());
+    }
+
+    @Test
+    public void testTriggerBackoffMax() throws Exception {
+        ServerCommandLine cmdLine = new ServerCommandLineParser().parse(new String[] {"--port", "1337", "--db", tmpDir.getAbsolutePath(), "--triggerBackoffMax", "900" });
+        Assert.assertEquals(900, cmdLine.getTriggerBackoffMax());
+    }
+
+    @Test
+    public void testJsOptimizationLevel() throws Exception {
+        ServerCommandLine cmdLine = new ServerCommandLineParser().parse(new String[] {"--port", "1337", "--db", tmpDir.getAbsolutePath(), "--jsOptimizationLevel", "-1" });
+        Assert.assertEquals(-1, cmdLine.getJsOptimizationLevel());
+    }
+
+    @Test
+    public void testParseThreadsAndTimeout() throws Exception {
+        ServerCommandLine cmdLine = new ServerCommandLineParser().parse(new String[] {"--port", "1337", "--db", tmpDir.getAbsolutePath(),
+                "--parseThreads", "8", "--parseTimeout", "0" });
+        Assert.assertEquals(8, cmdLine.getParseThreads());
+        Assert.assertEquals(0, cmdLine.getParseTimeout());
+    }
+
+    @Test
+    public void testStepThreads() throws Exception {
+        ServerCommandLine cmdLine = new ServerCommandLineParser().parse(new String[] {"--port", "1337", "--db", tmpDir.getAbsolutePath(), "--stepThreads", "8" });
+        Assert.assertEquals(8, cmdLine.getStepThreads());
+    }
+
+    @Test
+    public void testHdfsNegativeCacheTtl() throws Exception {
+        ServerCommandLine cmdLine = new ServerCommandLineParser().parse(new String[] {"--port", "1337", "--db", tmpDir.getAbsolutePath(), "--hdfsNegativeCacheTtl", "300" });
+        Assert.assertEquals(300, cmdLine.getHdfsNegativeCacheTtl());
+    }
+
+    @Test
+    public void testSlotStateCache() throws Exception {
+        Assert.assertFalse(new ServerCommandLineParser().parse(new String[] {"--port", "1337", "--db", tmpDir.getAbsolutePath() }).getSlotStateCache());
+        Assert.assertTrue(new ServerCommandLineParser().parse(new String[] {"--port", "1337", "--db", tmpDir.getAbsolutePath(), "--slotStateCache" }).getSlotStateCache());
     }
 
     @Test
@@ -22,6 +22,10 @@ import com.collective.celos.database.StateDatabaseConnection;
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 public class RerunServletTest {
 
     @Test(expected = IllegalStateException.class)
@@ -66,5 +70,25 @@ public class RerunServletTest {
         SlotState dbState = db.getSlotState(id);
         Assert.assertEquals(state.transitionToRerun(), dbState);
     }
+
+    @Test
+    public void publishesTransition() throws Exception {
+        StateDatabaseConnection db = new MemoryStateDatabase().openConnection();
+        SlotID id = new SlotID(new WorkflowID("foo"), new ScheduledTime("2014-02-08T20:00Z"));
+        SlotState state = new SlotState(id, Status.SUCCESS);
+        db.putSlotState(state);
+        List<SlotState> published = new ArrayList<>();
+        SlotTransitionListener listener = (previous, next) -> {
+            published.add(previous);
+            published.add(next);
+        };
+        SlotTransitionBus.getInstance().addListener(listener);
+        try {
+            new RerunServlet().updateSlotToRerun(state, db);
+        } finally {
+            SlotTransitionBus.getInstance().removeListener(listener);
+        }
+        Assert.assertEquals(Arrays.asList(state, state.transitionToRerun()), published);
+    }
     
 }
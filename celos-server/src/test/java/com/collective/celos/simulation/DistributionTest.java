@@ -0,0 +1,95 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class DistributionTest {
+
+    private final Random random = new Random(0);
+
+    @Test
+    public void parsesConstant() {
+        Distribution d = Distribution.parse("constant:5");
+        Assert.assertEquals(5, d.sample(random), 0);
+        Assert.assertEquals("constant:5.0", d.toString());
+    }
+
+    @Test
+    public void parsesUniform() {
+        Distribution d = Distribution.parse(" Uniform: 2, 4 ");
+        for (int i = 0; i < 1000; i++) {
+            double value = d.sample(random);
+            Assert.assertTrue(value >= 2 && value < 4);
+        }
+    }
+
+    @Test
+    public void exponentialHasGivenMean() {
+        Assert.assertEquals(100, mean(Distribution.parse("exponential:100")), 5);
+    }
+
+    @Test
+    public void logNormalHasGivenMedian() {
+        double[] values = new double[10001];
+        Distribution d = Distribution.parse("lognormal:600,1");
+        for (int i = 0; i < values.length; i++) {
+            values[i] = d.sample(random);
+            Assert.assertTrue(values[i] > 0);
+        }
+        Arrays.sort(values);
+        Assert.assertEquals(600, values[values.length / 2], 30);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsOnUnknownDistribution() {
+        Distribution.parse("poisson:3");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsOnWrongParameterCount() {
+        Distribution.parse("uniform:3");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsOnBadParameter() {
+        Distribution.parse("constant:foo");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsOnNegativeParameter() {
+        Distribution.parse("exponential:-1");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsOnEmptyUniformRange() {
+        Distribution.uniform(5, 4);
+    }
+
+    private double mean(Distribution d) {
+        double sum = 0;
+        int count = 10000;
+        for (int i = 0; i < count; i++) {
+            sum += d.sample(random);
+        }
+        return sum / count;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.collective.celos.ExternalServiceException;
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.SlotID;
+import com.collective.celos.WorkflowID;
+import com.collective.celos.trigger.TriggerStatus;
+
+public class SimulatedClusterTest {
+
+    private final ScheduledTime start = new ScheduledTime("2015-01-01T00:00Z");
+    private final VirtualClock clock = new VirtualClock(start);
+    private final SlotID slot = new SlotID(new WorkflowID("wf"), start);
+
+    @Test
+    public void jobsRunForTheirRuntimeInVirtualTime() throws Exception {
+        SimulatedExternalService service = new SimulatedExternalService(makeCluster(0));
+        String id = service.submit(slot);
+        Assert.assertEquals(SimulatedCluster.JobStatus.PREP, service.getStatus(slot, id));
+        clock.advanceSeconds(60);
+        service.start(slot, id);
+        clock.advanceSeconds(599);
+        Assert.assertEquals(SimulatedCluster.JobStatus.RUNNING, service.getStatus(slot, id));
+        Assert.assertTrue(service.getStatus(slot, id).isRunning());
+        clock.advanceSeconds(1);
+        Assert.assertEquals(SimulatedCluster.JobStatus.SUCCEEDED, service.getStatus(slot, id));
+        Assert.assertTrue(service.getStatus(slot, id).isSuccess());
+    }
+
+    @Test
+    public void jobsFailAtFailureRate() throws Exception {
+        SimulatedExternalService service = new SimulatedExternalService(makeCluster(1));
+        String id = service.submit(slot);
+        service.start(slot, id);
+        clock.advanceSeconds(600);
+        Assert.assertEquals(SimulatedCluster.JobStatus.FAILED, service.getStatus(slot, id));
+    }
+
+    @Test
+    public void killsJobs() throws Exception {
+        SimulatedExternalService service = new SimulatedExternalService(makeCluster(0));
+        String id = service.submit(slot);
+        service.start(slot, id);
+        service.kill(slot, id);
+        Assert.assertEquals(SimulatedCluster.JobStatus.KILLED, service.getStatus(slot, id));
+        Assert.assertFalse(service.getStatus(slot, id).isRunning());
+    }
+
+    @Test(expected = ExternalServiceException.class)
+    public void failsOnUnknownJob() throws Exception {
+        new SimulatedExternalService(makeCluster(0)).getStatus(slot, "foo");
+    }
+
+    @Test
+    public void servicesOfAClusterArePolledTogether() {
+        SimulatedCluster cluster = makeCluster(0);
+        Assert.assertEquals(new SimulatedExternalService(cluster).getStatusBatchKey(), new SimulatedExternalService(cluster).getStatusBatchKey());
+    }
+
+    @Test
+    public void dataArrivesAfterDelay() throws Exception {
+        SimulatedFileTrigger trigger = new SimulatedFileTrigger(makeCluster(0), "/feed/${year}/${month}/${day}/${hour}");
+        TriggerStatus status = trigger.getTriggerStatus(null, start.plusSeconds(299), start);
+        Assert.assertFalse(status.isReady());
+        Assert.assertEquals("Simulated path /feed/2015/01/01/00 is not ready", status.getDescription());
+        Assert.assertTrue(trigger.getTriggerStatus(null, start.plusSeconds(300), start).isReady());
+        Assert.assertFalse(trigger.getTriggerStatus(null, start.plusSeconds(300), start.plusHours(1)).isReady());
+    }
+
+    @Test
+    public void workflowsWaitingForTheSamePathSeeTheSameArrival() throws Exception {
+        SimulatedCluster cluster = new SimulatedCluster(clock, 0, Distribution.constant(600), 0, Distribution.constant(0),
+                Distribution.uniform(0, 3600), Distribution.constant(0), 0);
+        ScheduledTime arrival = null;
+        for (int seconds = 0; seconds <= 3600; seconds += 60) {
+            if (cluster.exists("/feed", start, start.plusSeconds(seconds))) {
+                arrival = start.plusSeconds(seconds);
+                break;
+            }
+        }
+        Assert.assertNotNull(arrival);
+        Assert.assertTrue(cluster.exists("/feed", start, arrival));
+        Assert.assertFalse(cluster.exists("/feed", start, arrival.minusSeconds(60)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsOnBadFailureRate() {
+        new SimulatedCluster(clock, 0, Distribution.constant(1), 1.5, Distribution.constant(0), Distribution.constant(0), Distribution.constant(0), 0);
+    }
+
+    private SimulatedCluster makeCluster(double failureRate) {
+        return new SimulatedCluster(clock, 0, Distribution.constant(600), failureRate, Distribution.constant(1),
+                Distribution.constant(300), Distribution.constant(1), 0);
+    }
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.SlotID;
+import com.collective.celos.SlotState;
+import com.collective.celos.WorkflowID;
+
+public class SimulatorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ScheduledTime start = new ScheduledTime("2015-01-01T00:00Z");
+
+    @Test
+    public void simulatesGeneratedWorkflows() throws Exception {
+        SimulatorCommandLine commandLine = makeCommandLine(folder.newFolder(), 0);
+        SimulationReport report = SimulatorMain.simulate(commandLine);
+
+        Assert.assertEquals(20, report.getWorkflowCount());
+        Assert.assertEquals(6 * 60 / 5, report.getSteps());
+        Assert.assertEquals(6, report.getSimulatedHours(), 0);
+        Assert.assertTrue(report.getSubmitted() > 0);
+        Assert.assertTrue(report.getSucceeded() > 0 && report.getSucceeded() <= report.getSubmitted());
+        Assert.assertEquals(0, report.getFailed());
+        Assert.assertEquals(0, report.getRetried());
+        Assert.assertEquals(0, report.getWaitTimeouts());
+        Assert.assertTrue(report.getThroughput() > 0);
+        // Data arrives 10 minutes after the scheduled time, the slot becomes READY in
+        // the step at that time, and is submitted in the following step
+        Assert.assertEquals(10 * 60 + 5 * 60, report.getSchedulingLagSecondsPercentile(0));
+        // Slots of dependent workflows are submitted in the step in which their upstream slot succeeds
+        Assert.assertEquals(0, report.getQueueLagSecondsPercentile(0));
+        Assert.assertTrue(report.getQueueLagSecondsPercentile(100) >= 5 * 60);
+        Assert.assertTrue(report.getStepMillisPercentile(50) <= report.getStepMillisPercentile(100));
+    }
+
+    @Test
+    public void failedJobsAreRetried() throws Exception {
+        SimulationReport report = SimulatorMain.simulate(makeCommandLine(folder.newFolder(), 1));
+        Assert.assertTrue(report.getFailed() > 0);
+        Assert.assertTrue(report.getRetried() > 0);
+        Assert.assertEquals(0, report.getSucceeded());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failsOnUsedWorkDir() throws Exception {
+        File workDir = folder.newFolder();
+        new File(workDir, "db").mkdir();
+        SimulatorMain.simulate(makeCommandLine(workDir, 0));
+    }
+
+    @Test
+    public void reportsLags() {
+        SimulationReport report = new SimulationReport(start, 1);
+        SlotState waiting = new SlotState(new SlotID(new WorkflowID("wf"), start), SlotState.Status.WAITING);
+        SlotState ready = waiting.transitionToReady();
+        SlotState running = ready.transitionToRunning("1");
+        report.recordTransition(waiting, ready, start.plusMinutes(10));
+        report.recordTransition(ready, running, start.plusMinutes(15));
+        report.recordTransition(running, running.transitionToSuccess(), start.plusMinutes(30));
+        report.recordStep(5, start.plusHours(2));
+        Assert.assertEquals(15 * 60, report.getSchedulingLagSecondsPercentile(50));
+        Assert.assertEquals(5 * 60, report.getQueueLagSecondsPercentile(50));
+        Assert.assertEquals(1, report.getSubmitted());
+        Assert.assertEquals(1, report.getSucceeded());
+        Assert.assertEquals(0.5, report.getThroughput(), 0);
+    }
+
+    @Test
+    public void computesNearestRankPercentiles() {
+        Assert.assertEquals(0, SimulationReport.getPercentile(Arrays.<Long>asList(), 50));
+        Assert.assertEquals(3, SimulationReport.getPercentile(Arrays.asList(5L, 1L, 4L, 2L, 3L), 50));
+        Assert.assertEquals(5, SimulationReport.getPercentile(Arrays.asList(5L, 1L, 4L, 2L, 3L), 99));
+        Assert.assertEquals(1, SimulationReport.getPercentile(Arrays.asList(5L, 1L, 4L, 2L, 3L), 0));
+        Assert.assertEquals(5, SimulationReport.getPercentile(Arrays.asList(5L, 1L, 4L, 2L, 3L), 100));
+    }
+
+    private SimulatorCommandLine makeCommandLine(File workDir, double failureRate) {
+        return new SimulatorCommandLine(workDir, 20, null, null, 6, 5 * 60, start, 0,
+                Distribution.constant(20 * 60), failureRate, Distribution.constant(0), Distribution.constant(10 * 60), Distribution.constant(0), 0,
+                1, false, 0, 0, false);
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2015 Collective, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or
+ * implied.  See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.collective.celos.simulation;
+
+import java.io.File;
+import java.util.Collections;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.collective.celos.AdaptiveConcurrency;
+import com.collective.celos.CronSchedule;
+import com.collective.celos.DependentSchedule;
+import com.collective.celos.HourlySchedule;
+import com.collective.celos.JSConfigParser;
+import com.collective.celos.MemoryStateDatabase;
+import com.collective.celos.ScheduledTime;
+import com.collective.celos.SlotID;
+import com.collective.celos.Workflow;
+import com.collective.celos.WorkflowConfiguration;
+import com.collective.celos.WorkflowConfigurationParser;
+import com.collective.celos.WorkflowGraph;
+import com.collective.celos.WorkflowID;
+import com.collective.celos.trigger.SuccessTrigger;
+import com.google.common.collect.ImmutableMap;
+
+public class SyntheticWorkflowGeneratorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ScheduledTime start = new ScheduledTime("2015-01-01T00:00Z");
+    private final SimulatedCluster cluster = new SimulatedCluster(new VirtualClock(start), 0, Distribution.constant(600), 0,
+            Distribution.constant(0), Distribution.constant(0), Distribution.constant(0), 0);
+
+    @Test
+    public void writesParseableWorkflows() throws Exception {
+        File workflowsDir = folder.newFolder();
+        File defaultsDir = folder.newFolder();
+        new SyntheticWorkflowGenerator(0).write(workflowsDir, defaultsDir, 100, start);
+        WorkflowConfiguration cfg = new WorkflowConfigurationParser(defaultsDir, Collections.<String, String>emptyMap(), null,
+                JSConfigParser.DEFAULT_OPTIMIZATION_LEVEL, WorkflowConfigurationParser.DEFAULT_PARSE_THREADS, WorkflowConfigurationParser.DEFAULT_PARSE_TIMEOUT_SECONDS,
+                new AdaptiveConcurrency(System::currentTimeMillis), ImmutableMap.<String, Object>of(SimulatedCluster.JS_VARIABLE, cluster))
+                .parseConfiguration(workflowsDir, new MemoryStateDatabase().openConnection()).getWorkflowConfiguration();
+
+        Assert.assertEquals(100, cfg.getWorkflows().size());
+        int hourly = 0;
+        int cron = 0;
+        int dependent = 0;
+        for (Workflow wf : cfg.getWorkflows()) {
+            Assert.assertEquals(start, wf.getStartTime());
+            Assert.assertTrue(wf.getExternalService() instanceof SimulatedExternalService);
+            if (wf.getSchedule() instanceof HourlySchedule) {
+                hourly++;
+                Assert.assertTrue(wf.getTrigger() instanceof SimulatedFileTrigger);
+            } else if (wf.getSchedule() instanceof CronSchedule) {
+                cron++;
+                Assert.assertTrue(wf.getTrigger() instanceof SimulatedFileTrigger);
+            } else if (wf.getSchedule() instanceof DependentSchedule) {
+                dependent++;
+                WorkflowID upstream = ((DependentSchedule) wf.getSchedule()).getOtherWorkflowID();
+                Assert.assertEquals(upstream, ((SuccessTrigger) wf.getTrigger()).getTriggerWorkflowId());
+                Assert.assertNotNull(cfg.findWorkflow(upstream));
+            }
+        }
+        Assert.assertEquals(100, hourly + cron + dependent);
+        Assert.assertTrue(hourly > 0 && cron > 0 && dependent > 0);
+        Assert.assertTrue(new WorkflowGraph(cfg).getCycles().isEmpty());
+        Assert.assertTrue(new WorkflowGraph(cfg).getLevels().size() > 2);
+        // The workflows use the cluster in their scope
+        Workflow wf = cfg.getWorkflows().iterator().next();
+        wf.getExternalService().submit(new SlotID(wf.getID(), start));
+        Assert.assertEquals(1, cluster.getSubmits());
+    }
+
+    @Test
+    public void sameSeedGivesSameFiles() throws Exception {
+        File dir1 = folder.newFolder();
+        File dir2 = folder.newFolder();
+        File dir3 = folder.newFolder();
+        new SyntheticWorkflowGenerator(42).write(dir1, dir1, 20, start);
+        new SyntheticWorkflowGenerator(42).write(dir2, dir2, 20, start);
+        new SyntheticWorkflowGenerator(43).write(dir3, dir3, 20, start);
+        boolean different = false;
+        for (int i = 0; i < 20; i++) {
+            String name = SyntheticWorkflowGenerator.getWorkflowID(i) + ".js";
+            Assert.assertEquals(FileUtils.readFileToString(new File(dir1, name)), FileUtils.readFileToString(new File(dir2, name)));
+            different |= !FileUtils.readFileToString(new File(dir1, name)).equals(FileUtils.readFileToString(new File(dir3, name)));
+        }
+        Assert.assertTrue(different);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void failsOnZeroWorkflows() throws Exception {
+        new SyntheticWorkflowGenerator(0).write(folder.newFolder(), folder.newFolder(), 0, start);
+    }
+
+}